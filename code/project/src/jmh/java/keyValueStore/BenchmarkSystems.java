@@ -0,0 +1,48 @@
+package keyValueStore;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import akka.actor.AbstractActor;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import keyValueStore.events.EventLog;
+
+/* Actor systems for the JMH benchmarks: application.conf with the given kv.* overrides,
+INFO logging off, and the event log written to the temp directory. */
+final class BenchmarkSystems {
+    private BenchmarkSystems() {}
+
+    static ActorSystem create(String name, Map<String, Object> overrides) {
+        Map<String, Object> settings = new HashMap<>(overrides);
+        settings.put("akka.loglevel", "WARNING");
+        settings.putIfAbsent("kv.event-log.file",
+                new File(System.getProperty("java.io.tmpdir"), "kv_jmh_events.bin").getPath());
+        Config config = ConfigFactory.parseMap(settings).withFallback(ConfigFactory.load());
+        return ActorSystem.create(name, config);
+    }
+
+    static ActorSystem create(String name) {
+        return create(name, new HashMap<>());
+    }
+
+    static void shutdown(ActorSystem system) throws Exception {
+        system.terminate();
+        system.getWhenTerminated().toCompletableFuture().get();
+        EventLog.closeShared();
+    }
+
+    /* Stand-in peer that swallows whatever a process under test sends it. */
+    static final class Sink extends AbstractActor {
+        static Props props() {
+            return Props.create(Sink.class, Sink::new);
+        }
+
+        @Override
+        public Receive createReceive() {
+            return receiveBuilder().matchAny(msg -> {}).build();
+        }
+    }
+}
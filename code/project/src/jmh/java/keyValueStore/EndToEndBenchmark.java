@@ -0,0 +1,186 @@
+package keyValueStore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import keyValueStore.msg.CrashMessage;
+import keyValueStore.msg.DoneMessage;
+import keyValueStore.msg.LaunchMessage;
+import keyValueStore.msg.OperationsMessage;
+import keyValueStore.msg.ReferencesMessage;
+import org.HdrHistogram.Histogram;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* Put/get throughput of a whole in-JVM cluster: every invocation runs N processes (f of
+them crashed) through M operations each and waits for all DoneMessages. The puts/gets
+counters give operations per second; the latency percentiles of the operations are
+printed at the end of every iteration.
+Variants (execution profile, batching, window, ...) are selected with -p or -jvmArgs -Dkv.<setting>. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-XX:+UseG1GC"})
+public class EndToEndBenchmark {
+    @Param({"3", "10", "100"})
+    int n;
+
+    // crashed processes: none, or the most the protocol tolerates ((N - 1) / 2)
+    @Param({"0", "max"})
+    String f;
+
+    // share of gets, spread evenly over the operations
+    @Param({"5", "50", "95"})
+    int readPercent;
+
+    // M: every live process runs 2M operations per invocation
+    @Param({"100"})
+    int m;
+
+    @Param({"100"})
+    int keys;
+
+    @Param({"1"})
+    int window;
+
+    @Param({"false"})
+    boolean batching;
+
+    // kv.execution.profile: dispatcher and mailbox preset of the replicas
+    @Param({"default"})
+    String profile;
+
+    private ActorSystem system;
+    private int crashed;
+    private int run = 0;
+    private OperationLatencies iterationLatencies;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Operations {
+        public long puts;
+        public long gets;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            puts = 0;
+            gets = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("kv.pipeline.window", window);
+        settings.put("kv.batching.enabled", batching);
+        settings.put("kv.execution.profile", profile);
+        system = BenchmarkSystems.create("cluster", settings);
+        crashed = "max".equals(f) ? (n - 1) / 2 : Integer.parseInt(f);
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        iterationLatencies = OperationLatencies.forRun();
+    }
+
+    @TearDown(Level.Iteration)
+    public void endIteration() {
+        Histogram all = iterationLatencies.getAll();
+        System.out.printf("  latency us: p50 %d, p90 %d, p99 %d, p99.9 %d, max %d (%d ops)%n",
+                all.getValueAtPercentile(50.0) / 1000, all.getValueAtPercentile(90.0) / 1000,
+                all.getValueAtPercentile(99.0) / 1000, all.getValueAtPercentile(99.9) / 1000,
+                all.getMaxValue() / 1000, all.getTotalCount());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        BenchmarkSystems.shutdown(system);
+    }
+
+    @Benchmark
+    public void cluster(Operations ops) throws Exception {
+        CompletableFuture<OperationLatencies> done = new CompletableFuture<>();
+        system.actorOf(Run.props(n, crashed, m, keys, readPercent, done), "run" + (run++));
+        OperationLatencies latencies = done.get(5, TimeUnit.MINUTES);
+        iterationLatencies.add(latencies);
+        ops.puts += latencies.getPut().getTotalCount();
+        ops.gets += latencies.getGet().getTotalCount();
+    }
+
+    /* One run of the scenario, like Main plus its BenchmarkMonitor: the processes are
+    children named p0..pN-1, the first f of them crash, and the merged latencies complete
+    the future once every live process is done. */
+    static final class Run extends AbstractActor {
+        private final int n;
+        private final int crashed;
+        private final CompletableFuture<OperationLatencies> done;
+        private final OperationLatencies latencies = OperationLatencies.forRun();
+        private final OperationsMessage operations;
+        private int finished = 0;
+
+        Run(int n, int crashed, int m, int keys, int readPercent, CompletableFuture<OperationLatencies> done) {
+            this.n = n;
+            this.crashed = crashed;
+            this.done = done;
+            this.operations = new OperationsMessage(m, keys, readPercent);
+        }
+
+        static Props props(int n, int crashed, int m, int keys, int readPercent, CompletableFuture<OperationLatencies> done) {
+            return Props.create(Run.class, () -> new Run(n, crashed, m, keys, readPercent, done));
+        }
+
+        @Override
+        public void preStart() {
+            ProcessConfig config = ProcessConfig.of(getContext().getSystem());
+            List<ActorRef> processes = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                processes.add(getContext().actorOf(config.replicaDeployment(Process.createActor()), "p" + i));
+            }
+            ReferencesMessage references = new ReferencesMessage(processes, self());
+            for (ActorRef process : processes) {
+                process.tell(references, self());
+                process.tell(operations, self());
+            }
+            for (int i = 0; i < crashed; i++) {
+                processes.get(i).tell(new CrashMessage(), self());
+            }
+            for (int i = crashed; i < n; i++) {
+                processes.get(i).tell(new LaunchMessage(), self());
+            }
+        }
+
+        @Override
+        public Receive createReceive() {
+            return receiveBuilder()
+                .match(DoneMessage.class, msg -> {
+                    latencies.add(msg.getLatencies());
+                    if (++finished == n - crashed) {
+                        done.complete(latencies);
+                        getContext().stop(self());
+                    }
+                })
+                .build();
+        }
+    }
+}
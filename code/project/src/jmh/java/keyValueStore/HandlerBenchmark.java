@@ -0,0 +1,130 @@
+package keyValueStore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.TestActorRef;
+import keyValueStore.msg.LaunchMessage;
+import keyValueStore.msg.OperationsMessage;
+import keyValueStore.msg.ProcessMessage;
+import keyValueStore.msg.ReadRequest;
+import keyValueStore.msg.ReferencesMessage;
+import keyValueStore.msg.WriteRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* Cost of the Process handlers on the calling thread, without mailboxes or dispatchers.
+The process runs as a TestActorRef (CallingThreadDispatcher) and its peers are sinks, so
+each benchmark measures the handler plus the tell of its reply. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandlerBenchmark {
+    // schedule long enough that no iteration runs out of operations
+    private static final int OPERATIONS = 1 << 22;
+    private static final int PROCESS_NUMBER = 0;
+
+    @Param({"3", "10", "100"})
+    int n;
+
+    @Param({"1", "100000"})
+    int keys;
+
+    private ActorSystem system;
+    private TestActorRef<Process> process;
+    private ActorRef sink;
+    private int majority;
+    private int key = 1;
+    private long timestamp = 0;
+    // version the read responses of a put report: ahead of the process's clock, so the put writes
+    // the version right after it (lines 11-12) whatever the clock says
+    private static final long FUTURE = 1L << 51;
+    // sequence number and index of the operation the process is currently running
+    private int sequenceNumber = 1;
+    private int operationIndex = 0;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("kv.pipeline.window", 1);
+        settings.put("kv.batching.enabled", false);
+        settings.put("kv.reads.fast-path", false);
+        system = BenchmarkSystems.create("handlers", settings);
+        sink = TestActorRef.create(system, BenchmarkSystems.Sink.props(), "sink");
+        process = TestActorRef.create(system, Process.createActor(), "p" + PROCESS_NUMBER);
+        majority = n / 2 + 1;
+        List<ActorRef> peers = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            peers.add(sink);
+        }
+        process.tell(new ReferencesMessage(peers, sink), ActorRef.noSender());
+        process.tell(new OperationsMessage(OPERATIONS, keys), ActorRef.noSender());
+        process.tell(new LaunchMessage(), ActorRef.noSender());
+        key = 1;
+        timestamp = 0;
+        sequenceNumber = 1;
+        operationIndex = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws Exception {
+        BenchmarkSystems.shutdown(system);
+    }
+
+    /* lines 28-29: reply with the local (value, timestamp) of the key */
+    @Benchmark
+    public void onReadRequest() {
+        process.receive(new ReadRequest(nextKey(), 0), sink);
+    }
+
+    /* lines 23-27: store the newer (value, timestamp) and ack */
+    @Benchmark
+    public void onWriteRequest() {
+        timestamp++;
+        process.receive(new WriteRequest(nextKey(), (int) timestamp, timestamp, 0), sink);
+    }
+
+    /* One whole put or get as seen by its coordinator: a majority of read responses
+    (onReadResponse, then the WriteRequest broadcast) and a majority of acks (onAck). */
+    @Benchmark
+    public void quorumRoundTrip() {
+        int seq = sequenceNumber;
+        boolean put = operationIndex < OPERATIONS;
+        int opKey = 1 + (put ? operationIndex : operationIndex - OPERATIONS) % keys;
+        long maxTs = put ? Versions.of(FUTURE + operationIndex, 1) : 0;
+        for (int j = 0; j < majority; j++) {
+            process.receive(new ProcessMessage(opKey, 0, maxTs, seq, j), sink);
+        }
+        // puts write [v, maxTs + 1] (lines 11-12), gets write back what they read (line 20)
+        int value = put ? operationIndex * n + PROCESS_NUMBER : 0;
+        long ts = put ? Versions.of(FUTURE + operationIndex + 1, PROCESS_NUMBER) : 0;
+        for (int j = 0; j < majority; j++) {
+            process.receive(new Ack(opKey, value, ts, seq, j), sink);
+        }
+        sequenceNumber++;
+        operationIndex++;
+    }
+
+    private int nextKey() {
+        key = key == keys ? 1 : key + 1;
+        return key;
+    }
+}
@@ -0,0 +1,66 @@
+package keyValueStore;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* Quorum tracking of one operation (Operation): counting unique responders and keeping
+the running maximum over the read responses, including the duplicates that are dropped. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuorumBenchmark {
+    @Param({"3", "10", "100", "1000"})
+    int n;
+
+    private Operation op;
+    private int majority;
+    private int sequenceNumber = 0;
+
+    @Setup
+    public void setup() {
+        op = new Operation(n);
+        majority = n / 2 + 1;
+    }
+
+    /* Read phase then write phase, each until a majority of distinct processes answered. */
+    @Benchmark
+    public int readAndWriteQuorum() {
+        op.start(++sequenceNumber, 1, true, 7, null, 0L);
+        for (int j = 0; op.responderCount() < majority; j++) {
+            if (op.addResponder(j)) {
+                op.addReadResponse(j, j, j & 3, null);
+            }
+        }
+        op.startWritePhase(0L);
+        for (int j = n - 1; op.responderCount() < majority; j--) {
+            op.addResponder(j);
+        }
+        return op.maxValue;
+    }
+
+    /* Every process answers twice (duplicates, as after a retransmission), all of them counted. */
+    @Benchmark
+    public int duplicateResponses() {
+        op.start(++sequenceNumber, 1, false, 0, null, 0L);
+        int accepted = 0;
+        for (int j = 0; j < 2 * n; j++) {
+            if (op.addResponder(j % n)) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+}
@@ -0,0 +1,104 @@
+package keyValueStore;
+
+import java.util.concurrent.TimeUnit;
+import akka.actor.ActorSystem;
+import akka.actor.ExtendedActorSystem;
+import akka.serialization.JavaSerializer;
+import akka.serialization.Serialization;
+import akka.serialization.SerializationExtension;
+import akka.serialization.Serializer;
+import akka.serialization.SerializerWithStringManifest;
+import keyValueStore.msg.BatchMessage;
+import keyValueStore.msg.ProcessMessage;
+import keyValueStore.msg.ReadRequest;
+import keyValueStore.msg.WriteRequest;
+import keyValueStore.serialization.KvSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/* Encoding and decoding of the protocol messages: Java serialization (what the messages used
+before they had a binding) vs. the fixed-layout KvSerializer that the remote deployment uses.
+The encoded size is printed in the setup of each trial. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    @Param({"ReadRequest", "ProcessMessage", "WriteRequest", "Ack", "BatchMessage"})
+    String message;
+
+    @Param({"java", "kv"})
+    String codec;
+
+    private ActorSystem system;
+    private Serialization serialization;
+    private Serializer serializer;
+    private Object msg;
+    private String manifest;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        system = BenchmarkSystems.create("serialization");
+        serialization = SerializationExtension.get(system);
+        msg = sample(message);
+        ExtendedActorSystem extended = (ExtendedActorSystem) system;
+        serializer = "java".equals(codec) ? new JavaSerializer(extended) : new KvSerializer(extended);
+        if (serializer instanceof SerializerWithStringManifest) {
+            manifest = ((SerializerWithStringManifest) serializer).manifest(msg);
+        } else {
+            manifest = serializer.includeManifest() ? msg.getClass().getName() : "";
+        }
+        bytes = serializer.toBinary(msg);
+        System.out.println(message + ": " + bytes.length + " bytes with " + serializer.getClass().getSimpleName());
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        BenchmarkSystems.shutdown(system);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return serializer.toBinary(msg);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return serialization.deserialize(bytes, serializer.identifier(), manifest).get();
+    }
+
+    private static Object sample(String type) {
+        switch (type) {
+            case "ReadRequest":
+                return new ReadRequest(42, 1001);
+            case "ProcessMessage":
+                return new ProcessMessage(42, 123456, 17, 1001, 7);
+            case "WriteRequest":
+                return new WriteRequest(42, 123456, 18, 1001);
+            case "Ack":
+                return new Ack(42, 123456, 18, 1001, 7);
+            case "BatchMessage":
+                // a typical batch of acks for 8 pipelined operations
+                Object[] acks = new Object[8];
+                for (int i = 0; i < acks.length; i++) {
+                    acks[i] = new Ack(42 + i, 123456 + i, 18, 1001 + i, 7);
+                }
+                return new BatchMessage(acks);
+            default:
+                throw new IllegalArgumentException("unknown message " + type);
+        }
+    }
+}
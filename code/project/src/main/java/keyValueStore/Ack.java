@@ -5,19 +5,38 @@ import java.io.Serializable;
 public class Ack implements Serializable{
 
     private static final long serialVersionUID = 1L;
+    private final int key;
     private final int value;
-    private final int timestamp;
+    private final long timestamp;
+    private final int sequenceNumber;
+    // number of the acknowledging process, used to count unique senders
+    private final int processNumber;
 
-    public Ack(int value, int timestamp) {
+    public Ack(int key, int value, long timestamp, int sequenceNumber, int processNumber) {
+        this.key = key;
         this.value = value;
         this.timestamp = timestamp;
+        this.sequenceNumber = sequenceNumber;
+        this.processNumber = processNumber;
+    }
+
+    public int getKey() {
+        return key;
     }
 
     public int getValue() {
         return value;
     }
 
-    public int getTimestamp() {
+    public long getTimestamp() {
         return timestamp;
     }
+
+    public int getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public int getProcessNumber() {
+        return processNumber;
+    }
 }
@@ -0,0 +1,151 @@
+package keyValueStore;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/* Holder side of the read leases (kv.leases): the keys this coordinator serves gets of locally,
+each with the version a majority of the key's replicas granted it a lease on, and the leases it is
+still collecting grants for.
+A lease is valid from the moment its request left until duration x (1 - 2 x max-drift) later on
+this process's clock; the grantors count their duration from the grant on theirs, which is later,
+and even with both clocks off by max-drift in opposite directions the holder stops first.
+Only keys read again within a duration are asked for: a lease on a key read less often than that
+would cost its request and grants and expire without serving a get.
+At most capacity keys are held, the least recently used one evicted first. An evicted lease is
+just forgotten: its grantors keep holding writes back until it expires or they revoke it. */
+final class LeaseCache {
+    static final class Lease {
+        final int id;
+        final int value;
+        final long timestamp;
+        final long requestedAt;
+        // grants that make it valid: a majority of the processes, or of the key's group (kv.sharding)
+        final int quorum;
+        // 0 while collecting grants
+        long validUntil;
+        private final boolean[] granted;
+        private int grants;
+
+        Lease(int id, int value, long timestamp, long requestedAt, int quorum, int numProcesses) {
+            this.id = id;
+            this.value = value;
+            this.timestamp = timestamp;
+            this.requestedAt = requestedAt;
+            this.quorum = quorum;
+            this.granted = new boolean[numProcesses];
+        }
+    }
+
+    private final int numProcesses;
+    private final long durationNanos;
+    private final long validityNanos;
+    private final LinkedHashMap<Integer, Lease> leases;
+    // when each key was last read, for the capacity most recently read keys
+    private final LinkedHashMap<Integer, Long> lastReads;
+    private int nextId = 0;
+    private long evictions = 0;
+
+    LeaseCache(int numProcesses, long durationNanos, double maxDrift, int capacity) {
+        this.numProcesses = numProcesses;
+        this.durationNanos = durationNanos;
+        this.validityNanos = (long) (durationNanos * (1 - 2 * maxDrift));
+        this.leases = new LinkedHashMap<Integer, Lease>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Lease> eldest) {
+                if (size() <= capacity) return false;
+                evictions++;
+                return true;
+            }
+        };
+        this.lastReads = new LinkedHashMap<Integer, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Long> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /* Records a get of key that was not served under a lease; true if the previous get of key was
+    less than a duration before, i.e. a lease on key would likely serve one before it expires. */
+    boolean readAgain(int key, long now) {
+        Long last = lastReads.put(key, now);
+        return last != null && now - last < durationNanos;
+    }
+
+    /* The lease a get of key at now can be read under, or null. */
+    Lease valid(int key, long now) {
+        Lease lease = leases.get(key);
+        if (lease == null || lease.validUntil == 0) return null;
+        if (lease.validUntil - now <= 0) {
+            leases.remove(key);
+            return null;
+        }
+        // the first get after it expires asks for the next one right away
+        lastReads.put(key, now);
+        return lease;
+    }
+
+    /* A new lease to request on (value, timestamp) of key, valid with quorum grants, or null while
+    key has one already (valid, or collecting grants for less than a duration: the grants of older
+    ones are lost). */
+    Lease request(int key, int value, long timestamp, long now, int quorum) {
+        Lease lease = leases.get(key);
+        if (lease != null) {
+            long until = lease.validUntil != 0 ? lease.validUntil : lease.requestedAt + durationNanos;
+            if (until - now > 0) return null;
+        }
+        lease = new Lease(++nextId, value, timestamp, now, quorum, numProcesses);
+        leases.put(key, lease);
+        return lease;
+    }
+
+    /* Records the answer of process to lease id of key; true once its quorum granted it. A refusal
+    ends the request: some replica stores a newer version, which the next operation on key reads. */
+    boolean answer(int key, int id, int process, boolean granted) {
+        Lease lease = leases.get(key);
+        if (lease == null || lease.id != id || lease.validUntil != 0) return false;
+        if (!granted) {
+            leases.remove(key);
+            return false;
+        }
+        if (lease.granted[process]) return false;
+        lease.granted[process] = true;
+        if (++lease.grants < lease.quorum) return false;
+        lease.validUntil = lease.requestedAt + validityNanos;
+        // the grants took longer than the lease lasts
+        if (lease.validUntil == 0 || lease.validUntil - System.nanoTime() <= 0) {
+            leases.remove(key);
+            return false;
+        }
+        return true;
+    }
+
+    /* Stops reading key locally (a revoke, or a put of this process), also a request in progress. */
+    void drop(int key) {
+        leases.remove(key);
+    }
+
+    /* Valid leases at now; expired ones are removed on the way. */
+    int held(long now) {
+        int held = 0;
+        for (Iterator<Lease> it = leases.values().iterator(); it.hasNext(); ) {
+            Lease lease = it.next();
+            if (lease.validUntil != 0 && lease.validUntil - now <= 0) {
+                it.remove();
+            } else if (lease.validUntil != 0) {
+                held++;
+            }
+        }
+        return held;
+    }
+
+    long evictions() {
+        return evictions;
+    }
+
+    void clear() {
+        leases.clear();
+        lastReads.clear();
+    }
+}
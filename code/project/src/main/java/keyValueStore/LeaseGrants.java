@@ -0,0 +1,187 @@
+package keyValueStore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import akka.actor.ActorRef;
+import keyValueStore.msg.WriteRequest;
+
+/* Grantor side of the read leases (kv.leases): per key, the holders this replica promised not to
+store a newer version for, the version each one reads locally and until when (this replica's
+clock), plus the WriteRequests held back for them.
+A write newer than the version of a lease still running waits here, unacknowledged and unstored,
+until every such holder confirmed the revoke or its lease expired. Every majority that stores or
+acknowledges the write includes a grantor of every lease, so no write or write-back completes and
+no fast-path read sees the version while a holder may still read an older one. Keys without
+running leases or waiting writes are forgotten, so this holds what is leased right now. */
+final class LeaseGrants {
+    /* A WriteRequest held back, and whom its Ack goes to. */
+    static final class HeldWrite {
+        final WriteRequest request;
+        final ActorRef sender;
+
+        HeldWrite(WriteRequest request, ActorRef sender) {
+            this.request = request;
+            this.sender = sender;
+        }
+    }
+
+    private static final class KeyGrants {
+        // per holder: until when its lease runs (0: none) and the version it reads
+        final long[] expiry;
+        final long[] timestamp;
+        // revoke sent, confirmation outstanding
+        final boolean[] revoking;
+        final List<HeldWrite> held = new ArrayList<>();
+
+        KeyGrants(int numProcesses) {
+            expiry = new long[numProcesses];
+            timestamp = new long[numProcesses];
+            revoking = new boolean[numProcesses];
+        }
+
+        boolean running(int holder, long now) {
+            return expiry[holder] != 0 && expiry[holder] - now > 0;
+        }
+
+        boolean blocks(long ts, long now) {
+            for (int h = 0; h < expiry.length; h++) {
+                if (running(h, now) && ts > timestamp[h]) return true;
+            }
+            return false;
+        }
+
+        boolean idle(long now) {
+            if (!held.isEmpty()) return false;
+            for (int h = 0; h < expiry.length; h++) {
+                if (running(h, now)) return false;
+            }
+            return true;
+        }
+    }
+
+    private final int numProcesses;
+    private final long durationNanos;
+    private final Map<Integer, KeyGrants> keys = new HashMap<>();
+    // after a restart the grants given before the crash are unknown: every write waits until
+    // they expired, and no lease is granted before
+    private long quietUntil = 0;
+    private int heldWrites = 0;
+
+    LeaseGrants(int numProcesses, long durationNanos) {
+        this.numProcesses = numProcesses;
+        this.durationNanos = durationNanos;
+    }
+
+    /* Grants holder a lease on version ts of key unless writes of key wait already (the revokes are
+    out) or the replica is restarting. The caller checked that it stores no newer version. */
+    boolean grant(int key, int holder, long ts, long now) {
+        if (quietUntil - now > 0) return false;
+        KeyGrants k = keys.get(key);
+        if (k == null) {
+            k = new KeyGrants(numProcesses);
+            keys.put(key, k);
+        } else if (!k.held.isEmpty()) {
+            return false;
+        }
+        k.expiry[holder] = now + durationNanos;
+        if (k.expiry[holder] == 0) k.expiry[holder] = 1;
+        k.timestamp[holder] = ts;
+        k.revoking[holder] = false;
+        return true;
+    }
+
+    /* Whether a write of version ts to key has to wait. */
+    boolean blocks(int key, long ts, long now) {
+        if (quietUntil - now > 0) return true;
+        KeyGrants k = keys.get(key);
+        return k != null && k.blocks(ts, now);
+    }
+
+    /* Holds a write back; the holders it waits for that have no revoke yet go to revoke[], their
+    number is returned. */
+    int hold(WriteRequest request, ActorRef sender, long now, int[] revoke) {
+        int key = request.getKey();
+        KeyGrants k = keys.get(key);
+        if (k == null) {
+            k = new KeyGrants(numProcesses);
+            keys.put(key, k);
+        }
+        k.held.add(new HeldWrite(request, sender));
+        heldWrites++;
+        int count = 0;
+        for (int h = 0; h < numProcesses; h++) {
+            if (k.running(h, now) && !k.revoking[h]
+                    && request.getTimestamp() > k.timestamp[h]) {
+                k.revoking[h] = true;
+                revoke[count++] = h;
+            }
+        }
+        return count;
+    }
+
+    /* holder confirmed a revoke of key: the writes no longer waiting go to ready. */
+    void revoked(int key, int holder, long now, List<HeldWrite> ready) {
+        KeyGrants k = keys.get(key);
+        if (k == null) return;
+        k.expiry[holder] = 0;
+        k.revoking[holder] = false;
+        release(key, k, now, ready);
+    }
+
+    /* Forgets the expired leases; the writes no longer waiting go to ready. */
+    void expire(long now, List<HeldWrite> ready) {
+        for (Iterator<Map.Entry<Integer, KeyGrants>> it = keys.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Integer, KeyGrants> e = it.next();
+            KeyGrants k = e.getValue();
+            for (int h = 0; h < numProcesses; h++) {
+                if (k.expiry[h] != 0 && !k.running(h, now)) {
+                    k.expiry[h] = 0;
+                    k.revoking[h] = false;
+                }
+            }
+            releaseHeld(k, now, ready);
+            if (k.idle(now)) it.remove();
+        }
+    }
+
+    private void release(int key, KeyGrants k, long now, List<HeldWrite> ready) {
+        releaseHeld(k, now, ready);
+        if (k.idle(now)) keys.remove(key);
+    }
+
+    private void releaseHeld(KeyGrants k, long now, List<HeldWrite> ready) {
+        if (k.held.isEmpty() || quietUntil - now > 0) return;
+        for (Iterator<HeldWrite> it = k.held.iterator(); it.hasNext(); ) {
+            HeldWrite w = it.next();
+            if (!k.blocks(w.request.getTimestamp(), now)) {
+                it.remove();
+                heldWrites--;
+                ready.add(w);
+            }
+        }
+    }
+
+    /* Restart: the grants of before the crash are lost with the memory, so everything waits a
+    lease duration from now. */
+    void restart(long now) {
+        keys.clear();
+        heldWrites = 0;
+        quietUntil = now + durationNanos;
+    }
+
+    boolean isEmpty() {
+        return keys.isEmpty() && quietUntil == 0;
+    }
+
+    /* Ends the quiet period once it is over (until then the tick has to keep running). */
+    void endQuiet(long now) {
+        if (quietUntil != 0 && quietUntil - now <= 0 && heldWrites == 0) quietUntil = 0;
+    }
+
+    int heldWrites() {
+        return heldWrites;
+    }
+}
@@ -10,11 +10,20 @@ import java.util.logging.Logger;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Locale;
 // Added imports for file writing
+import java.io.File;
 import java.io.FileWriter;
 import java.io.PrintWriter;
 import java.io.IOException;
 import keyValueStore.msg.*;
+import keyValueStore.bench.AllocationStats;
+import keyValueStore.events.EventLog;
+import keyValueStore.metrics.MetricsSampler;
+import keyValueStore.net.SimulatedNetwork;
+import keyValueStore.storage.Durability;
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.Histogram;
 
 public class Main {
     /* Logger */
@@ -27,11 +36,24 @@ public class Main {
         private final int N;
         private final int f;
         private final int M;
+        private final ProcessConfig config;
+        // latency histograms of all processes, merged as the DoneMessages arrive
+        private final OperationLatencies latencies = OperationLatencies.forRun();
+        private long messagesSent = 0;
+        private long fastReads = 0;
+        private long slowReads = 0;
+        private long leaseReads = 0;
+        private long walRecords = 0;
+        private long walGroups = 0;
+        private long payloadBytesSent = 0;
+        private final AllocationStats startAllocation;
         public BenchmarkMonitor(int expectedMessages, int N, int f, int M) {
             this.expectedMessages = expectedMessages;
             this.N = N;
             this.f = f;
             this.M = M;
+            this.config = ProcessConfig.of(getContext().getSystem());
+            this.startAllocation = AllocationStats.snapshot();
             this.startTime = System.currentTimeMillis();
         }
         public static Props createActor(int expectedMessages, int N, int f, int M) {
@@ -42,44 +64,137 @@ public class Main {
             return receiveBuilder()
                 .match(DoneMessage.class, msg -> {
                     receivedMessages++;
+                    latencies.add(msg.getLatencies());
+                    messagesSent += msg.getMessagesSent();
+                    fastReads += msg.getFastReads();
+                    slowReads += msg.getSlowReads();
+                    leaseReads += msg.getLeaseReads();
+                    walRecords += msg.getWalRecords();
+                    walGroups += msg.getWalGroups();
+                    payloadBytesSent += msg.getPayloadBytesSent();
                     if (receivedMessages >= expectedMessages) {
                         long totalTime = System.currentTimeMillis() - startTime;
+                        AllocationStats allocation = AllocationStats.snapshot().since(startAllocation);
+                        Histogram all = latencies.getAll();
+                        long completed = all.getTotalCount();
+                        long throughput = totalTime > 0 ? completed * 1000L / totalTime : completed;
+                        long p50 = all.getValueAtPercentile(50.0) / 1000;
+                        long p99 = all.getValueAtPercentile(99.0) / 1000;
+                        double messagesPerOp = completed > 0 ? messagesSent / (double) completed : 0;
+                        double fastReadShare = fastReads + slowReads > 0 ? 100.0 * fastReads / (fastReads + slowReads) : 0;
+                        double kbPerOp = completed > 0 ? allocation.getAllocatedBytes() / 1024.0 / completed : 0;
                         // 1. Write result to file for the final table
-                        try (FileWriter fw = new FileWriter("benchmark_results.csv", true);
+                        try (FileWriter fw = new FileWriter(config.getResultsFile(), true);
                              PrintWriter out = new PrintWriter(fw)) {
                             // CHANGED: write a single table row (no embedded \n)
-                            out.printf("%-6d| %-5d| %-6d| %-9d ms%n", N, f, M, totalTime);
+                            out.printf("%-6d| %-5d| %-6d| %-9d ms| %-7d| %-9d| %-9d| %-9d| %-8.1f| %-6.1f| %-8.1f| %-6d%n",
+                                    N, f, M, totalTime, config.getPipelineWindow(), throughput, p50, p99, messagesPerOp, fastReadShare,
+                                    kbPerOp, allocation.getGcTimeMillis());
                         } catch (IOException e) {
                             e.printStackTrace();
                         }
+                        writeLatencies(latencies, totalTime);
                         // 2. Print completion to console
                         System.out.println("=========================================");
                         System.out.println("BENCHMARK FINISHED!");
                         System.out.println("TOTAL LATENCY: " + totalTime + " ms");
+                        System.out.println("THROUGHPUT: " + throughput + " ops/s (window " + config.getPipelineWindow()
+                                + ", profile " + config.getExecutionProfile() + ", durability " + config.getDurability() + ")");
+                        System.out.printf("OPERATION LATENCY: p50 %d us, p90 %d us, p99 %d us, p99.9 %d us, max %d us%n", p50,
+                                all.getValueAtPercentile(90.0) / 1000, p99, all.getValueAtPercentile(99.9) / 1000, all.getMaxValue() / 1000);
+                        System.out.printf("MESSAGES PER OPERATION: %.1f (batching %s)%n", messagesPerOp, config.isBatching() ? "on" : "off");
+                        System.out.printf("READS: %d fast (one round-trip), %d slow (write-back), %.1f%% fast%n", fastReads, slowReads, fastReadShare);
+                        if (config.isLeases()) {
+                            long gets = fastReads + slowReads + leaseReads;
+                            AbstractHistogram get = latencies.getGet();
+                            System.out.printf("LEASES: %d of %d gets read locally (%.1f%% hit rate), get p50 %d us, p99 %d us%n",
+                                    leaseReads, gets, gets > 0 ? 100.0 * leaseReads / gets : 0,
+                                    get.getValueAtPercentile(50.0) / 1000, get.getValueAtPercentile(99.0) / 1000);
+                        }
+                        if (config.isBlindWrites()) {
+                            AbstractHistogram put = latencies.getPut();
+                            System.out.printf("WRITES: blind (one round-trip, clock uncertainty %d us), put p50 %d us, p99 %d us%n",
+                                    config.getClockUncertaintyNanos() / 1000, put.getValueAtPercentile(50.0) / 1000,
+                                    put.getValueAtPercentile(99.0) / 1000);
+                        }
+                        if (config.isSharding()) {
+                            System.out.printf("SHARDING: every key in a group of %d of the %d processes (%d tokens each)%n",
+                                    Math.min(config.getShardReplicas(), N), N, config.getShardVirtualNodes());
+                        }
+                        if (config.getValueSize() > 0) {
+                            System.out.printf("PAYLOADS: %d B per value, %s reads, %.1f KB sent per operation%n",
+                                    config.getValueSize(), config.isDigestReads() ? "digest" : "full",
+                                    completed > 0 ? payloadBytesSent / 1024.0 / completed : 0);
+                        }
+                        if (walGroups > 0) {
+                            System.out.printf("WAL: %d updates in %d group commits, %.1f per %s%n", walRecords, walGroups,
+                                    walRecords / (double) walGroups, config.getDurability() == Durability.FSYNC ? "fsync" : "write");
+                        }
+                        System.out.printf("ALLOCATION: %.1f KB/op, %d MB total, %d GCs, %d ms in GC%n", kbPerOp,
+                                allocation.getAllocatedBytes() >> 20, allocation.getGcCount(), allocation.getGcTimeMillis());
                         System.out.println("=========================================");
                         getContext().getSystem().terminate();
                     }
                 })
                 .build();
         }
+        /* Appends one CSV row per operation type; the header is written when the file is new. */
+        private void writeLatencies(OperationLatencies merged, long totalTime) {
+            File file = new File(config.getLatencyFile());
+            boolean header = !file.exists() || file.length() == 0;
+            try (PrintWriter out = new PrintWriter(new FileWriter(file, true))) {
+                if (header) {
+                    out.println("N,f,M,window,batching,fast_reads,op,count,total_ms,ops_per_s,p50_us,p90_us,p99_us,p999_us,max_us");
+                }
+                writeLatencyRow(out, "all", merged.getAll(), totalTime);
+                writeLatencyRow(out, "put", merged.getPut(), totalTime);
+                writeLatencyRow(out, "get", merged.getGet(), totalTime);
+                writeLatencyRow(out, "read_phase", merged.getReadPhase(), totalTime);
+                writeLatencyRow(out, "write_phase", merged.getWritePhase(), totalTime);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        private void writeLatencyRow(PrintWriter out, String op, AbstractHistogram h, long totalTime) {
+            long count = h.getTotalCount();
+            long opsPerSec = totalTime > 0 ? count * 1000L / totalTime : count;
+            out.printf(Locale.ROOT, "%d,%d,%d,%d,%s,%s,%s,%d,%d,%d,%.1f,%.1f,%.1f,%.1f,%.1f%n",
+                    N, f, M, config.getPipelineWindow(), config.isBatching(), config.isFastReads(), op, count, totalTime, opsPerSec,
+                    micros(h, 50.0), micros(h, 90.0), micros(h, 99.0), micros(h, 99.9), h.getMaxValue() / 1000.0);
+        }
+        private static double micros(AbstractHistogram h, double percentile) {
+            return h.getValueAtPercentile(percentile) / 1000.0;
+        }
     }
     public static void main(String[] args) {
         // 10.REQ & 10.1 REQ: dynamic arguments
         int numProcesses = Integer.parseInt(args[0]);
         int numCrashed = Integer.parseInt(args[1]);
         int numOperations = Integer.parseInt(args[2]);
+        // optional: size of the keyspace (defaults to the single key k = 1)
+        int numKeys = args.length > 3 ? Integer.parseInt(args[3]) : 1;
         final ActorSystem system = ActorSystem.create("KeyValueStoreSystem");
+        // dispatchers and mailboxes of the kv.execution.profile
+        ProcessConfig config = ProcessConfig.of(system);
+        // the crashed processes are picked at random, so any f of them may share a replica group
+        try {
+            config.checkCrashes(numProcesses, numCrashed);
+        } catch (IllegalArgumentException e) {
+            system.terminate();
+            throw e;
+        }
         List<ActorRef> processRefs = new ArrayList<>();
         // 1.REQ Create N actors
         for (int i = 0; i < numProcesses; i++) {
-            processRefs.add(system.actorOf(Process.createActor(), "p" + i));
+            processRefs.add(system.actorOf(config.replicaDeployment(Process.createActor()), "p" + i));
         }
         // CREATE MONITOR (Updated to receive N, f, M for reporting)
         int expectedActive = numProcesses - numCrashed;
-        ActorRef monitor = system.actorOf(BenchmarkMonitor.createActor(expectedActive, numProcesses, numCrashed, numOperations), "monitor");
+        ActorRef monitor = system.actorOf(config.monitorDeployment(
+                BenchmarkMonitor.createActor(expectedActive, numProcesses, numCrashed, numOperations)), "monitor");
         // 2.REQ Pass references (including monitor)
-        ReferencesMessage referencesMessage = new ReferencesMessage(processRefs, monitor);
-        OperationsMessage operationsMessage = new OperationsMessage(numOperations);
+        ReferencesMessage referencesMessage = new ReferencesMessage(processRefs, monitor, config.shardMap(numProcesses));
+        OperationsMessage operationsMessage = new OperationsMessage(numOperations, numKeys);
         for (ActorRef processRef : processRefs) {
             processRef.tell(referencesMessage, ActorRef.noSender());
             processRef.tell(operationsMessage, ActorRef.noSender());
@@ -101,5 +216,9 @@ public class Main {
         } catch (Exception e) {
             e.printStackTrace();
         }
+        // drain the remaining history events to disk
+        EventLog.closeShared();
+        MetricsSampler.closeShared();
+        SimulatedNetwork.closeShared();
     }
 }
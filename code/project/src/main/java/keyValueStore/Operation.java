@@ -0,0 +1,189 @@
+package keyValueStore;
+
+import java.nio.ByteBuffer;
+import akka.actor.ActorRef;
+
+/* Quorum state of one in-flight put or get, identified by its sequence number.
+Responses are routed to it by the sequence number they echo.
+Instances are owned by a slot of the in-flight table and reused by every
+operation that lands in that slot, so steady-state operations allocate nothing here. */
+final class Operation {
+    int sequenceNumber;
+    int key;
+    boolean isWrite;
+    // value to write (put) or value returned (get)
+    int value;
+    // its payload (kv.values.size; null: none)
+    ByteBuffer payload;
+    // version (Versions) of the write phase, used to verify Acks
+    long timestamp;
+    // false while collecting read responses (lines 8-9 / 17-18), true while collecting acks (lines 12-13 / 20-21)
+    boolean inWritePhase;
+    boolean active = false;
+    long startTime;
+    long writePhaseStartTime;
+    // the processes replicating the key (kv.sharding; null: all of them) and the replies a phase needs
+    int[] group;
+    int quorum;
+    // false for operations started during the warmup of a workload run (not reported)
+    boolean measured = true;
+    // the client a ClientRequest is answered to, with its request id (null: the process's own operation)
+    ActorRef client;
+    long requestId;
+    // lines 9 and 18 / 13 and 21: unique responders of the current phase, one bit per process number
+    private final long[] responders;
+    private int responderCount;
+    // lines 10 and 19: highest version (and its value) seen so far in the read phase
+    long maxTimestamp;
+    int maxValue;
+    // true while every read response carried the same version
+    boolean unanimous;
+    // payload of the maximum when read responses carry payloads, and the responders that
+    // reported the maximum, one bit per process number (the replicas a get can fetch it from)
+    ByteBuffer maxPayload;
+    private final long[] holders;
+    // blind writes (kv.writes.blind): the quorum answered, but the operation completes only once
+    // the clock is far enough past its version (commit wait)
+    boolean committing;
+    // a get waiting for the payload of (maxValue, maxTimestamp) from one holder (digest reads)
+    boolean fetching;
+    long fetchDeadline;
+    // quorum-targeted sends (PeerSelector): the request of the current phase, the peers it went
+    // to and when, and when the phase is hedged to more peers if it has no quorum by then
+    Object phaseRequest;
+    long phaseStartTime;
+    long hedgeDeadline;
+    int hedges;
+    private final long[] targets;
+    private final long[] sentAt;
+
+    Operation(int numProcesses) {
+        responders = new long[(numProcesses + 63) >>> 6];
+        holders = new long[responders.length];
+        targets = new long[responders.length];
+        sentAt = new long[numProcesses];
+    }
+
+    void start(int sequenceNumber, int key, boolean isWrite, int value, ByteBuffer payload, long startTime) {
+        this.sequenceNumber = sequenceNumber;
+        this.key = key;
+        this.isWrite = isWrite;
+        this.value = value;
+        this.payload = payload;
+        this.startTime = startTime;
+        this.client = null;
+        this.inWritePhase = false;
+        this.committing = false;
+        this.active = true;
+        restartReadPhase();
+    }
+
+    /* Collects the read responses from scratch (also when a get found no holder to fetch from). */
+    void restartReadPhase() {
+        this.maxTimestamp = Long.MIN_VALUE;
+        this.maxValue = Integer.MIN_VALUE;
+        this.maxPayload = null;
+        this.unanimous = true;
+        this.fetching = false;
+        for (int w = 0; w < holders.length; w++) {
+            holders[w] = 0;
+        }
+        clearResponders();
+    }
+
+    /* Records a response of process i in the current phase; false if i already answered. */
+    boolean addResponder(int i) {
+        long bit = 1L << (i & 63);
+        int word = i >>> 6;
+        if ((responders[word] & bit) != 0) return false;
+        responders[word] |= bit;
+        responderCount++;
+        return true;
+    }
+
+    int responderCount() {
+        return responderCount;
+    }
+
+    /* lines 10 and 19: keeps the running maximum over the read responses of the processes */
+    void addReadResponse(int process, int value, long timestamp, ByteBuffer payload) {
+        if (responderCount > 1 && timestamp != maxTimestamp) {
+            unanimous = false;
+        }
+        if (timestamp > maxTimestamp) {
+            maxTimestamp = timestamp;
+            maxValue = value;
+            maxPayload = payload;
+            for (int w = 0; w < holders.length; w++) {
+                holders[w] = 0;
+            }
+        }
+        if (timestamp == maxTimestamp) {
+            holders[process >>> 6] |= 1L << (process & 63);
+        }
+    }
+
+    /* A process that reported the maximum and was not asked for its payload yet, the first
+    one from process from on (cyclically), now marked as asked; -1 if none is left. */
+    int nextHolder(int from, int numProcesses) {
+        for (int i = 0; i < numProcesses; i++) {
+            int p = (from + i) % numProcesses;
+            long bit = 1L << (p & 63);
+            if ((holders[p >>> 6] & bit) != 0) {
+                holders[p >>> 6] &= ~bit;
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    /* Moves to the write phase (lines 12 and 20); acks are counted from scratch. */
+    void startWritePhase(long now) {
+        inWritePhase = true;
+        writePhaseStartTime = now;
+        clearResponders();
+    }
+
+    /* Starts a targeted phase with request; no peer is targeted yet. */
+    void startPhase(Object request, long now, long hedgeDelay) {
+        phaseRequest = request;
+        phaseStartTime = now;
+        hedgeDeadline = now + hedgeDelay;
+        hedges = 0;
+        for (int w = 0; w < targets.length; w++) {
+            targets[w] = 0;
+        }
+    }
+
+    /* Marks peer i as targeted by the current phase; false if it already was. */
+    boolean target(int i) {
+        long bit = 1L << (i & 63);
+        int word = i >>> 6;
+        if ((targets[word] & bit) != 0) return false;
+        targets[word] |= bit;
+        return true;
+    }
+
+    boolean isTargeted(int i) {
+        return (targets[i >>> 6] & (1L << (i & 63))) != 0;
+    }
+
+    boolean hasResponded(int i) {
+        return (responders[i >>> 6] & (1L << (i & 63))) != 0;
+    }
+
+    void sent(int i, long now) {
+        sentAt[i] = now;
+    }
+
+    long sentAt(int i) {
+        return sentAt[i];
+    }
+
+    private void clearResponders() {
+        for (int w = 0; w < responders.length; w++) {
+            responders[w] = 0;
+        }
+        responderCount = 0;
+    }
+}
@@ -0,0 +1,105 @@
+package keyValueStore;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.IntCountsHistogram;
+
+/* Latency histograms of one process (or, once merged, of a whole run), in nanoseconds:
+complete puts and gets, and the read (query) and write (update) phases of every operation.
+The histograms are sized up front, so recording never allocates; each one is written
+only by its owning actor, so no locks are needed. */
+public final class OperationLatencies implements Serializable {
+    private static final long serialVersionUID = 1L;
+    // one minute, with three significant digits (0.1% precision)
+    public static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final AbstractHistogram put;
+    private final AbstractHistogram get;
+    private final AbstractHistogram readPhase;
+    private final AbstractHistogram writePhase;
+
+    private OperationLatencies(AbstractHistogram put, AbstractHistogram get, AbstractHistogram readPhase, AbstractHistogram writePhase) {
+        this.put = put;
+        this.get = get;
+        this.readPhase = readPhase;
+        this.writePhase = writePhase;
+    }
+
+    /* Compact recorder for a single process (int counts). */
+    public static OperationLatencies forProcess() {
+        return new OperationLatencies(newIntHistogram(), newIntHistogram(), newIntHistogram(), newIntHistogram());
+    }
+
+    /* Histograms decoded from the wire (see serialization.KvSerializer). */
+    public static OperationLatencies of(AbstractHistogram put, AbstractHistogram get, AbstractHistogram readPhase,
+                                        AbstractHistogram writePhase) {
+        return new OperationLatencies(put, get, readPhase, writePhase);
+    }
+
+    /* Accumulator for a whole run (long counts). */
+    public static OperationLatencies forRun() {
+        return new OperationLatencies(newHistogram(), newHistogram(), newHistogram(), newHistogram());
+    }
+
+    public void recordPut(long nanos) {
+        put.recordValue(clamp(nanos));
+    }
+
+    public void recordGet(long nanos) {
+        get.recordValue(clamp(nanos));
+    }
+
+    public void recordReadPhase(long nanos) {
+        readPhase.recordValue(clamp(nanos));
+    }
+
+    public void recordWritePhase(long nanos) {
+        writePhase.recordValue(clamp(nanos));
+    }
+
+    public void add(OperationLatencies other) {
+        put.add(other.put);
+        get.add(other.get);
+        readPhase.add(other.readPhase);
+        writePhase.add(other.writePhase);
+    }
+
+    public AbstractHistogram getPut() {
+        return put;
+    }
+
+    public AbstractHistogram getGet() {
+        return get;
+    }
+
+    public AbstractHistogram getReadPhase() {
+        return readPhase;
+    }
+
+    public AbstractHistogram getWritePhase() {
+        return writePhase;
+    }
+
+    /* Puts and gets together. */
+    public Histogram getAll() {
+        Histogram all = newHistogram();
+        all.add(put);
+        all.add(get);
+        return all;
+    }
+
+    private static long clamp(long nanos) {
+        return Math.max(0, Math.min(nanos, HIGHEST_TRACKABLE_NANOS));
+    }
+
+    private static AbstractHistogram newIntHistogram() {
+        return new IntCountsHistogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+    }
+
+    private static Histogram newHistogram() {
+        return new Histogram(HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+    }
+}
@@ -0,0 +1,70 @@
+package keyValueStore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import akka.actor.ActorRef;
+import keyValueStore.msg.BatchMessage;
+
+/* Per-destination buffers of outgoing protocol messages.
+Everything buffered for one peer leaves as a single BatchMessage
+(or as the bare message when only one is pending), through wire. */
+final class Outbox {
+    private final int maxBatchSize;
+    private final BiConsumer<ActorRef, Object> wire;
+    private final Map<ActorRef, List<Object>> buffers = new HashMap<>();
+    // destinations with at least one buffered message, in first-use order
+    private final List<ActorRef> pending = new ArrayList<>();
+
+    Outbox(int maxBatchSize, BiConsumer<ActorRef, Object> wire) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.wire = wire;
+    }
+
+    /* Buffers msg for to; returns true once the buffer reached the size limit. */
+    boolean add(ActorRef to, Object msg) {
+        List<Object> buffer = buffers.get(to);
+        if (buffer == null) {
+            buffer = new ArrayList<>();
+            buffers.put(to, buffer);
+        }
+        if (buffer.isEmpty()) {
+            pending.add(to);
+        }
+        buffer.add(msg);
+        return buffer.size() >= maxBatchSize;
+    }
+
+    boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    /* Sends what is buffered for to; returns the number of messages put on the wire (0 or 1). */
+    int flush(ActorRef to) {
+        List<Object> buffer = buffers.get(to);
+        if (buffer == null || buffer.isEmpty()) return 0;
+        pending.remove(to);
+        return send(to, buffer);
+    }
+
+    int flushAll() {
+        int sent = 0;
+        for (ActorRef to : pending) {
+            sent += send(to, buffers.get(to));
+        }
+        pending.clear();
+        return sent;
+    }
+
+    private int send(ActorRef to, List<Object> buffer) {
+        if (buffer.size() == 1) {
+            wire.accept(to, buffer.get(0));
+        } else {
+            wire.accept(to, new BatchMessage(buffer.toArray()));
+        }
+        buffer.clear();
+        return 1;
+    }
+}
@@ -0,0 +1,30 @@
+package keyValueStore;
+
+import java.nio.ByteBuffer;
+
+/* Payloads of written values (kv.values.size). A put's payload starts and ends with its value,
+which is unique per write (Process.writeValue); the bytes in between are zero. So the value is
+the digest of the payload: replicas that report the same (timestamp, value) hold the same bytes,
+and a get can check that the payload it fetched belongs to the value it returns. */
+final class Payloads {
+    private Payloads() {}
+
+    /* A read-only payload of size bytes (at least 8) for value. */
+    static ByteBuffer of(int value, int size) {
+        ByteBuffer payload = ByteBuffer.allocate(Math.max(8, size));
+        payload.putInt(0, value).putInt(payload.capacity() - 4, value);
+        return payload.asReadOnlyBuffer();
+    }
+
+    /* Whether payload was written for value (null: value has no payload). */
+    static boolean matches(ByteBuffer payload, int value) {
+        if (payload == null) return false;
+        int size = payload.remaining();
+        int start = payload.position();
+        return size >= 8 && payload.getInt(start) == value && payload.getInt(start + size - 4) == value;
+    }
+
+    static int size(ByteBuffer payload) {
+        return payload == null ? 0 : payload.remaining();
+    }
+}
@@ -0,0 +1,134 @@
+package keyValueStore;
+
+/* Which peers a phase goes to when the process sends it to a quorum rather than to all
+(kv.quorum.targeted), and when to hedge.
+
+Each peer has an EWMA of its response time: the time from a request to its reply. The ranking
+keeps the peers whose estimate is within slowFactor x the phase latency in a fixed order that
+starts at the process itself, so the processes spread their quorums over different peers rather
+than all chasing the fastest ones. Behind them come the slow peers by estimate, then the peers
+never heard from. A hedge first only asks peers expected to reply sooner than the phase has
+already waited; a targeted peer still silent at a hedge is charged the time it has been
+waiting, so a crashed peer drops behind the others after its first missed reply.
+
+The hedge delay adapts like TCP's retransmission timeout: the smoothed phase latency (time to a
+quorum) plus `deviations` times its smoothed mean deviation, within [minDelay, maxDelay]. */
+final class PeerSelector {
+    private final int self;
+    private final double alpha;
+    private final double slowFactor;
+    // response time estimate per peer; infinite until its first reply
+    private final double[] ewma;
+    private int known = 0;
+    // the order phases pick peers in; rebuilt when an estimate changed
+    private final int[] ranked;
+    private boolean dirty = false;
+    private final double deviations;
+    private final long minDelay;
+    private final long maxDelay;
+    private final long initialDelay;
+    private double phaseMean = -1;
+    private double phaseDeviation = 0;
+
+    PeerSelector(int n, int self, double alpha, double slowFactor, double deviations, long minDelay,
+                 long maxDelay, long initialDelay) {
+        this.self = self;
+        this.alpha = alpha;
+        this.slowFactor = slowFactor;
+        this.ewma = new double[n];
+        this.ranked = new int[n];
+        for (int i = 0; i < n; i++) {
+            ewma[i] = Double.POSITIVE_INFINITY;
+            ranked[i] = (self + i) % n;
+        }
+        this.deviations = deviations;
+        this.minDelay = minDelay;
+        this.maxDelay = maxDelay;
+        this.initialDelay = initialDelay;
+    }
+
+    /* A reply of peer after nanos. */
+    void sample(int peer, long nanos) {
+        if (ewma[peer] == Double.POSITIVE_INFINITY) {
+            ewma[peer] = nanos;
+            known++;
+        } else {
+            ewma[peer] += alpha * (nanos - ewma[peer]);
+        }
+        dirty = true;
+    }
+
+    /* peer has not replied after waitedNanos: it is at least that slow. */
+    void penalize(int peer, long waitedNanos) {
+        if (waitedNanos > ewma[peer]) {
+            ewma[peer] = waitedNanos;
+            dirty = true;
+        }
+    }
+
+    /* Peers heard from at least once. */
+    int known() {
+        return known;
+    }
+
+    /* A phase reached its quorum after nanos. */
+    void phaseCompleted(long nanos) {
+        if (phaseMean < 0) {
+            phaseMean = nanos;
+            phaseDeviation = nanos / 2.0;
+        } else {
+            phaseDeviation += alpha * (Math.abs(nanos - phaseMean) - phaseDeviation);
+            phaseMean += alpha * (nanos - phaseMean);
+        }
+        dirty = true;
+    }
+
+    /* How long a phase may wait for its quorum before it is hedged to more peers; doubled for
+    each hedge the phase already had, up to maxDelay. */
+    long hedgeDelay(int hedges) {
+        long delay = phaseMean < 0 ? initialDelay : (long) (phaseMean + deviations * phaseDeviation);
+        delay = Math.max(minDelay, delay) << Math.min(hedges, 16);
+        return Math.min(maxDelay, delay);
+    }
+
+    /* Targets up to count more peers of op in ranking order, skipping peers whose estimate
+    exceeds maxEstimate (infinite: any peer); returns how many it added to out. */
+    int select(Operation op, int count, double maxEstimate, int[] out) {
+        if (dirty) {
+            rank();
+        }
+        int added = 0;
+        for (int i = 0; i < ranked.length && added < count; i++) {
+            int peer = ranked[i];
+            if (ewma[peer] > maxEstimate) continue;
+            if (op.target(peer)) {
+                out[added++] = peer;
+            }
+        }
+        return added;
+    }
+
+    private void rank() {
+        int n = ranked.length;
+        double slow = phaseMean < 0 ? Double.MAX_VALUE : slowFactor * Math.max(phaseMean, minDelay);
+        int good = 0;
+        for (int i = 0; i < n; i++) {
+            int peer = (self + i) % n;
+            if (ewma[peer] <= slow) ranked[good++] = peer;
+        }
+        int rest = good;
+        for (int i = 0; i < n; i++) {
+            int peer = (self + i) % n;
+            if (ewma[peer] <= slow) continue;
+            // insertion by estimate; unknown peers (infinite) keep the fixed order at the end
+            int j = rest - 1;
+            while (j >= good && ewma[ranked[j]] > ewma[peer]) {
+                ranked[j + 1] = ranked[j];
+                j--;
+            }
+            ranked[j + 1] = peer;
+            rest++;
+        }
+        dirty = false;
+    }
+}
@@ -1,64 +1,259 @@
-
 package keyValueStore;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
-import akka.actor.AbstractActor;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import akka.actor.AbstractActorWithTimers;
+import akka.actor.ActorCell;
 import akka.actor.ActorRef;
 import akka.actor.Props;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
+import keyValueStore.msg.ArrivalTick;
+import keyValueStore.msg.BatchMessage;
+import keyValueStore.msg.CatchUpChunk;
+import keyValueStore.msg.CatchUpRequest;
+import keyValueStore.msg.CatchUpTick;
+import keyValueStore.msg.CommitTick;
+import keyValueStore.msg.ClientRequest;
+import keyValueStore.msg.ClientResponse;
 import keyValueStore.msg.CrashMessage;
+import keyValueStore.msg.FetchRequest;
+import keyValueStore.msg.FetchResponse;
+import keyValueStore.msg.FetchTick;
+import keyValueStore.msg.FlushMessage;
+import keyValueStore.msg.HedgeTick;
 import keyValueStore.msg.LaunchMessage;
+import keyValueStore.msg.LeaseGrant;
+import keyValueStore.msg.LeaseRequest;
+import keyValueStore.msg.LeaseRevoke;
+import keyValueStore.msg.LeaseRevoked;
+import keyValueStore.msg.LeaseTick;
 import keyValueStore.msg.OperationsMessage;
 import keyValueStore.msg.ProcessMessage;
 import keyValueStore.msg.ReadRequest;
+import keyValueStore.msg.RecoverMessage;
+import keyValueStore.msg.RecoveredMessage;
 import keyValueStore.msg.ReferencesMessage;
 import keyValueStore.msg.WriteRequest;
+import keyValueStore.msg.WorkloadMessage;
 import keyValueStore.msg.DoneMessage;
+import keyValueStore.msg.WalSynced;
 import keyValueStore.KVLogger;
+import keyValueStore.events.EventLog;
+import keyValueStore.metrics.MetricsSampler;
+import keyValueStore.metrics.ReplicaMetrics;
+import keyValueStore.net.NetworkModel;
+import keyValueStore.net.SimulatedNetwork;
+import keyValueStore.shard.ShardMap;
+import keyValueStore.storage.Durability;
+import keyValueStore.storage.WriteAheadLog;
+import keyValueStore.workload.WorkloadGenerator;
+import scala.concurrent.duration.Duration;
 /* 3.REQ Use the name Process for the process class */
-public class Process extends AbstractActor {
-    // line 1: locally stored value, initially 0
-    private int localValue = 0;
-    // line 2: locally stored timestamp, initially 0
-    private int localTimestamp = 0;
-    // line 3: timestamp
-    private int timestamp = 0;
+public class Process extends AbstractActorWithTimers {
+    // lines 1 and 2: locally stored (value, timestamp) per key, initially (0, 0); the timestamps
+    // are 64-bit (counter, writer) versions drawn from the clock below (Versions)
+    private RegisterMap registers = new RegisterMap();
+    private final Versions.Clock clock;
     // line 4: sequence number (number of issued read requests)
     private int sequenceNumber = 0;
     private List<ActorRef> actorRefList;
     private int N;
     private int M = 49;
-    private Integer[] writeValue;
-    private int v;
+    // size of the keyspace the operations cycle through (keys 1..numKeys)
+    private int numKeys = 1;
+    // -1: M puts, then M gets (8.REQ); otherwise the share of gets, interleaved with the puts
+    private int readPercent = -1;
+    private int operationsStarted = 0;
+    private int putsStarted = 0;
+    private int getsStarted = 0;
     private int operationsCompleted = 0;
-    private int readenValue;
+    // workload run replacing the schedule above (null: 8.REQ schedule)
+    private WorkloadGenerator workload;
+    private final long arrivalTickNanos;
+    // false until the warmup of a workload run is over
+    private boolean measuring = true;
+    private boolean finished = false;
     private boolean isCrashed = false;
     private boolean isLaunched = false;
-    // Track CURRENT operation details to verify Acks
-    private int currentOpTimestamp;
-    private int currentOpValue; // ADDED: To verify Ack value
-    private boolean isWrite;
-    // REPLACED 'int ackCount' with Set to handle duplicates/robustness
-    private Set<ActorRef> ackSenders = new HashSet<>();
-    // REPLACED List-only logic with Set to handle duplicates
-    // lines 9 and 18: wait until received from a majority
-    private List<ProcessMessage> readResponses = new ArrayList<>();
-    private Set<ActorRef> readResponseSenders = new HashSet<>();
+    // Operations in flight, indexed by sequenceNumber & inFlightMask; the Operation of each
+    // slot is created once N is known and reused. With a window of 1 this is the single
+    // current operation (9.REQ).
+    private final int window;
+    private Operation[] inFlight;
+    private final int inFlightMask;
+    private int inFlightCount = 0;
+    // latency histograms (put/get, read/write phase), reported to the monitor
+    private final OperationLatencies latencies = OperationLatencies.forProcess();
+    // per-peer batching of outgoing messages (null when batching is off)
+    private final Outbox outbox;
+    private final long flushWindowNanos;
+    private boolean flushScheduled = false;
+    private long messagesSent = 0;
+    // emulated links to the peers (kv.network; null: plain tells), and the peers' process numbers
+    private SimulatedNetwork.Endpoint network;
+    private final Map<ActorRef, Integer> peerNumbers = new HashMap<>();
+    // gets completed after one round-trip vs. gets that needed the write-back phase
+    private final boolean fastReads;
+    private int fastReadCount = 0;
+    private int slowReadCount = 0;
+    // read leases (kv.leases; null when off): the keys this process answers gets of locally as a
+    // coordinator, and the leases it granted as a replica with the writes held back for them
+    private final boolean leasesEnabled;
+    private final long leaseDurationNanos;
+    private final double leaseMaxDrift;
+    private final int leaseCapacity;
+    private LeaseCache leases;
+    private LeaseGrants grants;
+    private int[] revokeTargets;
+    private final List<LeaseGrants.HeldWrite> releasedWrites = new ArrayList<>();
+    private boolean leaseTickRunning = false;
+    private int leaseReadCount = 0;
+    // blind writes (kv.writes.blind): puts take their version from the clock and skip the read
+    // phase; every operation then waits until the clock is commitWaitMicros past its version
+    private final boolean blindWrites;
+    private final long commitWaitMicros;
+    // end of the earliest commit wait a CommitTick is scheduled for (Versions.nowMicros)
+    private long commitTickAt = Long.MAX_VALUE;
+    // values with payloads (kv.values.size; 0: none). With digest reads the read responses carry
+    // (timestamp, value) only, and a get fetches the payload of the winner from one replica that
+    // reported it, unless this replica holds that version itself.
+    private final int valueSize;
+    private final boolean digestReads;
+    private final long fetchTimeoutNanos;
+    private boolean fetchTickRunning = false;
+    private long payloadBytesSent = 0;
+    // quorum-targeted sends (kv.quorum.targeted; null: every phase goes to all): a phase goes to
+    // a majority picked by the peers' response times, and to more peers when it is overdue
+    private PeerSelector peers;
+    private int[] selected;
+    private final int extraPeers;
+    private final long hedgeTickNanos;
+    private boolean hedgeTickRunning = false;
+    // sharding (kv.sharding; null: every process replicates every key): the groups the keys'
+    // operations run in, and the processes sharing a group with this one (its catch-up sources)
+    private ShardMap shards;
+    private boolean[] shardPeers;
+    private static final int HEDGES_BEFORE_ANY = 2;
+    // earliest hedge deadline of the phases in flight
+    private long nextHedgeCheck = Long.MAX_VALUE;
+    private long hedgesSent = 0;
+    // client requests (keyValueStore.client.KeyValueStore): the first one turns the process into a
+    // coordinator that runs the requests of its clients instead of operations of its own; those
+    // arriving while the window is full wait here, up to clientQueueSize, and the rest are rejected
+    private boolean serving = false;
+    private final ArrayDeque<QueuedRequest> clientQueue = new ArrayDeque<>();
+    private final int clientQueueSize;
+    // runtime counters and gauges (JMX, kv.metrics.file), written by this actor only
+    private final ReplicaMetrics metrics;
+    // binary operation history written off the actor thread (null: text lines through KVLogger)
+    private final EventLog events;
+    // write-ahead log of the register updates (null with durability none); an Ack waits in
+    // pendingAcks until the update it acknowledges is durable
+    private WriteAheadLog wal;
+    private final ArrayDeque<PendingAck> pendingAcks = new ArrayDeque<>();
+    private long walDurable = 0;
+    // incremented by every openWal; WalSynced of an earlier log are ignored
+    private int walGeneration = 0;
+    private final int snapshotEvery;
+    private int updatesSinceSnapshot = 0;
+    // crash-recovery: after a RecoverMessage the process pulls the registers its peers hold newer
+    // versions of, chunk by chunk. Without durable state it lost what it acknowledged before the
+    // crash, so it answers no ReadRequest until a majority of its peers has sent every chunk.
+    private boolean recovering = false;
+    private boolean servesReads = true;
+    private final int catchUpChunkKeys;
+    private final int catchUpChunksInFlight;
+    private final long catchUpRetryNanos;
+    private final Map<Integer, CatchUpRange> catchUpOutstanding = new HashMap<>();
+    private int catchUpNextKey;
+    private int catchUpSource = 0;
+    private long recoveryStartTime;
+    private long replayNanos;
+    private long catchUpKeysReceived;
+    private int catchUpChunks;
     // for logger
     private int processNumber;
     private String processName;
     private final LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
-    private long operationStartTime;
     private ActorRef monitor;
     public Process(){
         actorRefList = new ArrayList<>();
-        // Note: writeValue initialization moved to updateOperations to ensure correct M
         /* the processes are named "p" + number of the process */
         processNumber = Integer.parseInt(self().path().name().substring(1));
         processName = "p" + processNumber;
+        clock = new Versions.Clock(processNumber);
+        ProcessConfig config = ProcessConfig.of(getContext().getSystem());
+        window = config.getPipelineWindow();
+        // at least twice the window, so a slow operation rarely blocks the slot of a newer one
+        int slots = Integer.highestOneBit(window * 2 - 1) << 1;
+        inFlight = new Operation[0];
+        inFlightMask = slots - 1;
+        outbox = config.isBatching() ? new Outbox(config.getBatchMaxSize(), this::transmit) : null;
+        flushWindowNanos = config.getBatchFlushWindowNanos();
+        fastReads = config.isFastReads();
+        blindWrites = config.isBlindWrites();
+        commitWaitMicros = 2 * config.getClockUncertaintyNanos() / 1000;
+        leasesEnabled = config.isLeases();
+        leaseDurationNanos = config.getLeaseDurationNanos();
+        leaseMaxDrift = config.getLeaseMaxDrift();
+        leaseCapacity = config.getLeaseCapacity();
+        valueSize = config.getValueSize();
+        digestReads = config.isDigestReads();
+        fetchTimeoutNanos = config.getFetchTimeoutNanos();
+        extraPeers = config.getQuorumExtraPeers();
+        hedgeTickNanos = config.getHedgeTickNanos();
+        events = config.isEventLog() ? EventLog.open(config.getEventLogFile(), config.getEventLogRingSize()) : null;
+        arrivalTickNanos = config.getArrivalTickNanos();
+        snapshotEvery = config.getSnapshotEvery();
+        catchUpChunkKeys = config.getCatchUpChunkKeys();
+        catchUpChunksInFlight = config.getCatchUpChunksInFlight();
+        catchUpRetryNanos = config.getCatchUpRetryNanos();
+        clientQueueSize = config.getClientQueueSize();
+        wal = openWal(config, config.isRecover());
+        // a process started afresh issues versions above the ones it recovered (Versions)
+        registers.forEach((key, value, timestamp) -> clock.observe(timestamp));
+        metrics = ReplicaMetrics.open(processName, config.isMetricsJmx());
+        // the mailbox is read, not counted, when a sample or JMX asks for its depth
+        ActorCell cell = (ActorCell) getContext();
+        metrics.watchMailbox(() -> cell.mailbox().numberOfMessages());
+        if (!config.getMetricsFile().isEmpty()) {
+            MetricsSampler.open(config.getMetricsFile(), config.getMetricsIntervalNanos());
+        }
+    }
+    private WriteAheadLog openWal(ProcessConfig config, boolean recover){
+        if (config.getDurability() == Durability.NONE) return null;
+        ActorRef me = self();
+        int generation = ++walGeneration;
+        try {
+            WriteAheadLog opened = WriteAheadLog.open(Paths.get(config.getPersistenceDir(), processName),
+                    config.getDurability(), recover, registers,
+                    lsn -> me.tell(new WalSynced(generation, lsn), ActorRef.noSender()));
+            if (registers.size() > 0) {
+                log.info(processName + ": recovered " + registers.size() + " keys from "
+                        + (opened.isRecoveredFromSnapshot() ? "snapshot + " : "") + opened.getReplayedRecords()
+                        + " log records in " + opened.getRecoveryNanos() / 1_000_000 + " ms");
+            }
+            return opened;
+        } catch (IOException e) {
+            throw new UncheckedIOException(processName + ": cannot open the write-ahead log", e);
+        }
+    }
+    @Override
+    public void postStop() {
+        if (wal != null) {
+            wal.close();
+        }
+        metrics.close();
     }
     public static Props createActor() {
         return Props.create(Process.class, () -> {
@@ -77,7 +272,27 @@ public class Process extends AbstractActor {
             /* 4.REQ Process class creates methods for executing put and get operations */
             .match(WriteRequest.class, this::onWriteRequest)
             .match(Ack.class, this::onAck)
+            .match(BatchMessage.class, this::onBatch)
+            .match(FlushMessage.class, this::onFlush)
             .match(OperationsMessage.class, this::updateOperations)
+            .match(WorkloadMessage.class, this::updateWorkload)
+            .match(ArrivalTick.class, this::onArrivalTick)
+            .match(WalSynced.class, this::onWalSynced)
+            .match(RecoverMessage.class, this::onRecover)
+            .match(CatchUpRequest.class, this::onCatchUpRequest)
+            .match(CatchUpChunk.class, this::onCatchUpChunk)
+            .match(CatchUpTick.class, this::onCatchUpTick)
+            .match(HedgeTick.class, this::onHedgeTick)
+            .match(FetchRequest.class, this::onFetchRequest)
+            .match(FetchResponse.class, this::onFetchResponse)
+            .match(FetchTick.class, this::onFetchTick)
+            .match(CommitTick.class, this::onCommitTick)
+            .match(ClientRequest.class, this::onClientRequest)
+            .match(LeaseRequest.class, this::onLeaseRequest)
+            .match(LeaseGrant.class, this::onLeaseGrant)
+            .match(LeaseRevoke.class, this::onLeaseRevoke)
+            .match(LeaseRevoked.class, this::onLeaseRevoked)
+            .match(LeaseTick.class, this::onLeaseTick)
             .build();
     }
     // Receives the reference list of all other processes to establish connectivity
@@ -86,179 +301,1168 @@ public class Process extends AbstractActor {
         monitor = ref.getMonitor();
         N = actorRefList.size();
         // REMOVED: writeValue array filling here. M might be stale.
+        inFlight = new Operation[inFlightMask + 1];
+        for (int i = 0; i < inFlight.length; i++) {
+            inFlight[i] = new Operation(N);
+        }
+        ProcessConfig config = ProcessConfig.of(getContext().getSystem());
+        shards = ref.getShards();
+        if (shards != null) {
+            shardPeers = shards.peersOf(processNumber);
+            log.info(processName + ": sharded " + shards + ", replicating "
+                    + String.format(Locale.ROOT, "%.1f%%", 100 * shards.share(processNumber)) + " of the keyspace");
+        }
+        // a phase of a sharded key goes to its whole group
+        if (config.isTargetedQuorums() && shards == null) {
+            peers = new PeerSelector(N, processNumber, config.getQuorumEwmaAlpha(), config.getQuorumSlowFactor(),
+                    config.getHedgeDeviations(), config.getHedgeMinNanos(), config.getHedgeMaxNanos(),
+                    config.getHedgeInitialNanos());
+            selected = new int[N];
+        }
+        if (leasesEnabled) {
+            leases = new LeaseCache(N, leaseDurationNanos, leaseMaxDrift, leaseCapacity);
+            grants = new LeaseGrants(N, leaseDurationNanos);
+            revokeTargets = new int[N];
+        }
+        NetworkModel model = config.getNetwork();
+        if (model != null) {
+            network = SimulatedNetwork.open(model).endpoint(processNumber, N);
+            peerNumbers.clear();
+            for (int i = 0; i < N; i++) {
+                peerNumbers.put(actorRefList.get(i), i);
+            }
+        }
     }
     /* 6.REQ Upon receiving the CrashMessage, the process enters silent mode */
     public void onCrash(CrashMessage message){
         isCrashed = true;
+        if (wal != null) {
+            // what was not written yet is lost with the process
+            wal.abort();
+        }
+        // queued client requests are lost with the process; their clients time out
+        clientQueue.clear();
+        metrics.set(ReplicaMetrics.CLIENT_QUEUE, 0);
+        if (leases != null) {
+            leases.clear();
+            metrics.set(ReplicaMetrics.LEASES_HELD, 0);
+        }
         String line = processName + ": " + "process crashed";
         log.info(line);
-        KVLogger.log(line);
+        if (events != null) {
+            events.crash(processNumber, System.nanoTime());
+        } else {
+            KVLogger.log(line);
+        }
         // getContext().stop(self()); // Terminate this actor  <-- REMOVED to honor "silent mode"
     }
+    /* Restart after a crash: the operations in flight are lost, and the registers are what
+    survived on disk (nothing with durability none). The process then catches up with its peers
+    and serves as a replica only; it does not resume its own operations. */
+    public void onRecover(RecoverMessage message){
+        if (!isCrashed || N == 0) return;
+        isCrashed = false;
+        recoveryStartTime = System.nanoTime();
+        for (Operation op : inFlight) {
+            op.active = false;
+        }
+        inFlightCount = 0;
+        pendingAcks.clear();
+        metrics.set(ReplicaMetrics.IN_FLIGHT, 0);
+        metrics.set(ReplicaMetrics.PENDING_ACKS, 0);
+        registers = new RegisterMap(expectedKeys());
+        clock.restart();
+        if (grants != null) {
+            // the grants given before the crash are gone from memory but may still run
+            grants.restart(recoveryStartTime);
+            startLeaseTick();
+        }
+        if (wal != null) {
+            wal.close();
+            walDurable = 0;
+            updatesSinceSnapshot = 0;
+            wal = openWal(ProcessConfig.of(getContext().getSystem()), true);
+        }
+        replayNanos = System.nanoTime() - recoveryStartTime;
+        // durable state already holds every update this process acknowledged
+        servesReads = wal != null;
+        recovering = true;
+        catchUpOutstanding.clear();
+        catchUpNextKey = 1;
+        catchUpKeysReceived = 0;
+        catchUpChunks = 0;
+        log.info(processName + ": recovering, " + registers.size() + " keys restored in " + replayNanos / 1_000_000 + " ms");
+        timers().startPeriodicTimer(CatchUpTick.INSTANCE, CatchUpTick.INSTANCE,
+                Duration.create(catchUpRetryNanos, TimeUnit.NANOSECONDS));
+        requestChunks();
+    }
+    /* Keeps catchUpChunksInFlight requests outstanding until the keyspace 1..numKeys is covered. */
+    private void requestChunks(){
+        while (catchUpOutstanding.size() < catchUpChunksInFlight && catchUpNextKey <= numKeys) {
+            int from = catchUpNextKey;
+            int to = (int) Math.min((long) from + catchUpChunkKeys, numKeys + 1L);
+            CatchUpRange range = new CatchUpRange(from, to, N);
+            catchUpOutstanding.put(from, range);
+            catchUpNextKey = to;
+            sendCatchUpRequest(range);
+        }
+        if (catchUpOutstanding.isEmpty()) {
+            finishRecovery();
+        }
+    }
+    private void sendCatchUpRequest(CatchUpRange range){
+        long[] timestamps = new long[range.to - range.from];
+        for (int k = range.from; k < range.to; k++) {
+            timestamps[k - range.from] = registers.getTimestamp(k);
+        }
+        CatchUpRequest request = new CatchUpRequest(range.from, range.to, timestamps);
+        range.sentAt = System.nanoTime();
+        if (servesReads && shards == null) {
+            // one peer is enough to refresh durable state; rotate through them on retries
+            catchUpSource = (catchUpSource + 1) % N;
+            if (catchUpSource == processNumber) catchUpSource = (catchUpSource + 1) % N;
+            transmit(actorRefList.get(catchUpSource), request);
+            messagesSent++;
+            metrics.sent(ReplicaMetrics.CATCH_UP_REQUEST);
+        } else {
+            for (int i = 0; i < N; i++) {
+                if (i != processNumber && !range.replied[i] && (shards == null || shardPeers[i])) {
+                    transmit(actorRefList.get(i), request);
+                    messagesSent++;
+                    metrics.sent(ReplicaMetrics.CATCH_UP_REQUEST);
+                }
+            }
+        }
+    }
+    /* Peer side: only the registers newer than the requester's copy travel back. Requests are
+    bounded to a chunk of keys, so live traffic queued behind one is delayed by little. */
+    public void onCatchUpRequest(CatchUpRequest request){
+        metrics.received(ReplicaMetrics.CATCH_UP_REQUEST);
+        // a process that lost its state cannot vouch for anything until it has caught up itself
+        if (isCrashed || !servesReads) return;
+        long[] theirTimestamps = request.getTimestamps();
+        int newer = 0;
+        int[] keys = new int[theirTimestamps.length];
+        int[] values = new int[keys.length];
+        long[] timestamps = new long[keys.length];
+        ByteBuffer[] payloads = valueSize > 0 ? new ByteBuffer[keys.length] : null;
+        for (int k = request.getFromKey(); k < request.getToKey(); k++) {
+            int i = k - request.getFromKey();
+            long ts = registers.getTimestamp(k);
+            if (ts > theirTimestamps[i]) {
+                keys[newer] = k;
+                values[newer] = registers.getValue(k);
+                timestamps[newer] = ts;
+                if (payloads != null) payloads[newer] = registers.getPayload(k);
+                newer++;
+            }
+        }
+        transmit(getSender(), new CatchUpChunk(request.getFromKey(), request.getToKey(), processNumber,
+                Arrays.copyOf(keys, newer), Arrays.copyOf(values, newer), Arrays.copyOf(timestamps, newer),
+                payloads == null ? null : Arrays.copyOf(payloads, newer)));
+        messagesSent++;
+        metrics.sent(ReplicaMetrics.CATCH_UP_CHUNK);
+    }
+    public void onCatchUpChunk(CatchUpChunk chunk){
+        metrics.received(ReplicaMetrics.CATCH_UP_CHUNK);
+        if (isCrashed || !recovering) return;
+        CatchUpRange range = catchUpOutstanding.get(chunk.getFromKey());
+        if (range == null || range.replied[chunk.getProcessNumber()]) return;
+        range.replied[chunk.getProcessNumber()] = true;
+        range.replies++;
+        int[] keys = chunk.getKeys();
+        int[] values = chunk.getValues();
+        long[] timestamps = chunk.getTimestamps();
+        ByteBuffer[] payloads = chunk.getPayloads();
+        for (int i = 0; i < keys.length; i++) {
+            // a peer reports the keys of its own shards too
+            if (shards != null && !shards.replicates(processNumber, keys[i])) continue;
+            ByteBuffer payload = payloads == null ? null : payloads[i];
+            clock.observe(timestamps[i]);
+            if (registers.putIfNewer(keys[i], values[i], timestamps[i], payload) && wal != null) {
+                wal.append(keys[i], values[i], timestamps[i], payload);
+            }
+        }
+        catchUpKeysReceived += keys.length;
+        if (caughtUp(range)) {
+            catchUpOutstanding.remove(range.from);
+            catchUpChunks++;
+            requestChunks();
+        }
+    }
+    /* Without durable state a chunk is complete once a majority of all processes answered it,
+    every one of them a peer; sharded, once that holds in the group of every key of the chunk this
+    process replicates. With durable state one peer (per key) is enough. */
+    private boolean caughtUp(CatchUpRange range){
+        if (shards == null) {
+            return range.replies >= (servesReads ? 1 : Math.min(N - 1, N / 2 + 1));
+        }
+        for (int k = range.from; k < range.to; k++) {
+            int[] group = shards.group(k);
+            int needed = servesReads ? 1 : Math.min(group.length - 1, group.length / 2 + 1);
+            int replies = 0;
+            boolean member = false;
+            for (int p : group) {
+                if (p == processNumber) {
+                    member = true;
+                } else if (range.replied[p]) {
+                    replies++;
+                }
+            }
+            if (member && replies < needed) return false;
+        }
+        return true;
+    }
+    /* Chunks whose answers are overdue (crashed or busy peer) are requested again. */
+    public void onCatchUpTick(CatchUpTick tick){
+        if (isCrashed || !recovering) {
+            timers().cancel(CatchUpTick.INSTANCE);
+            return;
+        }
+        long now = System.nanoTime();
+        for (CatchUpRange range : catchUpOutstanding.values()) {
+            if (now - range.sentAt >= catchUpRetryNanos) {
+                sendCatchUpRequest(range);
+            }
+        }
+    }
+    private void finishRecovery(){
+        if (!recovering) return;
+        recovering = false;
+        servesReads = true;
+        timers().cancel(CatchUpTick.INSTANCE);
+        long recoveryNanos = System.nanoTime() - recoveryStartTime;
+        log.info(processName + ": caught up in " + recoveryNanos / 1_000_000 + " ms, " + catchUpKeysReceived
+                + " keys received in " + catchUpChunks + " chunks");
+        if (monitor != null) {
+            monitor.tell(new RecoveredMessage(processNumber, recoveryNanos, replayNanos, catchUpKeysReceived,
+                    catchUpChunks), self());
+        }
+    }
     public void onLaunch(LaunchMessage message){
         if(isCrashed) return;
         isLaunched = true;
         /*8.REQ Upon receiving the LaunchMessage, the process starts executing put and get operations:
         - M put operations with k = 1 and v = i, N+i, 2N+i, ... MN+i
-        - M get operations for k = 1 */
-        startOperation();
+        - M get operations for k = 1
+        (with numKeys > 1 the operations cycle through keys 1..numKeys) */
+        if (workload != null) {
+            workload.launch(System.nanoTime());
+            if (workload.isOpenLoop()) {
+                timers().startPeriodicTimer(ArrivalTick.INSTANCE, ArrivalTick.INSTANCE,
+                        Duration.create(arrivalTickNanos, TimeUnit.NANOSECONDS));
+            }
+        }
+        startOperations();
+    }
+    /* Coordinator side of the client API: the request runs as an operation of this process as soon
+    as the pipeline window has room, and its ClientResponse goes to the sender on completion. A
+    full queue is answered at once with a rejection, so a client never waits on a busy process;
+    a crashed process stays silent (6.REQ) and its clients time out. */
+    public void onClientRequest(ClientRequest request){
+        metrics.received(ReplicaMetrics.CLIENT_REQUEST);
+        if (isCrashed) return;
+        if (N == 0 || recovering || clientQueue.size() >= clientQueueSize + window - inFlightCount) {
+            getSender().tell(new ClientResponse(request.getRequestId(), 0, true), self());
+            metrics.sent(ReplicaMetrics.CLIENT_RESPONSE);
+            return;
+        }
+        if (!serving) {
+            serving = true;
+            isLaunched = true;
+        }
+        // the queue holds what the window has no room for: with room left the request starts now
+        clientQueue.add(new QueuedRequest(request, getSender()));
+        startOperations();
+        metrics.set(ReplicaMetrics.CLIENT_QUEUE, clientQueue.size());
+    }
+    /* Open loop: start whatever arrived since the last tick (as far as the window allows). */
+    public void onArrivalTick(ArrivalTick tick){
+        if (isCrashed) {
+            timers().cancel(ArrivalTick.INSTANCE);
+            return;
+        }
+        startOperations();
     }
     // line 28: Upon received [?,r'] from p_j
     /* responds with the current local value and timestamp */
     public void onReadRequest(ReadRequest message){
-        if(isCrashed) return;
-        // line 29: send [localValue, localTimestamp, r'] to p_j
-        getSender().tell(new ProcessMessage(localValue,
-                localTimestamp, message.getSequenceNumber()), self());
+        metrics.received(ReplicaMetrics.READ_REQUEST);
+        if(isCrashed || !servesReads) return;
+        int key = message.getKey();
+        // line 29: send [localValue, localTimestamp, r'] to p_j (the payload only without digest reads)
+        send(getSender(), new ProcessMessage(key, registers.getValue(key), registers.getTimestamp(key),
+                message.getSequenceNumber(), processNumber, digestReads ? null : registers.getPayload(key)));
     }
     // lines 9 to 12 and 18 to 20
     /* Collects local values and timestamps from peers.
     Once a majority is reached, it determines the most recent value
     (i.e., the highest timestamp) and broadcasts the write request. */
     public void onReadResponse(ProcessMessage message) {
+        metrics.received(ReplicaMetrics.READ_RESPONSE);
         if(isCrashed || !isLaunched) return;
-        if(message.getSequenceNumber() != sequenceNumber) return;
+        if (peers != null) {
+            checkHedges(System.nanoTime());
+        }
+        // route the response to its operation; stale sequence numbers are dropped
+        Operation op = inFlight(message.getSequenceNumber());
+        if(op == null || op.inWritePhase || op.fetching || op.committing || message.getKey() != op.key) {
+            metrics.count(ReplicaMetrics.STALE_READ_RESPONSES);
+            return;
+        }
         // FIXED: Count unique senders only
-        if (readResponseSenders.contains(getSender())) return;
-        readResponseSenders.add(getSender());
-        // lines 9 and 18 (collect responses)
-        readResponses.add(message);
+        if (!op.addResponder(message.getProcessNumber())) {
+            metrics.count(ReplicaMetrics.DUPLICATE_READ_RESPONSES);
+            return;
+        }
+        if (peers != null) {
+            replied(op, message.getProcessNumber());
+        }
+        if (blindWrites) {
+            clock.observe(message.getTimestamp());
+        }
+        // lines 9 and 18 (collect responses), lines 10 and 19 (running maximum)
+        op.addReadResponse(message.getProcessNumber(), message.getValue(), message.getTimestamp(), message.getPayload());
         // majority reached lines 9 and 18
-        if(readResponseSenders.size() >= (N / 2) + 1){
-            int maxTs = Integer.MIN_VALUE;
-            int maxVal = Integer.MIN_VALUE;
-            for(ProcessMessage m: readResponses){
-                if(m.getTimestamp() > maxTs){
-                    maxTs = m.getTimestamp(); // lines 10 and 19
-                    maxVal = m.getValue(); // line 19
-                } else if (m.getTimestamp() == maxTs && m.getValue() > maxVal) {
-                    maxVal = m.getValue(); // line 19
-                }
+        if(op.responderCount() >= op.quorum){
+            long now = System.nanoTime();
+            if (op.measured) {
+                latencies.recordReadPhase(now - op.startTime);
             }
-            int sendValue;
-            int sendTimestamp;
-            if(isWrite){
-                timestamp = maxTs + 1; // line 11
-                sendTimestamp = timestamp; // line 12
-                sendValue = v; // line 12
-            } else {
-                sendTimestamp = maxTs; // line 20
-                sendValue = maxVal; // line 20
-                readenValue = sendValue;
+            metrics.count(ReplicaMetrics.READ_PHASES);
+            metrics.add(ReplicaMetrics.READ_QUORUM_WAIT_NANOS, now - op.phaseStartTime);
+            if (peers != null) {
+                peers.phaseCompleted(now - op.phaseStartTime);
+            }
+            long maxTs = op.maxTimestamp;
+            int maxVal = op.maxValue;
+            if(op.isWrite){
+                // lines 11 and 12: t = maxTs + 1, as (counter + 1, this process) (value v was fixed at invocation)
+                op.timestamp = clock.after(maxTs);
+                op.startWritePhase(now);
+                // line 12: send [v, t] to all
+                sendPhase(op, new WriteRequest(op.key, op.value, op.timestamp, op.sequenceNumber, op.payload));
+                return;
+            }
+            op.timestamp = maxTs; // line 20
+            op.value = maxVal; // line 20
+            if (valueSize > 0 && !hasPayload(op)) {
+                op.phaseRequest = null;
+                fetchPayload(op, now);
+                return;
+            }
+            returnValue(op, now);
+        }
+    }
+    /* The rest of a get once its value and payload are known. */
+    private void returnValue(Operation op, long now){
+        /* Fast path: a majority already stores [maxVal, maxTs], so every later read
+        quorum intersects it and the write-back (lines 20-21) cannot change the outcome. */
+        if (fastReads && op.unanimous) {
+            fastReadCount++;
+            completeOperation(op);
+            return;
+        }
+        slowReadCount++;
+        op.startWritePhase(now);
+        // line 20: send [v, t] to all
+        sendPhase(op, new WriteRequest(op.key, op.value, op.timestamp, op.sequenceNumber, op.payload));
+    }
+    /* Whether a get has the payload of (op.value, op.timestamp) without fetching it: the initial
+    value has none, the read responses carried it (no digest reads), or this replica stores it. */
+    private boolean hasPayload(Operation op){
+        if (op.timestamp == 0) {
+            op.payload = null;
+            return true;
+        }
+        if (!digestReads) {
+            op.payload = op.maxPayload;
+            return checkPayload(op.key, op.value, op.payload);
+        }
+        if (registers.getTimestamp(op.key) == op.timestamp) {
+            op.payload = registers.getPayload(op.key);
+            return true;
+        }
+        return false;
+    }
+    private boolean checkPayload(int key, int value, ByteBuffer payload){
+        if (Payloads.matches(payload, value)) return true;
+        log.error(processName + ": payload of value " + value + " (key " + key + ") does not match it");
+        return false;
+    }
+    /* Asks the next replica that reported the winner for its payload; when every one of them was
+    asked in vain (it crashed, or lost the version in a restart), the read phase starts over. */
+    private void fetchPayload(Operation op, long now){
+        int holder = op.nextHolder((processNumber + op.sequenceNumber) % N, N);
+        if (holder < 0) {
+            op.restartReadPhase();
+            sendPhase(op, new ReadRequest(op.key, op.sequenceNumber));
+            return;
+        }
+        op.fetching = true;
+        op.fetchDeadline = now + fetchTimeoutNanos;
+        metrics.count(ReplicaMetrics.PAYLOAD_FETCHES);
+        send(actorRefList.get(holder), new FetchRequest(op.key, op.value, op.timestamp, op.sequenceNumber));
+        if (!fetchTickRunning) {
+            fetchTickRunning = true;
+            timers().startPeriodicTimer(FetchTick.INSTANCE, FetchTick.INSTANCE,
+                    Duration.create(fetchTimeoutNanos, TimeUnit.NANOSECONDS));
+        }
+    }
+    /* Replica side of a fetch: the current version of the key, which may be newer than the one
+    asked for, with its payload. */
+    public void onFetchRequest(FetchRequest request){
+        metrics.received(ReplicaMetrics.FETCH_REQUEST);
+        if (isCrashed || !servesReads) return;
+        int key = request.getKey();
+        send(getSender(), new FetchResponse(key, registers.getValue(key), registers.getTimestamp(key),
+                request.getSequenceNumber(), processNumber, registers.getPayload(key)));
+    }
+    /* A newer version than the read quorum's maximum is as good a result: the replica stored it
+    after its read response, and the write-back takes it to a majority. */
+    public void onFetchResponse(FetchResponse response){
+        metrics.received(ReplicaMetrics.FETCH_RESPONSE);
+        if (isCrashed || !isLaunched) return;
+        Operation op = inFlight(response.getSequenceNumber());
+        if (op == null || !op.fetching || response.getKey() != op.key) return;
+        long now = System.nanoTime();
+        long ts = response.getTimestamp();
+        int value = response.getValue();
+        boolean same = ts == op.timestamp;
+        boolean older = ts < op.timestamp;
+        if (older || !checkPayload(op.key, value, response.getPayload())) {
+            fetchPayload(op, now);
+            return;
+        }
+        op.fetching = false;
+        op.timestamp = ts;
+        op.value = value;
+        op.payload = response.getPayload();
+        if (!same) {
+            // the read quorum does not store this version yet
+            op.unanimous = false;
+        }
+        returnValue(op, now);
+    }
+    /* Fetches unanswered within fetch-timeout go to the next holder. */
+    public void onFetchTick(FetchTick tick){
+        if (isCrashed || finished) {
+            timers().cancel(FetchTick.INSTANCE);
+            fetchTickRunning = false;
+            return;
+        }
+        long now = System.nanoTime();
+        for (Operation op : inFlight) {
+            if (op.active && op.fetching && op.fetchDeadline <= now) {
+                fetchPayload(op, now);
             }
-            currentOpTimestamp = sendTimestamp;
-            currentOpValue = sendValue; // SAVE value to verify Ack later
-            // lines 12 and 20: send [v, t] to all
-            broadcastMessage(new WriteRequest(sendValue, sendTimestamp));
         }
     }
     // line 23: Upon received [v', t'] from p
     /* updates the local storage if the incoming request is newer.
     It then sends back an ACK. */
     public void onWriteRequest(WriteRequest message){
+        metrics.received(ReplicaMetrics.WRITE_REQUEST);
         if(isCrashed) return;
-        int timestampReq = message.getTimestamp();
-        int valueReq = message.getValue();
-        // line 24: if t' > localTS or (t' = localTS and v' > localValue)
-        if((timestampReq > localTimestamp) ||
-           (timestampReq == localTimestamp && valueReq > localValue))
-        {
-            localValue = valueReq; // line 25
-            localTimestamp = timestampReq; // line 26
+        if (grants != null) {
+            long now = System.nanoTime();
+            if (grants.blocks(message.getKey(), message.getTimestamp(), now)) {
+                holdWrite(message, now);
+                return;
+            }
+        }
+        applyWrite(message, getSender());
+    }
+    private void applyWrite(WriteRequest message, ActorRef sender){
+        int key = message.getKey();
+        long timestampReq = message.getTimestamp();
+        if (blindWrites) {
+            clock.observe(timestampReq);
         }
+        int valueReq = message.getValue();
+        ByteBuffer payload = message.getPayload();
+        // lines 24 to 26: if t' > localTS store [v', t'] (versions are unique, no tie on the value)
+        boolean updated = registers.putIfNewer(key, valueReq, timestampReq, payload);
+        metrics.count(updated ? ReplicaMetrics.WRITES_APPLIED : ReplicaMetrics.WRITES_UNCHANGED);
         // line 27: send [ack, v', t'] to p
-        getSender().tell(new Ack(valueReq, timestampReq), self());
+        Ack ack = new Ack(key, valueReq, timestampReq, message.getSequenceNumber(), processNumber);
+        if (wal == null) {
+            send(sender, ack);
+            return;
+        }
+        // the ack leaves once the local state it vouches for is durable
+        long lsn = updated ? wal.append(key, valueReq, timestampReq, payload) : wal.lastAppended();
+        if (updated && ++updatesSinceSnapshot >= snapshotEvery) {
+            wal.snapshot(registers);
+            updatesSinceSnapshot = 0;
+        }
+        if (lsn <= walDurable) {
+            send(sender, ack);
+        } else {
+            pendingAcks.add(new PendingAck(lsn, sender, ack));
+            metrics.set(ReplicaMetrics.PENDING_ACKS, pendingAcks.size());
+        }
+    }
+    /* A group commit finished: release the Acks of the updates it made durable. */
+    public void onWalSynced(WalSynced synced){
+        // a report of the log closed by the last recovery: its lsns are not the current log's
+        if (synced.getGeneration() != walGeneration) return;
+        walDurable = Math.max(walDurable, synced.getLsn());
+        if (isCrashed) return;
+        while (!pendingAcks.isEmpty() && pendingAcks.peek().lsn <= walDurable) {
+            PendingAck pending = pendingAcks.poll();
+            send(pending.to, pending.ack);
+        }
+        metrics.set(ReplicaMetrics.PENDING_ACKS, pendingAcks.size());
     }
     /* Counts ACKs to verify that the value has been safely stored on a majority of nodes. */
     public void onAck(Ack ack){
+        metrics.received(ReplicaMetrics.ACK);
         if (isCrashed || !isLaunched) return;
+        if (peers != null) {
+            checkHedges(System.nanoTime());
+        }
+        Operation op = inFlight(ack.getSequenceNumber());
+        if (op == null || !op.inWritePhase || op.committing || ack.getKey() != op.key) {
+            metrics.count(ReplicaMetrics.STALE_ACKS);
+            return;
+        }
         // FIXED: Validate Timestamp AND Value (Safety Violation Fix)
-        if (ack.getTimestamp() != currentOpTimestamp) return;
-        if (ack.getValue() != currentOpValue) return;
+        if (ack.getTimestamp() != op.timestamp || ack.getValue() != op.value) {
+            metrics.count(ReplicaMetrics.MISMATCHED_ACKS);
+            return;
+        }
         // FIXED: Count unique senders only (Robustness Fix)
-        if (ackSenders.contains(getSender())) return;
-        ackSenders.add(getSender());
+        if (!op.addResponder(ack.getProcessNumber())) {
+            metrics.count(ReplicaMetrics.DUPLICATE_ACKS);
+            return;
+        }
+        if (peers != null) {
+            replied(op, ack.getProcessNumber());
+        }
         // lines 13 and 21: wait until received [ack, v, t] from a majority
-        if (ackSenders.size() >= (N / 2) + 1) {
-            // 11.REQ: Measure latency (End Timer & Calculation)
-            long timeSpent = System.nanoTime() - operationStartTime;
-            if (isWrite) {
-                String line = processName + ": " + "Put value: " + v + " operation duration: " + timeSpent +"ns end_ts=" + System.nanoTime() + " seq=" + sequenceNumber;
-                log.info(line);
-                KVLogger.log(line);
+        if (op.responderCount() >= op.quorum) {
+            long waited = System.nanoTime() - op.phaseStartTime;
+            metrics.count(ReplicaMetrics.WRITE_PHASES);
+            metrics.add(ReplicaMetrics.WRITE_QUORUM_WAIT_NANOS, waited);
+            if (peers != null) {
+                peers.phaseCompleted(waited);
+            }
+            completeOperation(op);
+        }
+    }
+    private void completeOperation(Operation op){
+        if (blindWrites && !committed(op)) return;
+        finishOperation(op);
+        if (leases != null && !op.isWrite) {
+            requestLease(op);
+        }
+        // 9.REQ: with a window of 1 the next op starts only after the current one completes
+        startOperations();
+    }
+    /* Commit wait of blind writes: whether op may complete now, i.e. the clock is past its version
+    by twice the clock uncertainty. Any clock is then past it, so every operation starting later,
+    anywhere, takes a higher version (and reads see op's). An op whose wait is not over stays
+    committing, and a CommitTick at the end of the earliest wait completes it; the process keeps
+    handling its other messages meanwhile. */
+    private boolean committed(Operation op){
+        long until = Versions.counter(op.timestamp) + commitWaitMicros;
+        if (Versions.nowMicros() > until) return true;
+        metrics.count(ReplicaMetrics.COMMIT_WAITS);
+        op.committing = true;
+        // nothing to hedge any more
+        op.phaseRequest = null;
+        scheduleCommitTick(until);
+        return false;
+    }
+    /* Makes the CommitTick fire once the clock is past until, unless it fires earlier already. */
+    private void scheduleCommitTick(long until){
+        if (until >= commitTickAt) return;
+        commitTickAt = until;
+        timers().startSingleTimer(CommitTick.INSTANCE, CommitTick.INSTANCE,
+                Duration.create(Math.max(1, until + 1 - Versions.nowMicros()), TimeUnit.MICROSECONDS));
+    }
+    /* Completes the operations whose commit wait is over, and waits for the next one. */
+    public void onCommitTick(CommitTick tick){
+        commitTickAt = Long.MAX_VALUE;
+        if (isCrashed) return;
+        long now = Versions.nowMicros();
+        long next = Long.MAX_VALUE;
+        for (Operation op : inFlight) {
+            if (!op.active || !op.committing) continue;
+            long until = Versions.counter(op.timestamp) + commitWaitMicros;
+            if (now > until) {
+                op.committing = false;
+                completeOperation(op);
             } else {
-                String line = processName + ": " + "Get return value: " + readenValue + " operation duration: " + timeSpent +"ns end_ts=" + System.nanoTime() + " seq=" + sequenceNumber;
-                log.info(line);
-                KVLogger.log(line);
+                next = Math.min(next, until);
             }
-            operationsCompleted++;
-            // 9.REQ: Every process performs at most one operation at a time (next op starts only after current completes)
-            startOperation();
+        }
+        if (next != Long.MAX_VALUE) {
+            scheduleCommitTick(next);
         }
     }
-    // it starts the next operation
-    private void startOperation(){
+    /* Logs and reports a completed operation and frees its slot. */
+    private void finishOperation(Operation op){
+        // 11.REQ: Measure latency (End Timer & Calculation)
+        long endTime = System.nanoTime();
+        long timeSpent = endTime - op.startTime;
+        if (events != null) {
+            events.complete(processNumber, op.sequenceNumber, op.isWrite, op.key, op.value, op.startTime, endTime);
+        } else if (op.isWrite) {
+            String line = processName + ": " + "Put value: " + op.value + " operation duration: " + timeSpent +"ns end_ts=" + endTime + " seq=" + op.sequenceNumber + " key=" + op.key;
+            log.info(line);
+            KVLogger.log(line);
+        } else {
+            String line = processName + ": " + "Get return value: " + op.value + " operation duration: " + timeSpent +"ns end_ts=" + endTime + " seq=" + op.sequenceNumber + " key=" + op.key;
+            log.info(line);
+            KVLogger.log(line);
+        }
+        op.active = false;
+        inFlightCount--;
+        if (op.client != null) {
+            op.client.tell(new ClientResponse(op.requestId, op.value, false), self());
+            metrics.sent(ReplicaMetrics.CLIENT_RESPONSE);
+            op.client = null;
+        }
+        metrics.count(ReplicaMetrics.OPERATIONS_COMPLETED);
+        metrics.set(ReplicaMetrics.IN_FLIGHT, inFlightCount);
+        if (op.measured) {
+            if (op.inWritePhase) {
+                latencies.recordWritePhase(endTime - op.writePhaseStartTime);
+            }
+            if (op.isWrite) {
+                latencies.recordPut(timeSpent);
+            } else {
+                latencies.recordGet(timeSpent);
+            }
+        }
+        operationsCompleted++;
+    }
+    private Operation inFlight(int seq){
+        if (inFlight.length == 0) return null;
+        Operation op = inFlight[seq & inFlightMask];
+        return (op.active && op.sequenceNumber == seq) ? op : null;
+    }
+    // starts operations until the window is full (or the schedule is exhausted)
+    private void startOperations(){
+        if (serving) {
+            // a coordinator of client requests never finishes; it runs whatever is queued
+            while (inFlightCount < window && !clientQueue.isEmpty()) {
+                if (inFlight[(sequenceNumber + 1) & inFlightMask].active) return;
+                startOperation();
+            }
+            return;
+        }
         /*8.REQ Upon receiving the LaunchMessage, the process starts executing put and get operations:
         - M put operations with k = 1 and v = i, N+i, 2N+i, ... MN+i
         - M get operations for k = 1 */
-        if(operationsCompleted == M*2){
+        boolean done = workload == null ? operationsCompleted == M*2
+                : inFlightCount == 0 && workload.exhausted(System.nanoTime());
+        if(done){
+            if (finished) return;
+            finished = true;
+            timers().cancel(ArrivalTick.INSTANCE);
             String line = processName + ": " + "all operations completed";
             log.info(line);
-            KVLogger.log(line);
+            if (peers != null) {
+                log.info(processName + ": " + hedgesSent + " phases hedged");
+            }
+            if (leases != null) {
+                log.info(processName + ": " + leaseReadCount + " gets read under a lease, " + leases.evictions()
+                        + " leases evicted");
+            }
+            if (events == null) {
+                KVLogger.log(line);
+            }
             // Notify monitor before terminating to allow scenario completion and CSV writing
             if (monitor != null) {
-                monitor.tell(new DoneMessage(), self());
+                monitor.tell(new DoneMessage(latencies, messagesSent, fastReadCount, slowReadCount,
+                        wal == null ? 0 : wal.lastAppended(), wal == null ? 0 : wal.groups(), payloadBytesSent,
+                        leaseReadCount), self());
             }
             // getContext().stop(self()); // Terminate this actor
             return;
         }
-        ackSenders.clear();
-        readResponses.clear();
-        readResponseSenders.clear();
+        boolean local = false;
+        while(inFlightCount < window && hasNextOperation()){
+            // the slot of the next sequence number is still held by an older, slower operation
+            if(inFlight[(sequenceNumber + 1) & inFlightMask].active) break;
+            local |= startOperation();
+        }
+        // gets read under a lease complete without a message that would come back here: the
+        // schedule may be done now
+        if (local) {
+            startOperations();
+        }
+    }
+    /* Starts the next operation; true if it completed at once (a get read under a lease). */
+    private boolean startOperation(){
+        sequenceNumber++; // lines 7 and 16
         // 11.REQ: Measure latency (Start Timer)
-        operationStartTime = System.nanoTime();
+        long operationStartTime = System.nanoTime();
         /*
         8.REQ Upon receiving the LaunchMessage, the process starts executing put and get operations
         - M put operations with k = 1 and v = i, N+i, 2N+i, ... MN+i
         - M get operations for k = 1
         */
-        if(operationsCompleted < M){
-            isWrite = true;
-            v = writeValue[operationsCompleted];
-            String line = processName + ": " + "Invoke write start_ts=" + operationStartTime + " seq=" + sequenceNumber;
-            log.info(line);
-            KVLogger.log(line);
+        Operation op = inFlight[sequenceNumber & inFlightMask];
+        // latency is measured from here; in open loop from the arrival of the operation
+        long latencyStartTime = operationStartTime;
+        boolean put;
+        int key;
+        QueuedRequest client = serving ? clientQueue.poll() : null;
+        if (client != null) {
+            put = client.request.isWrite();
+            key = client.request.getKey();
+            metrics.set(ReplicaMetrics.CLIENT_QUEUE, clientQueue.size());
+        } else if (workload != null) {
+            latencyStartTime = workload.nextStart(operationStartTime);
+            put = !workload.nextIsRead();
+            key = workload.nextKey();
+            if (!measuring && workload.isMeasured(latencyStartTime)) {
+                // warmup over: the reported counters cover the measured operations only
+                measuring = true;
+                messagesSent = 0;
+                payloadBytesSent = 0;
+                fastReadCount = 0;
+                slowReadCount = 0;
+                leaseReadCount = 0;
+            }
+        } else {
+            put = isPut(operationsStarted);
+            key = 1 + (put ? putsStarted : getsStarted) % numKeys;
+        }
+        if(put){
+            int value = client != null ? client.request.getValue() : writeValue(putsStarted);
+            op.start(sequenceNumber, key, true, value, valueSize > 0 ? Payloads.of(value, valueSize) : null,
+                    latencyStartTime);
+            putsStarted++;
         }
         else {
-            isWrite = false;
-            String line = processName + ": " + "Invoke read start_ts=" + operationStartTime + " seq=" + sequenceNumber;
+            op.start(sequenceNumber, key, false, 0, null, latencyStartTime);
+            getsStarted++;
+        }
+        op.measured = workload == null || workload.isMeasured(latencyStartTime);
+        op.group = shards == null ? null : shards.group(op.key);
+        op.quorum = (op.group == null ? N : op.group.length) / 2 + 1;
+        if (client != null) {
+            op.client = client.sender;
+            op.requestId = client.request.getRequestId();
+        }
+        if (events != null) {
+            events.invoke(processNumber, sequenceNumber, op.isWrite, op.key, op.value, operationStartTime);
+        } else {
+            String line = processName + ": " + "Invoke " + (op.isWrite ? "write" : "read") + " start_ts=" + operationStartTime + " seq=" + sequenceNumber + " key=" + op.key
+                    + (op.isWrite ? " value=" + op.value : "");
             log.info(line);
             KVLogger.log(line);
         }
-        sequenceNumber++; // lines 7 and 16
+        operationsStarted++;
+        inFlightCount++;
+        metrics.set(ReplicaMetrics.IN_FLIGHT, inFlightCount);
+        if (leases != null && readUnderLease(op, operationStartTime)) {
+            return true;
+        }
+        if (op.isWrite && blindWrites) {
+            // one round-trip: the version comes from the clock instead of a read quorum (lines 11
+            // and 12 without 8 to 10); it is newer than every operation completed before
+            op.timestamp = clock.next();
+            op.startWritePhase(operationStartTime);
+            metrics.count(ReplicaMetrics.BLIND_WRITES);
+            sendPhase(op, new WriteRequest(op.key, op.value, op.timestamp, sequenceNumber, op.payload));
+            return false;
+        }
         // lines 8 and 17: send [?, r] to all
-        ReadRequest req = new ReadRequest(sequenceNumber);
-        broadcastMessage(req);
+        ReadRequest req = new ReadRequest(op.key, sequenceNumber);
+        sendPhase(op, req);
+        return false;
+    }
+    /* A get of a key this process holds a lease on returns the leased version right away; a put
+    ends the lease here at once (the grantors revoke it anyway when the write reaches them). */
+    private boolean readUnderLease(Operation op, long now){
+        if (op.isWrite) {
+            leases.drop(op.key);
+            return false;
+        }
+        LeaseCache.Lease lease = leases.valid(op.key, now);
+        if (lease == null) return false;
+        op.value = lease.value;
+        op.timestamp = lease.timestamp;
+        leaseReadCount++;
+        metrics.count(ReplicaMetrics.LEASE_READS);
+        finishOperation(op);
+        return true;
+    }
+    /* Asks for a lease on the version a get just returned, if the key is read often enough for
+    one to pay off. Only the quorum that answered the get's last phase is asked, and all of it has
+    to grant: like any majority of the key's replicas, it meets every write quorum. */
+    private void requestLease(Operation op){
+        long now = System.nanoTime();
+        if (!leases.readAgain(op.key, now)) return;
+        LeaseCache.Lease lease = leases.request(op.key, op.value, op.timestamp, now, op.quorum);
+        if (lease == null) return;
+        LeaseRequest request = new LeaseRequest(op.key, op.value, op.timestamp, lease.id, processNumber);
+        for (int p = 0; p < N; p++) {
+            if (op.hasResponded(p)) {
+                send(actorRefList.get(p), request);
+            }
+        }
+    }
+    /* Replica side: grants the lease unless this replica stores a newer version of the key, holds
+    writes of it back already, or cannot vouch for its state (restarting). */
+    public void onLeaseRequest(LeaseRequest request){
+        metrics.received(ReplicaMetrics.LEASE_REQUEST);
+        if (isCrashed) return;
+        int key = request.getKey();
+        boolean newer = registers.getTimestamp(key) > request.getTimestamp();
+        boolean granted = grants != null && servesReads && !recovering && !newer
+                && grants.grant(key, request.getProcessNumber(), request.getTimestamp(), System.nanoTime());
+        send(getSender(), new LeaseGrant(key, request.getLeaseId(), processNumber, granted));
+        if (granted) {
+            startLeaseTick();
+        }
+    }
+    public void onLeaseGrant(LeaseGrant grant){
+        metrics.received(ReplicaMetrics.LEASE_GRANT);
+        if (isCrashed || leases == null) return;
+        if (leases.answer(grant.getKey(), grant.getLeaseId(), grant.getProcessNumber(), grant.isGranted())) {
+            metrics.count(ReplicaMetrics.LEASES_ACQUIRED);
+        }
+    }
+    /* Holder side: stop reading the key locally and confirm. A crashed holder stays silent; the
+    grantor then waits for its lease to expire. */
+    public void onLeaseRevoke(LeaseRevoke revoke){
+        metrics.received(ReplicaMetrics.LEASE_REVOKE);
+        if (isCrashed) return;
+        if (leases != null) {
+            leases.drop(revoke.getKey());
+        }
+        send(getSender(), new LeaseRevoked(revoke.getKey(), processNumber));
+    }
+    public void onLeaseRevoked(LeaseRevoked revoked){
+        metrics.received(ReplicaMetrics.LEASE_REVOKED);
+        if (isCrashed || grants == null) return;
+        grants.revoked(revoked.getKey(), revoked.getProcessNumber(), System.nanoTime(), releasedWrites);
+        applyReleasedWrites();
+    }
+    /* A write newer than a running lease waits; its holders are asked to give the lease up. */
+    private void holdWrite(WriteRequest message, long now){
+        int revokes = grants.hold(message, getSender(), now, revokeTargets);
+        metrics.count(ReplicaMetrics.WRITES_HELD);
+        LeaseRevoke revoke = revokes > 0 ? new LeaseRevoke(message.getKey()) : null;
+        for (int i = 0; i < revokes; i++) {
+            send(actorRefList.get(revokeTargets[i]), revoke);
+        }
+        startLeaseTick();
+    }
+    private void applyReleasedWrites(){
+        for (LeaseGrants.HeldWrite w : releasedWrites) {
+            applyWrite(w.request, w.sender);
+        }
+        releasedWrites.clear();
+    }
+    private void startLeaseTick(){
+        if (leaseTickRunning) return;
+        leaseTickRunning = true;
+        // an expired lease releases its writes within an eighth of a duration
+        timers().startPeriodicTimer(LeaseTick.INSTANCE, LeaseTick.INSTANCE,
+                Duration.create(Math.max(1_000_000, leaseDurationNanos / 8), TimeUnit.NANOSECONDS));
+    }
+    /* Expired grants release the writes they held back; stops once nothing is granted or held. */
+    public void onLeaseTick(LeaseTick tick){
+        long now = System.nanoTime();
+        if (!isCrashed) {
+            grants.expire(now, releasedWrites);
+            grants.endQuiet(now);
+            applyReleasedWrites();
+            metrics.set(ReplicaMetrics.LEASES_HELD, leases.held(now));
+        }
+        if (isCrashed || grants.isEmpty()) {
+            timers().cancel(LeaseTick.INSTANCE);
+            leaseTickRunning = false;
+        }
+    }
+    private boolean hasNextOperation(){
+        if (workload == null) return operationsStarted < M*2;
+        return workload.hasNext(System.nanoTime());
+    }
+    // Formula from project requirement: v = i + k*N (processNumber is 'i', j is 'k')
+    private int writeValue(int j){
+        return j * N + processNumber;
+    }
+    /* Kind of the i-th operation: the first M are puts (8.REQ); with a read share the gets are
+    spread evenly, operation i being a get when floor((i + 1) * p / 100) > floor(i * p / 100). */
+    private boolean isPut(int i){
+        if (readPercent < 0) return i < M;
+        return (long) (i + 1) * readPercent / 100 == (long) i * readPercent / 100;
+    }
+    /* Sends the request of a phase to all processes, to the key's group (kv.sharding), or
+    (kv.quorum.targeted) to a majority (plus extra-peers) ranked by PeerSelector; checkHedges
+    widens it if it stalls. Until a majority of peers has replied once there is no ranking to go
+    by, so those phases still go to everyone. */
+    private void sendPhase(Operation op, Object request){
+        if (op.group != null) {
+            op.phaseStartTime = System.nanoTime();
+            for (int p : op.group) {
+                send(actorRefList.get(p), request);
+            }
+            return;
+        }
+        if (peers == null) {
+            op.phaseStartTime = System.nanoTime();
+            broadcastMessage(request);
+            return;
+        }
+        long now = System.nanoTime();
+        op.startPhase(request, now, peers.hedgeDelay(0));
+        int quorum = N / 2 + 1;
+        sendToMorePeers(op, peers.known() < quorum ? N : quorum + extraPeers, Double.POSITIVE_INFINITY, now);
+        nextHedgeCheck = Math.min(nextHedgeCheck, op.hedgeDeadline);
+        if (!hedgeTickRunning) {
+            hedgeTickRunning = true;
+            timers().startPeriodicTimer(HedgeTick.INSTANCE, HedgeTick.INSTANCE,
+                    Duration.create(hedgeTickNanos, TimeUnit.NANOSECONDS));
+        }
+    }
+    private int sendToMorePeers(Operation op, int count, double maxEstimate, long now){
+        int added = peers.select(op, count, maxEstimate, selected);
+        for (int i = 0; i < added; i++) {
+            op.sent(selected[i], now);
+            send(actorRefList.get(selected[i]), op.phaseRequest);
+        }
+        return added;
+    }
+    private void replied(Operation op, int peer){
+        if (op.isTargeted(peer)) {
+            peers.sample(peer, System.nanoTime() - op.sentAt(peer));
+        }
+    }
+    /* Hedging: a phase still short of its quorum at its deadline charges its silent peers the
+    wait and asks as many untargeted peers as replies are missing. The first HEDGES_BEFORE_ANY
+    hedges only ask peers expected to reply sooner than the phase has already waited (with f
+    crashed and quorum = N - f every correct peer is targeted anyway); later ones ask whoever is
+    left. Once every peer has the request only the replies are left to wait for; a majority is
+    correct, so they come. */
+    private void checkHedges(long now){
+        if (now < nextHedgeCheck) return;
+        int quorum = N / 2 + 1;
+        long next = Long.MAX_VALUE;
+        for (Operation op : inFlight) {
+            if (!op.active || op.phaseRequest == null) continue;
+            if (op.hedgeDeadline <= now) {
+                for (int i = 0; i < N; i++) {
+                    if (op.isTargeted(i) && !op.hasResponded(i)) {
+                        peers.penalize(i, now - op.sentAt(i));
+                    }
+                }
+                boolean any = op.hedges >= HEDGES_BEFORE_ANY;
+                int added = sendToMorePeers(op, quorum - op.responderCount(),
+                        any ? Double.POSITIVE_INFINITY : now - op.phaseStartTime, now);
+                if (added == 0 && any) {
+                    op.phaseRequest = null;
+                    continue;
+                }
+                if (added > 0) {
+                    hedgesSent++;
+                    metrics.count(ReplicaMetrics.PHASES_HEDGED);
+                }
+                op.hedges++;
+                op.hedgeDeadline = now + peers.hedgeDelay(op.hedges);
+            }
+            next = Math.min(next, op.hedgeDeadline);
+        }
+        nextHedgeCheck = next;
+    }
+    /* Backstop for checkHedges while no replies arrive (e.g. every targeted peer crashed). */
+    public void onHedgeTick(HedgeTick tick){
+        if (isCrashed || finished) {
+            timers().cancel(HedgeTick.INSTANCE);
+            hedgeTickRunning = false;
+            return;
+        }
+        checkHedges(System.nanoTime());
     }
     private void broadcastMessage(Object msg){
         for (ActorRef actor : actorRefList) {
-            actor.tell(msg, self());
+            send(actor, msg);
+        }
+    }
+    private void send(ActorRef to, Object msg){
+        if (valueSize > 0) {
+            payloadBytesSent += payloadBytes(msg);
+        }
+        metrics.sent(messageType(msg));
+        if (outbox == null) {
+            transmit(to, msg);
+            messagesSent++;
+            return;
+        }
+        if (outbox.add(to, msg)) {
+            // size limit reached: this peer's batch leaves right away
+            flushed(outbox.flush(to));
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            if (flushWindowNanos == 0) {
+                // queued behind the current mailbox backlog, so it batches everything handled before it
+                self().tell(FlushMessage.INSTANCE, self());
+            } else {
+                timers().startSingleTimer(FlushMessage.INSTANCE, FlushMessage.INSTANCE,
+                        Duration.create(flushWindowNanos, TimeUnit.NANOSECONDS));
+            }
+        }
+    }
+    /* Puts a message for a peer on the wire: a tell, or the emulated link to it (kv.network). */
+    private void transmit(ActorRef to, Object msg){
+        Integer peer = network == null ? null : peerNumbers.get(to);
+        if (peer == null) {
+            to.tell(msg, self());
+            return;
+        }
+        network.send(peer, to, msg, self(), network.needsSize() ? wireBytes(msg) : 0);
+    }
+    // size on the wire for links with a bandwidth cap: the protocol fields and the payloads, plus
+    // an envelope (sender, recipient, serializer and manifest)
+    private static int wireBytes(Object msg){
+        if (msg instanceof BatchMessage) {
+            int bytes = ENVELOPE_BYTES;
+            for (Object m : ((BatchMessage) msg).getMessages()) {
+                bytes += wireBytes(m) - ENVELOPE_BYTES + 1;
+            }
+            return bytes;
+        }
+        if (msg instanceof CatchUpChunk) {
+            CatchUpChunk chunk = (CatchUpChunk) msg;
+            int bytes = ENVELOPE_BYTES + 16 + 16 * chunk.getKeys().length;
+            if (chunk.getPayloads() != null) {
+                for (ByteBuffer payload : chunk.getPayloads()) {
+                    bytes += 4 + Payloads.size(payload);
+                }
+            }
+            return bytes;
+        }
+        if (msg instanceof CatchUpRequest) {
+            return ENVELOPE_BYTES + 8 + 8 * ((CatchUpRequest) msg).getTimestamps().length;
+        }
+        return ENVELOPE_BYTES + 24 + payloadBytes(msg);
+    }
+    private static final int ENVELOPE_BYTES = 64;
+    // the messages that go through send()
+    private static int messageType(Object msg){
+        if (msg instanceof Ack) return ReplicaMetrics.ACK;
+        if (msg instanceof ProcessMessage) return ReplicaMetrics.READ_RESPONSE;
+        if (msg instanceof ReadRequest) return ReplicaMetrics.READ_REQUEST;
+        if (msg instanceof WriteRequest) return ReplicaMetrics.WRITE_REQUEST;
+        if (msg instanceof FetchRequest) return ReplicaMetrics.FETCH_REQUEST;
+        if (msg instanceof LeaseRequest) return ReplicaMetrics.LEASE_REQUEST;
+        if (msg instanceof LeaseGrant) return ReplicaMetrics.LEASE_GRANT;
+        if (msg instanceof LeaseRevoke) return ReplicaMetrics.LEASE_REVOKE;
+        if (msg instanceof LeaseRevoked) return ReplicaMetrics.LEASE_REVOKED;
+        return ReplicaMetrics.FETCH_RESPONSE;
+    }
+    private void flushed(int wireMessages){
+        messagesSent += wireMessages;
+        metrics.sent(ReplicaMetrics.BATCH, wireMessages);
+    }
+    private static int payloadBytes(Object msg){
+        if (msg instanceof WriteRequest) return Payloads.size(((WriteRequest) msg).getPayload());
+        if (msg instanceof ProcessMessage) return Payloads.size(((ProcessMessage) msg).getPayload());
+        if (msg instanceof FetchResponse) return Payloads.size(((FetchResponse) msg).getPayload());
+        return 0;
+    }
+    /* Flush window elapsed: everything still buffered leaves, one message per peer. */
+    public void onFlush(FlushMessage message){
+        flushScheduled = false;
+        if (outbox != null) {
+            flushed(outbox.flushAll());
+        }
+    }
+    /* Unpacks a batch from one peer; the replies it produces go back as one batch. */
+    public void onBatch(BatchMessage batch){
+        metrics.received(ReplicaMetrics.BATCH);
+        if(isCrashed) return;
+        for (Object msg : batch.getMessages()) {
+            if (msg instanceof ReadRequest) {
+                onReadRequest((ReadRequest) msg);
+            } else if (msg instanceof ProcessMessage) {
+                onReadResponse((ProcessMessage) msg);
+            } else if (msg instanceof WriteRequest) {
+                onWriteRequest((WriteRequest) msg);
+            } else if (msg instanceof Ack) {
+                onAck((Ack) msg);
+            } else if (msg instanceof FetchRequest) {
+                onFetchRequest((FetchRequest) msg);
+            } else if (msg instanceof FetchResponse) {
+                onFetchResponse((FetchResponse) msg);
+            } else if (msg instanceof LeaseRequest) {
+                onLeaseRequest((LeaseRequest) msg);
+            } else if (msg instanceof LeaseGrant) {
+                onLeaseGrant((LeaseGrant) msg);
+            } else if (msg instanceof LeaseRevoke) {
+                onLeaseRevoke((LeaseRevoke) msg);
+            } else if (msg instanceof LeaseRevoked) {
+                onLeaseRevoked((LeaseRevoked) msg);
+            }
+        }
+        if (outbox != null) {
+            flushed(outbox.flush(getSender()));
         }
     }
     public void updateOperations(OperationsMessage msg) {
         this.M = msg.getNumOperations();
-        /*
-        8.REQ Upon receiving the LaunchMessage, the process starts executing put and get operations
-        - M put operations with k = 1 and v = i, N+i, 2N+i, ... MN+i
-        - M get operations for k = 1
-        */
-        // FIXED: Initialize array here with the correct M
-        writeValue = new Integer[M];
-        for(int j = 0; j < M; j++){
-            // Formula from project requirement: v = i + k*N
-            // processNumber is 'i', j is 'k'
-            writeValue[j] = j * N + processNumber;
-        }
-        log.info("Updated number of operations to " + M);
+        this.numKeys = Math.max(1, msg.getNumKeys());
+        this.readPercent = Math.min(100, msg.getReadPercent());
+        // presize the register table for the whole keyspace to avoid rehashing under load
+        if (registers.size() == 0) {
+            registers = new RegisterMap(expectedKeys());
+        }
+        log.info("Updated number of operations to " + M + " over " + numKeys + " keys");
+    }
+    /* Workload run: operation kinds, keys and arrivals come from the spec instead of the schedule. */
+    public void updateWorkload(WorkloadMessage msg) {
+        workload = new WorkloadGenerator(msg.getSpec(), processNumber);
+        this.M = msg.getSpec().getOperations();
+        this.numKeys = msg.getSpec().getKeys().getNumKeys();
+        if (registers.size() == 0) {
+            registers = new RegisterMap(expectedKeys());
+        }
+        measuring = msg.getSpec().getWarmupNanos() == 0;
+        log.info("Updated workload to " + msg.getSpec().getKeys() + " over " + numKeys + " keys");
+    }
+    /* Keys this replica will store: the whole keyspace, or its shards' share of it (plus slack for
+    an uneven spread). */
+    private int expectedKeys(){
+        if (shards == null) return numKeys;
+        return (int) Math.min(numKeys, (long) Math.ceil(numKeys * shards.share(processNumber) * 1.1));
+    }
+    private static final class QueuedRequest {
+        final ClientRequest request;
+        final ActorRef sender;
+        QueuedRequest(ClientRequest request, ActorRef sender) {
+            this.request = request;
+            this.sender = sender;
+        }
+    }
+    private static final class PendingAck {
+        final long lsn;
+        final ActorRef to;
+        final Ack ack;
+        PendingAck(long lsn, ActorRef to, Ack ack) {
+            this.lsn = lsn;
+            this.to = to;
+            this.ack = ack;
+        }
+    }
+    private static final class CatchUpRange {
+        final int from;
+        final int to;
+        final boolean[] replied;
+        int replies = 0;
+        long sentAt;
+        CatchUpRange(int from, int to, int n) {
+            this.from = from;
+            this.to = to;
+            this.replied = new boolean[n];
+        }
     }
 }
@@ -0,0 +1,351 @@
+package keyValueStore;
+
+import java.util.concurrent.TimeUnit;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import com.typesafe.config.Config;
+import keyValueStore.net.NetworkModel;
+import keyValueStore.shard.ShardMap;
+import keyValueStore.storage.Durability;
+
+/* Startup switches of the processes, read from the "kv" block of application.conf
+(overridable with -Dkv.<path>=<value>). */
+public final class ProcessConfig {
+    private final int pipelineWindow;
+    private final boolean batching;
+    private final int batchMaxSize;
+    private final long batchFlushWindowNanos;
+    private final boolean fastReads;
+    private final boolean blindWrites;
+    private final long clockUncertaintyNanos;
+    private final boolean leases;
+    private final long leaseDurationNanos;
+    private final double leaseMaxDrift;
+    private final int leaseCapacity;
+    private final int valueSize;
+    private final boolean digestReads;
+    private final long fetchTimeoutNanos;
+    private final boolean targetedQuorums;
+    private final int quorumExtraPeers;
+    private final double quorumEwmaAlpha;
+    private final double quorumSlowFactor;
+    private final boolean sharding;
+    private final int shardReplicas;
+    private final int shardVirtualNodes;
+    private final double hedgeDeviations;
+    private final long hedgeMinNanos;
+    private final long hedgeMaxNanos;
+    private final long hedgeInitialNanos;
+    private final long hedgeTickNanos;
+    private final boolean eventLog;
+    private final String eventLogFile;
+    private final int eventLogRingSize;
+    private final boolean metricsJmx;
+    private final String metricsFile;
+    private final long metricsIntervalNanos;
+    private final NetworkModel network;
+    private final int clientQueueSize;
+    private final long clientTimeoutNanos;
+    private final String resultsFile;
+    private final String latencyFile;
+    private final long arrivalTickNanos;
+    private final Durability durability;
+    private final String persistenceDir;
+    private final int snapshotEvery;
+    private final boolean recover;
+    private final int catchUpChunkKeys;
+    private final int catchUpChunksInFlight;
+    private final long catchUpRetryNanos;
+    private final String executionProfile;
+    private final String replicaDispatcher;
+    private final String replicaMailbox;
+    private final String monitorDispatcher;
+
+    public ProcessConfig(Config config) {
+        Config kv = config.getConfig("kv");
+        this.pipelineWindow = Math.max(1, kv.getInt("pipeline.window"));
+        this.batching = kv.getBoolean("batching.enabled");
+        this.batchMaxSize = kv.getInt("batching.max-size");
+        this.batchFlushWindowNanos = kv.getDuration("batching.flush-window", TimeUnit.NANOSECONDS);
+        this.fastReads = kv.getBoolean("reads.fast-path");
+        this.blindWrites = kv.getBoolean("writes.blind");
+        this.clockUncertaintyNanos = Math.max(0, kv.getDuration("writes.clock-uncertainty", TimeUnit.NANOSECONDS));
+        this.leases = kv.getBoolean("leases.enabled");
+        this.leaseDurationNanos = Math.max(1, kv.getDuration("leases.duration", TimeUnit.NANOSECONDS));
+        this.leaseMaxDrift = kv.getDouble("leases.max-drift");
+        if (leaseMaxDrift < 0 || leaseMaxDrift >= 0.5) {
+            throw new IllegalArgumentException("kv.leases.max-drift must be in [0, 0.5): " + leaseMaxDrift);
+        }
+        this.leaseCapacity = Math.max(1, kv.getInt("leases.capacity"));
+        this.valueSize = (int) Math.min(Integer.MAX_VALUE, kv.getBytes("values.size"));
+        this.digestReads = kv.getBoolean("values.digest-reads");
+        this.fetchTimeoutNanos = kv.getDuration("values.fetch-timeout", TimeUnit.NANOSECONDS);
+        this.targetedQuorums = kv.getBoolean("quorum.targeted");
+        this.quorumExtraPeers = Math.max(0, kv.getInt("quorum.extra-peers"));
+        this.quorumEwmaAlpha = kv.getDouble("quorum.ewma-alpha");
+        this.quorumSlowFactor = kv.getDouble("quorum.slow-factor");
+        this.hedgeDeviations = kv.getDouble("quorum.hedge-deviations");
+        this.hedgeMinNanos = kv.getDuration("quorum.hedge-min", TimeUnit.NANOSECONDS);
+        this.hedgeMaxNanos = kv.getDuration("quorum.hedge-max", TimeUnit.NANOSECONDS);
+        this.hedgeInitialNanos = kv.getDuration("quorum.hedge-initial", TimeUnit.NANOSECONDS);
+        this.hedgeTickNanos = kv.getDuration("quorum.hedge-tick", TimeUnit.NANOSECONDS);
+        this.sharding = kv.getBoolean("sharding.enabled");
+        this.shardReplicas = Math.max(1, kv.getInt("sharding.replicas"));
+        this.shardVirtualNodes = Math.max(1, kv.getInt("sharding.virtual-nodes"));
+        this.eventLog = kv.getBoolean("event-log.enabled");
+        this.eventLogFile = kv.getString("event-log.file");
+        this.eventLogRingSize = kv.getInt("event-log.ring-size");
+        this.metricsJmx = kv.getBoolean("metrics.jmx");
+        this.metricsFile = kv.getString("metrics.file");
+        this.metricsIntervalNanos = kv.getDuration("metrics.sample-interval", TimeUnit.NANOSECONDS);
+        this.network = NetworkModel.fromConfig(kv);
+        this.clientQueueSize = Math.max(0, kv.getInt("client.queue-size"));
+        this.clientTimeoutNanos = kv.getDuration("client.timeout", TimeUnit.NANOSECONDS);
+        this.resultsFile = kv.getString("benchmark.results-file");
+        this.latencyFile = kv.getString("benchmark.latency-file");
+        this.arrivalTickNanos = kv.getDuration("workload.arrival-tick", TimeUnit.NANOSECONDS);
+        this.durability = Durability.of(kv.getString("persistence.durability"));
+        this.persistenceDir = kv.getString("persistence.dir");
+        this.snapshotEvery = Math.max(1, kv.getInt("persistence.snapshot-every"));
+        this.recover = kv.getBoolean("persistence.recover");
+        this.catchUpChunkKeys = Math.max(1, kv.getInt("recovery.chunk-keys"));
+        this.catchUpChunksInFlight = Math.max(1, kv.getInt("recovery.chunks-in-flight"));
+        this.catchUpRetryNanos = kv.getDuration("recovery.retry-after", TimeUnit.NANOSECONDS);
+        this.executionProfile = kv.getString("execution.profile");
+        if (!kv.hasPath("execution.presets." + executionProfile)) {
+            throw new IllegalArgumentException("unknown kv.execution.profile " + executionProfile);
+        }
+        Config preset = kv.getConfig("execution.presets." + executionProfile);
+        this.replicaDispatcher = preset.getString("replica-dispatcher");
+        this.replicaMailbox = preset.getString("replica-mailbox");
+        this.monitorDispatcher = preset.getString("monitor-dispatcher");
+    }
+
+    public static ProcessConfig of(ActorSystem system) {
+        return new ProcessConfig(system.settings().config());
+    }
+
+    public int getPipelineWindow() {
+        return pipelineWindow;
+    }
+
+    public boolean isBatching() {
+        return batching;
+    }
+
+    public int getBatchMaxSize() {
+        return batchMaxSize;
+    }
+
+    public long getBatchFlushWindowNanos() {
+        return batchFlushWindowNanos;
+    }
+
+    public boolean isFastReads() {
+        return fastReads;
+    }
+
+    public boolean isBlindWrites() {
+        return blindWrites;
+    }
+
+    public long getClockUncertaintyNanos() {
+        return clockUncertaintyNanos;
+    }
+
+    public boolean isLeases() {
+        return leases;
+    }
+
+    public long getLeaseDurationNanos() {
+        return leaseDurationNanos;
+    }
+
+    public double getLeaseMaxDrift() {
+        return leaseMaxDrift;
+    }
+
+    public int getLeaseCapacity() {
+        return leaseCapacity;
+    }
+
+    public int getValueSize() {
+        return valueSize;
+    }
+
+    public boolean isDigestReads() {
+        return digestReads;
+    }
+
+    public long getFetchTimeoutNanos() {
+        return fetchTimeoutNanos;
+    }
+
+    public boolean isTargetedQuorums() {
+        return targetedQuorums;
+    }
+
+    public int getQuorumExtraPeers() {
+        return quorumExtraPeers;
+    }
+
+    public double getQuorumEwmaAlpha() {
+        return quorumEwmaAlpha;
+    }
+
+    public double getQuorumSlowFactor() {
+        return quorumSlowFactor;
+    }
+
+    public double getHedgeDeviations() {
+        return hedgeDeviations;
+    }
+
+    public long getHedgeMinNanos() {
+        return hedgeMinNanos;
+    }
+
+    public long getHedgeMaxNanos() {
+        return hedgeMaxNanos;
+    }
+
+    public long getHedgeInitialNanos() {
+        return hedgeInitialNanos;
+    }
+
+    public long getHedgeTickNanos() {
+        return hedgeTickNanos;
+    }
+
+    public boolean isSharding() {
+        return sharding;
+    }
+
+    public int getShardReplicas() {
+        return shardReplicas;
+    }
+
+    public int getShardVirtualNodes() {
+        return shardVirtualNodes;
+    }
+
+    /* The shard ring of numProcesses processes (kv.sharding), or null when it is off. */
+    public ShardMap shardMap(int numProcesses) {
+        return sharding ? ShardMap.consistentHash(numProcesses, shardReplicas, shardVirtualNodes) : null;
+    }
+
+    /* Crashes numProcesses processes survive: a minority of every replica group, wherever the
+       crashes fall (any two processes may share a group), or of all processes when unsharded. */
+    public int toleratedCrashes(int numProcesses) {
+        int group = sharding ? Math.min(shardReplicas, numProcesses) : numProcesses;
+        return (group - 1) / 2;
+    }
+
+    /* Rejects a run crashing more than toleratedCrashes: some operations would never complete. */
+    public void checkCrashes(int numProcesses, int numCrashed) {
+        int tolerated = toleratedCrashes(numProcesses);
+        if (numCrashed > tolerated) {
+            throw new IllegalArgumentException("crashing " + numCrashed + " of " + numProcesses
+                    + " processes leaves a replica group without a majority; at most " + tolerated
+                    + " are tolerated" + (sharding && shardReplicas < numProcesses
+                            ? " with kv.sharding.replicas = " + shardReplicas : ""));
+        }
+    }
+
+    public boolean isEventLog() {
+        return eventLog;
+    }
+
+    public String getEventLogFile() {
+        return eventLogFile;
+    }
+
+    public int getEventLogRingSize() {
+        return eventLogRingSize;
+    }
+
+    public boolean isMetricsJmx() {
+        return metricsJmx;
+    }
+
+    public String getMetricsFile() {
+        return metricsFile;
+    }
+
+    public long getMetricsIntervalNanos() {
+        return metricsIntervalNanos;
+    }
+
+    /* The emulated network between the processes (kv.network), or null when it is off. */
+    public NetworkModel getNetwork() {
+        return network;
+    }
+
+    public int getClientQueueSize() {
+        return clientQueueSize;
+    }
+
+    public long getClientTimeoutNanos() {
+        return clientTimeoutNanos;
+    }
+
+    public String getResultsFile() {
+        return resultsFile;
+    }
+
+    public String getLatencyFile() {
+        return latencyFile;
+    }
+
+    public long getArrivalTickNanos() {
+        return arrivalTickNanos;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public String getPersistenceDir() {
+        return persistenceDir;
+    }
+
+    public int getSnapshotEvery() {
+        return snapshotEvery;
+    }
+
+    public boolean isRecover() {
+        return recover;
+    }
+
+    public int getCatchUpChunkKeys() {
+        return catchUpChunkKeys;
+    }
+
+    public int getCatchUpChunksInFlight() {
+        return catchUpChunksInFlight;
+    }
+
+    public long getCatchUpRetryNanos() {
+        return catchUpRetryNanos;
+    }
+
+    public String getExecutionProfile() {
+        return executionProfile;
+    }
+
+    /* Places a replica on the dispatcher and mailbox of the execution profile. */
+    public Props replicaDeployment(Props props) {
+        if (!replicaDispatcher.isEmpty()) {
+            props = props.withDispatcher(replicaDispatcher);
+        }
+        if (!replicaMailbox.isEmpty()) {
+            props = props.withMailbox(replicaMailbox);
+        }
+        return props;
+    }
+
+    /* Places a monitor on the dispatcher of the execution profile. */
+    public Props monitorDeployment(Props props) {
+        return monitorDispatcher.isEmpty() ? props : props.withDispatcher(monitorDispatcher);
+    }
+}
@@ -0,0 +1,190 @@
+package keyValueStore;
+
+import java.nio.ByteBuffer;
+
+/* Per-key register state of a replica: key -> (value, timestamp), plus the payload of the
+value when writes carry one (kv.values.size). The timestamp is the 64-bit version of the value
+(Versions).
+Open addressing with linear probing over parallel primitive arrays, so an entry
+costs 16 bytes (plus load-factor slack) and a lookup never allocates or boxes. The payload
+array only exists once a payload was stored; payloads are read-only buffers shared with the
+messages that brought them, never copied.
+A key that was never written reads as (0, 0), the initial register state (lines 1-2), with no payload. */
+public final class RegisterMap {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+    // key 0 marks a free slot, so the register of key 0 lives outside the table
+    private static final int FREE = 0;
+
+    private int[] keys;
+    private int[] values;
+    private long[] timestamps;
+    private ByteBuffer[] payloads;
+    private int mask;
+    private int size;
+    private int maxFill;
+
+    private boolean hasZeroKey = false;
+    private int zeroValue;
+    private long zeroTimestamp;
+    private ByteBuffer zeroPayload;
+
+    public RegisterMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public RegisterMap(int expectedKeys) {
+        allocate(tableSizeFor(expectedKeys));
+    }
+
+    public int size() {
+        return size + (hasZeroKey ? 1 : 0);
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    public int getValue(int key) {
+        if (key == FREE) return hasZeroKey ? zeroValue : 0;
+        int slot = find(key);
+        return slot < 0 ? 0 : values[slot];
+    }
+
+    public long getTimestamp(int key) {
+        if (key == FREE) return hasZeroKey ? zeroTimestamp : 0;
+        int slot = find(key);
+        return slot < 0 ? 0 : timestamps[slot];
+    }
+
+    /* Payload of the stored value; null if it has none. */
+    public ByteBuffer getPayload(int key) {
+        if (key == FREE) return zeroPayload;
+        if (payloads == null) return null;
+        int slot = find(key);
+        return slot < 0 ? null : payloads[slot];
+    }
+
+    /* line 24: stores (value, timestamp) if it is newer than the local copy, i.e. t' > localTS;
+    no two writes share a version, so an equal one is the same write (no tie-break on the value).
+    Returns true if the local state was overwritten (lines 25-26). */
+    public boolean putIfNewer(int key, int value, long timestamp) {
+        return putIfNewer(key, value, timestamp, null);
+    }
+
+    /* putIfNewer with the payload of the value (null: none). */
+    public boolean putIfNewer(int key, int value, long timestamp, ByteBuffer payload) {
+        if (key == FREE) {
+            if (timestamp > zeroTimestamp) {
+                zeroValue = value;
+                zeroTimestamp = timestamp;
+                zeroPayload = payload;
+                hasZeroKey = true;
+                return true;
+            }
+            return false;
+        }
+        if (payload != null && payloads == null) {
+            payloads = new ByteBuffer[keys.length];
+        }
+        int slot = mix(key) & mask;
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key) {
+                if (timestamp <= timestamps[slot]) return false;
+                values[slot] = value;
+                timestamps[slot] = timestamp;
+                if (payloads != null) payloads[slot] = payload;
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        // absent keys hold (0, 0), so only a newer version creates an entry
+        if (timestamp <= 0) return false;
+        keys[slot] = key;
+        values[slot] = value;
+        timestamps[slot] = timestamp;
+        if (payloads != null) payloads[slot] = payload;
+        if (++size >= maxFill) rehash(keys.length << 1);
+        return true;
+    }
+
+    /* Visits every stored register (in table order). */
+    public void forEach(EntryConsumer consumer) {
+        if (hasZeroKey) consumer.accept(FREE, zeroValue, zeroTimestamp);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) consumer.accept(keys[i], values[i], timestamps[i]);
+        }
+    }
+
+    /* Independent copy of the current state, e.g. for a snapshot written by another thread. */
+    public RegisterMap copy() {
+        RegisterMap copy = new RegisterMap();
+        copy.keys = keys.clone();
+        copy.values = values.clone();
+        copy.timestamps = timestamps.clone();
+        copy.payloads = payloads == null ? null : payloads.clone();
+        copy.mask = mask;
+        copy.size = size;
+        copy.maxFill = maxFill;
+        copy.hasZeroKey = hasZeroKey;
+        copy.zeroValue = zeroValue;
+        copy.zeroTimestamp = zeroTimestamp;
+        copy.zeroPayload = zeroPayload;
+        return copy;
+    }
+
+    public interface EntryConsumer {
+        void accept(int key, int value, long timestamp);
+    }
+
+    private int find(int key) {
+        int slot = mix(key) & mask;
+        int k;
+        while ((k = keys[slot]) != FREE) {
+            if (k == key) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rehash(int newCapacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        long[] oldTimestamps = timestamps;
+        ByteBuffer[] oldPayloads = payloads;
+        allocate(newCapacity);
+        payloads = oldPayloads == null ? null : new ByteBuffer[newCapacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            int key = oldKeys[i];
+            if (key == FREE) continue;
+            int slot = mix(key) & mask;
+            while (keys[slot] != FREE) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = oldValues[i];
+            timestamps[slot] = oldTimestamps[i];
+            if (payloads != null) payloads[slot] = oldPayloads[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        timestamps = new long[capacity];
+        mask = capacity - 1;
+        maxFill = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int expectedKeys) {
+        long needed = (long) Math.ceil(Math.max(expectedKeys, 1) / (double) LOAD_FACTOR) + 1;
+        int capacity = Integer.highestOneBit((int) Math.min(needed, 1 << 30));
+        return Math.max(DEFAULT_CAPACITY, capacity < needed ? capacity << 1 : capacity);
+    }
+
+    // spreads sequential keys over the table (Fibonacci hashing)
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
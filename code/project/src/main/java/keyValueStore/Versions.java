@@ -0,0 +1,93 @@
+package keyValueStore;
+
+/* The 64-bit versions of the registers (the timestamps t of the algorithm): a counter in the
+upper 52 bits and the number of the writing process in the lower 12, ordered as plain longs, so
+the counter decides and the writer breaks ties. Every process draws its counters from a clock of
+its own that only moves forward (Clock): a writer never issues a counter twice, so no two writes
+share a version and putIfNewer needs no tie-break on the value.
+The clocks start at the wall-clock time in microseconds, so the counters of a hybrid logical
+clock (kv.writes.blind) are comparable across processes up to the clock uncertainty. 52 bits of
+microseconds last until the year 2112.
+Restarts: a crash of this tree (CrashMessage, RecoverMessage) keeps the actor, and with it the
+clock, which restart() only moves forward, so a restarted process never reissues a counter.
+A process started afresh (a new JVM recovering from its write-ahead log) has lost its clock. It
+starts past the wall clock and past every version it recovers or catches up (observe), which
+covers its writes that reached its own log or a peer it catches up from. The counters can run
+ahead of the wall clock (one past the last, several per microsecond; or pulled along by a
+version seen), so a write in flight at the crash that reached neither could share its version
+with a new one only if the old clock was ahead by more than the downtime: a sustained million
+writes a second for ABD counters, which count writes rather than time; with blind writes the
+commit wait holds the clocks at most the pipeline windows plus the clock uncertainty ahead. */
+public final class Versions {
+    public static final int WRITER_BITS = 12;
+    public static final int MAX_PROCESSES = 1 << WRITER_BITS;
+    private static final long WRITER_MASK = MAX_PROCESSES - 1;
+    // wall-clock microseconds at nanoTime 0: nanoTime never goes back, the wall clock may
+    private static final long EPOCH_MICROS = System.currentTimeMillis() * 1000 - System.nanoTime() / 1000;
+
+    private Versions() {}
+
+    public static long of(long counter, int writer) {
+        return counter << WRITER_BITS | writer;
+    }
+
+    public static long counter(long version) {
+        return version >>> WRITER_BITS;
+    }
+
+    public static int writer(long version) {
+        return (int) (version & WRITER_MASK);
+    }
+
+    /* Microseconds since the epoch, on a clock that never goes back. */
+    public static long nowMicros() {
+        return EPOCH_MICROS + System.nanoTime() / 1000;
+    }
+
+    /* "counter.writer" for the logs. */
+    public static String toString(long version) {
+        return counter(version) + "." + writer(version);
+    }
+
+    /* The version clock of one process. ABD writes take the counter after the largest one their
+    read quorum reported; blind writes (kv.writes.blind) take the physical time, or one past the
+    last counter when that is ahead, and every counter seen in a message pulls the clock along
+    (a hybrid logical clock), so a write is newer than everything its process has seen. */
+    public static final class Clock {
+        private final int writer;
+        private long last;
+
+        public Clock(int writer) {
+            if (writer < 0 || writer >= MAX_PROCESSES) {
+                throw new IllegalArgumentException("process number " + writer + " does not fit in a version (at most "
+                        + MAX_PROCESSES + " processes)");
+            }
+            this.writer = writer;
+            restart();
+        }
+
+        /* After a crash of the process (not of the clock): beyond whatever was issued before,
+        and at least the wall clock again. */
+        public void restart() {
+            last = Math.max(last, nowMicros());
+        }
+
+        /* The version of an ABD write whose read quorum reported at most maxVersion. */
+        public long after(long maxVersion) {
+            last = Math.max(last, counter(maxVersion)) + 1;
+            return of(last, writer);
+        }
+
+        /* The version of a blind write: physical time, unless the clock is ahead of it. */
+        public long next() {
+            last = Math.max(last + 1, nowMicros());
+            return of(last, writer);
+        }
+
+        /* Moves the clock past a version seen in a message. */
+        public void observe(long version) {
+            long counter = counter(version);
+            if (counter > last) last = counter;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package keyValueStore.bench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/* JVM-wide allocation and GC counters, sampled at the start and end of a benchmark run. */
+public final class AllocationStats {
+    private final long allocatedBytes;
+    private final long gcCount;
+    private final long gcTimeMillis;
+
+    private AllocationStats(long allocatedBytes, long gcCount, long gcTimeMillis) {
+        this.allocatedBytes = allocatedBytes;
+        this.gcCount = gcCount;
+        this.gcTimeMillis = gcTimeMillis;
+    }
+
+    public static AllocationStats snapshot() {
+        long allocated = 0;
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        // HotSpot exposes per-thread allocation counters; elsewhere the column stays 0
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                for (long bytes : hotspot.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+                    if (bytes > 0) allocated += bytes;
+                }
+            }
+        }
+        long count = 0;
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return new AllocationStats(allocated, count, time);
+    }
+
+    /* Counters accumulated since the earlier snapshot. Bytes allocated by threads that
+    exited in between are not counted, which is fine for the long-lived dispatcher threads. */
+    public AllocationStats since(AllocationStats earlier) {
+        return new AllocationStats(Math.max(0, allocatedBytes - earlier.allocatedBytes),
+                gcCount - earlier.gcCount, gcTimeMillis - earlier.gcTimeMillis);
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public long getGcCount() {
+        return gcCount;
+    }
+
+    public long getGcTimeMillis() {
+        return gcTimeMillis;
+    }
+}
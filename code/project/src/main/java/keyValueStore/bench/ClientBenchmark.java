@@ -0,0 +1,171 @@
+package keyValueStore.bench;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import keyValueStore.Process;
+import keyValueStore.ProcessConfig;
+import keyValueStore.client.KeyValueStore;
+import keyValueStore.events.EventLog;
+import keyValueStore.metrics.MetricsSampler;
+import keyValueStore.net.SimulatedNetwork;
+import keyValueStore.msg.CrashMessage;
+import keyValueStore.msg.OperationsMessage;
+import keyValueStore.msg.ReferencesMessage;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/* Closed-loop load through the client API: client threads push puts and gets through one
+KeyValueStore into an in-JVM cluster of N processes, f of them crashed, without waiting for the
+answers. They only back off (briefly) when the client rejects a call because every coordinator is
+full. Reports throughput, latency from the call to the completion of its future, and how many
+calls were rejected or timed out; appends a row to client_results.csv.
+Written values are unique (1 + thread + j * threads), so the history in the event log can be
+checked for linearizability.
+Usage: ClientBenchmark N f threads seconds [keys, default 100] [read %, default 50] */
+public class ClientBenchmark {
+    private static final long BACKOFF_NANOS = 50_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 4) {
+            System.err.println("Usage: ClientBenchmark N f threads seconds [keys] [read %]");
+            System.exit(2);
+        }
+        int n = Integer.parseInt(args[0]);
+        int f = Integer.parseInt(args[1]);
+        int threads = Integer.parseInt(args[2]);
+        int seconds = Integer.parseInt(args[3]);
+        int keys = args.length > 4 ? Integer.parseInt(args[4]) : 100;
+        int readPercent = args.length > 5 ? Integer.parseInt(args[5]) : 50;
+
+        ActorSystem system = ActorSystem.create("KeyValueStoreSystem");
+        ProcessConfig config = ProcessConfig.of(system);
+        List<ActorRef> processes = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            processes.add(system.actorOf(config.replicaDeployment(Process.createActor()), "p" + i));
+        }
+        ReferencesMessage references = new ReferencesMessage(processes, null, config.shardMap(n));
+        OperationsMessage operations = new OperationsMessage(0, keys);
+        for (ActorRef p : processes) {
+            p.tell(references, ActorRef.noSender());
+            p.tell(operations, ActorRef.noSender());
+        }
+        List<ActorRef> toCrash = new ArrayList<>(processes);
+        Collections.shuffle(toCrash);
+        for (int i = 0; i < f; i++) {
+            toCrash.get(i).tell(new CrashMessage(), ActorRef.noSender());
+        }
+
+        // the client is not told who crashed: it finds out through timeouts
+        KeyValueStore store = new KeyValueStore(system, processes);
+        Recorder recorder = new Recorder(3);
+        LongAdder completed = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        LongAdder timedOut = new LongAdder();
+        LongAdder failed = new LongAdder();
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        Thread[] clients = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            clients[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int written = 0;
+                while (System.nanoTime() < end) {
+                    int key = 1 + random.nextInt(keys);
+                    long invoked = System.nanoTime();
+                    CompletableFuture<?> call = random.nextInt(100) < readPercent ? store.get(key)
+                            : store.put(key, 1 + thread + written++ * threads);
+                    if (call.isCompletedExceptionally() && cause(call) instanceof RejectedExecutionException) {
+                        rejected.increment();
+                        LockSupport.parkNanos(BACKOFF_NANOS);
+                        continue;
+                    }
+                    call.whenComplete((value, error) -> {
+                        if (error == null) {
+                            recorder.recordValue(System.nanoTime() - invoked);
+                            completed.increment();
+                        } else if (error instanceof TimeoutException) {
+                            timedOut.increment();
+                        } else if (error instanceof RejectedExecutionException) {
+                            rejected.increment();
+                        } else {
+                            failed.increment();
+                        }
+                    });
+                }
+            }, "client-" + t);
+            clients[t].start();
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+        // the calls still outstanding complete or time out
+        long drainDeadline = System.nanoTime() + config.getClientTimeoutNanos() * 2;
+        while (store.outstanding() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        Histogram latency = recorder.getIntervalHistogram();
+        store.close();
+        system.terminate();
+        try {
+            system.getWhenTerminated().toCompletableFuture().get();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        EventLog.closeShared();
+        MetricsSampler.closeShared();
+        SimulatedNetwork.closeShared();
+        report(n, f, threads, config.getPipelineWindow(), config.getClientQueueSize(), completed.sum() / elapsed, latency,
+                rejected.sum(), timedOut.sum(), failed.sum());
+    }
+
+    private static Throwable cause(CompletableFuture<?> failed) {
+        try {
+            failed.join();
+            return null;
+        } catch (CompletionException e) {
+            return e.getCause();
+        }
+    }
+
+    private static void report(int n, int f, int threads, int window, int queue, double throughput, Histogram h,
+                               long rejected, long timedOut, long failed) {
+        File file = new File("client_results.csv");
+        boolean header = !file.exists() || file.length() == 0;
+        String row = String.format("%-6d| %-5d| %-8d| %-7d| %-6d| %-9.0f| %-8d| %-8d| %-9d| %-9d| %-8d| %-6d",
+                n, f, threads, window, queue, throughput, h.getValueAtPercentile(50.0) / 1000,
+                h.getValueAtPercentile(99.0) / 1000, h.getValueAtPercentile(99.9) / 1000, rejected, timedOut, failed);
+        try (PrintWriter out = new PrintWriter(new FileWriter(file, true))) {
+            if (header) {
+                out.println("N     | f    | Threads | Window | Queue | Ops/s    | p50 us  | p99 us  | p99.9 us | Rejected | Timeouts| Failed");
+                out.println("------+------+---------+--------+-------+----------+---------+---------+----------+----------+---------+-------");
+            }
+            out.println(row);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        System.out.println("=========================================");
+        System.out.printf("CLIENT BENCHMARK: N=%d, f=%d, %d client threads, window %d, client queue %d%n",
+                n, f, threads, window, queue);
+        System.out.printf("THROUGHPUT: %.0f ops/s%n", throughput);
+        System.out.printf("LATENCY: p50 %d us, p99 %d us, p99.9 %d us, max %d us%n", h.getValueAtPercentile(50.0) / 1000,
+                h.getValueAtPercentile(99.0) / 1000, h.getValueAtPercentile(99.9) / 1000, h.getMaxValue() / 1000);
+        System.out.printf("REJECTED: %d (backpressure), TIMED OUT: %d, FAILED: %d%n", rejected, timedOut, failed);
+        System.out.println("=========================================");
+    }
+}
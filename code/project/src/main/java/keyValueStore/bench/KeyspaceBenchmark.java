@@ -0,0 +1,172 @@
+package keyValueStore.bench;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import keyValueStore.RegisterMap;
+
+/* Measures the per-replica register store as the keyspace grows:
+heap bytes per key, the cost of the lookups done by onReadRequest (value + timestamp)
+and of the conditional store done by onWriteRequest, and the time to copy the whole store
+(what a write-ahead log snapshot stalls the replica for, see WriteAheadLog.snapshot).
+The boxed HashMap<Integer, int[]> is measured alongside as the baseline. */
+public class KeyspaceBenchmark {
+    private static final int LOOKUPS = 5_000_000;
+    private static final int COPIES = 5;
+
+    public static void main(String[] args) {
+        int[] keyCounts = {1_000, 10_000, 100_000, 1_000_000, 4_000_000};
+        if (args.length > 0) {
+            keyCounts = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                keyCounts[i] = Integer.parseInt(args[i]);
+            }
+        }
+        try (FileWriter fw = new FileWriter("keyspace_results.csv", false);
+             PrintWriter out = new PrintWriter(fw)) {
+            out.println("Keys      | Store      | Bytes/key | Read ns | Write ns | Copy ms");
+            out.println("----------+------------+-----------+---------+----------+--------");
+            for (int keys : keyCounts) {
+                report(out, keys, "RegisterMap", measureRegisterMap(keys));
+                report(out, keys, "HashMap", measureHashMap(keys));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void report(PrintWriter out, int keys, String store, double[] r) {
+        String row = String.format("%-10d| %-11s| %-10.1f| %-8.1f| %-9.1f| %-8.2f", keys, store, r[0], r[1], r[2], r[3]);
+        out.println(row);
+        System.out.println(row);
+    }
+
+    // returns {bytes per key, ns per read lookup, ns per write, ms per copy}
+    private static double[] measureRegisterMap(int keys) {
+        // small keyspaces are built several times so the heap delta stays above GC noise
+        RegisterMap[] copies = new RegisterMap[copiesFor(keys)];
+        long before = usedHeap();
+        for (int c = 0; c < copies.length; c++) {
+            copies[c] = new RegisterMap();
+            for (int k = 1; k <= keys; k++) {
+                copies[c].putIfNewer(k, k, 1);
+            }
+        }
+        long after = usedHeap();
+        RegisterMap map = copies[0];
+        int[] probe = probeKeys(keys);
+        long sink = 0;
+        // warm up the lookup and store paths before timing them
+        for (int round = 0; round < 3; round++) {
+            for (int k : probe) {
+                sink += map.getValue(k) + map.getTimestamp(k);
+                map.putIfNewer(k, k, 1 + round);
+            }
+        }
+        long t0 = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            int k = probe[i & (probe.length - 1)];
+            sink += map.getValue(k) + map.getTimestamp(k);
+        }
+        long t1 = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            int k = probe[i & (probe.length - 1)];
+            map.putIfNewer(k, k, 4 + i);
+        }
+        long t2 = System.nanoTime();
+        long copyNanos = Long.MAX_VALUE;
+        for (int i = 0; i < COPIES; i++) {
+            long start = System.nanoTime();
+            RegisterMap copy = map.copy();
+            copyNanos = Math.min(copyNanos, System.nanoTime() - start);
+            sink += copy.size();
+        }
+        keepAlive(sink, copies.length);
+        return new double[] {(after - before) / (double) keys / copies.length,
+                (t1 - t0) / (double) LOOKUPS, (t2 - t1) / (double) LOOKUPS, copyNanos / 1e6};
+    }
+
+    private static double[] measureHashMap(int keys) {
+        int copyCount = copiesFor(keys);
+        List<Map<Integer, int[]>> copies = new ArrayList<>(copyCount);
+        long before = usedHeap();
+        for (int c = 0; c < copyCount; c++) {
+            Map<Integer, int[]> copy = new HashMap<>();
+            for (int k = 1; k <= keys; k++) {
+                copy.put(k, new int[] {k, 1});
+            }
+            copies.add(copy);
+        }
+        long after = usedHeap();
+        Map<Integer, int[]> map = copies.get(0);
+        int[] probe = probeKeys(keys);
+        long sink = 0;
+        for (int round = 0; round < 3; round++) {
+            for (int k : probe) {
+                int[] reg = map.get(k);
+                sink += reg[0] + reg[1];
+            }
+        }
+        long t0 = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            int[] reg = map.get(probe[i & (probe.length - 1)]);
+            sink += reg[0] + reg[1];
+        }
+        long t1 = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            int k = probe[i & (probe.length - 1)];
+            int[] reg = map.get(k);
+            if (4 + i > reg[1]) {
+                map.put(k, new int[] {k, 4 + i});
+            }
+        }
+        long t2 = System.nanoTime();
+        long copyNanos = Long.MAX_VALUE;
+        for (int i = 0; i < COPIES; i++) {
+            long start = System.nanoTime();
+            // the registers are mutable arrays, so a consistent copy clones each of them
+            Map<Integer, int[]> copy = new HashMap<>(map.size() * 4 / 3 + 1);
+            for (Map.Entry<Integer, int[]> e : map.entrySet()) {
+                copy.put(e.getKey(), e.getValue().clone());
+            }
+            copyNanos = Math.min(copyNanos, System.nanoTime() - start);
+            sink += copy.size();
+        }
+        keepAlive(sink, copyCount);
+        return new double[] {(after - before) / (double) keys / copyCount,
+                (t1 - t0) / (double) LOOKUPS, (t2 - t1) / (double) LOOKUPS, copyNanos / 1e6};
+    }
+
+    private static int copiesFor(int keys) {
+        return Math.max(1, 1_000_000 / keys);
+    }
+
+    // random keys drawn from the whole keyspace (power-of-two length for cheap wrap-around)
+    private static int[] probeKeys(int keys) {
+        Random random = new Random(42);
+        int[] probe = new int[1 << 20];
+        for (int i = 0; i < probe.length; i++) {
+            probe[i] = 1 + random.nextInt(keys);
+        }
+        return probe;
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static void keepAlive(long sink, int size) {
+        if (sink == 42 && size == 42) {
+            System.out.println("unlikely");
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package keyValueStore.check;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import keyValueStore.events.EventLog;
+
+/* The operations of a history in flat parallel arrays (about 40 bytes per operation).
+Histories are streamed: binary event logs (keyValueStore.events.EventLog) record by record,
+text histories (KVLogger, EventLogDecoder) line by line; only the invocations still waiting for
+their completion are kept in a map.
+
+The interval of an operation runs from its invocation to its completion. An operation without a
+completion (its process crashed) is pending: a pending read is dropped, a pending write is kept
+with end = PENDING, since a read may have returned its value. */
+final class History {
+    static final long PENDING = Long.MAX_VALUE;
+    // value of a pending write whose invocation did not record it (older text histories)
+    static final int UNKNOWN = Integer.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    int size = 0;
+    long[] start = new long[INITIAL_CAPACITY];
+    long[] end = new long[INITIAL_CAPACITY];
+    int[] key = new int[INITIAL_CAPACITY];
+    int[] value = new int[INITIAL_CAPACITY];
+    boolean[] write = new boolean[INITIAL_CAPACITY];
+    int[] pid = new int[INITIAL_CAPACITY];
+    int[] seq = new int[INITIAL_CAPACITY];
+
+    // set by groupByKey
+    int[] order;
+    int[] keyStarts;
+
+    // (pid, seq) -> index of an operation invoked and not completed yet
+    private final Map<Long, Integer> invoked = new HashMap<>();
+    long events = 0;
+    long crashes = 0;
+
+    /* Reads each file in turn: several event logs of one run (one per JVM) form one history. */
+    static History load(String... files) throws IOException {
+        History history = new History();
+        for (String file : files) {
+            Path path = Paths.get(file);
+            if (isEventLog(path)) {
+                history.readEventLog(path);
+            } else {
+                history.readText(path);
+            }
+        }
+        history.dropPendingReads();
+        return history;
+    }
+
+    private static boolean isEventLog(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] magic = new byte[8];
+            int n = 0;
+            for (int r; n < magic.length && (r = in.read(magic, n, magic.length - n)) > 0; ) {
+                n += r;
+            }
+            return n == magic.length && ByteBuffer.wrap(magic).getLong() == EventLog.MAGIC;
+        }
+    }
+
+    private void readEventLog(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(EventLog.HEADER_BYTES);
+            channel.read(header, 0);
+            long count = header.getLong(8);
+            ByteBuffer buf = ByteBuffer.allocateDirect(EventLog.RECORD_BYTES * 8192);
+            long position = EventLog.HEADER_BYTES;
+            long read = 0;
+            while (read < count) {
+                buf.clear();
+                long remaining = (count - read) * EventLog.RECORD_BYTES;
+                if (remaining < buf.capacity()) {
+                    buf.limit((int) remaining);
+                }
+                int n = channel.read(buf, position);
+                if (n <= 0) break;
+                position += n;
+                buf.flip();
+                while (buf.remaining() >= EventLog.RECORD_BYTES) {
+                    long w0 = buf.getLong();
+                    int s = (int) buf.getLong();
+                    long w2 = buf.getLong();
+                    long startNanos = buf.getLong();
+                    long endNanos = buf.getLong();
+                    event((int) (w0 >>> 32), (int) w0, s, (int) (w2 >>> 32), (int) w2, startNanos, endNanos);
+                    read++;
+                }
+                buf.compact();
+                position -= buf.position();
+            }
+        }
+    }
+
+    /* Lines of the KVLogger format (see EventLogDecoder); anything else, such as the header
+    lines java.util.logging writes in between, is skipped. */
+    private void readText(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int at;
+                if ((at = line.indexOf(": Invoke ")) >= 0) {
+                    boolean isWrite = line.startsWith("write", at + 9);
+                    long s = field(line, " start_ts=", at);
+                    int v = isWrite ? (int) field(line, " value=", at, UNKNOWN) : 0;
+                    event(isWrite ? EventLog.INVOKE_WRITE : EventLog.INVOKE_READ, pid(line, at),
+                            (int) field(line, " seq=", at), (int) field(line, " key=", at, 1), v, s, 0);
+                } else if ((at = line.indexOf(": Put value: ")) >= 0 || (at = line.indexOf(": Get return value: ")) >= 0) {
+                    boolean isWrite = line.startsWith(": Put", at);
+                    int v = (int) number(line, at + (isWrite ? 13 : 20));
+                    long e = field(line, " end_ts=", at);
+                    long duration = field(line, " duration: ", at);
+                    event(isWrite ? EventLog.PUT_DONE : EventLog.GET_DONE, pid(line, at),
+                            (int) field(line, " seq=", at), (int) field(line, " key=", at, 1), v, e - duration, e);
+                } else if ((at = line.indexOf(": process crashed")) >= 0) {
+                    event(EventLog.CRASH, pid(line, at), 0, 0, 0, 0, 0);
+                }
+            }
+        }
+    }
+
+    private void event(int type, int p, int s, int k, int v, long startNanos, long endNanos) {
+        events++;
+        switch (type) {
+            case EventLog.INVOKE_WRITE:
+            case EventLog.INVOKE_READ:
+                invoked.put(operationId(p, s), add(p, s, k, v, type == EventLog.INVOKE_WRITE, startNanos, PENDING));
+                break;
+            case EventLog.PUT_DONE:
+            case EventLog.GET_DONE:
+                Integer i = invoked.remove(operationId(p, s));
+                if (i == null) {
+                    // invocation not recorded: the completion carries the start as well
+                    add(p, s, k, v, type == EventLog.PUT_DONE, startNanos, endNanos);
+                } else {
+                    // the invocation's start: a completion may carry an earlier one (open-loop arrival)
+                    value[i] = v;
+                    end[i] = endNanos;
+                }
+                break;
+            case EventLog.CRASH:
+                crashes++;
+                break;
+            default:
+                break;
+        }
+    }
+
+    private int add(int p, int s, int k, int v, boolean isWrite, long startNanos, long endNanos) {
+        if (size == start.length) {
+            int capacity = size * 2;
+            start = Arrays.copyOf(start, capacity);
+            end = Arrays.copyOf(end, capacity);
+            key = Arrays.copyOf(key, capacity);
+            value = Arrays.copyOf(value, capacity);
+            write = Arrays.copyOf(write, capacity);
+            pid = Arrays.copyOf(pid, capacity);
+            seq = Arrays.copyOf(seq, capacity);
+        }
+        start[size] = startNanos;
+        end[size] = endNanos;
+        key[size] = k;
+        value[size] = v;
+        write[size] = isWrite;
+        pid[size] = p;
+        seq[size] = s;
+        return size++;
+    }
+
+    /* Pending reads returned nothing; pending writes of unknown value cannot be matched. */
+    private void dropPendingReads() {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (end[i] == PENDING && (!write[i] || value[i] == UNKNOWN)) continue;
+            start[kept] = start[i];
+            end[kept] = end[i];
+            key[kept] = key[i];
+            value[kept] = value[i];
+            write[kept] = write[i];
+            pid[kept] = pid[i];
+            seq[kept] = seq[i];
+            kept++;
+        }
+        size = kept;
+        invoked.clear();
+    }
+
+    /* Orders the operation indices by key (order) and records where each key's run begins
+    (keyStarts, with keyStarts[keys] = size). */
+    void groupByKey() {
+        long[] packed = new long[size];
+        for (int i = 0; i < size; i++) {
+            packed[i] = ((long) key[i] << 32) | i;
+        }
+        Arrays.parallelSort(packed);
+        order = new int[size];
+        int[] starts = new int[size + 1];
+        int keys = 0;
+        for (int i = 0; i < size; i++) {
+            order[i] = (int) packed[i];
+            if (i == 0 || key[order[i]] != key[order[i - 1]]) {
+                starts[keys++] = i;
+            }
+        }
+        starts[keys] = size;
+        keyStarts = Arrays.copyOf(starts, keys + 1);
+    }
+
+    int keys() {
+        return keyStarts.length - 1;
+    }
+
+    /* The operation as a line of the text history: its invocation, and its completion unless pending. */
+    void format(StringBuilder out, int i) {
+        out.append('p').append(pid[i]).append(": Invoke ").append(write[i] ? "write" : "read")
+            .append(" start_ts=").append(start[i]).append(" seq=").append(seq[i]).append(" key=").append(key[i]);
+        if (write[i]) {
+            out.append(" value=").append(value[i]);
+        }
+        out.append('\n');
+        if (end[i] == PENDING) return;
+        out.append('p').append(pid[i]).append(write[i] ? ": Put value: " : ": Get return value: ").append(value[i])
+            .append(" operation duration: ").append(end[i] - start[i]).append("ns end_ts=").append(end[i])
+            .append(" seq=").append(seq[i]).append(" key=").append(key[i]).append('\n');
+    }
+
+    private static long operationId(int p, int s) {
+        return ((long) p << 32) | (s & 0xFFFFFFFFL);
+    }
+
+    // "pI" right before the ": " at index at
+    private static int pid(String line, int at) {
+        int i = at;
+        while (i > 0 && Character.isDigit(line.charAt(i - 1))) i--;
+        return Integer.parseInt(line.substring(i, at));
+    }
+
+    private static long field(String line, String name, int from) {
+        int i = line.indexOf(name, from);
+        if (i < 0) throw new IllegalArgumentException("no" + name.replaceAll("\\s+$", "") + " in: " + line);
+        return number(line, i + name.length());
+    }
+
+    private static long field(String line, String name, int from, long missing) {
+        int i = line.indexOf(name, from);
+        return i < 0 ? missing : number(line, i + name.length());
+    }
+
+    private static long number(String line, int from) {
+        boolean negative = line.charAt(from) == '-';
+        int i = negative ? from + 1 : from;
+        long n = 0;
+        while (i < line.length() && Character.isDigit(line.charAt(i))) {
+            n = n * 10 + (line.charAt(i++) - '0');
+        }
+        return negative ? -n : n;
+    }
+}
@@ -0,0 +1,131 @@
+package keyValueStore.check;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/* Linearizability check of a register history (make check).
+The history is streamed from binary event logs (several: one per replica JVM) or text histories
+(KVLogger, EventLogDecoder). Registers of different keys are independent, so each key's
+sub-history is checked on its own (RegisterCheck, O(n log n)), the keys in parallel on the
+fork-join common pool. For a key that is not linearizable the checker reports a minimal
+violating sub-history, in the text history format, so it can be checked again on its own.
+Usage: LinearizabilityChecker [--out <summary.txt>] <history>...
+Exit status 1 if the history is not linearizable. */
+public final class LinearizabilityChecker {
+    // the value of a register nobody wrote (RegisterMap, lines 1-2)
+    static final int INITIAL_VALUE = 0;
+    // keys are checked in one task until it holds this many operations
+    private static final int TASK_OPERATIONS = 1 << 14;
+    // violations reported in full; the rest are counted
+    private static final int REPORTED_VIOLATIONS = 5;
+
+    private LinearizabilityChecker() {}
+
+    public static void main(String[] args) throws IOException {
+        String out = null;
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--out") && i + 1 < args.length) {
+                out = args[++i];
+            } else {
+                files.add(args[i]);
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: LinearizabilityChecker [--out <summary.txt>] <history>...");
+            System.exit(2);
+        }
+
+        long loadStart = System.nanoTime();
+        History history = History.load(files.toArray(new String[0]));
+        history.groupByKey();
+        long loadNanos = System.nanoTime() - loadStart;
+
+        long checkStart = System.nanoTime();
+        Violation[] violations = check(history);
+        long checkNanos = System.nanoTime() - checkStart;
+
+        List<String> lines = new ArrayList<>();
+        int violating = 0;
+        for (Violation v : violations) {
+            if (v != null) violating++;
+        }
+        lines.add("Linearizable: " + (violating == 0 ? "YES" : "NO"));
+        lines.add(summary(history));
+        lines.add(String.format("Loaded in %d ms, checked in %d ms (%d threads)", loadNanos / 1_000_000,
+                checkNanos / 1_000_000, ForkJoinPool.getCommonPoolParallelism()));
+        if (violating > 0) {
+            lines.add("Violations on " + violating + " of " + history.keys() + " keys"
+                    + (violating > REPORTED_VIOLATIONS ? ", the first " + REPORTED_VIOLATIONS + ":" : ":"));
+            int reported = 0;
+            for (Violation v : violations) {
+                if (v == null) continue;
+                lines.add(RegisterCheck.minimize(history, v, INITIAL_VALUE).describe(history).replaceAll("\\s+$", ""));
+                if (++reported == REPORTED_VIOLATIONS) break;
+            }
+        }
+        for (String line : lines) {
+            System.out.println(line);
+        }
+        if (out != null) {
+            Files.write(Paths.get(out), lines, StandardCharsets.UTF_8);
+        }
+        if (violating > 0) {
+            System.exit(1);
+        }
+    }
+
+    /* One entry per key (in key order): its violation, or null if its sub-history is linearizable. */
+    static Violation[] check(History history) {
+        Violation[] violations = new Violation[history.keys()];
+        ForkJoinPool.commonPool().invoke(new KeyRangeTask(history, 0, history.keys(), violations));
+        return violations;
+    }
+
+    private static String summary(History h) {
+        long writes = 0;
+        long pending = 0;
+        for (int i = 0; i < h.size; i++) {
+            if (h.write[i]) writes++;
+            if (h.end[i] == History.PENDING) pending++;
+        }
+        return String.format("%d operations (%d writes, %d reads, %d writes pending at a crash) on %d keys, "
+                + "%d events, %d crashes", h.size, writes, h.size - writes, pending, h.keys(), h.events, h.crashes);
+    }
+
+    /* Checks the keys [from, to) of the history; splits while the range holds many operations. */
+    private static final class KeyRangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final History history;
+        private final int from;
+        private final int to;
+        private final Violation[] violations;
+
+        KeyRangeTask(History history, int from, int to, Violation[] violations) {
+            this.history = history;
+            this.from = from;
+            this.to = to;
+            this.violations = violations;
+        }
+
+        @Override
+        protected void compute() {
+            int[] starts = history.keyStarts;
+            if (to - from > 1 && starts[to] - starts[from] > TASK_OPERATIONS) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new KeyRangeTask(history, from, mid, violations),
+                        new KeyRangeTask(history, mid, to, violations));
+                return;
+            }
+            for (int k = from; k < to; k++) {
+                violations[k] = RegisterCheck.check(history, history.order, starts[k], starts[k + 1], INITIAL_VALUE);
+            }
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package keyValueStore.check;
+
+import java.util.Arrays;
+
+/* Linearizability of the sub-history of one register, in O(n log n).
+
+Every write writes a value no other write writes (v = i + k*N, see Process.writeValue), so each
+read belongs to exactly one write: the one of the value it returned. A write and its reads form
+a cluster, and a linearization places the clusters one after another. Per cluster:
+  minEnd   = earliest completion of one of its operations
+  maxStart = latest invocation of one of its operations
+If minEnd < maxStart, the cluster must stay in the linearization from minEnd to maxStart: a
+forward zone [minEnd, maxStart]. Otherwise it may sit anywhere in the backward zone
+[maxStart, minEnd]. The history is linearizable if and only if (Gibbons and Korach)
+  - every read returns the initial value or a written one, and does not complete before its
+    write is invoked,
+  - no two forward zones overlap,
+  - no backward zone lies inside a forward zone.
+
+Reads of the initial value (0) before any other operation completed go first and constrain
+nothing. A later read of 0 needs the write of 0 (p0's first put) as its cluster; without one
+it is stale. A write still pending at a crash joins only if a read returned its value. */
+final class RegisterCheck {
+    private RegisterCheck() {}
+
+    /* Checks the operations h.order[from..to), all of one key; null if linearizable. */
+    static Violation check(History h, int[] ops, int from, int to, int initial) {
+        int n = to - from;
+        if (n == 0) return null;
+        int key = h.key[ops[from]];
+
+        // the earliest completion that a read of the initial value must not follow
+        long firstEnd = History.PENDING;
+        int firstEndOp = -1;
+        long[] byValue = new long[n];
+        for (int i = 0; i < n; i++) {
+            int op = ops[from + i];
+            byValue[i] = ((long) h.value[op] << 32) | i;
+            if ((h.write[op] || h.value[op] != initial) && h.end[op] < firstEnd) {
+                firstEnd = h.end[op];
+                firstEndOp = op;
+            }
+        }
+        Arrays.sort(byValue);
+
+        Zones zones = new Zones(n);
+        int g = 0;
+        while (g < n) {
+            int value = (int) (byValue[g] >> 32);
+            int e = g;
+            int writeOp = -1;
+            while (e < n && (int) (byValue[e] >> 32) == value) {
+                int op = ops[from + (int) byValue[e]];
+                if (h.write[op]) {
+                    if (writeOp >= 0) {
+                        return violation(h, ops, from, to, key,
+                                "value " + value + " is written twice; the check needs unique written values",
+                                writeOp, op);
+                    }
+                    writeOp = op;
+                }
+                e++;
+            }
+            long minEnd = History.PENDING;
+            long maxStart = Long.MIN_VALUE;
+            int minEndOp = -1;
+            int maxStartOp = -1;
+            if (writeOp >= 0) {
+                minEnd = h.end[writeOp];
+                maxStart = h.start[writeOp];
+                minEndOp = writeOp;
+                maxStartOp = writeOp;
+            }
+            boolean read = false;
+            for (int j = g; j < e; j++) {
+                int op = ops[from + (int) byValue[j]];
+                if (h.write[op]) continue;
+                if (value == initial && h.start[op] < firstEnd) continue;
+                if (writeOp < 0) {
+                    if (value == initial) {
+                        return violation(h, ops, from, to, key,
+                                "read returns the initial value " + value + " after p" + h.pid[firstEndOp] + "#"
+                                        + h.seq[firstEndOp] + " completed", op, firstEndOp);
+                    }
+                    return violation(h, ops, from, to, key,
+                            "read returns " + value + ", which no operation writes", op);
+                }
+                if (h.end[op] < h.start[writeOp]) {
+                    return violation(h, ops, from, to, key,
+                            "read returns " + value + " and completes before the write of " + value + " is invoked",
+                            op, writeOp);
+                }
+                read = true;
+                if (h.end[op] < minEnd) {
+                    minEnd = h.end[op];
+                    minEndOp = op;
+                }
+                if (h.start[op] > maxStart) {
+                    maxStart = h.start[op];
+                    maxStartOp = op;
+                }
+            }
+            if (writeOp >= 0 && (read || h.end[writeOp] != History.PENDING)) {
+                zones.add(minEnd, maxStart, minEndOp, maxStartOp, writeOp);
+            }
+            g = e;
+        }
+        return zones.check(h, ops, from, to, key);
+    }
+
+    /* Shrinks the operations of a violation while the rest still violates: a 1-minimal
+    sub-history (removing any single operation makes it linearizable). A write stays as long
+    as a read of its value does. */
+    static Violation minimize(History h, Violation violation, int initial) {
+        int[] ops = violation.operations;
+        boolean shrunk = true;
+        while (shrunk) {
+            shrunk = false;
+            for (int i = 0; i < ops.length && ops.length > 1; i++) {
+                if (h.write[ops[i]] && isRead(h, ops, i)) continue;
+                int[] rest = new int[ops.length - 1];
+                System.arraycopy(ops, 0, rest, 0, i);
+                System.arraycopy(ops, i + 1, rest, i, rest.length - i);
+                Violation smaller = check(h, rest, 0, rest.length, initial);
+                if (smaller != null) {
+                    ops = rest;
+                    violation = smaller;
+                    shrunk = true;
+                    break;
+                }
+            }
+        }
+        return violation.operations.length == ops.length ? violation
+                : new Violation(violation.key, violation.reason, ops);
+    }
+
+    // whether another operation of ops reads the value ops[w] writes
+    private static boolean isRead(History h, int[] ops, int w) {
+        for (int op : ops) {
+            if (!h.write[op] && h.value[op] == h.value[ops[w]]) return true;
+        }
+        return false;
+    }
+
+    /* A violation with the writes of the values its reads returned, so that it is a
+    self-contained sub-history. */
+    private static Violation violation(History h, int[] ops, int from, int to, int key, String reason,
+                                       int... witness) {
+        int[] closed = Arrays.copyOf(witness, witness.length * 2);
+        int size = witness.length;
+        for (int w = 0; w < witness.length; w++) {
+            int op = witness[w];
+            if (h.write[op]) continue;
+            for (int i = from; i < to; i++) {
+                int other = ops[i];
+                if (h.write[other] && h.value[other] == h.value[op] && !contains(closed, size, other)) {
+                    closed[size++] = other;
+                }
+            }
+        }
+        int[] distinct = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (!contains(distinct, count, closed[i])) distinct[count++] = closed[i];
+        }
+        return new Violation(key, reason, Arrays.copyOf(distinct, count));
+    }
+
+    private static boolean contains(int[] ops, int size, int op) {
+        for (int i = 0; i < size; i++) {
+            if (ops[i] == op) return true;
+        }
+        return false;
+    }
+
+    /* The zones of the clusters of one register. */
+    private static final class Zones {
+        final long[] lo;
+        final long[] hi;
+        final int[] loOp;
+        final int[] hiOp;
+        final int[] writeOp;
+        final boolean[] forward;
+        int size = 0;
+
+        Zones(int capacity) {
+            lo = new long[capacity];
+            hi = new long[capacity];
+            loOp = new int[capacity];
+            hiOp = new int[capacity];
+            writeOp = new int[capacity];
+            forward = new boolean[capacity];
+        }
+
+        void add(long minEnd, long maxStart, int minEndOp, int maxStartOp, int write) {
+            forward[size] = minEnd < maxStart;
+            if (forward[size]) {
+                lo[size] = minEnd;
+                hi[size] = maxStart;
+                loOp[size] = minEndOp;
+                hiOp[size] = maxStartOp;
+            } else {
+                lo[size] = maxStart;
+                hi[size] = minEnd;
+                loOp[size] = maxStartOp;
+                hiOp[size] = minEndOp;
+            }
+            writeOp[size] = write;
+            size++;
+        }
+
+        Violation check(History h, int[] ops, int from, int to, int key) {
+            // forward zones by lo
+            int forwardCount = 0;
+            int[] byLo = new int[size];
+            for (int z = 0; z < size; z++) {
+                if (forward[z]) byLo[forwardCount++] = z;
+            }
+            byLo = Arrays.copyOf(byLo, forwardCount);
+            sortBy(lo, byLo);
+
+            // no two forward zones overlap: in lo order, each must start after every earlier one ended
+            int widest = -1;
+            long[] prefixHi = new long[forwardCount];
+            int[] prefixZone = new int[forwardCount];
+            for (int i = 0; i < forwardCount; i++) {
+                int z = byLo[i];
+                if (widest >= 0 && lo[z] < hi[widest]) {
+                    return violation(h, ops, from, to, key,
+                            "the clusters of " + h.value[writeOp[widest]] + " and " + h.value[writeOp[z]]
+                                    + " must both span " + lo[z] + ".." + Math.min(hi[z], hi[widest]),
+                            loOp[widest], hiOp[widest], loOp[z], hiOp[z], writeOp[widest], writeOp[z]);
+                }
+                if (widest < 0 || hi[z] > hi[widest]) widest = z;
+                prefixHi[i] = hi[widest];
+                prefixZone[i] = widest;
+            }
+
+            // no backward zone inside a forward one: the widest forward zone starting before it
+            long[] forwardLo = new long[forwardCount];
+            for (int i = 0; i < forwardCount; i++) {
+                forwardLo[i] = lo[byLo[i]];
+            }
+            for (int z = 0; z < size; z++) {
+                if (forward[z]) continue;
+                int before = lowerBound(forwardLo, lo[z]);
+                if (before > 0 && prefixHi[before - 1] > hi[z]) {
+                    int f = prefixZone[before - 1];
+                    return violation(h, ops, from, to, key,
+                            "the cluster of " + h.value[writeOp[z]] + " must fit in " + lo[z] + ".." + hi[z]
+                                    + ", inside the span of the cluster of " + h.value[writeOp[f]],
+                            loOp[f], hiOp[f], loOp[z], hiOp[z], writeOp[f], writeOp[z]);
+                }
+            }
+            return null;
+        }
+    }
+
+    // index of the first element >= x
+    private static int lowerBound(long[] sorted, long x) {
+        int lo = 0;
+        int hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] < x) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /* Sorts the indices idx by keys[idx] (merge sort, no boxing). */
+    private static void sortBy(long[] keys, int[] idx) {
+        int[] buffer = new int[idx.length];
+        for (int width = 1; width < idx.length; width *= 2) {
+            for (int left = 0; left < idx.length; left += 2 * width) {
+                int mid = Math.min(left + width, idx.length);
+                int right = Math.min(left + 2 * width, idx.length);
+                int i = left;
+                int j = mid;
+                int k = left;
+                while (i < mid && j < right) {
+                    buffer[k++] = keys[idx[j]] < keys[idx[i]] ? idx[j++] : idx[i++];
+                }
+                while (i < mid) buffer[k++] = idx[i++];
+                while (j < right) buffer[k++] = idx[j++];
+            }
+            System.arraycopy(buffer, 0, idx, 0, idx.length);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package keyValueStore.check;
+
+import java.util.Arrays;
+
+/* A non-linearizable sub-history of one key: the operations (indices into the History) and why
+no linearization exists for them. */
+final class Violation {
+    final int key;
+    final String reason;
+    final int[] operations;
+
+    Violation(int key, String reason, int[] operations) {
+        this.key = key;
+        this.reason = reason;
+        this.operations = operations;
+    }
+
+    /* The reason and the operations as text history lines, ordered by invocation. */
+    String describe(History h) {
+        Integer[] byStart = new Integer[operations.length];
+        for (int i = 0; i < operations.length; i++) {
+            byStart[i] = operations[i];
+        }
+        Arrays.sort(byStart, (a, b) -> Long.compare(h.start[a], h.start[b]));
+        StringBuilder out = new StringBuilder();
+        out.append("key ").append(key).append(": ").append(reason).append('\n');
+        out.append("minimal violating sub-history (").append(operations.length).append(" operations):\n");
+        for (int op : byStart) {
+            h.format(out, op);
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,200 @@
+package keyValueStore.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import akka.actor.AbstractActorWithTimers;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import keyValueStore.ProcessConfig;
+import keyValueStore.msg.ClientRequest;
+import keyValueStore.msg.ClientResponse;
+import scala.concurrent.duration.Duration;
+
+/* Non-blocking client of the store: put and get send a ClientRequest to one of the processes,
+which coordinates it (Process.onClientRequest), and return a CompletableFuture at once. Any
+number of threads may call them concurrently.
+
+Routing: each call starts at a random coordinator and takes the first one that is neither
+suspected nor full. A coordinator holds kv.pipeline.window requests in flight plus
+kv.client.queue-size queued ones; the client keeps one permit per request it has outstanding
+there and never sends beyond that, so a busy coordinator is skipped instead of queued to. When
+every coordinator is full the call fails at once with a RejectedExecutionException: the caller
+backs off, nothing blocks. A coordinator that rejects anyway (it had requests of other clients)
+answers the same way.
+
+Replies: every response goes to one long-lived actor that completes the future of its request
+id; there is no ask and no temporary actor per call. Futures complete on that actor's thread,
+so dependent stages doing real work should use the *Async variants. A request unanswered for
+kv.client.timeout (a crashed process stays silent, 6.REQ) fails with a TimeoutException, and
+its coordinator gets no requests for as long. Failed requests are not retried: a put may have
+been written although its answer never came.
+
+Keys are those of the processes' OperationsMessage (1..numKeys): a recovering process catches up
+on that range only. */
+public final class KeyValueStore implements AutoCloseable {
+    private final List<ActorRef> coordinators;
+    private final int capacity;
+    private final long timeoutNanos;
+    // requests outstanding per coordinator, and until when (nanoTime) a coordinator is skipped
+    private final AtomicIntegerArray outstanding;
+    private final AtomicLongArray suspectedUntil;
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private final Map<Long, Pending<?>> pending = new ConcurrentHashMap<>();
+    private final ActorSystem system;
+    private final ActorRef replies;
+    private volatile boolean closed = false;
+
+    public KeyValueStore(ActorSystem system, List<ActorRef> coordinators) {
+        if (coordinators.isEmpty()) {
+            throw new IllegalArgumentException("no coordinators");
+        }
+        ProcessConfig config = ProcessConfig.of(system);
+        this.system = system;
+        this.coordinators = new ArrayList<>(coordinators);
+        this.capacity = config.getPipelineWindow() + config.getClientQueueSize();
+        this.timeoutNanos = config.getClientTimeoutNanos();
+        this.outstanding = new AtomicIntegerArray(coordinators.size());
+        this.suspectedUntil = new AtomicLongArray(coordinators.size());
+        this.replies = system.actorOf(Props.create(Replies.class, () -> new Replies(this)));
+    }
+
+    /* Writes value under key; completes once a majority stores it. */
+    public CompletableFuture<Void> put(int key, int value) {
+        return submit(key, true, value);
+    }
+
+    /* Reads key; completes with the value a majority vouches for (0 if never written). */
+    public CompletableFuture<Integer> get(int key) {
+        return submit(key, false, 0);
+    }
+
+    /* Requests outstanding at all coordinators. */
+    public int outstanding() {
+        return pending.size();
+    }
+
+    private <T> CompletableFuture<T> submit(int key, boolean write, int value) {
+        if (closed) {
+            return failed(new IllegalStateException("client closed"));
+        }
+        int n = coordinators.size();
+        long now = System.nanoTime();
+        // a random start spreads the threads without a shared round-robin counter
+        int first = ThreadLocalRandom.current().nextInt(n);
+        for (int i = 0; i < n; i++) {
+            int c = first + i < n ? first + i : first + i - n;
+            long until = suspectedUntil.get(c);
+            if (until != 0 && until - now > 0) continue;
+            if (!acquire(c)) continue;
+            long requestId = nextRequestId.incrementAndGet();
+            Pending<T> p = new Pending<>(c, write, now);
+            pending.put(requestId, p);
+            coordinators.get(c).tell(new ClientRequest(requestId, key, write, value), replies);
+            return p;
+        }
+        return failed(new RejectedExecutionException("every coordinator is full or suspected"));
+    }
+
+    // CompletableFuture.failedFuture is Java 9
+    private static <T> CompletableFuture<T> failed(Throwable cause) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(cause);
+        return future;
+    }
+
+    private boolean acquire(int c) {
+        int o;
+        do {
+            o = outstanding.get(c);
+            if (o >= capacity) return false;
+        } while (!outstanding.compareAndSet(c, o, o + 1));
+        return true;
+    }
+
+    private void onResponse(ClientResponse response) {
+        Pending<?> p = pending.remove(response.getRequestId());
+        // null: timed out already
+        if (p == null) return;
+        outstanding.decrementAndGet(p.coordinator);
+        if (response.isRejected()) {
+            p.completeExceptionally(new RejectedExecutionException("p" + p.coordinator + " has no room"));
+        } else {
+            p.succeed(response.getValue());
+        }
+    }
+
+    private void checkTimeouts() {
+        long now = System.nanoTime();
+        for (Map.Entry<Long, Pending<?>> e : pending.entrySet()) {
+            Pending<?> p = e.getValue();
+            if (now - p.sentAt < timeoutNanos || !pending.remove(e.getKey(), p)) continue;
+            outstanding.decrementAndGet(p.coordinator);
+            long until = now + timeoutNanos;
+            suspectedUntil.set(p.coordinator, until == 0 ? 1 : until);
+            p.completeExceptionally(new TimeoutException("p" + p.coordinator + " did not answer within "
+                    + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms"));
+        }
+    }
+
+    /* Stops the reply actor; requests still outstanding fail. */
+    @Override
+    public void close() {
+        closed = true;
+        system.stop(replies);
+        for (Long requestId : pending.keySet()) {
+            Pending<?> p = pending.remove(requestId);
+            if (p != null) {
+                p.completeExceptionally(new IllegalStateException("client closed"));
+            }
+        }
+    }
+
+    /* The future of one request, with what the client needs to settle it. */
+    private static final class Pending<T> extends CompletableFuture<T> {
+        final int coordinator;
+        final boolean write;
+        final long sentAt;
+
+        Pending(int coordinator, boolean write, long sentAt) {
+            this.coordinator = coordinator;
+            this.write = write;
+            this.sentAt = sentAt;
+        }
+
+        @SuppressWarnings("unchecked")
+        void succeed(int value) {
+            complete(write ? null : (T) Integer.valueOf(value));
+        }
+    }
+
+    private static final class Replies extends AbstractActorWithTimers {
+        private static final Object CHECK = "check-timeouts";
+        private final KeyValueStore store;
+
+        Replies(KeyValueStore store) {
+            this.store = store;
+            // a request times out between timeout and 1.25 x timeout after it was sent
+            long every = Math.max(1_000_000, store.timeoutNanos / 4);
+            timers().startPeriodicTimer(CHECK, CHECK, Duration.create(every, TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public Receive createReceive() {
+            return receiveBuilder()
+                .match(ClientResponse.class, store::onResponse)
+                .matchEquals(CHECK, c -> store.checkTimeouts())
+                .build();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package keyValueStore.events;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.locks.LockSupport;
+
+/* Binary history of the operations (invocations and completions), written off the actor threads.
+Actors append fixed-size records to an EventRing without blocking; a background thread drains
+the ring into a memory-mapped file. EventLogDecoder turns the file back into the text lines
+the linearizability checker parses.
+
+File layout: MAGIC, record count, then RECORD_BYTES per record:
+  (type << 32 | pid), seq, (key << 32 | value), start nanos, end nanos */
+public final class EventLog {
+    public static final long MAGIC = 0x4B564556454E5431L; // "KVEVENT1"
+    public static final int HEADER_BYTES = 16;
+    public static final int RECORD_BYTES = EventRing.RECORD_LONGS * 8;
+
+    public static final int INVOKE_WRITE = 1;
+    public static final int INVOKE_READ = 2;
+    public static final int PUT_DONE = 3;
+    public static final int GET_DONE = 4;
+    public static final int CRASH = 5;
+
+    // records per mapped region (~40 MB)
+    private static final int REGION_RECORDS = 1 << 20;
+    private static final int DRAIN_BATCH = 4096;
+    private static final long IDLE_PARK_NANOS = 200_000;
+
+    private static EventLog shared;
+
+    private final Path path;
+    private final EventRing ring;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final Thread writer;
+    private volatile boolean running = true;
+    private MappedByteBuffer region;
+    private long regionIndex = -1;
+    private long written = 0;
+
+    private EventLog(Path path, int ringSize) throws IOException {
+        this.path = path;
+        Path parent = path.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        // overwrite file on each run
+        Files.deleteIfExists(path);
+        this.ring = new EventRing(ringSize);
+        this.file = new RandomAccessFile(path.toFile(), "rw");
+        this.channel = file.getChannel();
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.putLong(0, MAGIC);
+        header.putLong(8, 0);
+        this.writer = new Thread(this::drainLoop, "kv-event-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /* The event log of this JVM; reopening with another file closes the previous one.
+    Throws UncheckedIOException if the file cannot be created. */
+    public static synchronized EventLog open(String file, int ringSize) {
+        Path p = Paths.get(file).toAbsolutePath();
+        if (shared != null && shared.path.equals(p) && shared.running) {
+            return shared;
+        }
+        if (shared != null) {
+            shared.close();
+        }
+        try {
+            shared = new EventLog(p, ringSize);
+            Runtime.getRuntime().addShutdownHook(new Thread(shared::close, "kv-event-log-close"));
+        } catch (IOException e) {
+            shared = null;
+            throw new UncheckedIOException("cannot open the event log " + p, e);
+        }
+        return shared;
+    }
+
+    /* Flushes and closes the event log of this JVM, if any. */
+    public static synchronized void closeShared() {
+        if (shared != null) {
+            shared.close();
+        }
+    }
+
+    /* value: the value a write is about to write (0 for a read), so that a write still pending when
+    its process crashes can be matched with the reads that returned it. */
+    public void invoke(int pid, int seq, boolean isWrite, int key, int value, long startNanos) {
+        record(isWrite ? INVOKE_WRITE : INVOKE_READ, pid, seq, key, value, startNanos, 0);
+    }
+
+    public void complete(int pid, int seq, boolean isWrite, int key, int value, long startNanos, long endNanos) {
+        record(isWrite ? PUT_DONE : GET_DONE, pid, seq, key, value, startNanos, endNanos);
+    }
+
+    public void crash(int pid, long nanos) {
+        record(CRASH, pid, 0, 0, 0, nanos, nanos);
+    }
+
+    private void record(int type, int pid, int seq, int key, int value, long start, long end) {
+        ring.offer(((long) type << 32) | (pid & 0xFFFFFFFFL), seq,
+                ((long) key << 32) | (value & 0xFFFFFFFFL), start, end);
+    }
+
+    /* Records lost because the ring was full when they were offered. */
+    public long dropped() {
+        return ring.dropped();
+    }
+
+    public synchronized void close() {
+        if (!running) return;
+        running = false;
+        try {
+            writer.join();
+            header.putLong(8, written);
+            header.force();
+            if (region != null) {
+                region.force();
+            }
+            // drop the unused tail of the last mapped region
+            channel.truncate(HEADER_BYTES + written * RECORD_BYTES);
+            channel.close();
+            file.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("EventLog close failed: " + e.getMessage());
+        }
+        if (ring.dropped() > 0) {
+            System.err.println("EventLog: " + ring.dropped() + " records dropped (ring full)");
+        }
+    }
+
+    private void drainLoop() {
+        long[] batch = new long[DRAIN_BATCH * EventRing.RECORD_LONGS];
+        try {
+            while (true) {
+                // read the flag first, so a final drain happens after the last offer
+                boolean stopping = !running;
+                int n = ring.drainTo(batch, DRAIN_BATCH);
+                if (n == 0) {
+                    if (stopping) return;
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+                for (int i = 0; i < n * EventRing.RECORD_LONGS; i++) {
+                    if (i % EventRing.RECORD_LONGS == 0 && (region == null || !region.hasRemaining())) {
+                        mapNextRegion();
+                    }
+                    region.putLong(batch[i]);
+                }
+                written += n;
+                // readers of a file that is still being written see every record up to this count
+                header.putLong(8, written);
+            }
+        } catch (IOException e) {
+            System.err.println("EventLog writer stopped: " + e.getMessage());
+        }
+    }
+
+    private void mapNextRegion() throws IOException {
+        regionIndex++;
+        long regionBytes = (long) REGION_RECORDS * RECORD_BYTES;
+        region = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + regionIndex * regionBytes, regionBytes);
+    }
+}
@@ -0,0 +1,101 @@
+package keyValueStore.events;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/* Converts a binary event log into the text history format of KVLogger,
+which keyValueStore.check.LinearizabilityChecker and tools/linearizability_checker.py parse:
+  pI: Invoke write start_ts=T seq=S key=K value=V
+  pI: Invoke read start_ts=T seq=S key=K
+  pI: Put value: V operation duration: Dns end_ts=T seq=S key=K
+  pI: Get return value: V operation duration: Dns end_ts=T seq=S key=K
+Several logs (one per replica JVM, see keyValueStore.remote.Launcher) are concatenated;
+the events carry System.nanoTime, which all JVMs of one host read from the same clock.
+Usage: EventLogDecoder <events.bin>... <history.txt> */
+public class EventLogDecoder {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: EventLogDecoder <events.bin>... <history.txt>");
+            System.exit(1);
+        }
+        String history = args[args.length - 1];
+        try (Writer out = Files.newBufferedWriter(Paths.get(history), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < args.length - 1; i++) {
+                long records = decode(args[i], out);
+                System.out.println("Decoded " + records + " events from " + args[i] + " into " + history);
+            }
+        }
+    }
+
+    public static long decode(String eventFile, Writer out) throws IOException {
+        BufferedWriter writer = out instanceof BufferedWriter ? (BufferedWriter) out : new BufferedWriter(out);
+        StringBuilder line = new StringBuilder(128);
+        try (FileChannel channel = FileChannel.open(Paths.get(eventFile), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(EventLog.HEADER_BYTES);
+            channel.read(header, 0);
+            if (header.getLong(0) != EventLog.MAGIC) {
+                throw new IOException(eventFile + " is not an event log");
+            }
+            long count = header.getLong(8);
+            ByteBuffer buf = ByteBuffer.allocate(EventLog.RECORD_BYTES * 4096);
+            long position = EventLog.HEADER_BYTES;
+            long decoded = 0;
+            while (decoded < count) {
+                buf.clear();
+                long remaining = (count - decoded) * EventLog.RECORD_BYTES;
+                if (remaining < buf.capacity()) {
+                    buf.limit((int) remaining);
+                }
+                int read = channel.read(buf, position);
+                if (read <= 0) break;
+                position += read;
+                buf.flip();
+                while (buf.remaining() >= EventLog.RECORD_BYTES) {
+                    long w0 = buf.getLong();
+                    long seq = buf.getLong();
+                    long w2 = buf.getLong();
+                    long start = buf.getLong();
+                    long end = buf.getLong();
+                    line.setLength(0);
+                    format(line, (int) (w0 >>> 32), (int) w0, seq, (int) (w2 >>> 32), (int) w2, start, end);
+                    writer.append(line).append('\n');
+                    decoded++;
+                }
+            }
+            writer.flush();
+            return decoded;
+        }
+    }
+
+    static void format(StringBuilder line, int type, int pid, long seq, int key, int value, long start, long end) {
+        line.append('p').append(pid).append(": ");
+        switch (type) {
+            case EventLog.INVOKE_WRITE:
+            case EventLog.INVOKE_READ:
+                line.append("Invoke ").append(type == EventLog.INVOKE_WRITE ? "write" : "read")
+                    .append(" start_ts=").append(start).append(" seq=").append(seq).append(" key=").append(key);
+                if (type == EventLog.INVOKE_WRITE) {
+                    line.append(" value=").append(value);
+                }
+                break;
+            case EventLog.PUT_DONE:
+            case EventLog.GET_DONE:
+                line.append(type == EventLog.PUT_DONE ? "Put value: " : "Get return value: ").append(value)
+                    .append(" operation duration: ").append(end - start).append("ns end_ts=").append(end)
+                    .append(" seq=").append(seq).append(" key=").append(key);
+                break;
+            case EventLog.CRASH:
+                line.append("process crashed");
+                break;
+            default:
+                line.append("unknown event ").append(type);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package keyValueStore.events;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Bounded many-producer / single-consumer ring of fixed-size records (RECORD_LONGS longs each).
+Producers claim a slot with a CAS on the tail and never wait: when the ring is full the
+record is dropped and counted. A slot becomes visible to the consumer once its sequence
+number is published, so the consumer never reads a half-written record. */
+final class EventRing {
+    static final int RECORD_LONGS = 5;
+
+    private final long[] data;
+    // published[i] == s + 1 once the record with sequence s was fully written into slot i
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+
+    EventRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        data = new long[size * RECORD_LONGS];
+        published = new AtomicLongArray(size);
+        mask = size - 1;
+    }
+
+    boolean offer(long w0, long w1, long w2, long w3, long w4) {
+        long seq;
+        do {
+            seq = tail.get();
+            if (seq - head.get() > mask) {
+                dropped.increment();
+                return false;
+            }
+        } while (!tail.compareAndSet(seq, seq + 1));
+        int slot = (int) (seq & mask);
+        int base = slot * RECORD_LONGS;
+        data[base] = w0;
+        data[base + 1] = w1;
+        data[base + 2] = w2;
+        data[base + 3] = w3;
+        data[base + 4] = w4;
+        // release: the record words above become visible before the slot is published
+        published.lazySet(slot, seq + 1);
+        return true;
+    }
+
+    /* Consumer side: copies up to max published records into out; returns how many. */
+    int drainTo(long[] out, int max) {
+        long h = head.get();
+        int n = 0;
+        while (n < max) {
+            int slot = (int) (h & mask);
+            if (published.get(slot) != h + 1) break;
+            System.arraycopy(data, slot * RECORD_LONGS, out, n * RECORD_LONGS, RECORD_LONGS);
+            n++;
+            h++;
+        }
+        if (n > 0) {
+            // frees the slots for producers
+            head.lazySet(h);
+        }
+        return n;
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+}
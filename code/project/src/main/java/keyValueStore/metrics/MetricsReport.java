@@ -0,0 +1,157 @@
+package keyValueStore.metrics;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/* Summary of a metrics time series (MetricsSampler) per run: the intervals whose phases waited
+longest for their quorums, and in each of them the replicas with the deepest mailboxes, with the
+message type most of their input was. Then the replicas with the deepest mailbox over the run.
+Usage: MetricsReport <metrics.csv> [replicas per interval, default 5] */
+public final class MetricsReport {
+    private static final int SPIKES = 3;
+
+    private MetricsReport() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: MetricsReport <metrics.csv> [replicas per interval]");
+            System.exit(2);
+        }
+        int top = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        String[] columns;
+        Map<String, List<String[]>> runs = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null) return;
+            columns = header.split(",");
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] row = line.split(",");
+                runs.computeIfAbsent(row[0], r -> new ArrayList<>()).add(row);
+            }
+        }
+        Columns c = new Columns(columns);
+        for (Map.Entry<String, List<String[]>> run : runs.entrySet()) {
+            report(run.getKey(), run.getValue(), c, top);
+        }
+    }
+
+    private static void report(String run, List<String[]> rows, Columns c, int top) {
+        // rows of one sample share its time; per interval the mean quorum wait over all replicas
+        Map<Long, List<String[]>> byTime = new TreeMap<>();
+        for (String[] row : rows) {
+            byTime.computeIfAbsent(Long.parseLong(row[c.time]), t -> new ArrayList<>()).add(row);
+        }
+        List<long[]> waits = new ArrayList<>();
+        long completed = 0;
+        for (Map.Entry<Long, List<String[]>> sample : byTime.entrySet()) {
+            double waited = 0;
+            long phases = 0;
+            for (String[] row : sample.getValue()) {
+                long reads = Long.parseLong(row[c.readPhases]);
+                long writes = Long.parseLong(row[c.writePhases]);
+                waited += reads * Double.parseDouble(row[c.readWait]) + writes * Double.parseDouble(row[c.writeWait]);
+                phases += reads + writes;
+                completed += Long.parseLong(row[c.completed]);
+            }
+            if (phases > 0) {
+                waits.add(new long[] {sample.getKey(), Math.round(waited / phases), phases});
+            }
+        }
+        long replicas = rows.stream().map(row -> row[c.process]).distinct().count();
+        System.out.printf(Locale.ROOT, "=== run %s: %d samples, %d replicas, %d operations completed ===%n",
+                run, byTime.size(), replicas, completed);
+        waits.sort(Comparator.comparingLong((long[] w) -> w[1]).reversed());
+        for (int i = 0; i < Math.min(SPIKES, waits.size()); i++) {
+            long[] w = waits.get(i);
+            System.out.printf(Locale.ROOT, "t=%d ms: mean quorum wait %d us over %d phases%n", w[0], w[1], w[2]);
+            List<String[]> sample = new ArrayList<>(byTime.get(w[0]));
+            sample.sort(c.hottest);
+            for (int r = 0; r < Math.min(top, sample.size()); r++) {
+                System.out.println("  " + describe(sample.get(r), c));
+            }
+        }
+        System.out.println("deepest mailboxes:");
+        Map<String, String[]> peak = new TreeMap<>();
+        for (String[] row : rows) {
+            String[] best = peak.get(row[c.process]);
+            if (best == null || Long.parseLong(row[c.mailbox]) > Long.parseLong(best[c.mailbox])) {
+                peak.put(row[c.process], row);
+            }
+        }
+        List<String[]> peaks = new ArrayList<>(peak.values());
+        peaks.sort(c.hottest);
+        for (int r = 0; r < Math.min(top, peaks.size()); r++) {
+            System.out.println("  t=" + peaks.get(r)[c.time] + " ms " + describe(peaks.get(r), c));
+        }
+    }
+
+    // "p7 mailbox 412, in flight 4, in 913 (ack 640), out 388"
+    private static String describe(String[] row, Columns c) {
+        long out = 0;
+        int dominant = c.firstIn;
+        for (int i = 0; i < c.types; i++) {
+            if (Long.parseLong(row[c.firstIn + i]) > Long.parseLong(row[dominant])) dominant = c.firstIn + i;
+            out += Long.parseLong(row[c.firstOut + i]);
+        }
+        return String.format(Locale.ROOT, "%s mailbox %s, in flight %s, in %d (%s %s), out %d", row[c.process],
+                row[c.mailbox], row[c.inFlight], c.received(row), c.names[dominant].substring(3), row[dominant], out);
+    }
+
+    /* Positions of the columns the report reads. */
+    private static final class Columns {
+        final String[] names;
+        final int time;
+        final int process;
+        final int mailbox;
+        final int inFlight;
+        final int firstIn;
+        final int firstOut;
+        final int types;
+        final int readPhases;
+        final int readWait;
+        final int writePhases;
+        final int writeWait;
+        final int completed;
+        // deepest mailbox first, then most messages received
+        final Comparator<String[]> hottest;
+
+        Columns(String[] names) {
+            this.names = names;
+            List<String> list = Arrays.asList(names);
+            time = list.indexOf("time_ms");
+            process = list.indexOf("process");
+            mailbox = list.indexOf("mailbox");
+            inFlight = list.indexOf("in_flight");
+            firstIn = list.indexOf("in_read_request");
+            firstOut = list.indexOf("out_read_request");
+            types = firstOut - firstIn;
+            readPhases = list.indexOf("read_phases");
+            readWait = list.indexOf("read_wait_us");
+            writePhases = list.indexOf("write_phases");
+            writeWait = list.indexOf("write_wait_us");
+            completed = list.indexOf("completed");
+            hottest = Comparator.comparingLong((String[] row) -> Long.parseLong(row[mailbox]))
+                    .thenComparingLong(this::received).reversed();
+        }
+
+        long received(String[] row) {
+            long in = 0;
+            for (int i = 0; i < types; i++) {
+                in += Long.parseLong(row[firstIn + i]);
+            }
+            return in;
+        }
+    }
+}
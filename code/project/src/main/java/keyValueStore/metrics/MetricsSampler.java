@@ -0,0 +1,165 @@
+package keyValueStore.metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+
+/* CSV time series of the replica metrics of this JVM (kv.metrics.file), written by a background
+thread while a benchmark runs. Every sample-interval it writes one row per replica: the mailbox
+depth and the gauges as they are, the counters as their increase since the previous row, and the
+quorum waits as the mean over the phases completed in the interval. Sorting the rows by mailbox
+or by a message column shows the hot replicas and message types of a latency spike.
+
+Columns: run, time_ms (since the run's first sample), process, mailbox, in_flight, pending_acks,
+client_queue, in_<type>..., out_<type>..., then the events of ReplicaMetrics. The first run of a JVM creates
+the file; later runs (the scenarios of a sweep) append to it under the next run number. */
+public final class MetricsSampler {
+    private static MetricsSampler shared;
+    private static final Set<Path> created = new HashSet<>();
+    private static int runs = 0;
+
+    private final Path path;
+    private final long intervalNanos;
+    private final int run;
+    private final PrintWriter out;
+    private final Thread sampler;
+    private volatile boolean running = true;
+    private final long startNanos = System.nanoTime();
+    private final Map<ReplicaMetrics, long[]> previous = new IdentityHashMap<>();
+    private final long[] current = new long[ReplicaMetrics.SLOTS];
+
+    private MetricsSampler(Path path, long intervalNanos, int run, boolean append) throws IOException {
+        this.path = path;
+        this.intervalNanos = Math.max(1_000_000, intervalNanos);
+        this.run = run;
+        Path parent = path.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        BufferedWriter writer = append
+                ? Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)
+                : Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+        this.out = new PrintWriter(writer);
+        if (!append) {
+            out.println(header());
+        }
+        this.sampler = new Thread(this::sampleLoop, "kv-metrics-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    /* Starts sampling into file unless this JVM already does; another file closes the previous one. */
+    public static synchronized void open(String file, long intervalNanos) {
+        Path p = Paths.get(file).toAbsolutePath();
+        if (shared != null && shared.path.equals(p) && shared.running) {
+            return;
+        }
+        if (shared != null) {
+            shared.close();
+        }
+        try {
+            shared = new MetricsSampler(p, intervalNanos, ++runs, !created.add(p));
+        } catch (IOException e) {
+            System.err.println("MetricsSampler initialization failed: " + e.getMessage());
+            shared = null;
+        }
+    }
+
+    /* Takes a last sample and closes the file (end of a run). */
+    public static synchronized void closeShared() {
+        if (shared != null) {
+            shared.close();
+            shared = null;
+        }
+    }
+
+    private void sampleLoop() {
+        long next = System.nanoTime() + intervalNanos;
+        while (running) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+            sample();
+            // behind schedule (a busy CPU): the next row an interval from now, not a burst of rows
+            next = Math.max(next + intervalNanos, System.nanoTime() + intervalNanos / 2);
+        }
+    }
+
+    private synchronized void sample() {
+        long timeMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        List<ReplicaMetrics> replicas = ReplicaMetrics.all();
+        StringBuilder row = new StringBuilder(256);
+        for (ReplicaMetrics replica : replicas) {
+            int mailbox = replica.getMailboxDepth();
+            replica.snapshot(current);
+            long[] before = previous.computeIfAbsent(replica, r -> new long[ReplicaMetrics.SLOTS]);
+            row.setLength(0);
+            row.append(run).append(',').append(timeMillis).append(',').append(replica.name()).append(',').append(mailbox);
+            for (int g = 0; g < ReplicaMetrics.GAUGES.length; g++) {
+                row.append(',').append(current[ReplicaMetrics.GAUGE + g]);
+            }
+            for (int i = 0; i < ReplicaMetrics.GAUGE; i++) {
+                int event = i - ReplicaMetrics.EVENT;
+                if (event == ReplicaMetrics.READ_QUORUM_WAIT_NANOS || event == ReplicaMetrics.WRITE_QUORUM_WAIT_NANOS) {
+                    // the phases counter precedes its wait
+                    long phases = current[i - 1] - before[i - 1];
+                    row.append(',').append(String.format(Locale.ROOT, "%.1f",
+                            ReplicaMetrics.meanMicros(current[i] - before[i], phases)));
+                } else {
+                    row.append(',').append(current[i] - before[i]);
+                }
+            }
+            System.arraycopy(current, 0, before, 0, ReplicaMetrics.SLOTS);
+            out.println(row);
+            if (replica.isClosed()) {
+                // its last row: the replica of a finished run is not sampled again
+                replica.forget();
+                previous.remove(replica);
+            }
+        }
+        out.flush();
+    }
+
+    private static String header() {
+        StringBuilder header = new StringBuilder("run,time_ms,process,mailbox");
+        for (String gauge : ReplicaMetrics.GAUGES) {
+            header.append(',').append(gauge);
+        }
+        for (String type : ReplicaMetrics.MESSAGE_TYPES) {
+            header.append(",in_").append(type);
+        }
+        for (String type : ReplicaMetrics.MESSAGE_TYPES) {
+            header.append(",out_").append(type);
+        }
+        for (String event : ReplicaMetrics.EVENTS) {
+            header.append(',').append(event.replace("_ns", "_us"));
+        }
+        return header.toString();
+    }
+
+    private void close() {
+        running = false;
+        LockSupport.unpark(sampler);
+        try {
+            sampler.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sample();
+        out.close();
+    }
+}
@@ -0,0 +1,343 @@
+package keyValueStore.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/* Counters and gauges of one replica (Process): messages in and out by type, responses and acks
+its operations could not use, how often a WriteRequest changed its register, how long its
+phases waited for a quorum, its read leases, and its in-flight operations, pending acks, queued
+client requests and mailbox depth.
+Read through JMX (ReplicaMetricsMXBean) and by MetricsSampler.
+
+The replica's actor is the only writer of its slots, so an update is a plain read and an
+ordered store (lazySet) without CAS or fence. Each replica is a stripe of its own, so no two
+threads ever contend on a slot; readers (JMX, the sampler thread) see whole values. The mailbox
+depth is the one value with many writers (every sender enqueues), so it is read from the mailbox
+when asked for instead of counted. */
+public final class ReplicaMetrics implements ReplicaMetricsMXBean {
+    // message types, counted as received (handled, batches unpacked) and sent (before batching);
+    // sent batches are what the outbox put on the wire (one BatchMessage, or one bare message)
+    public static final int READ_REQUEST = 0;
+    public static final int READ_RESPONSE = 1;
+    public static final int WRITE_REQUEST = 2;
+    public static final int ACK = 3;
+    public static final int FETCH_REQUEST = 4;
+    public static final int FETCH_RESPONSE = 5;
+    public static final int CATCH_UP_REQUEST = 6;
+    public static final int CATCH_UP_CHUNK = 7;
+    public static final int BATCH = 8;
+    public static final int CLIENT_REQUEST = 9;
+    public static final int CLIENT_RESPONSE = 10;
+    public static final int LEASE_REQUEST = 11;
+    public static final int LEASE_GRANT = 12;
+    public static final int LEASE_REVOKE = 13;
+    public static final int LEASE_REVOKED = 14;
+    static final String[] MESSAGE_TYPES = {"read_request", "read_response", "write_request", "ack",
+            "fetch_request", "fetch_response", "catch_up_request", "catch_up_chunk", "batch",
+            "client_request", "client_response", "lease_request", "lease_grant", "lease_revoke",
+            "lease_revoked"};
+
+    // read responses for an operation no longer in flight or past its read phase (late replies
+    // to a phase that already had its quorum), and from a process that already answered
+    public static final int STALE_READ_RESPONSES = 0;
+    public static final int DUPLICATE_READ_RESPONSES = 1;
+    // acks ignored in onAck: operation not in its write phase, another version, repeated sender
+    public static final int STALE_ACKS = 2;
+    public static final int MISMATCHED_ACKS = 3;
+    public static final int DUPLICATE_ACKS = 4;
+    // WriteRequests that overwrote the local register vs that found it as new or newer
+    public static final int WRITES_APPLIED = 5;
+    public static final int WRITES_UNCHANGED = 6;
+    // phases that reached a quorum and their summed time from sending to the quorum
+    public static final int READ_PHASES = 7;
+    public static final int READ_QUORUM_WAIT_NANOS = 8;
+    public static final int WRITE_PHASES = 9;
+    public static final int WRITE_QUORUM_WAIT_NANOS = 10;
+    public static final int PHASES_HEDGED = 11;
+    public static final int PAYLOAD_FETCHES = 12;
+    public static final int OPERATIONS_COMPLETED = 13;
+    // read leases (kv.leases): gets answered locally, leases a majority granted this process, and
+    // WriteRequests this replica held back for the holders of its grants
+    public static final int LEASE_READS = 14;
+    public static final int LEASES_ACQUIRED = 15;
+    public static final int WRITES_HELD = 16;
+    // blind writes (kv.writes.blind): puts that skipped the read phase, and operations that had
+    // to wait out the clock uncertainty before completing
+    public static final int BLIND_WRITES = 17;
+    public static final int COMMIT_WAITS = 18;
+    static final String[] EVENTS = {"stale_read_responses", "duplicate_read_responses", "stale_acks",
+            "mismatched_acks", "duplicate_acks", "writes_applied", "writes_unchanged", "read_phases",
+            "read_wait_ns", "write_phases", "write_wait_ns", "hedged", "fetches", "completed",
+            "lease_reads", "leases_acquired", "writes_held", "blind_writes", "commit_waits"};
+
+    public static final int IN_FLIGHT = 0;
+    public static final int PENDING_ACKS = 1;
+    // client requests waiting for a slot of the pipeline window
+    public static final int CLIENT_QUEUE = 2;
+    // keys this process reads locally under a lease
+    public static final int LEASES_HELD = 3;
+    static final String[] GAUGES = {"in_flight", "pending_acks", "client_queue", "leases_held"};
+
+    static final int SENT = MESSAGE_TYPES.length;
+    static final int EVENT = 2 * MESSAGE_TYPES.length;
+    static final int GAUGE = EVENT + EVENTS.length;
+    static final int SLOTS = GAUGE + GAUGES.length;
+
+    private static final Map<String, ReplicaMetrics> REPLICAS = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final AtomicLongArray slots = new AtomicLongArray(SLOTS);
+    private volatile IntSupplier mailbox = () -> 0;
+    private volatile boolean closed = false;
+    private ObjectName objectName;
+
+    private ReplicaMetrics(String name) {
+        this.name = name;
+    }
+
+    /* The metrics of replica name (p<i>), replacing those of an earlier replica of that name in
+    this JVM (the previous run of a sweep); registered as an MBean if jmx. */
+    public static ReplicaMetrics open(String name, boolean jmx) {
+        ReplicaMetrics metrics = new ReplicaMetrics(name);
+        ReplicaMetrics previous = REPLICAS.put(name, metrics);
+        if (previous != null) {
+            previous.unregister();
+        }
+        if (jmx) {
+            metrics.register();
+        }
+        return metrics;
+    }
+
+    /* The replica stopped: it leaves JMX now, and the sampler after its last row. */
+    public void close() {
+        closed = true;
+        unregister();
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    void forget() {
+        REPLICAS.remove(name, this);
+    }
+
+    /* The replicas of this JVM by name (p2 before p10). */
+    static List<ReplicaMetrics> all() {
+        List<ReplicaMetrics> all = new ArrayList<>(REPLICAS.values());
+        all.sort(Comparator.comparingInt((ReplicaMetrics m) -> m.name.length()).thenComparing(m -> m.name));
+        return all;
+    }
+
+    /* Where the depth of the replica's mailbox is read from (called by the replica). */
+    public void watchMailbox(IntSupplier depth) {
+        mailbox = depth;
+    }
+
+    public void received(int type) {
+        increment(type);
+    }
+
+    public void sent(int type) {
+        increment(SENT + type);
+    }
+
+    public void sent(int type, long count) {
+        int i = SENT + type;
+        slots.lazySet(i, slots.get(i) + count);
+    }
+
+    public void count(int event) {
+        increment(EVENT + event);
+    }
+
+    public void add(int event, long amount) {
+        int i = EVENT + event;
+        slots.lazySet(i, slots.get(i) + amount);
+    }
+
+    public void set(int gauge, long value) {
+        slots.lazySet(GAUGE + gauge, value);
+    }
+
+    private void increment(int i) {
+        slots.lazySet(i, slots.get(i) + 1);
+    }
+
+    String name() {
+        return name;
+    }
+
+    /* Every slot (received, sent, events, gauges) into out[0..SLOTS). */
+    void snapshot(long[] out) {
+        for (int i = 0; i < SLOTS; i++) {
+            out[i] = slots.get(i);
+        }
+    }
+
+    private synchronized void register() {
+        try {
+            ObjectName on = new ObjectName("keyValueStore:type=Replica,name=" + name);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(on)) {
+                server.unregisterMBean(on);
+            }
+            server.registerMBean(this, on);
+            objectName = on;
+        } catch (JMException e) {
+            System.err.println("ReplicaMetrics: cannot register " + name + ": " + e.getMessage());
+        }
+    }
+
+    private synchronized void unregister() {
+        if (objectName == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            // already replaced by a newer replica of the same name
+        }
+        objectName = null;
+    }
+
+    @Override
+    public int getMailboxDepth() {
+        return mailbox.getAsInt();
+    }
+
+    @Override
+    public long getOperationsInFlight() {
+        return slots.get(GAUGE + IN_FLIGHT);
+    }
+
+    @Override
+    public long getPendingAcks() {
+        return slots.get(GAUGE + PENDING_ACKS);
+    }
+
+    @Override
+    public long getClientQueue() {
+        return slots.get(GAUGE + CLIENT_QUEUE);
+    }
+
+    @Override
+    public long getLeasesHeld() {
+        return slots.get(GAUGE + LEASES_HELD);
+    }
+
+    @Override
+    public Map<String, Long> getMessagesReceived() {
+        return byType(0);
+    }
+
+    @Override
+    public Map<String, Long> getMessagesSent() {
+        return byType(SENT);
+    }
+
+    private Map<String, Long> byType(int offset) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int t = 0; t < MESSAGE_TYPES.length; t++) {
+            counts.put(MESSAGE_TYPES[t], slots.get(offset + t));
+        }
+        return counts;
+    }
+
+    private long event(int event) {
+        return slots.get(EVENT + event);
+    }
+
+    @Override
+    public long getStaleReadResponses() {
+        return event(STALE_READ_RESPONSES);
+    }
+
+    @Override
+    public long getDuplicateReadResponses() {
+        return event(DUPLICATE_READ_RESPONSES);
+    }
+
+    @Override
+    public long getIgnoredAcks() {
+        return event(STALE_ACKS) + event(MISMATCHED_ACKS) + event(DUPLICATE_ACKS);
+    }
+
+    @Override
+    public long getWritesApplied() {
+        return event(WRITES_APPLIED);
+    }
+
+    @Override
+    public long getWritesUnchanged() {
+        return event(WRITES_UNCHANGED);
+    }
+
+    @Override
+    public long getReadPhases() {
+        return event(READ_PHASES);
+    }
+
+    @Override
+    public double getMeanReadQuorumWaitMicros() {
+        return meanMicros(event(READ_QUORUM_WAIT_NANOS), event(READ_PHASES));
+    }
+
+    @Override
+    public long getWritePhases() {
+        return event(WRITE_PHASES);
+    }
+
+    @Override
+    public double getMeanWriteQuorumWaitMicros() {
+        return meanMicros(event(WRITE_QUORUM_WAIT_NANOS), event(WRITE_PHASES));
+    }
+
+    @Override
+    public long getPhasesHedged() {
+        return event(PHASES_HEDGED);
+    }
+
+    @Override
+    public long getPayloadFetches() {
+        return event(PAYLOAD_FETCHES);
+    }
+
+    @Override
+    public long getOperationsCompleted() {
+        return event(OPERATIONS_COMPLETED);
+    }
+
+    @Override
+    public long getLeaseReads() {
+        return event(LEASE_READS);
+    }
+
+    @Override
+    public long getWritesHeld() {
+        return event(WRITES_HELD);
+    }
+
+    @Override
+    public long getBlindWrites() {
+        return event(BLIND_WRITES);
+    }
+
+    @Override
+    public long getCommitWaits() {
+        return event(COMMIT_WAITS);
+    }
+
+    static double meanMicros(long nanos, long count) {
+        return count == 0 ? 0 : nanos / 1000.0 / count;
+    }
+}
@@ -0,0 +1,53 @@
+package keyValueStore.metrics;
+
+import java.util.Map;
+
+/* JMX view of one replica (keyValueStore:type=Replica,name=p<i>). Counters run from the start
+of the replica; the message maps are keyed by message type. */
+public interface ReplicaMetricsMXBean {
+    int getMailboxDepth();
+
+    long getOperationsInFlight();
+
+    long getPendingAcks();
+
+    long getClientQueue();
+
+    long getLeasesHeld();
+
+    Map<String, Long> getMessagesReceived();
+
+    Map<String, Long> getMessagesSent();
+
+    long getStaleReadResponses();
+
+    long getDuplicateReadResponses();
+
+    long getIgnoredAcks();
+
+    long getWritesApplied();
+
+    long getWritesUnchanged();
+
+    long getReadPhases();
+
+    double getMeanReadQuorumWaitMicros();
+
+    long getWritePhases();
+
+    double getMeanWriteQuorumWaitMicros();
+
+    long getPhasesHedged();
+
+    long getPayloadFetches();
+
+    long getOperationsCompleted();
+
+    long getLeaseReads();
+
+    long getWritesHeld();
+
+    long getBlindWrites();
+
+    long getCommitWaits();
+}
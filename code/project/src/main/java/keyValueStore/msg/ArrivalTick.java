@@ -0,0 +1,9 @@
+package keyValueStore.msg;
+
+import java.io.Serializable;
+
+/* Sent by a process to itself in an open-loop workload: start the operations that have arrived. */
+public class ArrivalTick implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public static final ArrivalTick INSTANCE = new ArrivalTick();
+}
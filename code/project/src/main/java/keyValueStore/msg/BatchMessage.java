@@ -0,0 +1,18 @@
+package keyValueStore.msg;
+
+import java.io.Serializable;
+
+/* Several protocol messages (ReadRequest, ProcessMessage, WriteRequest, Ack)
+from one sender to one receiver, delivered as a single mailbox entry. */
+public class BatchMessage implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final Object[] messages;
+
+    public BatchMessage(Object[] messages) {
+        this.messages = messages;
+    }
+
+    public Object[] getMessages() {
+        return messages;
+    }
+}
@@ -0,0 +1,62 @@
+package keyValueStore.msg;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/* A peer's answer to a CatchUpRequest: the registers of fromKey..toKey-1 it holds a newer
+version (timestamp) of than the requester, as parallel arrays (possibly empty), with their
+payloads when values carry one (kv.values.size). */
+public class CatchUpChunk implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final int fromKey;
+    private final int toKey;
+    private final int processNumber;
+    private final int[] keys;
+    private final int[] values;
+    private final long[] timestamps;
+    // null without payloads; not Serializable, KvSerializer carries them between JVMs
+    private final transient ByteBuffer[] payloads;
+
+    public CatchUpChunk(int fromKey, int toKey, int processNumber, int[] keys, int[] values, long[] timestamps) {
+        this(fromKey, toKey, processNumber, keys, values, timestamps, null);
+    }
+
+    public CatchUpChunk(int fromKey, int toKey, int processNumber, int[] keys, int[] values, long[] timestamps,
+                        ByteBuffer[] payloads) {
+        this.fromKey = fromKey;
+        this.toKey = toKey;
+        this.processNumber = processNumber;
+        this.keys = keys;
+        this.values = values;
+        this.timestamps = timestamps;
+        this.payloads = payloads;
+    }
+
+    public int getFromKey() {
+        return fromKey;
+    }
+
+    public int getToKey() {
+        return toKey;
+    }
+
+    public int getProcessNumber() {
+        return processNumber;
+    }
+
+    public int[] getKeys() {
+        return keys;
+    }
+
+    public int[] getValues() {
+        return values;
+    }
+
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+
+    public ByteBuffer[] getPayloads() {
+        return payloads;
+    }
+}
@@ -0,0 +1,30 @@
+package keyValueStore.msg;
+
+import java.io.Serializable;
+
+/* Sent by a recovering process to a peer: the keys fromKey..toKey-1 with the requester's own
+version (timestamp) of each; the peer answers with the registers it holds newer versions of. */
+public class CatchUpRequest implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final int fromKey;
+    private final int toKey;
+    private final long[] timestamps;
+
+    public CatchUpRequest(int fromKey, int toKey, long[] timestamps) {
+        this.fromKey = fromKey;
+        this.toKey = toKey;
+        this.timestamps = timestamps;
+    }
+
+    public int getFromKey() {
+        return fromKey;
+    }
+
+    public int getToKey() {
+        return toKey;
+    }
+
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+}
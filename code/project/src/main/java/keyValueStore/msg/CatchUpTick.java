@@ -0,0 +1,9 @@
+package keyValueStore.msg;
+
+import java.io.Serializable;
+
+/* Sent by a recovering process to itself: re-request the chunks whose answers are overdue. */
+public class CatchUpTick implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public static final CatchUpTick INSTANCE = new CatchUpTick();
+}
@@ -0,0 +1,37 @@
+package keyValueStore.msg;
+
+import java.io.Serializable;
+
+/* A put or get of a client (keyValueStore.client.KeyValueStore) for the process it is sent to,
+which coordinates it like one of its own operations and answers the sender with a
+ClientResponse carrying the same request id. */
+public class ClientRequest implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final long requestId;
+    private final int key;
+    private final boolean write;
+    private final int value;
+
+    public ClientRequest(long requestId, int key, boolean write, int value) {
+        this.requestId = requestId;
+        this.key = key;
+        this.write = write;
+        this.value = value;
+    }
+
+    public long getRequestId() {
+        return requestId;
+    }
+
+    public int getKey() {
+        return key;
+    }
+
+    public boolean isWrite() {
+        return write;
+    }
+
+    public int getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,30 @@
+package keyValueStore.msg;
+
+import java.io.Serializable;
+
+/* The outcome of a ClientRequest: the value a get returned (a put's own value), or rejected when
+the coordinator's client queue was full and the request was not started. */
+public class ClientResponse implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final long requestId;
+    private final int value;
+    private final boolean rejected;
+
+    public ClientResponse(long requestId, int value, boolean rejected) {
+        this.requestId = requestId;
+        this.value = value;
+        this.rejected = rejected;
+    }
+
+    public long getRequestId() {
+        return requestId;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public boolean isRejected() {
+        return rejected;
+    }
+}
@@ -0,0 +1,10 @@
+package keyValueStore.msg;
+
+import java.io.Serializable;
+
+/* Sent by a process to itself while operations wait out the clock uncertainty (kv.writes.blind):
+complete those whose wait is over. */
+public class CommitTick implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public static final CommitTick INSTANCE = new CommitTick();
+}
@@ -1,6 +1,65 @@
 package keyValueStore.msg;
 import java.io.Serializable;
+import keyValueStore.OperationLatencies;
 
 public class DoneMessage implements Serializable {
     private static final long serialVersionUID = 1L;
-}
\ No newline at end of file
+    // latency histograms of the sender's operations
+    private final OperationLatencies latencies;
+    // messages the sender put on the wire (a batch counts once)
+    private final long messagesSent;
+    // gets completed after one round-trip vs. gets that ran the write-back phase
+    private final int fastReads;
+    private final int slowReads;
+    // updates the sender's write-ahead log took so far, and the group commits that made them durable
+    private final long walRecords;
+    private final long walGroups;
+    // payload bytes of the messages the sender put on the wire (kv.values.size)
+    private final long payloadBytesSent;
+    // gets answered under a read lease without a message (kv.leases)
+    private final int leaseReads;
+
+    public DoneMessage(OperationLatencies latencies, long messagesSent, int fastReads, int slowReads,
+                       long walRecords, long walGroups, long payloadBytesSent, int leaseReads) {
+        this.latencies = latencies;
+        this.messagesSent = messagesSent;
+        this.fastReads = fastReads;
+        this.slowReads = slowReads;
+        this.walRecords = walRecords;
+        this.walGroups = walGroups;
+        this.payloadBytesSent = payloadBytesSent;
+        this.leaseReads = leaseReads;
+    }
+
+    public OperationLatencies getLatencies() {
+        return latencies;
+    }
+
+    public long getMessagesSent() {
+        return messagesSent;
+    }
+
+    public int getFastReads() {
+        return fastReads;
+    }
+
+    public int getSlowReads() {
+        return slowReads;
+    }
+
+    public long getWalRecords() {
+        return walRecords;
+    }
+
+    public long getWalGroups() {
+        return walGroups;
+    }
+
+    public long getPayloadBytesSent() {
+        return payloadBytesSent;
+    }
+
+    public int getLeaseReads() {
+        return leaseReads;
+    }
+}
@@ -0,0 +1,36 @@
+package keyValueStore.msg;
+
+import java.io.Serializable;
+
+/* Sent by a get whose read quorum only reported (timestamp, value) (kv.values.digest-reads) to
+one replica that reported the highest: send me the payload of that version. */
+public class FetchRequest implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final int key;
+    private final int value;
+    private final long timestamp;
+    private final int sequenceNumber;
+
+    public FetchRequest(int key, int value, long timestamp, int sequenceNumber) {
+        this.key = key;
+        this.value = value;
+        this.timestamp = timestamp;
+        this.sequenceNumber = sequenceNumber;
+    }
+
+    public int getKey() {
+        return key;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getSequenceNumber() {
+        return sequenceNumber;
+    }
+}
@@ -0,0 +1,51 @@
+package keyValueStore.msg;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/* A replica's answer to a FetchRequest: its current (value, timestamp) of the key with the
+payload, which may be newer than the version asked for. */
+public class FetchResponse implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final int key;
+    private final int value;
+    private final long timestamp;
+    private final int sequenceNumber;
+    private final int processNumber;
+    // not Serializable: KvSerializer carries it between JVMs
+    private final transient ByteBuffer payload;
+
+    public FetchResponse(int key, int value, long timestamp, int sequenceNumber, int processNumber,
+                         ByteBuffer payload) {
+        this.key = key;
+        this.value = value;
+        this.timestamp = timestamp;
+        this.sequenceNumber = sequenceNumber;
+        this.processNumber = processNumber;
+        this.payload = payload;
+    }
+
+    public int getKey() {
+        return key;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public int getProcessNumber() {
+        return processNumber;
+    }
+
+    public ByteBuffer getPayload() {
+        return payload;
+    }
+}
@@ -0,0 +1,9 @@
+package keyValueStore.msg;
+
+import java.io.Serializable;
+
+/* Sent by a process to itself while gets wait for fetched payloads: retry the overdue fetches. */
+public class FetchTick implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public static final FetchTick INSTANCE = new FetchTick();
+}
@@ -0,0 +1,9 @@
+package keyValueStore.msg;
+
+import java.io.Serializable;
+
+/* Sent by a process to itself: flush the messages buffered for its peers. */
+public class FlushMessage implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public static final FlushMessage INSTANCE = new FlushMessage();
+}
@@ -0,0 +1,10 @@
+package keyValueStore.msg;
+
+import java.io.Serializable;
+
+/* Sent by a process to itself while quorum-targeted phases are in flight: hedge the phases
+still short of their quorum when no reply arrives to trigger the check. */
+public class HedgeTick implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public static final HedgeTick INSTANCE = new HedgeTick();
+}
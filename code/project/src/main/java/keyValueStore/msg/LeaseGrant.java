@@ -0,0 +1,36 @@
+package keyValueStore.msg;
+
+import java.io.Serializable;
+
+/* Answer of a replica to a LeaseRequest: granted, or refused because it stores a newer version of
+the key, holds writes of it back already or has not caught up after a restart. */
+public class LeaseGrant implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final int key;
+    private final int leaseId;
+    private final int processNumber;
+    private final boolean granted;
+
+    public LeaseGrant(int key, int leaseId, int processNumber, boolean granted) {
+        this.key = key;
+        this.leaseId = leaseId;
+        this.processNumber = processNumber;
+        this.granted = granted;
+    }
+
+    public int getKey() {
+        return key;
+    }
+
+    public int getLeaseId() {
+        return leaseId;
+    }
+
+    public int getProcessNumber() {
+        return processNumber;
+    }
+
+    public boolean isGranted() {
+        return granted;
+    }
+}
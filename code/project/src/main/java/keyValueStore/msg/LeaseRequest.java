@@ -0,0 +1,43 @@
+package keyValueStore.msg;
+
+import java.io.Serializable;
+
+/* Sent by a coordinator that completed an operation on key with (value, timestamp) to all
+processes (kv.leases): promise to hold back newer writes of key for me for a lease duration, so I
+can serve its gets locally. leaseId tells the grants of this request from those of earlier ones. */
+public class LeaseRequest implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final int key;
+    private final int value;
+    private final long timestamp;
+    private final int leaseId;
+    private final int processNumber;
+
+    public LeaseRequest(int key, int value, long timestamp, int leaseId, int processNumber) {
+        this.key = key;
+        this.value = value;
+        this.timestamp = timestamp;
+        this.leaseId = leaseId;
+        this.processNumber = processNumber;
+    }
+
+    public int getKey() {
+        return key;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getLeaseId() {
+        return leaseId;
+    }
+
+    public int getProcessNumber() {
+        return processNumber;
+    }
+}
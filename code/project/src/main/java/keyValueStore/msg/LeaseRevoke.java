@@ -0,0 +1,18 @@
+package keyValueStore.msg;
+
+import java.io.Serializable;
+
+/* Sent by a replica holding back a newer write of key to each holder of a lease on it: stop
+reading key locally and confirm (LeaseRevoked), so the write need not wait for the lease to expire. */
+public class LeaseRevoke implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final int key;
+
+    public LeaseRevoke(int key) {
+        this.key = key;
+    }
+
+    public int getKey() {
+        return key;
+    }
+}
@@ -0,0 +1,23 @@
+package keyValueStore.msg;
+
+import java.io.Serializable;
+
+/* Answer of a lease holder to a LeaseRevoke: process no longer reads key locally. */
+public class LeaseRevoked implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final int key;
+    private final int processNumber;
+
+    public LeaseRevoked(int key, int processNumber) {
+        this.key = key;
+        this.processNumber = processNumber;
+    }
+
+    public int getKey() {
+        return key;
+    }
+
+    public int getProcessNumber() {
+        return processNumber;
+    }
+}
@@ -0,0 +1,10 @@
+package keyValueStore.msg;
+
+import java.io.Serializable;
+
+/* Sent by a process to itself while it has granted leases: forget the expired ones and apply the
+writes they held back. */
+public class LeaseTick implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public static final LeaseTick INSTANCE = new LeaseTick();
+}
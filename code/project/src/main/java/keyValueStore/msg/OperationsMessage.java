@@ -5,12 +5,33 @@ import java.io.Serializable;
 public class OperationsMessage implements Serializable {
     private static final long serialVersionUID = 1L;
     private final int numOperations;
+    private final int numKeys;
+    // share of gets (0-100) spread evenly over the 2M operations; -1 = M puts, then M gets (8.REQ)
+    private final int readPercent;
 
     public OperationsMessage(int numOperations) {
+        this(numOperations, 1);
+    }
+
+    public OperationsMessage(int numOperations, int numKeys) {
+        this(numOperations, numKeys, -1);
+    }
+
+    public OperationsMessage(int numOperations, int numKeys, int readPercent) {
         this.numOperations = numOperations;
+        this.numKeys = numKeys;
+        this.readPercent = readPercent;
     }
 
     public int getNumOperations() {
         return numOperations;
     }
+
+    public int getNumKeys() {
+        return numKeys;
+    }
+
+    public int getReadPercent() {
+        return readPercent;
+    }
 }
@@ -1,24 +1,43 @@
 package keyValueStore.msg;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 
 public class ProcessMessage implements Serializable{
     private static final long serialVersionUID = 1L;
+    private final int key;
     private final int value;
-    private final int timestamp;
+    private final long timestamp;
     private final int sequenceNumber;
+    // number of the responding process, used to count unique responders
+    private final int processNumber;
+    // payload of the value, with kv.values.digest-reads = off only (not Serializable: KvSerializer
+    // carries it between JVMs)
+    private final transient ByteBuffer payload;
 
-    public ProcessMessage(int value, int timestamp, int sequenceNumber) {
+    public ProcessMessage(int key, int value, long timestamp, int sequenceNumber, int processNumber) {
+        this(key, value, timestamp, sequenceNumber, processNumber, null);
+    }
+
+    public ProcessMessage(int key, int value, long timestamp, int sequenceNumber, int processNumber,
+                          ByteBuffer payload) {
+        this.key = key;
         this.value = value;
         this.timestamp = timestamp;
         this.sequenceNumber = sequenceNumber;
+        this.processNumber = processNumber;
+        this.payload = payload;
+    }
+
+    public int getKey() {
+        return key;
     }
 
     public int getValue() {
         return value;
     }
 
-    public int getTimestamp() {
+    public long getTimestamp() {
         return timestamp;
     }
 
@@ -26,4 +45,11 @@ public class ProcessMessage implements Serializable{
         return sequenceNumber;
     }
 
+    public int getProcessNumber() {
+        return processNumber;
+    }
+
+    public ByteBuffer getPayload() {
+        return payload;
+    }
 }
@@ -4,14 +4,19 @@ import java.io.Serializable;
 
 public class ReadRequest implements Serializable{
     private static final long serialVersionUID = 1L;
+    private final int key;
     private final int sequenceNumber;
 
-    public ReadRequest(int sequenceNumber) {
+    public ReadRequest(int key, int sequenceNumber) {
+        this.key = key;
         this.sequenceNumber = sequenceNumber;
     }
 
+    public int getKey() {
+        return key;
+    }
+
     public int getSequenceNumber() {
         return sequenceNumber;
     }
 }
-
@@ -0,0 +1,9 @@
+package keyValueStore.msg;
+
+import java.io.Serializable;
+
+/* Restarts a crashed process: it reloads its registers from durable storage (or starts empty
+without persistence) and catches up with its peers before serving reads again. */
+public class RecoverMessage implements Serializable {
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,44 @@
+package keyValueStore.msg;
+
+import java.io.Serializable;
+
+/* Sent by a process to the monitor once it has caught up after a RecoverMessage. */
+public class RecoveredMessage implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final int processNumber;
+    // from the RecoverMessage until the last chunk was applied
+    private final long recoveryNanos;
+    // of which rebuilding the registers from the snapshot and the log
+    private final long replayNanos;
+    // registers received from the peers and chunks of the keyspace requested
+    private final long keysReceived;
+    private final int chunks;
+
+    public RecoveredMessage(int processNumber, long recoveryNanos, long replayNanos, long keysReceived, int chunks) {
+        this.processNumber = processNumber;
+        this.recoveryNanos = recoveryNanos;
+        this.replayNanos = replayNanos;
+        this.keysReceived = keysReceived;
+        this.chunks = chunks;
+    }
+
+    public int getProcessNumber() {
+        return processNumber;
+    }
+
+    public long getRecoveryNanos() {
+        return recoveryNanos;
+    }
+
+    public long getReplayNanos() {
+        return replayNanos;
+    }
+
+    public long getKeysReceived() {
+        return keysReceived;
+    }
+
+    public int getChunks() {
+        return chunks;
+    }
+}
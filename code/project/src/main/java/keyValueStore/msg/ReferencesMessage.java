@@ -2,14 +2,21 @@ package keyValueStore.msg;
 import akka.actor.ActorRef;
 import java.util.List;
 import java.io.Serializable;
+import keyValueStore.shard.ShardMap;
 
 public class ReferencesMessage implements Serializable {
     private final List<ActorRef> references;
     private final ActorRef monitor; // Added field for automatic termination
+    // shard membership (kv.sharding; null: every process replicates every key)
+    private final ShardMap shards;
 
     public ReferencesMessage(List<ActorRef> processes, ActorRef monitor) {
+        this(processes, monitor, null);
+    }
+    public ReferencesMessage(List<ActorRef> processes, ActorRef monitor, ShardMap shards) {
         this.references = processes;
         this.monitor = monitor;
+        this.shards = shards;
     }
     public List<ActorRef> getReferences() {
         return references;
@@ -17,4 +24,7 @@ public class ReferencesMessage implements Serializable {
     public ActorRef getMonitor() {
         return monitor;
     }
-}
\ No newline at end of file
+    public ShardMap getShards() {
+        return shards;
+    }
+}
@@ -0,0 +1,26 @@
+package keyValueStore.msg;
+
+import java.io.Serializable;
+
+/* Sent to a process by its write-ahead log: every update up to lsn is durable,
+so the Acks waiting for them can go out. The generation names the log that sent it: a log
+reopened after a crash counts its lsns from 0 again, so a late report of the previous one
+must not release Acks of the new one. */
+public class WalSynced implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final int generation;
+    private final long lsn;
+
+    public WalSynced(int generation, long lsn) {
+        this.generation = generation;
+        this.lsn = lsn;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    public long getLsn() {
+        return lsn;
+    }
+}
@@ -0,0 +1,18 @@
+package keyValueStore.msg;
+
+import java.io.Serializable;
+import keyValueStore.workload.WorkloadSpec;
+
+/* Replaces the fixed M puts / M gets schedule of OperationsMessage with a workload run. */
+public class WorkloadMessage implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final WorkloadSpec spec;
+
+    public WorkloadMessage(WorkloadSpec spec) {
+        this.spec = spec;
+    }
+
+    public WorkloadSpec getSpec() {
+        return spec;
+    }
+}
@@ -1,22 +1,46 @@
 package keyValueStore.msg;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 
 public class WriteRequest implements Serializable{
     private static final long serialVersionUID = 1L;
+    private final int key;
     private final int value;
-    private final int timestamp;
+    private final long timestamp;
+    private final int sequenceNumber;
+    // payload of the value (null: none); not Serializable, KvSerializer carries it between JVMs
+    private final transient ByteBuffer payload;
 
-    public WriteRequest(int value, int timestamp) {
+    public WriteRequest(int key, int value, long timestamp, int sequenceNumber) {
+        this(key, value, timestamp, sequenceNumber, null);
+    }
+
+    public WriteRequest(int key, int value, long timestamp, int sequenceNumber, ByteBuffer payload) {
+        this.key = key;
         this.value = value;
         this.timestamp = timestamp;
+        this.sequenceNumber = sequenceNumber;
+        this.payload = payload;
+    }
+
+    public int getKey() {
+        return key;
     }
 
     public int getValue() {
         return value;
     }
 
-    public int getTimestamp() {
+    public long getTimestamp() {
         return timestamp;
     }
+
+    public int getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public ByteBuffer getPayload() {
+        return payload;
+    }
 }
@@ -0,0 +1,104 @@
+package keyValueStore.net;
+
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import com.typesafe.config.Config;
+
+/* How one emulated link behaves: its one-way delay (latency plus a random part drawn from the
+distribution with size jitter), the share of messages lost on the wire and its bandwidth. */
+public final class LinkProfile {
+    public enum Distribution {
+        // latency exactly
+        FIXED,
+        // latency +- jitter
+        UNIFORM,
+        // mean latency, standard deviation jitter, cut at 0
+        NORMAL,
+        // latency plus an exponential tail of mean jitter
+        EXPONENTIAL;
+
+        static Distribution of(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("unknown kv.network distribution " + name
+                        + " (fixed, uniform, normal or exponential)");
+            }
+        }
+    }
+
+    final long latencyNanos;
+    final long jitterNanos;
+    final Distribution distribution;
+    final double loss;
+    // bytes per second; 0 = unlimited
+    final long bandwidth;
+
+    LinkProfile(long latencyNanos, long jitterNanos, Distribution distribution, double loss, long bandwidth) {
+        if (loss < 0 || loss >= 1) {
+            throw new IllegalArgumentException("kv.network loss must be in [0, 1): " + loss);
+        }
+        this.latencyNanos = Math.max(0, latencyNanos);
+        this.jitterNanos = Math.max(0, jitterNanos);
+        this.distribution = distribution;
+        this.loss = loss;
+        this.bandwidth = Math.max(0, bandwidth);
+    }
+
+    /* The settings of c, each one falling back to those of defaults (null: c is complete). */
+    static LinkProfile fromConfig(Config c, LinkProfile defaults) {
+        return new LinkProfile(
+                c.hasPath("latency") ? c.getDuration("latency", TimeUnit.NANOSECONDS) : defaults.latencyNanos,
+                c.hasPath("jitter") ? c.getDuration("jitter", TimeUnit.NANOSECONDS) : defaults.jitterNanos,
+                c.hasPath("distribution") ? Distribution.of(c.getString("distribution")) : defaults.distribution,
+                c.hasPath("loss") ? c.getDouble("loss") : defaults.loss,
+                c.hasPath("bandwidth") ? c.getBytes("bandwidth") : defaults.bandwidth);
+    }
+
+    /* One draw of the one-way delay. */
+    long delay(SplittableRandom random) {
+        if (jitterNanos == 0) return latencyNanos;
+        double d;
+        switch (distribution) {
+            case UNIFORM:
+                d = latencyNanos + (2 * random.nextDouble() - 1) * jitterNanos;
+                break;
+            case NORMAL:
+                d = latencyNanos + gaussian(random) * jitterNanos;
+                break;
+            case EXPONENTIAL:
+                d = latencyNanos - Math.log(1 - random.nextDouble()) * jitterNanos;
+                break;
+            default:
+                d = latencyNanos;
+        }
+        return Math.max(0, (long) d);
+    }
+
+    // Box-Muller; SplittableRandom has no nextGaussian
+    private static double gaussian(SplittableRandom random) {
+        double u = 1 - random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    boolean isIdeal() {
+        return latencyNanos == 0 && jitterNanos == 0 && loss == 0 && bandwidth == 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder(micros(latencyNanos));
+        if (jitterNanos > 0) {
+            s.append(distribution == Distribution.EXPONENTIAL ? "+exp" : distribution == Distribution.NORMAL ? "~" : "+-")
+                    .append(micros(jitterNanos));
+        }
+        if (loss > 0) s.append(String.format(Locale.ROOT, " loss %.1f%%", 100 * loss));
+        if (bandwidth > 0) s.append(' ').append(bandwidth >> 20).append("MiB/s");
+        return s.toString();
+    }
+
+    static String micros(long nanos) {
+        return nanos >= 1_000_000 && nanos % 1_000_000 == 0 ? nanos / 1_000_000 + "ms" : nanos / 1000 + "us";
+    }
+}
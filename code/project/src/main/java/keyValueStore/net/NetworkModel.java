@@ -0,0 +1,147 @@
+package keyValueStore.net;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import com.typesafe.config.Config;
+
+/* The emulated network of kv.network: a LinkProfile for every ordered pair of processes (the
+defaults, replaced by the first matching entry of links) and the timed partitions. */
+public final class NetworkModel {
+    private final long seed;
+    private final LinkProfile defaults;
+    private final List<LinkOverride> links = new ArrayList<>();
+    private final List<Partition> partitions = new ArrayList<>();
+    private final long retransmitNanos;
+    private final boolean fifo;
+
+    private NetworkModel(Config network) {
+        this.seed = network.getLong("seed");
+        this.defaults = LinkProfile.fromConfig(network, null);
+        this.retransmitNanos = Math.max(1, network.getDuration("retransmit-timeout", TimeUnit.NANOSECONDS));
+        this.fifo = network.getBoolean("fifo");
+        for (Config link : network.getConfigList("links")) {
+            LinkProfile profile = LinkProfile.fromConfig(link, defaults);
+            boolean bothWays = !link.hasPath("both-ways") || link.getBoolean("both-ways");
+            links.add(new LinkOverride(processes(link, "from"), processes(link, "to"), bothWays, profile));
+        }
+        for (Config p : network.getConfigList("partitions")) {
+            long at = p.getDuration("at", TimeUnit.NANOSECONDS);
+            partitions.add(new Partition(at, at + p.getDuration("duration", TimeUnit.NANOSECONDS),
+                    p.getIntList("side")));
+        }
+    }
+
+    /* The model of kv.network, or null when it is off. */
+    public static NetworkModel fromConfig(Config kv) {
+        Config network = kv.getConfig("network");
+        return network.getBoolean("enabled") ? new NetworkModel(network) : null;
+    }
+
+    private static List<Integer> processes(Config link, String side) {
+        return link.hasPath(side) ? link.getIntList(side) : new ArrayList<>();
+    }
+
+    LinkProfile profile(int from, int to) {
+        for (LinkOverride link : links) {
+            if (link.matches(from, to)) return link.profile;
+        }
+        return defaults;
+    }
+
+    /* When a message sent at elapsed (since the network started) from -> to may cross: elapsed,
+    or the end of the partition that separates them. */
+    long crossingTime(int from, int to, long elapsed) {
+        long t = elapsed;
+        // a heal can fall into another partition; settle once no partition holds the message
+        for (boolean moved = true; moved; ) {
+            moved = false;
+            for (Partition p : partitions) {
+                if (t >= p.from && t < p.until && p.separates(from, to)) {
+                    t = p.until;
+                    moved = true;
+                }
+            }
+        }
+        return t;
+    }
+
+    long getSeed() {
+        return seed;
+    }
+
+    long getRetransmitNanos() {
+        return retransmitNanos;
+    }
+
+    boolean isFifo() {
+        return fifo;
+    }
+
+    boolean hasPartitions() {
+        return !partitions.isEmpty();
+    }
+
+    /* "1ms+-200us, [3, 4]<->* 20ms, partition [0, 1] at 1500ms for 1000ms" for the result tables. */
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder(defaults.toString());
+        for (LinkOverride link : links) {
+            s.append(", ").append(link);
+        }
+        for (Partition p : partitions) {
+            s.append(", ").append(p);
+        }
+        return s.toString();
+    }
+
+    private static final class LinkOverride {
+        final List<Integer> from;
+        final List<Integer> to;
+        final boolean bothWays;
+        final LinkProfile profile;
+
+        LinkOverride(List<Integer> from, List<Integer> to, boolean bothWays, LinkProfile profile) {
+            this.from = from;
+            this.to = to;
+            this.bothWays = bothWays;
+            this.profile = profile;
+        }
+
+        // an empty list stands for every process
+        boolean matches(int a, int b) {
+            return (in(from, a) && in(to, b)) || (bothWays && in(from, b) && in(to, a));
+        }
+
+        private static boolean in(List<Integer> processes, int p) {
+            return processes.isEmpty() || processes.contains(p);
+        }
+
+        @Override
+        public String toString() {
+            return (from.isEmpty() ? "*" : from.toString()) + (bothWays ? "<->" : "->")
+                    + (to.isEmpty() ? "*" : to.toString()) + " " + profile;
+        }
+    }
+
+    private static final class Partition {
+        final long from;
+        final long until;
+        final List<Integer> side;
+
+        Partition(long from, long until, List<Integer> side) {
+            this.from = from;
+            this.until = until;
+            this.side = side;
+        }
+
+        boolean separates(int a, int b) {
+            return side.contains(a) != side.contains(b);
+        }
+
+        @Override
+        public String toString() {
+            return "partition " + side + " at " + LinkProfile.micros(from) + " for " + LinkProfile.micros(until - from);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package keyValueStore.net;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import akka.actor.ActorRef;
+
+/* Emulated links between the processes of this JVM (kv.network), for benchmarks that should
+behave like a network without one. A process hands every message for a peer to its Endpoint,
+which works out when the message arrives:
+- the link's delay (NetworkModel, LinkProfile);
+- after the messages ahead of it on a bandwidth-capped link have left, plus its own bytes;
+- after a resend for every time it is lost: retransmit-timeout, doubling per loss, as TCP under
+  Akka's remoting would, so loss shows as delay and the protocol sees no gaps;
+- after the partition that separates the two processes heals (held, not dropped);
+- not before the previous message of the link with fifo on.
+Messages due now go out as plain tells; the others wait in a delay queue drained by one daemon
+thread per JVM, so delays under about 100 us come out longer than asked for.
+
+Every link draws from a random generator of its own, seeded from kv.network.seed and the two
+process numbers: the k-th message of a link gets the same delay and loss in every run. Messages
+to the process itself are local and go out directly. Elapsed time for the partitions runs from
+the moment the network was opened (when the processes of the run were created). */
+public final class SimulatedNetwork {
+    private static SimulatedNetwork shared;
+
+    private final NetworkModel model;
+    private final long startNanos = System.nanoTime();
+    private final DelayQueue<Delivery> queue = new DelayQueue<>();
+    private final AtomicLong order = new AtomicLong();
+    private final AtomicLong delayed = new AtomicLong();
+    private final AtomicLong retransmitted = new AtomicLong();
+    private final Thread deliverer;
+    private volatile boolean running = true;
+
+    private SimulatedNetwork(NetworkModel model) {
+        this.model = model;
+        this.deliverer = new Thread(this::deliverLoop, "kv-network");
+        deliverer.setDaemon(true);
+        deliverer.start();
+    }
+
+    /* The network of this JVM's current run, started by the first process that asks for it. */
+    public static synchronized SimulatedNetwork open(NetworkModel model) {
+        if (shared == null) {
+            shared = new SimulatedNetwork(model);
+        }
+        return shared;
+    }
+
+    /* End of a run: messages still in flight are discarded, the next run starts a new network. */
+    public static synchronized void closeShared() {
+        if (shared != null) {
+            shared.close();
+            shared = null;
+        }
+    }
+
+    /* The links from process `from` to each of the n processes. */
+    public Endpoint endpoint(int from, int n) {
+        return new Endpoint(from, n);
+    }
+
+    public NetworkModel getModel() {
+        return model;
+    }
+
+    private void deliverLoop() {
+        while (running) {
+            try {
+                Delivery d = queue.take();
+                d.to.tell(d.msg, d.sender);
+                d.link.queued.decrementAndGet(d.peer);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void close() {
+        running = false;
+        deliverer.interrupt();
+        queue.clear();
+        if (delayed.get() > 0) {
+            System.out.println("kv-network: " + delayed.get() + " messages delayed, " + retransmitted.get()
+                    + " resent after a loss (" + model + ")");
+        }
+    }
+
+    /* The outgoing links of one process; used by that process's actor only. */
+    public final class Endpoint {
+        private final int from;
+        private final LinkProfile[] profiles;
+        private final SplittableRandom[] random;
+        // with a bandwidth cap: when the link has sent what is queued on it
+        private final long[] linkFree;
+        // with fifo: arrival of the link's latest message, and its messages in the delay queue
+        private final long[] lastArrival;
+        private final AtomicIntegerArray queued;
+        private final boolean ideal;
+        private final boolean sized;
+
+        Endpoint(int from, int n) {
+            this.from = from;
+            profiles = new LinkProfile[n];
+            random = new SplittableRandom[n];
+            linkFree = new long[n];
+            lastArrival = new long[n];
+            queued = new AtomicIntegerArray(n);
+            boolean allIdeal = !model.hasPartitions();
+            boolean anyCap = false;
+            for (int to = 0; to < n; to++) {
+                profiles[to] = model.profile(from, to);
+                random[to] = new SplittableRandom(model.getSeed() * 1_000_003L + (long) from * 65_537L + to);
+                allIdeal &= to == from || profiles[to].isIdeal();
+                anyCap |= profiles[to].bandwidth > 0;
+            }
+            ideal = allIdeal;
+            sized = anyCap;
+        }
+
+        /* Whether send needs the size of the message (a link has a bandwidth cap). */
+        public boolean needsSize() {
+            return sized;
+        }
+
+        /* Sends msg over the link to process `to` (ref); bytes is its size on the wire. */
+        public void send(int to, ActorRef ref, Object msg, ActorRef sender, int bytes) {
+            if (ideal || to == from) {
+                ref.tell(msg, sender);
+                return;
+            }
+            LinkProfile link = profiles[to];
+            SplittableRandom r = random[to];
+            long now = System.nanoTime();
+            long departure = now;
+            if (link.bandwidth > 0) {
+                departure = Math.max(now, linkFree[to]) + bytes * 1_000_000_000L / link.bandwidth;
+                linkFree[to] = departure;
+            }
+            long arrival = departure + link.delay(r);
+            long rto = model.getRetransmitNanos();
+            while (link.loss > 0 && r.nextDouble() < link.loss) {
+                arrival += rto;
+                rto *= 2;
+                retransmitted.incrementAndGet();
+            }
+            if (model.hasPartitions()) {
+                arrival = startNanos + model.crossingTime(from, to, arrival - startNanos);
+            }
+            if (model.isFifo()) {
+                arrival = Math.max(arrival, lastArrival[to]);
+                lastArrival[to] = arrival;
+            }
+            // due already; on a fifo link only once the deliverer has told everything ahead of it
+            if (arrival <= now && (!model.isFifo() || queued.get(to) == 0)) {
+                ref.tell(msg, sender);
+                return;
+            }
+            delayed.incrementAndGet();
+            queued.incrementAndGet(to);
+            queue.put(new Delivery(arrival, order.getAndIncrement(), ref, msg, sender, this, to));
+        }
+    }
+
+    private static final class Delivery implements Delayed {
+        final long at;
+        // ties (fifo links) leave in the order they were queued
+        final long order;
+        final ActorRef to;
+        final Object msg;
+        final ActorRef sender;
+        final Endpoint link;
+        final int peer;
+
+        Delivery(long at, long order, ActorRef to, Object msg, ActorRef sender, Endpoint link, int peer) {
+            this.at = at;
+            this.order = order;
+            this.to = to;
+            this.msg = msg;
+            this.sender = sender;
+            this.link = link;
+            this.peer = peer;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(at - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            Delivery o = (Delivery) other;
+            int c = Long.compare(at, o.at);
+            return c != 0 ? c : Long.compare(order, o.order);
+        }
+    }
+}
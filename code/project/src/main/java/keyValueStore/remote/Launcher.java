@@ -0,0 +1,155 @@
+package keyValueStore.remote;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.util.Timeout;
+import com.typesafe.config.Config;
+import keyValueStore.Main;
+import keyValueStore.ProcessConfig;
+import keyValueStore.events.EventLog;
+import keyValueStore.msg.CrashMessage;
+import keyValueStore.msg.LaunchMessage;
+import keyValueStore.msg.OperationsMessage;
+import keyValueStore.msg.ReferencesMessage;
+import scala.concurrent.Await;
+
+/* Runs the benchmark of Main with every process in a JVM of its own on this host.
+It starts N ReplicaNode JVMs (same classpath, same kv./akka. system properties), resolves
+their actors over Artery, and then drives them exactly like Main: references, operations,
+f random crashes, launch. The BenchmarkMonitor lives in the launcher's JVM and reports to
+the usual results files. Each replica writes its own event log, <file>_p<i>.bin.
+Usage: Launcher N f M [keys] */
+public class Launcher {
+    public static void main(String[] args) throws Exception {
+        int numProcesses = Integer.parseInt(args[0]);
+        int numCrashed = Integer.parseInt(args[1]);
+        int numOperations = Integer.parseInt(args[2]);
+        int numKeys = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        Config remote = ReplicaNode.remoteConfig(0);
+        int basePort = remote.getInt("kv.remote.base-port");
+        Duration startupTimeout = remote.getDuration("kv.remote.startup-timeout");
+        File logDir = new File(remote.getString("kv.remote.log-dir"));
+        logDir.mkdirs();
+        String eventLog = remote.getString("kv.event-log.file");
+        String metricsFile = remote.getString("kv.metrics.file");
+
+        List<java.lang.Process> replicas = new ArrayList<>();
+        for (int i = 0; i < numProcesses; i++) {
+            replicas.add(startReplica(i, basePort + 1 + i, replicaFile(eventLog, i),
+                    metricsFile.isEmpty() ? "" : replicaFile(metricsFile, i), logDir));
+        }
+        // no orphaned replicas if the launcher itself is interrupted
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> replicas.forEach(java.lang.Process::destroy),
+                "replica-reaper"));
+        final ActorSystem system = ActorSystem.create("KeyValueStoreSystem", ReplicaNode.remoteConfig(basePort));
+        try {
+            List<ActorRef> processRefs = new ArrayList<>();
+            long deadline = System.nanoTime() + startupTimeout.toNanos();
+            for (int i = 0; i < numProcesses; i++) {
+                processRefs.add(resolve(system, i, basePort + 1 + i, deadline));
+            }
+            ProcessConfig config = ProcessConfig.of(system);
+            config.checkCrashes(numProcesses, numCrashed);
+            int expectedActive = numProcesses - numCrashed;
+            ActorRef monitor = system.actorOf(config.monitorDeployment(
+                    Main.BenchmarkMonitor.createActor(expectedActive, numProcesses, numCrashed, numOperations)), "monitor");
+            ReferencesMessage referencesMessage = new ReferencesMessage(processRefs, monitor, config.shardMap(numProcesses));
+            OperationsMessage operationsMessage = new OperationsMessage(numOperations, numKeys);
+            for (ActorRef processRef : processRefs) {
+                processRef.tell(referencesMessage, ActorRef.noSender());
+                processRef.tell(operationsMessage, ActorRef.noSender());
+            }
+            List<ActorRef> toCrash = new ArrayList<>(processRefs);
+            Collections.shuffle(toCrash);
+            for (int i = 0; i < numCrashed; i++) {
+                toCrash.get(i).tell(new CrashMessage(), ActorRef.noSender());
+            }
+            LaunchMessage launch = new LaunchMessage();
+            for (int i = numCrashed; i < numProcesses; i++) {
+                toCrash.get(i).tell(launch, ActorRef.noSender());
+            }
+            // the monitor terminates the launcher's system once every live process is done
+            system.getWhenTerminated().toCompletableFuture().get();
+        } finally {
+            system.terminate();
+            for (java.lang.Process replica : replicas) {
+                replica.destroy();
+            }
+            for (java.lang.Process replica : replicas) {
+                if (!replica.waitFor(10, TimeUnit.SECONDS)) {
+                    replica.destroyForcibly();
+                }
+            }
+            EventLog.closeShared();
+        }
+    }
+
+    /* kv_events.bin -> kv_events_p3.bin (event logs and metrics files are per replica JVM) */
+    static String replicaFile(String file, int processNumber) {
+        int dot = file.lastIndexOf('.');
+        String suffix = "_p" + processNumber;
+        return dot < 0 ? file + suffix : file.substring(0, dot) + suffix + file.substring(dot);
+    }
+
+    private static java.lang.Process startReplica(int processNumber, int port, String eventLog, String metricsFile,
+                                                  File logDir) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ReplicaNode.remoteConfig(0).getStringList("kv.remote.jvm-options"));
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if ((name.startsWith("kv.") || name.startsWith("akka.")) && !name.equals("kv.event-log.file")
+                    && !name.equals("kv.metrics.file")) {
+                command.add("-D" + name + "=" + System.getProperty(name));
+            }
+        }
+        command.add("-Dkv.event-log.file=" + eventLog);
+        command.add("-Dkv.metrics.file=" + metricsFile);
+        command.add("-cp");
+        command.add(classpath());
+        command.add(ReplicaNode.class.getName());
+        command.add(Integer.toString(processNumber));
+        command.add(Integer.toString(port));
+        File log = new File(logDir, "p" + processNumber + ".log");
+        return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+    }
+
+    /* Under mvn exec:java the project classes come from the plugin's class loader,
+    not from java.class.path. */
+    private static String classpath() throws Exception {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if (loader instanceof URLClassLoader) {
+            StringBuilder cp = new StringBuilder();
+            for (URL url : ((URLClassLoader) loader).getURLs()) {
+                if (cp.length() > 0) cp.append(File.pathSeparatorChar);
+                cp.append(Paths.get(url.toURI()));
+            }
+            return cp.toString();
+        }
+        return System.getProperty("java.class.path");
+    }
+
+    /* Retries until the replica's JVM is up and its actor answers the identify request. */
+    private static ActorRef resolve(ActorSystem system, int processNumber, int port, long deadline) throws Exception {
+        String path = "akka://KeyValueStoreSystem@127.0.0.1:" + port + "/user/p" + processNumber;
+        Timeout timeout = Timeout.create(Duration.ofSeconds(1));
+        while (true) {
+            try {
+                return Await.result(system.actorSelection(path).resolveOne(timeout), timeout.duration());
+            } catch (Exception e) {
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("replica p" + processNumber + " did not start at " + path, e);
+                }
+                Thread.sleep(200);
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package keyValueStore.remote;
+
+import akka.actor.ActorSystem;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import keyValueStore.Process;
+import keyValueStore.ProcessConfig;
+import keyValueStore.events.EventLog;
+import keyValueStore.metrics.MetricsSampler;
+import keyValueStore.net.SimulatedNetwork;
+
+/* One replica in a JVM of its own: a remote-enabled "KeyValueStoreSystem" listening on the given
+port of the loopback interface with the single actor "p<number>". It waits for the launcher's
+ReferencesMessage, OperationsMessage and LaunchMessage like the in-JVM processes and runs until
+the launcher stops the JVM.
+Usage: ReplicaNode <process number> <port> */
+public class ReplicaNode {
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: ReplicaNode <process number> <port>");
+            System.exit(1);
+        }
+        int processNumber = Integer.parseInt(args[0]);
+        int port = Integer.parseInt(args[1]);
+        ActorSystem system = ActorSystem.create("KeyValueStoreSystem", remoteConfig(port));
+        ProcessConfig config = ProcessConfig.of(system);
+        system.actorOf(config.replicaDeployment(Process.createActor()), "p" + processNumber);
+        // the launcher destroys the JVM (SIGTERM) once its monitor has all results
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            system.terminate();
+            EventLog.closeShared();
+            MetricsSampler.closeShared();
+            SimulatedNetwork.closeShared();
+        }, "replica-shutdown"));
+        System.out.println("p" + processNumber + " listening on 127.0.0.1:" + port);
+    }
+
+    /* remote.conf with the Artery port of this JVM */
+    static Config remoteConfig(int port) {
+        return ConfigFactory.parseString("akka.remote.artery.canonical.port = " + port)
+                .withFallback(ConfigFactory.load("remote"));
+    }
+}
@@ -0,0 +1,642 @@
+package keyValueStore.serialization;
+
+import java.io.NotSerializableException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import akka.actor.ActorRef;
+import akka.actor.ExtendedActorSystem;
+import akka.serialization.Serialization;
+import akka.serialization.SerializerWithStringManifest;
+import keyValueStore.Ack;
+import keyValueStore.OperationLatencies;
+import keyValueStore.msg.ArrivalTick;
+import keyValueStore.msg.BatchMessage;
+import keyValueStore.msg.CatchUpChunk;
+import keyValueStore.msg.CatchUpRequest;
+import keyValueStore.msg.ClientRequest;
+import keyValueStore.msg.ClientResponse;
+import keyValueStore.msg.CrashMessage;
+import keyValueStore.msg.DoneMessage;
+import keyValueStore.msg.FetchRequest;
+import keyValueStore.msg.FetchResponse;
+import keyValueStore.msg.FlushMessage;
+import keyValueStore.msg.LaunchMessage;
+import keyValueStore.msg.LeaseGrant;
+import keyValueStore.msg.LeaseRequest;
+import keyValueStore.msg.LeaseRevoke;
+import keyValueStore.msg.LeaseRevoked;
+import keyValueStore.msg.OperationsMessage;
+import keyValueStore.msg.ProcessMessage;
+import keyValueStore.msg.ReadRequest;
+import keyValueStore.msg.RecoverMessage;
+import keyValueStore.msg.RecoveredMessage;
+import keyValueStore.msg.ReferencesMessage;
+import keyValueStore.msg.WorkloadMessage;
+import keyValueStore.msg.WriteRequest;
+import keyValueStore.shard.ShardMap;
+import keyValueStore.workload.KeyDistribution;
+import keyValueStore.workload.WorkloadSpec;
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.Histogram;
+
+/* Fixed-layout binary encoding of the messages that cross JVMs (bound in application.conf).
+The protocol messages are their fields in order (big-endian), ints but for the long version ts:
+  ReadRequest    key, seq                              8 bytes
+  WriteRequest   key, value, ts, seq                  20 bytes
+  ProcessMessage key, value, ts, seq, process         24 bytes
+  Ack            key, value, ts, seq, process         24 bytes
+  FetchRequest   key, value, ts, seq                  20 bytes
+  FetchResponse  key, value, ts, seq, process, payload
+  LeaseRequest   key, value, ts, lease id, process    24 bytes
+  LeaseGrant     key, lease id, process, granted      16 bytes
+  LeaseRevoke    key                                   4 bytes
+  LeaseRevoked   key, process                          8 bytes
+  BatchMessage   count, then per message a tag byte and its fields
+  ClientRequest  request id (long), key, write (byte), value      17 bytes
+  ClientResponse request id (long), value, rejected (byte)         13 bytes
+A payload (kv.values.size) is its length (-1: none) and its bytes. A ProcessMessage or
+WriteRequest that carries one is a message of its own (manifest and tag), so the fixed layouts
+above stay as they are without payloads. Decoded payloads are read-only views of the received
+bytes, not copies. Catch-up requests and chunks are their key range followed by the
+timestamps or (key, value, timestamp) entries, and the entries' payloads. The setup messages carry actor paths (ReferencesMessage, with the shard ring), the workload parameters and the
+compressed latency histograms (DoneMessage). */
+public final class KvSerializer extends SerializerWithStringManifest {
+    public static final int IDENTIFIER = 7711;
+
+    static final String READ_REQUEST = "rr";
+    static final String PROCESS_MESSAGE = "pm";
+    static final String WRITE_REQUEST = "wr";
+    static final String ACK = "ak";
+    static final String PROCESS_MESSAGE_PAYLOAD = "pp";
+    static final String WRITE_REQUEST_PAYLOAD = "wp";
+    static final String FETCH_REQUEST = "fq";
+    static final String FETCH_RESPONSE = "fs";
+    static final String BATCH = "bt";
+    static final String OPERATIONS = "op";
+    static final String WORKLOAD = "wl";
+    static final String REFERENCES = "rf";
+    static final String DONE = "dn";
+    static final String LAUNCH = "la";
+    static final String CRASH = "cr";
+    static final String FLUSH = "fl";
+    static final String ARRIVAL_TICK = "at";
+    static final String RECOVER = "rc";
+    static final String CATCH_UP_REQUEST = "cq";
+    static final String CATCH_UP_CHUNK = "cc";
+    static final String RECOVERED = "rd";
+    static final String CLIENT_REQUEST = "cl";
+    static final String CLIENT_RESPONSE = "cs";
+    static final String LEASE_REQUEST = "lq";
+    static final String LEASE_GRANT = "lg";
+    static final String LEASE_REVOKE = "lv";
+    static final String LEASE_REVOKED = "ld";
+
+    // tags of the messages inside a batch
+    private static final byte TAG_READ_REQUEST = 1;
+    private static final byte TAG_PROCESS_MESSAGE = 2;
+    private static final byte TAG_WRITE_REQUEST = 3;
+    private static final byte TAG_ACK = 4;
+    private static final byte TAG_FETCH_REQUEST = 5;
+    private static final byte TAG_FETCH_RESPONSE = 6;
+    private static final byte TAG_PROCESS_MESSAGE_PAYLOAD = 7;
+    private static final byte TAG_WRITE_REQUEST_PAYLOAD = 8;
+    private static final byte TAG_LEASE_REQUEST = 9;
+    private static final byte TAG_LEASE_GRANT = 10;
+    private static final byte TAG_LEASE_REVOKE = 11;
+    private static final byte TAG_LEASE_REVOKED = 12;
+
+    private static final byte UNIFORM = 0;
+    private static final byte ZIPFIAN = 1;
+    private static final byte HOTSPOT = 2;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final ExtendedActorSystem system;
+
+    public KvSerializer(ExtendedActorSystem system) {
+        this.system = system;
+    }
+
+    @Override
+    public int identifier() {
+        return IDENTIFIER;
+    }
+
+    @Override
+    public String manifest(Object o) {
+        if (o instanceof ReadRequest) return READ_REQUEST;
+        if (o instanceof ProcessMessage) {
+            return ((ProcessMessage) o).getPayload() == null ? PROCESS_MESSAGE : PROCESS_MESSAGE_PAYLOAD;
+        }
+        if (o instanceof WriteRequest) {
+            return ((WriteRequest) o).getPayload() == null ? WRITE_REQUEST : WRITE_REQUEST_PAYLOAD;
+        }
+        if (o instanceof Ack) return ACK;
+        if (o instanceof FetchRequest) return FETCH_REQUEST;
+        if (o instanceof FetchResponse) return FETCH_RESPONSE;
+        if (o instanceof LeaseRequest) return LEASE_REQUEST;
+        if (o instanceof LeaseGrant) return LEASE_GRANT;
+        if (o instanceof LeaseRevoke) return LEASE_REVOKE;
+        if (o instanceof LeaseRevoked) return LEASE_REVOKED;
+        if (o instanceof BatchMessage) return BATCH;
+        if (o instanceof OperationsMessage) return OPERATIONS;
+        if (o instanceof WorkloadMessage) return WORKLOAD;
+        if (o instanceof ReferencesMessage) return REFERENCES;
+        if (o instanceof DoneMessage) return DONE;
+        if (o instanceof LaunchMessage) return LAUNCH;
+        if (o instanceof CrashMessage) return CRASH;
+        if (o instanceof FlushMessage) return FLUSH;
+        if (o instanceof ArrivalTick) return ARRIVAL_TICK;
+        if (o instanceof RecoverMessage) return RECOVER;
+        if (o instanceof CatchUpRequest) return CATCH_UP_REQUEST;
+        if (o instanceof CatchUpChunk) return CATCH_UP_CHUNK;
+        if (o instanceof RecoveredMessage) return RECOVERED;
+        if (o instanceof ClientRequest) return CLIENT_REQUEST;
+        if (o instanceof ClientResponse) return CLIENT_RESPONSE;
+        throw new IllegalArgumentException("Cannot serialize " + o.getClass().getName());
+    }
+
+    @Override
+    public byte[] toBinary(Object o) {
+        if (o instanceof ReadRequest || o instanceof ProcessMessage || o instanceof WriteRequest || o instanceof Ack
+                || o instanceof FetchRequest || o instanceof FetchResponse || o instanceof LeaseRequest
+                || o instanceof LeaseGrant || o instanceof LeaseRevoke || o instanceof LeaseRevoked) {
+            ByteBuffer buf = ByteBuffer.allocate(protocolSize(o));
+            writeProtocol(buf, o);
+            return buf.array();
+        }
+        if (o instanceof BatchMessage) return batchToBinary((BatchMessage) o);
+        if (o instanceof ClientRequest) {
+            ClientRequest m = (ClientRequest) o;
+            return ByteBuffer.allocate(17).putLong(m.getRequestId()).putInt(m.getKey())
+                    .put((byte) (m.isWrite() ? 1 : 0)).putInt(m.getValue()).array();
+        }
+        if (o instanceof ClientResponse) {
+            ClientResponse m = (ClientResponse) o;
+            return ByteBuffer.allocate(13).putLong(m.getRequestId()).putInt(m.getValue())
+                    .put((byte) (m.isRejected() ? 1 : 0)).array();
+        }
+        if (o instanceof OperationsMessage) {
+            OperationsMessage m = (OperationsMessage) o;
+            return ByteBuffer.allocate(12).putInt(m.getNumOperations()).putInt(m.getNumKeys())
+                    .putInt(m.getReadPercent()).array();
+        }
+        if (o instanceof WorkloadMessage) return workloadToBinary(((WorkloadMessage) o).getSpec());
+        if (o instanceof ReferencesMessage) return referencesToBinary((ReferencesMessage) o);
+        if (o instanceof DoneMessage) return doneToBinary((DoneMessage) o);
+        if (o instanceof CatchUpRequest) return catchUpRequestToBinary((CatchUpRequest) o);
+        if (o instanceof CatchUpChunk) return catchUpChunkToBinary((CatchUpChunk) o);
+        if (o instanceof RecoveredMessage) {
+            RecoveredMessage m = (RecoveredMessage) o;
+            return ByteBuffer.allocate(4 + 8 + 8 + 8 + 4).putInt(m.getProcessNumber()).putLong(m.getRecoveryNanos())
+                    .putLong(m.getReplayNanos()).putLong(m.getKeysReceived()).putInt(m.getChunks()).array();
+        }
+        if (o instanceof LaunchMessage || o instanceof CrashMessage || o instanceof FlushMessage
+                || o instanceof ArrivalTick || o instanceof RecoverMessage) {
+            return EMPTY;
+        }
+        throw new IllegalArgumentException("Cannot serialize " + o.getClass().getName());
+    }
+
+    @Override
+    public Object fromBinary(byte[] bytes, String manifest) throws NotSerializableException {
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        switch (manifest) {
+            case READ_REQUEST:
+                return readProtocol(buf, TAG_READ_REQUEST);
+            case PROCESS_MESSAGE:
+                return readProtocol(buf, TAG_PROCESS_MESSAGE);
+            case WRITE_REQUEST:
+                return readProtocol(buf, TAG_WRITE_REQUEST);
+            case ACK:
+                return readProtocol(buf, TAG_ACK);
+            case PROCESS_MESSAGE_PAYLOAD:
+                return readProtocol(buf, TAG_PROCESS_MESSAGE_PAYLOAD);
+            case WRITE_REQUEST_PAYLOAD:
+                return readProtocol(buf, TAG_WRITE_REQUEST_PAYLOAD);
+            case LEASE_REQUEST:
+                return readProtocol(buf, TAG_LEASE_REQUEST);
+            case LEASE_GRANT:
+                return readProtocol(buf, TAG_LEASE_GRANT);
+            case LEASE_REVOKE:
+                return readProtocol(buf, TAG_LEASE_REVOKE);
+            case LEASE_REVOKED:
+                return readProtocol(buf, TAG_LEASE_REVOKED);
+            case FETCH_REQUEST:
+                return readProtocol(buf, TAG_FETCH_REQUEST);
+            case FETCH_RESPONSE:
+                return readProtocol(buf, TAG_FETCH_RESPONSE);
+            case BATCH:
+                Object[] messages = new Object[buf.getInt()];
+                for (int i = 0; i < messages.length; i++) {
+                    messages[i] = readProtocol(buf, buf.get());
+                }
+                return new BatchMessage(messages);
+            case CLIENT_REQUEST:
+                return new ClientRequest(buf.getLong(), buf.getInt(), buf.get() != 0, buf.getInt());
+            case CLIENT_RESPONSE:
+                return new ClientResponse(buf.getLong(), buf.getInt(), buf.get() != 0);
+            case OPERATIONS:
+                return new OperationsMessage(buf.getInt(), buf.getInt(), buf.getInt());
+            case WORKLOAD:
+                return new WorkloadMessage(workloadFromBinary(buf));
+            case REFERENCES:
+                return referencesFromBinary(buf);
+            case DONE:
+                return doneFromBinary(buf);
+            case LAUNCH:
+                return new LaunchMessage();
+            case CRASH:
+                return new CrashMessage();
+            case FLUSH:
+                return FlushMessage.INSTANCE;
+            case ARRIVAL_TICK:
+                return ArrivalTick.INSTANCE;
+            case RECOVER:
+                return new RecoverMessage();
+            case CATCH_UP_REQUEST:
+                return catchUpRequestFromBinary(buf);
+            case CATCH_UP_CHUNK:
+                return catchUpChunkFromBinary(buf);
+            case RECOVERED:
+                return new RecoveredMessage(buf.getInt(), buf.getLong(), buf.getLong(), buf.getLong(), buf.getInt());
+            default:
+                throw new NotSerializableException("Unknown manifest " + manifest);
+        }
+    }
+
+    private static int protocolSize(Object o) {
+        if (o instanceof ReadRequest) return 8;
+        if (o instanceof WriteRequest) {
+            ByteBuffer payload = ((WriteRequest) o).getPayload();
+            return payload == null ? 20 : 20 + payloadSize(payload);
+        }
+        if (o instanceof ProcessMessage) {
+            ByteBuffer payload = ((ProcessMessage) o).getPayload();
+            return payload == null ? 24 : 24 + payloadSize(payload);
+        }
+        if (o instanceof FetchRequest) return 20;
+        if (o instanceof FetchResponse) return 24 + payloadSize(((FetchResponse) o).getPayload());
+        if (o instanceof LeaseGrant) return 16;
+        if (o instanceof LeaseRevoke) return 4;
+        if (o instanceof LeaseRevoked) return 8;
+        return 24;
+    }
+
+    private static byte tagOf(Object o) {
+        if (o instanceof ReadRequest) return TAG_READ_REQUEST;
+        if (o instanceof ProcessMessage) {
+            return ((ProcessMessage) o).getPayload() == null ? TAG_PROCESS_MESSAGE : TAG_PROCESS_MESSAGE_PAYLOAD;
+        }
+        if (o instanceof WriteRequest) {
+            return ((WriteRequest) o).getPayload() == null ? TAG_WRITE_REQUEST : TAG_WRITE_REQUEST_PAYLOAD;
+        }
+        if (o instanceof Ack) return TAG_ACK;
+        if (o instanceof FetchRequest) return TAG_FETCH_REQUEST;
+        if (o instanceof FetchResponse) return TAG_FETCH_RESPONSE;
+        if (o instanceof LeaseRequest) return TAG_LEASE_REQUEST;
+        if (o instanceof LeaseGrant) return TAG_LEASE_GRANT;
+        if (o instanceof LeaseRevoke) return TAG_LEASE_REVOKE;
+        if (o instanceof LeaseRevoked) return TAG_LEASE_REVOKED;
+        throw new IllegalArgumentException("Cannot batch " + o.getClass().getName());
+    }
+
+    private static void writeProtocol(ByteBuffer buf, Object o) {
+        if (o instanceof ReadRequest) {
+            ReadRequest m = (ReadRequest) o;
+            buf.putInt(m.getKey()).putInt(m.getSequenceNumber());
+        } else if (o instanceof ProcessMessage) {
+            ProcessMessage m = (ProcessMessage) o;
+            buf.putInt(m.getKey()).putInt(m.getValue()).putLong(m.getTimestamp()).putInt(m.getSequenceNumber())
+                    .putInt(m.getProcessNumber());
+            if (m.getPayload() != null) {
+                writePayload(buf, m.getPayload());
+            }
+        } else if (o instanceof WriteRequest) {
+            WriteRequest m = (WriteRequest) o;
+            buf.putInt(m.getKey()).putInt(m.getValue()).putLong(m.getTimestamp()).putInt(m.getSequenceNumber());
+            if (m.getPayload() != null) {
+                writePayload(buf, m.getPayload());
+            }
+        } else if (o instanceof FetchRequest) {
+            FetchRequest m = (FetchRequest) o;
+            buf.putInt(m.getKey()).putInt(m.getValue()).putLong(m.getTimestamp()).putInt(m.getSequenceNumber());
+        } else if (o instanceof FetchResponse) {
+            FetchResponse m = (FetchResponse) o;
+            buf.putInt(m.getKey()).putInt(m.getValue()).putLong(m.getTimestamp()).putInt(m.getSequenceNumber())
+                    .putInt(m.getProcessNumber());
+            writePayload(buf, m.getPayload());
+        } else if (o instanceof LeaseRequest) {
+            LeaseRequest m = (LeaseRequest) o;
+            buf.putInt(m.getKey()).putInt(m.getValue()).putLong(m.getTimestamp()).putInt(m.getLeaseId())
+                    .putInt(m.getProcessNumber());
+        } else if (o instanceof LeaseGrant) {
+            LeaseGrant m = (LeaseGrant) o;
+            buf.putInt(m.getKey()).putInt(m.getLeaseId()).putInt(m.getProcessNumber()).putInt(m.isGranted() ? 1 : 0);
+        } else if (o instanceof LeaseRevoke) {
+            buf.putInt(((LeaseRevoke) o).getKey());
+        } else if (o instanceof LeaseRevoked) {
+            LeaseRevoked m = (LeaseRevoked) o;
+            buf.putInt(m.getKey()).putInt(m.getProcessNumber());
+        } else {
+            Ack m = (Ack) o;
+            buf.putInt(m.getKey()).putInt(m.getValue()).putLong(m.getTimestamp()).putInt(m.getSequenceNumber())
+                    .putInt(m.getProcessNumber());
+        }
+    }
+
+    private static Object readProtocol(ByteBuffer buf, byte tag) throws NotSerializableException {
+        switch (tag) {
+            case TAG_READ_REQUEST:
+                return new ReadRequest(buf.getInt(), buf.getInt());
+            case TAG_PROCESS_MESSAGE:
+                return new ProcessMessage(buf.getInt(), buf.getInt(), buf.getLong(), buf.getInt(), buf.getInt());
+            case TAG_WRITE_REQUEST:
+                return new WriteRequest(buf.getInt(), buf.getInt(), buf.getLong(), buf.getInt());
+            case TAG_ACK:
+                return new Ack(buf.getInt(), buf.getInt(), buf.getLong(), buf.getInt(), buf.getInt());
+            case TAG_PROCESS_MESSAGE_PAYLOAD:
+                return new ProcessMessage(buf.getInt(), buf.getInt(), buf.getLong(), buf.getInt(), buf.getInt(),
+                        readPayload(buf));
+            case TAG_WRITE_REQUEST_PAYLOAD:
+                return new WriteRequest(buf.getInt(), buf.getInt(), buf.getLong(), buf.getInt(), readPayload(buf));
+            case TAG_FETCH_REQUEST:
+                return new FetchRequest(buf.getInt(), buf.getInt(), buf.getLong(), buf.getInt());
+            case TAG_FETCH_RESPONSE:
+                return new FetchResponse(buf.getInt(), buf.getInt(), buf.getLong(), buf.getInt(), buf.getInt(),
+                        readPayload(buf));
+            case TAG_LEASE_REQUEST:
+                return new LeaseRequest(buf.getInt(), buf.getInt(), buf.getLong(), buf.getInt(), buf.getInt());
+            case TAG_LEASE_GRANT:
+                return new LeaseGrant(buf.getInt(), buf.getInt(), buf.getInt(), buf.getInt() != 0);
+            case TAG_LEASE_REVOKE:
+                return new LeaseRevoke(buf.getInt());
+            case TAG_LEASE_REVOKED:
+                return new LeaseRevoked(buf.getInt(), buf.getInt());
+            default:
+                throw new NotSerializableException("Unknown batched message tag " + tag);
+        }
+    }
+
+    private static int payloadSize(ByteBuffer payload) {
+        return 4 + (payload == null ? 0 : payload.remaining());
+    }
+
+    private static void writePayload(ByteBuffer buf, ByteBuffer payload) {
+        if (payload == null) {
+            buf.putInt(-1);
+        } else {
+            buf.putInt(payload.remaining()).put(payload.duplicate());
+        }
+    }
+
+    // a read-only view of the payload's bytes in buf
+    private static ByteBuffer readPayload(ByteBuffer buf) {
+        int length = buf.getInt();
+        if (length < 0) return null;
+        ByteBuffer payload = buf.slice();
+        payload.limit(length);
+        buf.position(buf.position() + length);
+        return payload.asReadOnlyBuffer();
+    }
+
+    private static byte[] batchToBinary(BatchMessage batch) {
+        Object[] messages = batch.getMessages();
+        int size = 4;
+        for (Object m : messages) {
+            size += 1 + protocolSize(m);
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size).putInt(messages.length);
+        for (Object m : messages) {
+            buf.put(tagOf(m));
+            writeProtocol(buf, m);
+        }
+        return buf.array();
+    }
+
+    private static byte[] catchUpRequestToBinary(CatchUpRequest m) {
+        long[] timestamps = m.getTimestamps();
+        ByteBuffer buf = ByteBuffer.allocate(12 + 8 * timestamps.length)
+                .putInt(m.getFromKey()).putInt(m.getToKey()).putInt(timestamps.length);
+        for (long timestamp : timestamps) {
+            buf.putLong(timestamp);
+        }
+        return buf.array();
+    }
+
+    private static CatchUpRequest catchUpRequestFromBinary(ByteBuffer buf) {
+        int from = buf.getInt();
+        int to = buf.getInt();
+        long[] timestamps = new long[buf.getInt()];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = buf.getLong();
+        }
+        return new CatchUpRequest(from, to, timestamps);
+    }
+
+    private static byte[] catchUpChunkToBinary(CatchUpChunk m) {
+        int[] keys = m.getKeys();
+        int[] values = m.getValues();
+        long[] timestamps = m.getTimestamps();
+        ByteBuffer[] payloads = m.getPayloads();
+        int size = 17 + 16 * keys.length;
+        if (payloads != null) {
+            for (ByteBuffer payload : payloads) {
+                size += payloadSize(payload);
+            }
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size)
+                .putInt(m.getFromKey()).putInt(m.getToKey()).putInt(m.getProcessNumber()).putInt(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            buf.putInt(keys[i]).putInt(values[i]).putLong(timestamps[i]);
+        }
+        buf.put((byte) (payloads == null ? 0 : 1));
+        if (payloads != null) {
+            for (ByteBuffer payload : payloads) {
+                writePayload(buf, payload);
+            }
+        }
+        return buf.array();
+    }
+
+    private static CatchUpChunk catchUpChunkFromBinary(ByteBuffer buf) {
+        int from = buf.getInt();
+        int to = buf.getInt();
+        int processNumber = buf.getInt();
+        int[] keys = new int[buf.getInt()];
+        int[] values = new int[keys.length];
+        long[] timestamps = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = buf.getInt();
+            values[i] = buf.getInt();
+            timestamps[i] = buf.getLong();
+        }
+        ByteBuffer[] payloads = null;
+        if (buf.get() != 0) {
+            payloads = new ByteBuffer[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                payloads[i] = readPayload(buf);
+            }
+        }
+        return new CatchUpChunk(from, to, processNumber, keys, values, timestamps, payloads);
+    }
+
+    private static byte[] workloadToBinary(WorkloadSpec spec) {
+        ByteBuffer buf = ByteBuffer.allocate(8 + 4 + 8 + 8 + 8 + 8 + 1 + 4 + 8 + 8);
+        buf.putDouble(spec.getReadRatio()).putInt(spec.getOperations()).putLong(spec.getWarmupNanos())
+                .putLong(spec.getDurationNanos()).putDouble(spec.getRatePerProcess()).putLong(spec.getSeed());
+        KeyDistribution keys = spec.getKeys();
+        if (keys instanceof KeyDistribution.Zipfian) {
+            buf.put(ZIPFIAN).putInt(keys.getNumKeys()).putDouble(((KeyDistribution.Zipfian) keys).getExponent())
+                    .putDouble(0);
+        } else if (keys instanceof KeyDistribution.Hotspot) {
+            KeyDistribution.Hotspot hotspot = (KeyDistribution.Hotspot) keys;
+            buf.put(HOTSPOT).putInt(keys.getNumKeys()).putDouble(hotspot.getKeyFraction())
+                    .putDouble(hotspot.getAccessFraction());
+        } else {
+            buf.put(UNIFORM).putInt(keys.getNumKeys()).putDouble(0).putDouble(0);
+        }
+        return buf.array();
+    }
+
+    private static WorkloadSpec workloadFromBinary(ByteBuffer buf) throws NotSerializableException {
+        double readRatio = buf.getDouble();
+        int operations = buf.getInt();
+        long warmup = buf.getLong();
+        long duration = buf.getLong();
+        double rate = buf.getDouble();
+        long seed = buf.getLong();
+        byte kind = buf.get();
+        int numKeys = buf.getInt();
+        double p1 = buf.getDouble();
+        double p2 = buf.getDouble();
+        KeyDistribution keys;
+        switch (kind) {
+            case UNIFORM:
+                keys = new KeyDistribution.Uniform(numKeys);
+                break;
+            case ZIPFIAN:
+                keys = new KeyDistribution.Zipfian(numKeys, p1);
+                break;
+            case HOTSPOT:
+                keys = new KeyDistribution.Hotspot(numKeys, p1, p2);
+                break;
+            default:
+                throw new NotSerializableException("Unknown key distribution " + kind);
+        }
+        return new WorkloadSpec(readRatio, keys, operations, warmup, duration, rate, seed);
+    }
+
+    /* Actor references travel as their full paths (with the address of this system). */
+    private static byte[] referencesToBinary(ReferencesMessage m) {
+        List<byte[]> paths = new ArrayList<>();
+        int size = 4;
+        for (ActorRef ref : m.getReferences()) {
+            byte[] path = pathOf(ref);
+            paths.add(path);
+            size += 2 + path.length;
+        }
+        byte[] monitor = m.getMonitor() == null ? EMPTY : pathOf(m.getMonitor());
+        size += 2 + monitor.length;
+        ByteBuffer buf = ByteBuffer.allocate(size).putInt(paths.size());
+        for (byte[] path : paths) {
+            buf.putShort((short) path.length).put(path);
+        }
+        buf.putShort((short) monitor.length).put(monitor);
+        return shardsToBinary(buf.array(), m.getShards());
+    }
+
+    private ReferencesMessage referencesFromBinary(ByteBuffer buf) {
+        int count = buf.getInt();
+        List<ActorRef> refs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            refs.add(resolve(buf));
+        }
+        ActorRef monitor = resolve(buf);
+        return new ReferencesMessage(refs, monitor, shardsFromBinary(buf, count));
+    }
+
+    /* The shard ring follows the paths as replicas, token count and (token, owner) pairs; nothing
+    when the keyspace is not sharded. */
+    private static byte[] shardsToBinary(byte[] references, ShardMap shards) {
+        if (shards == null) return references;
+        int[] tokens = shards.getTokens();
+        int[] owners = shards.getOwners();
+        ByteBuffer buf = ByteBuffer.allocate(references.length + 8 + 8 * tokens.length)
+                .put(references).putInt(shards.getReplicas()).putInt(tokens.length);
+        for (int i = 0; i < tokens.length; i++) {
+            buf.putInt(tokens[i]).putInt(owners[i]);
+        }
+        return buf.array();
+    }
+
+    private static ShardMap shardsFromBinary(ByteBuffer buf, int numProcesses) {
+        if (!buf.hasRemaining()) return null;
+        int replicas = buf.getInt();
+        int[] tokens = new int[buf.getInt()];
+        int[] owners = new int[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = buf.getInt();
+            owners[i] = buf.getInt();
+        }
+        return new ShardMap(numProcesses, replicas, tokens, owners);
+    }
+
+    private static byte[] pathOf(ActorRef ref) {
+        return Serialization.serializedActorPath(ref).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private ActorRef resolve(ByteBuffer buf) {
+        byte[] path = new byte[buf.getShort() & 0xFFFF];
+        if (path.length == 0) return null;
+        buf.get(path);
+        return system.provider().resolveActorRef(new String(path, StandardCharsets.UTF_8));
+    }
+
+    private static byte[] doneToBinary(DoneMessage m) {
+        OperationLatencies latencies = m.getLatencies();
+        AbstractHistogram[] histograms = {latencies.getPut(), latencies.getGet(), latencies.getReadPhase(),
+                latencies.getWritePhase()};
+        ByteBuffer[] encoded = new ByteBuffer[histograms.length];
+        int size = 8 + 4 + 4 + 8 + 8 + 8 + 4;
+        for (int i = 0; i < histograms.length; i++) {
+            encoded[i] = ByteBuffer.allocate(histograms[i].getNeededByteBufferCapacity());
+            histograms[i].encodeIntoCompressedByteBuffer(encoded[i]);
+            encoded[i].flip();
+            size += 4 + encoded[i].remaining();
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size)
+                .putLong(m.getMessagesSent()).putInt(m.getFastReads()).putInt(m.getSlowReads())
+                .putLong(m.getWalRecords()).putLong(m.getWalGroups()).putLong(m.getPayloadBytesSent())
+                .putInt(m.getLeaseReads());
+        for (ByteBuffer histogram : encoded) {
+            buf.putInt(histogram.remaining()).put(histogram);
+        }
+        return buf.array();
+    }
+
+    private static DoneMessage doneFromBinary(ByteBuffer buf) throws NotSerializableException {
+        long messagesSent = buf.getLong();
+        int fastReads = buf.getInt();
+        int slowReads = buf.getInt();
+        long walRecords = buf.getLong();
+        long walGroups = buf.getLong();
+        long payloadBytesSent = buf.getLong();
+        int leaseReads = buf.getInt();
+        AbstractHistogram[] histograms = new AbstractHistogram[4];
+        try {
+            for (int i = 0; i < histograms.length; i++) {
+                // copied out: the decoder inflates from the backing array and ignores its offset
+                byte[] compressed = new byte[buf.getInt()];
+                buf.get(compressed);
+                histograms[i] = Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(compressed), 0);
+            }
+        } catch (java.util.zip.DataFormatException e) {
+            throw new NotSerializableException("Corrupt latency histogram: " + e.getMessage());
+        }
+        return new DoneMessage(OperationLatencies.of(histograms[0], histograms[1], histograms[2], histograms[3]),
+                messagesSent, fastReads, slowReads, walRecords, walGroups, payloadBytesSent, leaseReads);
+    }
+}
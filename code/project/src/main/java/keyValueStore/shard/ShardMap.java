@@ -0,0 +1,153 @@
+package keyValueStore.shard;
+
+import java.util.Arrays;
+
+/* Consistent-hash placement of the keyspace (kv.sharding): every process owns virtual-nodes
+tokens on a 32-bit ring, and a key belongs to the shard of the first token at or after its hash.
+The shard is replicated by the group of the next replicas distinct processes on the ring from
+there on, and every operation on the key runs ABD within that group only, with majorities of
+the group instead of all N processes. Adding a process moves only the keys of the ring segments
+its tokens take over.
+The ring is built once, by whoever starts the processes, and reaches them in the
+ReferencesMessage; the groups of every segment are precomputed, so a lookup is a hash and a
+binary search and allocates nothing. */
+public final class ShardMap {
+    private final int numProcesses;
+    private final int replicas;
+    // sorted tokens and the process owning each
+    private final int[] tokens;
+    private final int[] owners;
+    // per ring segment (the one ending at tokens[i]): its replica group, the owner first
+    private final int[][] groups;
+
+    /* A ring from its tokens (sorted) and their owners, as carried in the ReferencesMessage. */
+    public ShardMap(int numProcesses, int replicas, int[] tokens, int[] owners) {
+        if (tokens.length == 0 || tokens.length != owners.length) {
+            throw new IllegalArgumentException("a ring needs one owner per token: " + tokens.length + " tokens, "
+                    + owners.length + " owners");
+        }
+        this.numProcesses = numProcesses;
+        this.replicas = Math.max(1, Math.min(replicas, numProcesses));
+        this.tokens = tokens;
+        this.owners = owners;
+        this.groups = new int[tokens.length][];
+        boolean[] member = new boolean[numProcesses];
+        for (int i = 0; i < tokens.length; i++) {
+            int[] group = new int[this.replicas];
+            int size = 0;
+            for (int j = i; size < group.length; j = (j + 1) % tokens.length) {
+                int p = owners[j];
+                if (!member[p]) {
+                    member[p] = true;
+                    group[size++] = p;
+                }
+            }
+            for (int p : group) {
+                member[p] = false;
+            }
+            groups[i] = group;
+        }
+    }
+
+    /* The ring of numProcesses processes with virtualNodes tokens each, groups of replicas. */
+    public static ShardMap consistentHash(int numProcesses, int replicas, int virtualNodes) {
+        int count = numProcesses * Math.max(1, virtualNodes);
+        long[] ring = new long[count];
+        for (int p = 0, i = 0; p < numProcesses; p++) {
+            for (int v = 0; v < count / numProcesses; v++, i++) {
+                // token in the upper half, owner in the lower: sorting orders by token, ties by owner
+                ring[i] = (long) hash(((long) p << 32) | v) << 32 | p;
+            }
+        }
+        Arrays.sort(ring);
+        int[] tokens = new int[count];
+        int[] owners = new int[count];
+        for (int i = 0; i < count; i++) {
+            tokens[i] = (int) (ring[i] >> 32);
+            owners[i] = (int) ring[i];
+        }
+        return new ShardMap(numProcesses, replicas, tokens, owners);
+    }
+
+    // MurmurHash3's 64-bit finalizer folded to 32 bits: neighbouring keys land far apart
+    private static int hash(long x) {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        x *= 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return (int) x ^ (int) (x >>> 32);
+    }
+
+    /* Index of the ring segment key falls into. */
+    public int shardOf(int key) {
+        int h = hash(key);
+        int i = Arrays.binarySearch(tokens, h);
+        if (i < 0) {
+            i = -i - 1;
+            if (i == tokens.length) i = 0;
+        }
+        return i;
+    }
+
+    /* The processes replicating key (not to be modified). */
+    public int[] group(int key) {
+        return groups[shardOf(key)];
+    }
+
+    public boolean replicates(int process, int key) {
+        return contains(group(key), process);
+    }
+
+    /* Per process: whether it replicates a shard together with process. */
+    public boolean[] peersOf(int process) {
+        boolean[] peers = new boolean[numProcesses];
+        for (int[] group : groups) {
+            if (!contains(group, process)) continue;
+            for (int p : group) {
+                peers[p] = p != process;
+            }
+        }
+        return peers;
+    }
+
+    private static boolean contains(int[] group, int process) {
+        for (int p : group) {
+            if (p == process) return true;
+        }
+        return false;
+    }
+
+    /* Share of the ring (of all keys, with a hash as uniform as this one) process replicates. */
+    public double share(int process) {
+        long covered = 0;
+        for (int i = 0; i < tokens.length; i++) {
+            if (!contains(groups[i], process)) continue;
+            long from = i == 0 ? (long) tokens[tokens.length - 1] - (1L << 32) : tokens[i - 1];
+            covered += tokens[i] - from;
+        }
+        return covered / (double) (1L << 32);
+    }
+
+    public int getNumProcesses() {
+        return numProcesses;
+    }
+
+    public int getReplicas() {
+        return replicas;
+    }
+
+    public int[] getTokens() {
+        return tokens;
+    }
+
+    public int[] getOwners() {
+        return owners;
+    }
+
+    /* "r=3 of 12, 64 tokens each" for the result tables. */
+    @Override
+    public String toString() {
+        return "r=" + replicas + " of " + numProcesses + ", " + tokens.length / numProcesses + " tokens each";
+    }
+}
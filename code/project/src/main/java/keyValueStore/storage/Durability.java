@@ -0,0 +1,29 @@
+package keyValueStore.storage;
+
+/* When a replica may acknowledge a WriteRequest (kv.persistence.durability). */
+public enum Durability {
+    // registers in memory only; a crash loses them (the original behavior)
+    NONE,
+    // the update is in the write-ahead log in the OS page cache: survives the process, not the host
+    BUFFERED,
+    // the group of updates containing it has been fsynced
+    FSYNC;
+
+    public static Durability of(String name) {
+        switch (name) {
+            case "none":
+                return NONE;
+            case "buffered":
+                return BUFFERED;
+            case "fsync":
+                return FSYNC;
+            default:
+                throw new IllegalArgumentException("unknown kv.persistence.durability " + name);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,79 @@
+package keyValueStore.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import keyValueStore.RegisterMap;
+
+/* Point-in-time image of a replica's registers in a memory-mapped file:
+  MAGIC, lsn (log records it covers), count, then count x (key, value, timestamp (long),
+  payload length, payload)
+It is written to a temporary file, forced and renamed, so a snapshot on disk is always complete. */
+public final class Snapshot {
+    static final long MAGIC = 0x4B56534E41505333L; // "KVSNAPS3"
+    static final int HEADER_BYTES = 20;
+    // an entry without its payload
+    static final int ENTRY_BYTES = 20;
+
+    private Snapshot() {}
+
+    public static void write(Path file, RegisterMap registers, long lsn) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        long[] payloadBytes = {0};
+        registers.forEach((key, value, timestamp) -> {
+            ByteBuffer payload = registers.getPayload(key);
+            payloadBytes[0] += payload == null ? 0 : payload.remaining();
+        });
+        long size = HEADER_BYTES + (long) registers.size() * ENTRY_BYTES + payloadBytes[0];
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            map.order(ByteOrder.nativeOrder());
+            map.putLong(MAGIC).putLong(lsn).putInt(registers.size());
+            registers.forEach((key, value, timestamp) -> {
+                ByteBuffer payload = registers.getPayload(key);
+                map.putInt(key).putInt(value).putLong(timestamp).putInt(payload == null ? 0 : payload.remaining());
+                if (payload != null) {
+                    map.put(payload.duplicate());
+                }
+            });
+            map.force();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /* Loads the snapshot into registers; returns the lsn it covers, or 0 if there is none. */
+    public static long load(Path file, RegisterMap registers) throws IOException {
+        if (!Files.exists(file)) return 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            map.order(ByteOrder.nativeOrder());
+            if (map.remaining() < HEADER_BYTES || map.getLong() != MAGIC) {
+                throw new IOException(file + " is not a register snapshot");
+            }
+            long lsn = map.getLong();
+            int count = map.getInt();
+            for (int i = 0; i < count; i++) {
+                int key = map.getInt();
+                int value = map.getInt();
+                long timestamp = map.getLong();
+                int length = map.getInt();
+                ByteBuffer payload = null;
+                if (length > 0) {
+                    // copied out of the mapping, which goes away with the channel
+                    byte[] bytes = new byte[length];
+                    map.get(bytes);
+                    payload = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+                }
+                registers.putIfNewer(key, value, timestamp, payload);
+            }
+            return lsn;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package keyValueStore.workload;
+
+import java.io.Serializable;
+import java.util.SplittableRandom;
+import com.typesafe.config.Config;
+
+/* Which key (1..numKeys) the next operation of a workload accesses. */
+public abstract class KeyDistribution implements Serializable {
+    private static final long serialVersionUID = 1L;
+    protected final int numKeys;
+
+    protected KeyDistribution(int numKeys) {
+        if (numKeys < 1) {
+            throw new IllegalArgumentException("keys must be at least 1, got " + numKeys);
+        }
+        this.numKeys = numKeys;
+    }
+
+    public abstract int next(SplittableRandom random);
+
+    public int getNumKeys() {
+        return numKeys;
+    }
+
+    /* key-distribution = uniform | zipfian | hotspot, with their parameters from the same block */
+    public static KeyDistribution of(Config scenario) {
+        int keys = scenario.getInt("keys");
+        String kind = scenario.getString("key-distribution");
+        switch (kind) {
+            case "uniform":
+                return new Uniform(keys);
+            case "zipfian":
+                return new Zipfian(keys, scenario.getDouble("zipfian.exponent"));
+            case "hotspot":
+                return new Hotspot(keys, scenario.getDouble("hotspot.key-fraction"),
+                        scenario.getDouble("hotspot.access-fraction"));
+            default:
+                throw new IllegalArgumentException("unknown key-distribution " + kind);
+        }
+    }
+
+    public static final class Uniform extends KeyDistribution {
+        private static final long serialVersionUID = 1L;
+
+        public Uniform(int numKeys) {
+            super(numKeys);
+        }
+
+        @Override
+        public int next(SplittableRandom random) {
+            return 1 + random.nextInt(numKeys);
+        }
+
+        @Override
+        public String toString() {
+            return "uniform";
+        }
+    }
+
+    /* Zipf over the key ranks (key 1 is the most popular), after Gray et al.,
+    "Quickly generating billion-record synthetic databases" (as used by YCSB). */
+    public static final class Zipfian extends KeyDistribution {
+        private static final long serialVersionUID = 1L;
+        private final double theta;
+        private final double zetaN;
+        private final double alpha;
+        private final double eta;
+        private final double halfPowTheta;
+
+        public Zipfian(int numKeys, double theta) {
+            super(numKeys);
+            if (theta <= 0 || theta >= 1) {
+                throw new IllegalArgumentException("zipfian.exponent must be in (0, 1), got " + theta);
+            }
+            this.theta = theta;
+            // computed once per scenario; the processes share the instance
+            this.zetaN = zeta(numKeys, theta);
+            this.alpha = 1.0 / (1.0 - theta);
+            this.eta = (1 - Math.pow(2.0 / numKeys, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+            this.halfPowTheta = 1 + Math.pow(0.5, theta);
+        }
+
+        public double getExponent() {
+            return theta;
+        }
+
+        @Override
+        public int next(SplittableRandom random) {
+            double u = random.nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1.0) return 1;
+            if (uz < halfPowTheta) return Math.min(2, numKeys);
+            int rank = (int) (numKeys * Math.pow(eta * u - eta + 1, alpha));
+            return 1 + Math.min(rank, numKeys - 1);
+        }
+
+        private static double zeta(long n, double theta) {
+            double sum = 0;
+            for (long i = 1; i <= n; i++) {
+                sum += 1.0 / Math.pow(i, theta);
+            }
+            return sum;
+        }
+
+        @Override
+        public String toString() {
+            return "zipfian(" + theta + ")";
+        }
+    }
+
+    /* A hot set of the first keyFraction of the keys receives accessFraction of the accesses. */
+    public static final class Hotspot extends KeyDistribution {
+        private static final long serialVersionUID = 1L;
+        private final int hotKeys;
+        private final double keyFraction;
+        private final double accessFraction;
+
+        public Hotspot(int numKeys, double keyFraction, double accessFraction) {
+            super(numKeys);
+            if (keyFraction <= 0 || keyFraction > 1 || accessFraction < 0 || accessFraction > 1) {
+                throw new IllegalArgumentException("hotspot fractions must be in (0, 1], got "
+                        + keyFraction + " / " + accessFraction);
+            }
+            this.hotKeys = Math.max(1, (int) Math.round(numKeys * keyFraction));
+            this.keyFraction = keyFraction;
+            this.accessFraction = accessFraction;
+        }
+
+        public double getKeyFraction() {
+            return keyFraction;
+        }
+
+        public double getAccessFraction() {
+            return accessFraction;
+        }
+
+        @Override
+        public int next(SplittableRandom random) {
+            if (hotKeys == numKeys || random.nextDouble() < accessFraction) {
+                return 1 + random.nextInt(hotKeys);
+            }
+            return 1 + hotKeys + random.nextInt(numKeys - hotKeys);
+        }
+
+        @Override
+        public String toString() {
+            return "hotspot(" + hotKeys + "/" + numKeys + "@" + accessFraction + ")";
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package keyValueStore.workload;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import akka.actor.AbstractActorWithTimers;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import keyValueStore.OperationLatencies;
+import keyValueStore.Process;
+import keyValueStore.ProcessConfig;
+import keyValueStore.bench.AllocationStats;
+import keyValueStore.events.EventLog;
+import keyValueStore.metrics.MetricsSampler;
+import keyValueStore.net.SimulatedNetwork;
+import keyValueStore.msg.CrashMessage;
+import keyValueStore.msg.DoneMessage;
+import keyValueStore.msg.LaunchMessage;
+import keyValueStore.msg.RecoverMessage;
+import keyValueStore.msg.RecoveredMessage;
+import keyValueStore.msg.ReferencesMessage;
+import keyValueStore.msg.WorkloadMessage;
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.Histogram;
+import scala.concurrent.duration.Duration;
+
+/* Runs a whole sweep of scenarios inside one JVM, each on a fresh ActorSystem, and writes
+one results table (same columns as benchmark_results.csv, plus the workload) for plots.ipynb.
+Usage: WorkloadDriver [sweep.conf]  (defaults and the example sweep: resources/workload.conf) */
+public class WorkloadDriver {
+    static final String HEADER =
+            "N     | f     | M     | Latency    | Window | Ops/s    | p50 us   | p99 us   | Msgs/op | Fast % | KB/op   | GC ms"
+            + " | Reads % | Keys     | Dist                 | Load         | p90 us   | p99.9 us | Max us   | Cores | Profile        "
+            + " | Rec ms   | Rec keys | Sends    | Value B  | Reads  | Payload KB/op | Lease % | Get p50 us | Get p99 us | Group | Writes         | Put p50 us | Put p99 us | Network";
+    static final String RULE =
+            "------+-------+-------+------------+--------+----------+----------+----------+---------+--------+---------+------"
+            + "-+---------+----------+----------------------+--------------+----------+----------+----------+-------+----------------"
+            + "-+----------+----------+----------+----------+--------+---------------+---------+------------+------------+-------+----------------+------------+------------+---------------------";
+
+    public static void main(String[] args) throws Exception {
+        Config sweep = ConfigFactory.parseResources("workload.conf");
+        if (args.length > 0) {
+            sweep = ConfigFactory.parseFile(new File(args[0])).withFallback(sweep);
+        }
+        // -Dworkload.<setting>=<value> wins over the files
+        sweep = ConfigFactory.systemProperties().withFallback(sweep);
+        Config workload = sweep.resolve().getConfig("workload");
+        Config defaults = workload.getConfig("defaults");
+        int warmupRuns = workload.getInt("warmup-runs");
+        int repetitions = workload.getInt("repetitions");
+        String resultsFile = workload.getString("results-file");
+        try (PrintWriter out = new PrintWriter(new FileWriter(resultsFile, false))) {
+            out.println(HEADER);
+            out.println(RULE);
+        }
+        List<? extends Config> scenarios = workload.getConfigList("scenarios");
+        for (int i = 0; i < scenarios.size(); i++) {
+            Config scenario = scenarios.get(i).withFallback(defaults);
+            for (int r = 0; r < warmupRuns + repetitions; r++) {
+                boolean measured = r >= warmupRuns;
+                System.out.printf("--- scenario %d/%d %s(N=%d, f=%d, M=%d, reads %.0f%%, %d %s keys, %s) ---%n",
+                        i + 1, scenarios.size(), measured ? "" : "warmup run ", scenario.getInt("n"), scenario.getInt("f"),
+                        scenario.getInt("operations"), 100 * scenario.getDouble("read-ratio"), scenario.getInt("keys"),
+                        scenario.getString("key-distribution"), loadOf(scenario));
+                RunResult result = run(scenario);
+                result.print();
+                if (measured) {
+                    try (PrintWriter out = new PrintWriter(new FileWriter(resultsFile, true))) {
+                        result.writeRow(out);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+        System.out.println("Results: " + resultsFile);
+    }
+
+    /* One run of a scenario on its own ActorSystem; the processes are p0..pN-1 as in Main. */
+    static RunResult run(Config scenario) throws Exception {
+        int n = scenario.getInt("n");
+        int f = scenario.getInt("f");
+        List<long[]> crashes = new ArrayList<>();
+        int crashedTotal = f;
+        for (Config crash : scenario.getConfigList("crashes")) {
+            crashes.add(new long[] {crash.getDuration("at", TimeUnit.NANOSECONDS), crash.getInt("count")});
+            crashedTotal += crash.getInt("count");
+        }
+        List<long[]> recoveries = new ArrayList<>();
+        for (Config recovery : scenario.getConfigList("recoveries")) {
+            recoveries.add(new long[] {recovery.getDuration("at", TimeUnit.NANOSECONDS), recovery.getInt("count")});
+        }
+        Config kv = scenario.hasPath("kv") ? scenario.getConfig("kv").atKey("kv") : ConfigFactory.empty();
+        Config systemConfig = kv
+                .withFallback(ConfigFactory.parseString("akka.loglevel = WARNING\nakka.scheduler.tick-duration = 1ms"))
+                .withFallback(ConfigFactory.load());
+        final ActorSystem system = ActorSystem.create("KeyValueStoreSystem", systemConfig);
+        try {
+            ProcessConfig config = ProcessConfig.of(system);
+            // a majority must stay alive, or the remaining operations never complete
+            config.checkCrashes(n, crashedTotal);
+            WorkloadSpec spec = WorkloadSpec.fromConfig(scenario, n - f);
+            List<ActorRef> processes = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                processes.add(system.actorOf(config.replicaDeployment(Process.createActor()), "p" + i));
+            }
+            CompletableFuture<RunResult> done = new CompletableFuture<>();
+            ActorRef monitor = system.actorOf(
+                    config.monitorDeployment(RunMonitor.props(scenario, spec, config, processes, crashes, recoveries, done)),
+                    "monitor");
+            ReferencesMessage references = new ReferencesMessage(processes, monitor, config.shardMap(n));
+            WorkloadMessage workload = new WorkloadMessage(spec);
+            for (ActorRef process : processes) {
+                process.tell(references, ActorRef.noSender());
+                process.tell(workload, ActorRef.noSender());
+            }
+            monitor.tell(new LaunchMessage(), ActorRef.noSender());
+            return done.get(scenario.getDuration("timeout", TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+        } finally {
+            system.terminate();
+            system.getWhenTerminated().toCompletableFuture().get();
+            // the next run starts a new history (the file is overwritten)
+            EventLog.closeShared();
+            // and a new run of the metrics time series (appended)
+            MetricsSampler.closeShared();
+            SimulatedNetwork.closeShared();
+        }
+    }
+
+    static String loadOf(Config scenario) {
+        return "closed".equals(scenario.getString("load")) ? "closed"
+                : String.format("open %.0f/s", scenario.getDouble("rate"));
+    }
+
+    /* Crashes the f processes, launches the others, runs the crash and recovery schedules and
+    collects the DoneMessages of the processes that stay alive and the RecoveredMessages. */
+    public static class RunMonitor extends AbstractActorWithTimers {
+        private final Config scenario;
+        private final WorkloadSpec spec;
+        private final ProcessConfig config;
+        private final List<ActorRef> alive;
+        private final List<long[]> crashes;
+        private final List<long[]> recoveries;
+        // crashed processes, oldest crash first: the ones the recovery schedule restarts
+        private final List<ActorRef> crashed = new ArrayList<>();
+        private final List<RecoveredMessage> recovered = new ArrayList<>();
+        private int recoveriesPending = 0;
+        private final CompletableFuture<RunResult> done;
+        private final Random random;
+        private final OperationLatencies latencies = OperationLatencies.forRun();
+        private final List<ActorRef> finished = new ArrayList<>();
+        private long messagesSent = 0;
+        private long fastReads = 0;
+        private long slowReads = 0;
+        private long leaseReads = 0;
+        private long payloadBytesSent = 0;
+        private long launchTime;
+        private AllocationStats startAllocation;
+
+        public RunMonitor(Config scenario, WorkloadSpec spec, ProcessConfig config, List<ActorRef> processes,
+                          List<long[]> crashes, List<long[]> recoveries, CompletableFuture<RunResult> done) {
+            this.scenario = scenario;
+            this.spec = spec;
+            this.config = config;
+            this.alive = new ArrayList<>(processes);
+            this.crashes = crashes;
+            this.recoveries = recoveries;
+            for (long[] recovery : recoveries) {
+                recoveriesPending += (int) recovery[1];
+            }
+            this.done = done;
+            this.random = new Random(spec.getSeed());
+        }
+
+        public static Props props(Config scenario, WorkloadSpec spec, ProcessConfig config, List<ActorRef> processes,
+                                  List<long[]> crashes, List<long[]> recoveries, CompletableFuture<RunResult> done) {
+            return Props.create(RunMonitor.class,
+                    () -> new RunMonitor(scenario, spec, config, processes, crashes, recoveries, done));
+        }
+
+        @Override
+        public Receive createReceive() {
+            return receiveBuilder()
+                .match(LaunchMessage.class, this::onLaunch)
+                .match(CrashEvent.class, this::onCrashEvent)
+                .match(RecoveryEvent.class, this::onRecoveryEvent)
+                .match(DoneMessage.class, this::onDone)
+                .match(RecoveredMessage.class, this::onRecovered)
+                .build();
+        }
+
+        private void onLaunch(LaunchMessage launch) {
+            // 5.REQ: f random processes crash before the launch
+            Collections.shuffle(alive, random);
+            for (int i = 0; i < scenario.getInt("f"); i++) {
+                ActorRef victim = alive.remove(0);
+                crashed.add(victim);
+                victim.tell(new CrashMessage(), self());
+            }
+            startAllocation = AllocationStats.snapshot();
+            launchTime = System.nanoTime();
+            for (ActorRef process : alive) {
+                process.tell(launch, self());
+            }
+            for (int i = 0; i < crashes.size(); i++) {
+                timers().startSingleTimer("crash-" + i, new CrashEvent((int) crashes.get(i)[1]),
+                        Duration.create(crashes.get(i)[0], TimeUnit.NANOSECONDS));
+            }
+            for (int i = 0; i < recoveries.size(); i++) {
+                timers().startSingleTimer("recovery-" + i, new RecoveryEvent((int) recoveries.get(i)[1]),
+                        Duration.create(recoveries.get(i)[0], TimeUnit.NANOSECONDS));
+            }
+        }
+
+        /* Crash schedule: processes that have not finished yet crash in the middle of the run. */
+        private void onCrashEvent(CrashEvent event) {
+            for (int i = 0; i < event.count; i++) {
+                List<ActorRef> running = new ArrayList<>(alive);
+                running.removeAll(finished);
+                if (running.isEmpty()) break;
+                ActorRef victim = running.get(random.nextInt(running.size()));
+                alive.remove(victim);
+                crashed.add(victim);
+                victim.tell(new CrashMessage(), self());
+            }
+            checkDone();
+        }
+
+        /* Recovery schedule: the processes that crashed first restart and catch up; they serve
+        as replicas from then on but run no operations of their own. */
+        private void onRecoveryEvent(RecoveryEvent event) {
+            for (int i = 0; i < event.count; i++) {
+                if (crashed.isEmpty()) {
+                    recoveriesPending--;
+                    continue;
+                }
+                crashed.remove(0).tell(new RecoverMessage(), self());
+            }
+            checkDone();
+        }
+
+        private void onRecovered(RecoveredMessage msg) {
+            recovered.add(msg);
+            recoveriesPending--;
+            System.out.printf("p%d recovered in %d ms (%d ms restoring its registers), %d keys received in %d chunks%n",
+                    msg.getProcessNumber(), msg.getRecoveryNanos() / 1_000_000, msg.getReplayNanos() / 1_000_000,
+                    msg.getKeysReceived(), msg.getChunks());
+            checkDone();
+        }
+
+        private void onDone(DoneMessage msg) {
+            if (!alive.contains(sender()) || finished.contains(sender())) return;
+            finished.add(sender());
+            latencies.add(msg.getLatencies());
+            messagesSent += msg.getMessagesSent();
+            fastReads += msg.getFastReads();
+            slowReads += msg.getSlowReads();
+            leaseReads += msg.getLeaseReads();
+            payloadBytesSent += msg.getPayloadBytesSent();
+            checkDone();
+        }
+
+        private void checkDone() {
+            if (finished.size() < alive.size() || recoveriesPending > 0 || done.isDone()) return;
+            long measuredNanos = System.nanoTime() - launchTime - spec.getWarmupNanos();
+            done.complete(new RunResult(scenario, spec, config, latencies, measuredNanos, messagesSent, fastReads,
+                    slowReads, leaseReads, payloadBytesSent, AllocationStats.snapshot().since(startAllocation), recovered));
+        }
+    }
+
+    static final class CrashEvent {
+        final int count;
+
+        CrashEvent(int count) {
+            this.count = count;
+        }
+    }
+
+    static final class RecoveryEvent {
+        final int count;
+
+        RecoveryEvent(int count) {
+            this.count = count;
+        }
+    }
+
+    /* Outcome of one run: the merged histograms and counters of the live processes. */
+    static final class RunResult {
+        private final Config scenario;
+        private final WorkloadSpec spec;
+        private final ProcessConfig config;
+        private final Histogram all;
+        private final long totalTime;
+        private final long throughput;
+        private final double messagesPerOp;
+        private final double fastReadShare;
+        // gets read under a lease, of all gets (kv.leases), and the latency of the gets alone
+        private final double leaseShare;
+        private final AbstractHistogram gets;
+        private final AbstractHistogram puts;
+        private final double kbPerOp;
+        private final double payloadKbPerOp;
+        private final AllocationStats allocation;
+        // slowest recovery of the run and the registers transferred by all of them (-1: none)
+        private final long recoveryMillis;
+        private final long recoveryKeys;
+
+        RunResult(Config scenario, WorkloadSpec spec, ProcessConfig config, OperationLatencies latencies,
+                  long measuredNanos, long messagesSent, long fastReads, long slowReads, long leaseReads, long payloadBytesSent,
+                  AllocationStats allocation,
+                  List<RecoveredMessage> recovered) {
+            this.scenario = scenario;
+            this.spec = spec;
+            this.config = config;
+            this.all = latencies.getAll();
+            this.allocation = allocation;
+            long completed = all.getTotalCount();
+            this.totalTime = Math.max(0, measuredNanos) / 1_000_000;
+            this.throughput = measuredNanos > 0 ? completed * 1_000_000_000L / measuredNanos : completed;
+            this.messagesPerOp = completed > 0 ? messagesSent / (double) completed : 0;
+            this.fastReadShare = fastReads + slowReads > 0 ? 100.0 * fastReads / (fastReads + slowReads) : 0;
+            long allReads = fastReads + slowReads + leaseReads;
+            this.leaseShare = allReads > 0 ? 100.0 * leaseReads / allReads : 0;
+            this.gets = latencies.getGet();
+            this.puts = latencies.getPut();
+            this.kbPerOp = completed > 0 ? allocation.getAllocatedBytes() / 1024.0 / completed : 0;
+            this.payloadKbPerOp = completed > 0 ? payloadBytesSent / 1024.0 / completed : 0;
+            long slowest = -1;
+            long keys = recovered.isEmpty() ? -1 : 0;
+            for (RecoveredMessage r : recovered) {
+                slowest = Math.max(slowest, r.getRecoveryNanos() / 1_000_000);
+                keys += r.getKeysReceived();
+            }
+            this.recoveryMillis = slowest;
+            this.recoveryKeys = keys;
+        }
+
+        void print() {
+            System.out.printf("%d ms, %d ops/s, latency us: p50 %d, p90 %d, p99 %d, p99.9 %d, max %d, %.1f msgs/op%n",
+                    totalTime, throughput, micros(50.0), micros(90.0), micros(99.0), micros(99.9),
+                    all.getMaxValue() / 1000, messagesPerOp);
+            if (config.isLeases()) {
+                // puts to leased keys wait for the revokes
+                System.out.printf("leases: %.1f%% of gets read locally, latency us: get p50 %d, p99 %d, put p50 %d, p99 %d%n",
+                        leaseShare, gets.getValueAtPercentile(50.0) / 1000, gets.getValueAtPercentile(99.0) / 1000,
+                        puts.getValueAtPercentile(50.0) / 1000, puts.getValueAtPercentile(99.0) / 1000);
+            }
+            if (config.isBlindWrites()) {
+                System.out.printf("blind writes: put latency us p50 %d, p99 %d%n",
+                        puts.getValueAtPercentile(50.0) / 1000, puts.getValueAtPercentile(99.0) / 1000);
+            }
+        }
+
+        void writeRow(PrintWriter out) {
+            out.printf("%-6d| %-5d| %-6d| %-9d ms| %-7d| %-9d| %-9d| %-9d| %-8.1f| %-6.1f| %-8.1f| %-6d"
+                    + "| %-8.0f| %-9d| %-21s| %-13s| %-9d| %-9d| %-9d| %-6d| %-15s| %-9s| %-9s| %-9s| %-9d| %-7s| %-14.1f| %-8s| %-11d| %-11d| %-6s| %-15s| %-11d| %-11d| %s%n",
+                    scenario.getInt("n"), scenario.getInt("f"), scenario.getInt("operations"), totalTime,
+                    config.getPipelineWindow(), throughput, micros(50.0), micros(99.0), messagesPerOp, fastReadShare,
+                    kbPerOp, allocation.getGcTimeMillis(), 100 * spec.getReadRatio(), spec.getKeys().getNumKeys(),
+                    spec.getKeys(), loadOf(scenario), micros(90.0), micros(99.9), all.getMaxValue() / 1000,
+                    Runtime.getRuntime().availableProcessors(), config.getExecutionProfile(),
+                    recoveryMillis < 0 ? "-" : Long.toString(recoveryMillis), recoveryKeys < 0 ? "-" : Long.toString(recoveryKeys),
+                    config.isSharding() ? "group" : config.isTargetedQuorums() ? "quorum" : "all", config.getValueSize(),
+                    config.getValueSize() == 0 ? "-" : config.isDigestReads() ? "digest" : "full", payloadKbPerOp,
+                    config.isLeases() ? String.format(Locale.ROOT, "%.1f", leaseShare) : "-",
+                    gets.getValueAtPercentile(50.0) / 1000, gets.getValueAtPercentile(99.0) / 1000,
+                    config.isSharding() ? Integer.toString(Math.min(config.getShardReplicas(), scenario.getInt("n"))) : "-",
+                    writeMode(config), puts.getValueAtPercentile(50.0) / 1000, puts.getValueAtPercentile(99.0) / 1000,
+                    config.getNetwork() == null ? "-" : config.getNetwork().toString());
+        }
+
+        /* "abd" (read phase, then write phase) or "blind" with its clock uncertainty. */
+        private static String writeMode(ProcessConfig config) {
+            if (!config.isBlindWrites()) return "abd";
+            long micros = config.getClockUncertaintyNanos() / 1000;
+            return micros == 0 ? "blind" : micros % 1000 == 0 ? "blind e=" + micros / 1000 + "ms" : "blind e=" + micros + "us";
+        }
+
+        private long micros(double percentile) {
+            return all.getValueAtPercentile(percentile) / 1000;
+        }
+    }
+}
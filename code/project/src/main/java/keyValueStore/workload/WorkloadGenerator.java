@@ -0,0 +1,78 @@
+package keyValueStore.workload;
+
+import java.util.SplittableRandom;
+
+/* Per-process state of a workload run: draws the kind and key of every operation and,
+in open loop, the Poisson arrival times. Owned by one actor, so nothing is synchronized. */
+public final class WorkloadGenerator {
+    private final WorkloadSpec spec;
+    private final SplittableRandom random;
+    private final double meanGapNanos;
+    private long measureStart;
+    private long end;
+    private long nextArrival;
+    private int measuredStarted = 0;
+
+    public WorkloadGenerator(WorkloadSpec spec, int processNumber) {
+        this.spec = spec;
+        // one independent stream per process, reproducible from the scenario seed
+        this.random = new SplittableRandom(spec.getSeed() * 0x9E3779B97F4A7C15L + processNumber);
+        this.meanGapNanos = spec.isOpenLoop() ? 1e9 / spec.getRatePerProcess() : 0;
+    }
+
+    /* Starts the clock: the warmup, then the measurement. */
+    public void launch(long now) {
+        measureStart = now + spec.getWarmupNanos();
+        end = spec.getOperations() > 0 ? Long.MAX_VALUE : measureStart + spec.getDurationNanos();
+        nextArrival = now + gap();
+    }
+
+    /* No further operation will be started. */
+    public boolean exhausted(long now) {
+        if (spec.getOperations() > 0) {
+            return measuredStarted >= 2 * spec.getOperations();
+        }
+        return now >= end;
+    }
+
+    /* An operation may start now (in open loop: one has arrived). */
+    public boolean hasNext(long now) {
+        return !exhausted(now) && (!spec.isOpenLoop() || nextArrival <= now);
+    }
+
+    /* Start time of the next operation. In open loop this is its arrival time, so time spent
+    waiting for a free slot of the window counts towards its latency (no coordinated omission). */
+    public long nextStart(long now) {
+        long start = now;
+        if (spec.isOpenLoop()) {
+            start = nextArrival;
+            nextArrival += gap();
+        }
+        if (start >= measureStart) {
+            measuredStarted++;
+        }
+        return start;
+    }
+
+    public boolean nextIsRead() {
+        return random.nextDouble() < spec.getReadRatio();
+    }
+
+    public int nextKey() {
+        return spec.getKeys().next(random);
+    }
+
+    /* Operations started during the warmup are executed but not reported. */
+    public boolean isMeasured(long start) {
+        return start >= measureStart;
+    }
+
+    public boolean isOpenLoop() {
+        return spec.isOpenLoop();
+    }
+
+    private long gap() {
+        if (meanGapNanos == 0) return 0;
+        return (long) (-Math.log(1.0 - random.nextDouble()) * meanGapNanos);
+    }
+}
@@ -0,0 +1,82 @@
+package keyValueStore.workload;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+import com.typesafe.config.Config;
+
+/* What every process of a workload run executes: the read/write mix, the keys it accesses,
+how operations arrive (closed loop: a new one as soon as the window has room; open loop:
+Poisson arrivals at a target rate), and when the run ends (2M measured operations, or a
+measurement duration after the warmup). */
+public final class WorkloadSpec implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final double readRatio;
+    private final KeyDistribution keys;
+    // M; 0 = run for durationNanos instead
+    private final int operations;
+    private final long warmupNanos;
+    private final long durationNanos;
+    // target operations per second of one process; 0 = closed loop
+    private final double ratePerProcess;
+    private final long seed;
+
+    public WorkloadSpec(double readRatio, KeyDistribution keys, int operations, long warmupNanos,
+                        long durationNanos, double ratePerProcess, long seed) {
+        if (readRatio < 0 || readRatio > 1) {
+            throw new IllegalArgumentException("read-ratio must be in [0, 1], got " + readRatio);
+        }
+        if (operations <= 0 && durationNanos <= 0) {
+            throw new IllegalArgumentException("either operations or duration must be positive");
+        }
+        this.readRatio = readRatio;
+        this.keys = keys;
+        this.operations = Math.max(0, operations);
+        this.warmupNanos = Math.max(0, warmupNanos);
+        this.durationNanos = Math.max(0, durationNanos);
+        this.ratePerProcess = Math.max(0, ratePerProcess);
+        this.seed = seed;
+    }
+
+    /* Reads one scenario block (already merged with the defaults); the cluster-wide rate is
+    split evenly over the processes that are alive at launch. */
+    public static WorkloadSpec fromConfig(Config scenario, int liveProcesses) {
+        double rate = "closed".equals(scenario.getString("load")) ? 0 : scenario.getDouble("rate");
+        return new WorkloadSpec(scenario.getDouble("read-ratio"), KeyDistribution.of(scenario),
+                scenario.getInt("operations"),
+                scenario.getDuration("warmup", TimeUnit.NANOSECONDS),
+                scenario.getDuration("duration", TimeUnit.NANOSECONDS),
+                rate / Math.max(1, liveProcesses), scenario.getLong("seed"));
+    }
+
+    public double getReadRatio() {
+        return readRatio;
+    }
+
+    public KeyDistribution getKeys() {
+        return keys;
+    }
+
+    public int getOperations() {
+        return operations;
+    }
+
+    public long getWarmupNanos() {
+        return warmupNanos;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public double getRatePerProcess() {
+        return ratePerProcess;
+    }
+
+    public boolean isOpenLoop() {
+        return ratePerProcess > 0;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+}
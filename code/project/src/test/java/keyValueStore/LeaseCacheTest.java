@@ -0,0 +1,123 @@
+package keyValueStore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LeaseCacheTest {
+    private static final int N = 5;
+    private static final long DURATION = 10_000_000_000L;
+
+    @Test
+    public void validForTheDurationShortenedByTwiceTheDriftFromTheRequest() {
+        LeaseCache cache = new LeaseCache(N, DURATION, 0.1, 16);
+        long now = System.nanoTime();
+        LeaseCache.Lease lease = cache.request(7, 70, 3, now, 3);
+        assertNotNull(lease);
+        // collecting grants: not readable yet, and no second request
+        assertNull(cache.valid(7, now));
+        assertNull(cache.request(7, 70, 3, now, 3));
+
+        assertFalse(cache.answer(7, lease.id, 0, true));
+        // a repeated grant does not count twice
+        assertFalse(cache.answer(7, lease.id, 0, true));
+        assertFalse(cache.answer(7, lease.id, 2, true));
+        assertTrue(cache.answer(7, lease.id, 4, true));
+        assertEquals(now + (long) (DURATION * 0.8), lease.validUntil);
+        assertEquals(1, cache.held(now));
+
+        assertSame(lease, cache.valid(7, lease.validUntil - 1));
+        assertEquals(70, lease.value);
+        assertEquals(3, lease.timestamp);
+        assertNull(cache.valid(7, lease.validUntil));
+        // expired leases are dropped, and the key can be asked for again
+        assertEquals(0, cache.held(lease.validUntil));
+        assertNotNull(cache.request(7, 71, 4, lease.validUntil, 3));
+    }
+
+    @Test
+    public void grantsArrivingAfterTheValidityMakeNoLease() {
+        LeaseCache cache = new LeaseCache(N, DURATION, 0.25, 16);
+        // asked longer ago than the holder may read under it
+        long requestedAt = System.nanoTime() - DURATION / 2;
+        LeaseCache.Lease lease = cache.request(1, 1, 1, requestedAt, 1);
+        assertFalse(cache.answer(1, lease.id, 0, true));
+        assertNull(cache.valid(1, System.nanoTime()));
+        assertNotNull(cache.request(1, 1, 1, System.nanoTime(), 1));
+    }
+
+    @Test
+    public void unansweredRequestIsReplacedAfterADuration() {
+        LeaseCache cache = new LeaseCache(N, DURATION, 0, 16);
+        long now = System.nanoTime();
+        LeaseCache.Lease first = cache.request(1, 1, 1, now, 3);
+        assertNull(cache.request(1, 1, 1, now + DURATION - 1, 3));
+        LeaseCache.Lease second = cache.request(1, 2, 2, now + DURATION, 3);
+        assertNotNull(second);
+        // grants of the first request are lost
+        assertFalse(cache.answer(1, first.id, 0, true));
+        assertFalse(cache.answer(1, second.id, 0, true));
+        assertFalse(cache.answer(1, second.id, 1, true));
+        assertTrue(cache.answer(1, second.id, 2, true));
+    }
+
+    @Test
+    public void refusalOrRevokeEndsTheLease() {
+        LeaseCache cache = new LeaseCache(N, DURATION, 0, 16);
+        long now = System.nanoTime();
+        LeaseCache.Lease lease = cache.request(1, 1, 1, now, 2);
+        assertFalse(cache.answer(1, lease.id, 0, true));
+        // a replica stores a newer version
+        assertFalse(cache.answer(1, lease.id, 1, false));
+        assertFalse(cache.answer(1, lease.id, 2, true));
+        assertNull(cache.valid(1, now));
+
+        lease = cache.request(1, 1, 1, now, 1);
+        assertTrue(cache.answer(1, lease.id, 0, true));
+        assertNotNull(cache.valid(1, now));
+        cache.drop(1);
+        assertNull(cache.valid(1, now));
+    }
+
+    @Test
+    public void onlyKeysReadAgainWithinADurationAreWorthALease() {
+        LeaseCache cache = new LeaseCache(N, DURATION, 0, 16);
+        long now = System.nanoTime();
+        assertFalse(cache.readAgain(1, now));
+        assertTrue(cache.readAgain(1, now + DURATION - 1));
+        assertFalse(cache.readAgain(1, now + 3 * DURATION));
+
+        // a get served under a lease counts as a read: the first miss after it asks right away
+        LeaseCache.Lease lease = cache.request(2, 1, 1, now, 1);
+        assertTrue(cache.answer(2, lease.id, 0, true));
+        assertNotNull(cache.valid(2, lease.validUntil - 1));
+        assertNull(cache.valid(2, lease.validUntil));
+        assertTrue(cache.readAgain(2, lease.validUntil));
+    }
+
+    @Test
+    public void leastRecentlyUsedLeaseIsEvictedBeyondTheCapacity() {
+        LeaseCache cache = new LeaseCache(N, DURATION, 0, 2);
+        long now = System.nanoTime();
+        for (int key = 1; key <= 2; key++) {
+            assertTrue(cache.answer(key, cache.request(key, key, 1, now, 1).id, 0, true));
+        }
+        // key 1 was used more recently than key 2
+        assertNotNull(cache.valid(1, now));
+        assertTrue(cache.answer(3, cache.request(3, 3, 1, now, 1).id, 0, true));
+        assertEquals(1, cache.evictions());
+        assertNotNull(cache.valid(1, now));
+        assertNull(cache.valid(2, now));
+        assertNotNull(cache.valid(3, now));
+        assertEquals(2, cache.held(now));
+
+        cache.clear();
+        assertEquals(0, cache.held(now));
+        assertFalse(cache.readAgain(1, now));
+    }
+}
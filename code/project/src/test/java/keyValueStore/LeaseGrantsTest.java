@@ -0,0 +1,124 @@
+package keyValueStore;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import akka.actor.ActorRef;
+import keyValueStore.msg.WriteRequest;
+import org.junit.Test;
+
+public class LeaseGrantsTest {
+    private static final int N = 5;
+    private static final long DURATION = 1_000_000_000L;
+    private static final long NOW = 1_000_000L;
+
+    private static int[] hold(LeaseGrants grants, WriteRequest write, long now) {
+        int[] revoke = new int[N];
+        int count = grants.hold(write, ActorRef.noSender(), now, revoke);
+        int[] holders = new int[count];
+        System.arraycopy(revoke, 0, holders, 0, count);
+        return holders;
+    }
+
+    private static List<WriteRequest> requests(List<LeaseGrants.HeldWrite> ready) {
+        List<WriteRequest> requests = new ArrayList<>();
+        for (LeaseGrants.HeldWrite w : ready) {
+            requests.add(w.request);
+        }
+        return requests;
+    }
+
+    @Test
+    public void grantorHoldsNewerWritesBackUntilTheRevokeIsConfirmed() {
+        LeaseGrants grants = new LeaseGrants(N, DURATION);
+        assertTrue(grants.grant(1, 2, 3, NOW));
+        // newer versions wait, the leased one and older ones do not
+        assertTrue(grants.blocks(1, 4, NOW));
+        assertFalse(grants.blocks(1, 3, NOW));
+        assertFalse(grants.blocks(1, 2, NOW));
+        assertFalse(grants.blocks(9, 100, NOW));
+
+        WriteRequest first = new WriteRequest(1, 60, 4, 1);
+        WriteRequest second = new WriteRequest(1, 70, 5, 2);
+        assertArrayEquals(new int[] {2}, hold(grants, first, NOW));
+        // the revoke is out already
+        assertEquals(0, hold(grants, second, NOW).length);
+        assertEquals(2, grants.heldWrites());
+        // no new lease on a key with writes waiting
+        assertFalse(grants.grant(1, 3, 3, NOW));
+
+        List<LeaseGrants.HeldWrite> ready = new ArrayList<>();
+        grants.revoked(1, 2, NOW, ready);
+        List<WriteRequest> released = requests(ready);
+        assertEquals(2, released.size());
+        assertSame(first, released.get(0));
+        assertSame(second, released.get(1));
+        assertEquals(0, grants.heldWrites());
+        assertTrue(grants.isEmpty());
+        assertTrue(grants.grant(1, 3, 5, NOW));
+    }
+
+    @Test
+    public void writeWaitsForEveryHolderOfAnOlderVersion() {
+        LeaseGrants grants = new LeaseGrants(N, DURATION);
+        assertTrue(grants.grant(1, 0, 1, NOW));
+        assertTrue(grants.grant(1, 3, 2, NOW));
+        assertArrayEquals(new int[] {0, 3}, hold(grants, new WriteRequest(1, 7, 3, 1), NOW));
+
+        List<LeaseGrants.HeldWrite> ready = new ArrayList<>();
+        grants.revoked(1, 3, NOW, ready);
+        assertTrue(ready.isEmpty());
+        grants.revoked(1, 0, NOW, ready);
+        assertEquals(1, ready.size());
+    }
+
+    @Test
+    public void expiredLeaseReleasesItsWrites() {
+        LeaseGrants grants = new LeaseGrants(N, DURATION);
+        assertTrue(grants.grant(1, 2, 1, NOW));
+        assertEquals(1, hold(grants, new WriteRequest(1, 6, 2, 1), NOW).length);
+
+        // the holder never confirms: the write waits out the lease on the grantor's clock
+        List<LeaseGrants.HeldWrite> ready = new ArrayList<>();
+        grants.expire(NOW + DURATION - 1, ready);
+        assertTrue(ready.isEmpty());
+        assertTrue(grants.blocks(1, 2, NOW + DURATION - 1));
+        grants.expire(NOW + DURATION, ready);
+        assertEquals(1, ready.size());
+        assertFalse(grants.blocks(1, 2, NOW + DURATION));
+        assertTrue(grants.isEmpty());
+    }
+
+    @Test
+    public void restartedReplicaHoldsEveryWriteBackForADuration() {
+        LeaseGrants grants = new LeaseGrants(N, DURATION);
+        assertTrue(grants.grant(1, 2, 1, NOW));
+        long restart = NOW + 10;
+        grants.restart(restart);
+        // the grants given before the crash are unknown: every key waits, and none is granted
+        assertTrue(grants.blocks(1, 1, restart));
+        assertTrue(grants.blocks(42, 1, restart + DURATION - 1));
+        assertFalse(grants.grant(1, 3, 1, restart));
+        assertFalse(grants.isEmpty());
+
+        // a write arriving meanwhile has no holder to revoke, it waits for the quiet period
+        assertEquals(0, hold(grants, new WriteRequest(42, 1, 1, 1), restart).length);
+        List<LeaseGrants.HeldWrite> ready = new ArrayList<>();
+        grants.expire(restart + DURATION - 1, ready);
+        assertTrue(ready.isEmpty());
+        grants.endQuiet(restart + DURATION - 1);
+        assertFalse(grants.isEmpty());
+
+        grants.expire(restart + DURATION, ready);
+        assertEquals(1, ready.size());
+        assertFalse(grants.blocks(42, 1, restart + DURATION));
+        grants.endQuiet(restart + DURATION);
+        assertTrue(grants.isEmpty());
+        assertTrue(grants.grant(1, 3, 1, restart + DURATION));
+    }
+}
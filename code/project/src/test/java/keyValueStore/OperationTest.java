@@ -0,0 +1,56 @@
+package keyValueStore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class OperationTest {
+    // a get whose read phase received responses[i] = {v, t} from process i
+    private static Operation get(long[]... responses) {
+        Operation op = new Operation(responses.length);
+        op.start(1, 7, false, 0, null, 0);
+        for (int i = 0; i < responses.length; i++) {
+            assertTrue(op.addResponder(i));
+            op.addReadResponse(i, (int) responses[i][0], responses[i][1], null);
+        }
+        return op;
+    }
+
+    @Test
+    public void agreeingQuorumIsUnanimous() {
+        Operation op = get(new long[] {5, 3}, new long[] {5, 3}, new long[] {5, 3});
+        assertTrue(op.unanimous);
+        assertEquals(5, op.maxValue);
+        assertEquals(3, op.maxTimestamp);
+        // the initial register state counts as a value like any other
+        assertTrue(get(new long[] {0, 0}, new long[] {0, 0}).unanimous);
+    }
+
+    @Test
+    public void anyDisagreementNeedsTheWriteBack() {
+        // a replica behind on the timestamp, whichever position it answers in
+        assertFalse(get(new long[] {5, 3}, new long[] {5, 3}, new long[] {4, 2}).unanimous);
+        assertFalse(get(new long[] {4, 2}, new long[] {5, 3}, new long[] {5, 3}).unanimous);
+        // concurrent writes with the same counter: their writers tell them apart
+        Operation op = get(new long[] {6, Versions.of(3, 1)}, new long[] {5, Versions.of(3, 2)});
+        assertFalse(op.unanimous);
+        assertEquals(5, op.maxValue);
+        assertEquals(Versions.of(3, 2), op.maxTimestamp);
+    }
+
+    @Test
+    public void maximumIsTheLargestVersion() {
+        Operation op = get(new long[] {9, 1}, new long[] {2, 4}, new long[] {3, 3}, new long[] {8, 2});
+        assertEquals(2, op.maxValue);
+        assertEquals(4, op.maxTimestamp);
+        // a reused slot starts over
+        op.start(2, 7, false, 0, null, 0);
+        assertTrue(op.addResponder(0));
+        op.addReadResponse(0, 1, 1, null);
+        assertTrue(op.unanimous);
+        assertEquals(1, op.maxValue);
+        assertEquals(1, op.responderCount());
+    }
+}
@@ -0,0 +1,98 @@
+package keyValueStore;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
+import keyValueStore.msg.BatchMessage;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class OutboxTest {
+    private static ActorSystem system;
+
+    @BeforeClass
+    public static void setUp() {
+        system = ActorSystem.create("OutboxTest");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        TestKit.shutdownActorSystem(system);
+    }
+
+    // the wire of a process without kv.network: plain tells from sender
+    private static Outbox outbox(int maxBatchSize, ActorRef sender) {
+        return new Outbox(maxBatchSize, (to, msg) -> to.tell(msg, sender));
+    }
+
+    @Test
+    public void bufferedMessagesLeaveAsOneBatchPerPeer() {
+        TestKit a = new TestKit(system);
+        TestKit b = new TestKit(system);
+        TestKit sender = new TestKit(system);
+        Outbox outbox = outbox(10, sender.getRef());
+        assertTrue(outbox.isEmpty());
+        assertFalse(outbox.add(a.getRef(), "a1"));
+        assertFalse(outbox.add(b.getRef(), "b1"));
+        assertFalse(outbox.add(a.getRef(), "a2"));
+        assertFalse(outbox.isEmpty());
+        a.expectNoMessage();
+
+        // one batch for a in buffering order, the lone message for b unwrapped
+        assertEquals(2, outbox.flushAll());
+        assertTrue(outbox.isEmpty());
+        BatchMessage batch = a.expectMsgClass(BatchMessage.class);
+        assertArrayEquals(new Object[] {"a1", "a2"}, batch.getMessages());
+        assertEquals(sender.getRef(), a.getLastSender());
+        b.expectMsgEquals("b1");
+        assertEquals(0, outbox.flushAll());
+        a.expectNoMessage();
+    }
+
+    @Test
+    public void reachingTheSizeLimitIsReported() {
+        TestKit a = new TestKit(system);
+        Outbox outbox = outbox(3, ActorRef.noSender());
+        assertFalse(outbox.add(a.getRef(), 1));
+        assertFalse(outbox.add(a.getRef(), 2));
+        assertTrue(outbox.add(a.getRef(), 3));
+        assertEquals(1, outbox.flush(a.getRef()));
+        assertArrayEquals(new Object[] {1, 2, 3}, a.expectMsgClass(BatchMessage.class).getMessages());
+        // the buffer starts over after a flush
+        assertFalse(outbox.add(a.getRef(), 4));
+        assertEquals(1, outbox.flushAll());
+        a.expectMsgEquals(4);
+    }
+
+    @Test
+    public void flushingOnePeerKeepsTheOthersBuffered() {
+        TestKit a = new TestKit(system);
+        TestKit b = new TestKit(system);
+        Outbox outbox = outbox(10, ActorRef.noSender());
+        outbox.add(a.getRef(), "a1");
+        outbox.add(b.getRef(), "b1");
+        assertEquals(1, outbox.flush(b.getRef()));
+        b.expectMsgEquals("b1");
+        assertEquals(0, outbox.flush(b.getRef()));
+        assertFalse(outbox.isEmpty());
+        a.expectNoMessage();
+        assertEquals(1, outbox.flushAll());
+        a.expectMsgEquals("a1");
+        b.expectNoMessage();
+    }
+
+    @Test
+    public void sizeLimitBelowOneSendsEveryMessageAlone() {
+        TestKit a = new TestKit(system);
+        Outbox outbox = outbox(0, ActorRef.noSender());
+        assertTrue(outbox.add(a.getRef(), "x"));
+        assertEquals(1, outbox.flush(a.getRef()));
+        a.expectMsgEquals("x");
+    }
+}
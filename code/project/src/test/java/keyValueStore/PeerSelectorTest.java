@@ -0,0 +1,128 @@
+package keyValueStore;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+public class PeerSelectorTest {
+    private static final int N = 5;
+
+    // alpha 0.5, slow beyond 2x the phase latency, hedge after mean + 4 deviations within [10, 10000]
+    private static PeerSelector selector(int self) {
+        return new PeerSelector(N, self, 0.5, 2.0, 4.0, 10, 10_000, 777);
+    }
+
+    private static Operation phase() {
+        Operation op = new Operation(N);
+        op.start(1, 1, false, 0, null, 0);
+        op.startPhase("request", 0, 0);
+        return op;
+    }
+
+    // the peers a fresh phase targets, all of them in ranking order
+    private static int[] ranking(PeerSelector peers) {
+        return select(peers, phase(), N, Double.POSITIVE_INFINITY);
+    }
+
+    private static int[] select(PeerSelector peers, Operation op, int count, double maxEstimate) {
+        int[] out = new int[N];
+        return Arrays.copyOf(out, peers.select(op, count, maxEstimate, out));
+    }
+
+    @Test
+    public void withoutEstimatesEveryProcessStartsAtItself() {
+        assertArrayEquals(new int[] {0, 1, 2, 3, 4}, ranking(selector(0)));
+        assertArrayEquals(new int[] {3, 4, 0, 1, 2}, ranking(selector(3)));
+        assertEquals(0, selector(0).known());
+    }
+
+    @Test
+    public void slowPeersGoBehindByEstimateAndUnknownOnesLast() {
+        PeerSelector peers = selector(0);
+        peers.phaseCompleted(100);
+        peers.sample(0, 50);
+        peers.sample(1, 1000);
+        peers.sample(2, 60);
+        peers.sample(3, 500);
+        assertEquals(4, peers.known());
+        // 0 and 2 are within 2 x 100 and keep the fixed order; 4 was never heard from
+        assertArrayEquals(new int[] {0, 2, 3, 1, 4}, ranking(peers));
+
+        // the estimate of 1 moves halfway to each new sample: 550, 325, 212.5, 156.25
+        peers.sample(1, 100);
+        peers.sample(1, 100);
+        peers.sample(1, 100);
+        assertArrayEquals(new int[] {0, 2, 1, 3, 4}, ranking(peers));
+        peers.sample(1, 100);
+        assertArrayEquals(new int[] {0, 1, 2, 3, 4}, ranking(peers));
+        assertEquals(4, peers.known());
+    }
+
+    @Test
+    public void hedgesTargetOnlyPeersNotAskedYet() {
+        PeerSelector peers = selector(0);
+        peers.phaseCompleted(100);
+        peers.sample(0, 50);
+        peers.sample(1, 1000);
+        peers.sample(2, 60);
+        peers.sample(3, 500);
+        Operation op = phase();
+        assertArrayEquals(new int[] {0, 2}, select(peers, op, 2, Double.POSITIVE_INFINITY));
+        // a hedge after 600 ns asks who is expected to answer sooner than that
+        assertArrayEquals(new int[] {3}, select(peers, op, 2, 600));
+        assertArrayEquals(new int[] {1, 4}, select(peers, op, 2, Double.POSITIVE_INFINITY));
+        assertArrayEquals(new int[0], select(peers, op, 2, Double.POSITIVE_INFINITY));
+        for (int i = 0; i < N; i++) {
+            assertTrue(op.isTargeted(i));
+        }
+    }
+
+    @Test
+    public void silentPeerIsChargedItsWait() {
+        PeerSelector peers = selector(0);
+        peers.phaseCompleted(100);
+        for (int i = 0; i < N; i++) {
+            peers.sample(i, 50 + i);
+        }
+        assertArrayEquals(new int[] {0, 1, 2, 3, 4}, ranking(peers));
+        // a wait shorter than the estimate says nothing new
+        peers.penalize(1, 10);
+        assertArrayEquals(new int[] {0, 1, 2, 3, 4}, ranking(peers));
+        // 1 did not reply at a hedge after 5000 ns: it is at least that slow now
+        peers.penalize(1, 5000);
+        peers.penalize(3, 300);
+        assertArrayEquals(new int[] {0, 2, 4, 3, 1}, ranking(peers));
+        // and comes back once it replies in time again
+        for (int i = 0; i < 6; i++) {
+            peers.sample(1, 50);
+        }
+        assertArrayEquals(new int[] {0, 1, 2, 4, 3}, ranking(peers));
+    }
+
+    @Test
+    public void hedgeDelayFollowsThePhaseLatency() {
+        PeerSelector peers = selector(0);
+        // no phase completed yet
+        assertEquals(777, peers.hedgeDelay(0));
+        // mean 100, deviation 50
+        peers.phaseCompleted(100);
+        assertEquals(300, peers.hedgeDelay(0));
+        // doubled per hedge the phase already had, up to the maximum
+        assertEquals(600, peers.hedgeDelay(1));
+        assertEquals(2400, peers.hedgeDelay(3));
+        assertEquals(10_000, peers.hedgeDelay(10));
+        assertEquals(10_000, peers.hedgeDelay(1000));
+        // deviation 50 + 0.5 * (100 - 50), mean 100 + 0.5 * (200 - 100)
+        peers.phaseCompleted(200);
+        assertEquals(150 + 4 * 75, peers.hedgeDelay(0));
+
+        PeerSelector fast = new PeerSelector(N, 0, 0.5, 2.0, 4.0, 1000, 10_000, 0);
+        assertEquals(1000, fast.hedgeDelay(0));
+        fast.phaseCompleted(10);
+        assertEquals(1000, fast.hedgeDelay(0));
+        assertEquals(2000, fast.hedgeDelay(1));
+    }
+}
@@ -0,0 +1,223 @@
+package keyValueStore;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
+import com.typesafe.config.ConfigFactory;
+import keyValueStore.msg.CatchUpChunk;
+import keyValueStore.msg.CatchUpRequest;
+import keyValueStore.msg.CrashMessage;
+import keyValueStore.msg.OperationsMessage;
+import keyValueStore.msg.ProcessMessage;
+import keyValueStore.msg.ReadRequest;
+import keyValueStore.msg.RecoverMessage;
+import keyValueStore.msg.RecoveredMessage;
+import keyValueStore.msg.ReferencesMessage;
+import keyValueStore.msg.WalSynced;
+import keyValueStore.msg.WriteRequest;
+import keyValueStore.storage.Durability;
+import keyValueStore.storage.WriteAheadLog;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+
+/* Replica p0 of a three-process group whose peers p1 and p2 are test probes: crash, recovery
+from its write-ahead log, and the chunked catch-up from its peers. */
+public class ProcessRecoveryTest {
+    private static final int KEYS = 10_000;
+    private static final int CHUNK_KEYS = 4096;
+    private static final FiniteDuration QUIET = Duration.create(200, TimeUnit.MILLISECONDS);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ActorSystem system;
+    private ActorRef p0;
+    private TestKit p1;
+    private TestKit p2;
+    private TestKit monitor;
+    // sends WriteRequests and ReadRequests; not a member of the group
+    private TestKit client;
+    private Path dataDir;
+
+    private void start(String durability) throws IOException {
+        dataDir = folder.newFolder().toPath();
+        system = ActorSystem.create("ProcessRecoveryTest", ConfigFactory.parseString(
+                "akka.loglevel = WARNING\n"
+                + "kv.persistence.durability = " + durability + "\n"
+                + "kv.persistence.dir = \"" + dataDir + "\"\n"
+                + "kv.events.file = \"" + folder.newFile().toPath() + "\"\n"
+                + "kv.recovery.chunk-keys = " + CHUNK_KEYS + "\n"
+                + "kv.recovery.chunks-in-flight = 2\n"
+                // no retries while a test holds back a reply
+                + "kv.recovery.retry-after = 1h\n")
+                .withFallback(ConfigFactory.load()));
+        p0 = system.actorOf(Process.createActor(), "p0");
+        p1 = new TestKit(system);
+        p2 = new TestKit(system);
+        monitor = new TestKit(system);
+        client = new TestKit(system);
+        p0.tell(new ReferencesMessage(Arrays.asList(p0, p1.getRef(), p2.getRef()), monitor.getRef()),
+                ActorRef.noSender());
+        p0.tell(new OperationsMessage(0, KEYS, 0), ActorRef.noSender());
+    }
+
+    @After
+    public void stop() {
+        if (system != null) {
+            TestKit.shutdownActorSystem(system);
+        }
+    }
+
+    private void write(int key, int value, int timestamp) {
+        p0.tell(new WriteRequest(key, value, timestamp, key), client.getRef());
+        Ack ack = client.expectMsgClass(Ack.class);
+        assertEquals(key, ack.getKey());
+    }
+
+    private ProcessMessage read(int key) {
+        p0.tell(new ReadRequest(key, key), client.getRef());
+        return client.expectMsgClass(ProcessMessage.class);
+    }
+
+    private void crashAndRecover() {
+        p0.tell(new CrashMessage(), ActorRef.noSender());
+        p0.tell(new RecoverMessage(), ActorRef.noSender());
+    }
+
+    /* What a replica restarting from p0's directory right now would recover. */
+    private RegisterMap onDisk() throws IOException {
+        Path copy = folder.newFolder().toPath();
+        Path dir = dataDir.resolve("p0");
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.copy(file, copy.resolve(file.getFileName()));
+            }
+        }
+        RegisterMap registers = new RegisterMap();
+        WriteAheadLog.open(copy, Durability.BUFFERED, true, registers, lsn -> {}).close();
+        return registers;
+    }
+
+    private static CatchUpChunk reply(CatchUpRequest request, int processNumber, int... keyValueTimestamp) {
+        int n = keyValueTimestamp.length / 3;
+        int[] keys = new int[n];
+        int[] values = new int[n];
+        long[] timestamps = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = keyValueTimestamp[3 * i];
+            values[i] = keyValueTimestamp[3 * i + 1];
+            timestamps[i] = keyValueTimestamp[3 * i + 2];
+        }
+        return new CatchUpChunk(request.getFromKey(), request.getToKey(), processNumber, keys, values, timestamps);
+    }
+
+    @Test
+    public void lateReportOfTheOldLogReleasesNoAckOfTheNewOne() throws IOException {
+        start("fsync");
+        for (int key = 1; key <= 5; key++) {
+            write(key, 10 + key, 1);
+        }
+        crashAndRecover();
+        // the log closed by the recovery reports an lsn far beyond anything the new one holds
+        p0.tell(new WalSynced(1, 1000), ActorRef.noSender());
+        for (int i = 1; i <= 20; i++) {
+            write(100 + i, i, 1);
+            // an Ack that left is backed by the reopened log
+            RegisterMap disk = onDisk();
+            assertEquals(i, disk.getValue(100 + i));
+            assertEquals(5 + i, disk.size());
+        }
+    }
+
+    @Test
+    public void durableReplicaCatchesUpFromOnePeerPerChunk() throws IOException {
+        start("fsync");
+        write(7, 70, 3);
+        crashAndRecover();
+        // restored from its log, it serves reads while catching up
+        assertEquals(70, read(7).getValue());
+
+        // one peer per chunk, two chunks outstanding at once
+        CatchUpRequest first = p1.expectMsgClass(CatchUpRequest.class);
+        CatchUpRequest second = p2.expectMsgClass(CatchUpRequest.class);
+        assertEquals(1, first.getFromKey());
+        assertEquals(1 + CHUNK_KEYS, first.getToKey());
+        assertEquals(1 + CHUNK_KEYS, second.getFromKey());
+        assertEquals(1 + 2 * CHUNK_KEYS, second.getToKey());
+        // the requester's own versions, so only newer registers come back
+        assertEquals(3, first.getTimestamps()[7 - 1]);
+
+        p0.tell(reply(first, 1, 8, 80, 2), p1.getRef());
+        CatchUpRequest third = p1.expectMsgClass(CatchUpRequest.class);
+        assertEquals(1 + 2 * CHUNK_KEYS, third.getFromKey());
+        assertEquals(KEYS + 1, third.getToKey());
+        p0.tell(reply(second, 2), p2.getRef());
+        p0.tell(reply(third, 1, 9000, 90, 4), p1.getRef());
+
+        RecoveredMessage recovered = monitor.expectMsgClass(RecoveredMessage.class);
+        assertEquals(0, recovered.getProcessNumber());
+        assertEquals(3, recovered.getChunks());
+        assertEquals(2, recovered.getKeysReceived());
+        assertEquals(80, read(8).getValue());
+        assertEquals(90, read(9000).getValue());
+        // caught-up registers are logged like any other update: durable once a later write is
+        write(1, 1, 1);
+        assertEquals(90, onDisk().getValue(9000));
+    }
+
+    @Test
+    public void replicaWithoutDurableStateWaitsForAMajorityOfEveryChunk() throws IOException {
+        start("none");
+        write(7, 70, 3);
+        crashAndRecover();
+        // it lost what it acknowledged, so it does not answer reads until it has caught up
+        p0.tell(new ReadRequest(7, 1), client.getRef());
+
+        List<TestKit> peers = Arrays.asList(p1, p2);
+        CatchUpRequest[][] requests = new CatchUpRequest[2][2];
+        for (int p = 0; p < 2; p++) {
+            for (int c = 0; c < 2; c++) {
+                requests[p][c] = peers.get(p).expectMsgClass(CatchUpRequest.class);
+                assertEquals(1 + c * CHUNK_KEYS, requests[p][c].getFromKey());
+                // nothing survived the crash
+                assertArrayEquals(new long[CHUNK_KEYS], requests[p][c].getTimestamps());
+            }
+        }
+        // a chunk needs both peers (a majority of three with p0 itself not counting); a repeated
+        // reply of the same peer does not count twice
+        p0.tell(reply(requests[0][0], 1, 7, 70, 3), p1.getRef());
+        p0.tell(reply(requests[0][0], 1, 7, 70, 3), p1.getRef());
+        p1.expectNoMessage(QUIET);
+        p0.tell(reply(requests[1][0], 2), p2.getRef());
+        CatchUpRequest third = p1.expectMsgClass(CatchUpRequest.class);
+        assertEquals(third.getFromKey(), p2.expectMsgClass(CatchUpRequest.class).getFromKey());
+        for (CatchUpRequest request : new CatchUpRequest[] {requests[0][1], third}) {
+            p0.tell(reply(request, 1), p1.getRef());
+            p0.tell(reply(request, 2), p2.getRef());
+        }
+
+        assertEquals(3, monitor.expectMsgClass(RecoveredMessage.class).getChunks());
+        client.expectNoMessage(QUIET);
+        ProcessMessage value = read(7);
+        assertEquals(70, value.getValue());
+        assertEquals(3, value.getTimestamp());
+        // durability none writes nothing
+        assertFalse(Files.exists(dataDir.resolve("p0")));
+    }
+}
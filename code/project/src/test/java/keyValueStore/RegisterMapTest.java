@@ -0,0 +1,230 @@
+package keyValueStore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+public class RegisterMapTest {
+    // the reference state: key -> {value, timestamp}
+    private static void assertSameState(Map<Integer, long[]> expected, RegisterMap registers) {
+        assertEquals(expected.size(), registers.size());
+        for (Map.Entry<Integer, long[]> e : expected.entrySet()) {
+            assertEquals((int) e.getValue()[0], registers.getValue(e.getKey()));
+            assertEquals(e.getValue()[1], registers.getTimestamp(e.getKey()));
+        }
+        Map<Integer, Long> visited = new HashMap<>();
+        registers.forEach((key, value, timestamp) -> {
+            assertNull("visited twice: " + key, visited.put(key, timestamp));
+            assertEquals((int) expected.get(key)[0], value);
+        });
+        assertEquals(expected.keySet(), visited.keySet());
+    }
+
+    private static ByteBuffer payload(int key) {
+        return ByteBuffer.allocate(4).putInt(0, key).asReadOnlyBuffer();
+    }
+
+    @Test
+    public void rehashUnderLoadKeepsEveryRegister() {
+        RegisterMap registers = new RegisterMap();
+        Map<Integer, long[]> expected = new HashMap<>();
+        Random random = new Random(7);
+        List<Integer> keys = new ArrayList<>();
+        for (int i = 1; i <= 50_000; i++) {
+            keys.add(i);
+            // negative keys, and keys sharing their low bits
+            keys.add(-i);
+            keys.add(i << 16);
+        }
+        Collections.shuffle(keys, random);
+        int growths = 0;
+        int capacity = registers.capacity();
+        for (int i = 0; i < keys.size(); i++) {
+            int key = keys.get(i);
+            long timestamp = 1 + random.nextInt(1000);
+            assertTrue(registers.putIfNewer(key, i, timestamp));
+            expected.put(key, new long[] {i, timestamp});
+            // overwrite an earlier key now and then, while the table keeps growing
+            if (i % 7 == 0) {
+                int earlier = keys.get(random.nextInt(i + 1));
+                long newer = expected.get(earlier)[1] + 1;
+                assertTrue(registers.putIfNewer(earlier, -i, newer));
+                expected.put(earlier, new long[] {-i, newer});
+            }
+            if (registers.capacity() != capacity) {
+                assertEquals(capacity * 2, registers.capacity());
+                capacity = registers.capacity();
+                growths++;
+            }
+            assertTrue(registers.size() <= registers.capacity() * 3 / 4);
+        }
+        assertTrue(growths >= 10);
+        assertSameState(expected, registers);
+        // absent keys read as the initial register
+        assertEquals(0, registers.getValue(50_001));
+        assertEquals(0, registers.getTimestamp(50_001));
+        assertNull(registers.getPayload(50_001));
+    }
+
+    @Test
+    public void payloadsSurviveRehash() {
+        RegisterMap registers = new RegisterMap();
+        // entries stored before the first payload have none
+        registers.putIfNewer(1, 1, 1);
+        for (int key = 2; key < 1000; key++) {
+            registers.putIfNewer(key, key, 1, key % 2 == 0 ? payload(key) : null);
+        }
+        assertNull(registers.getPayload(1));
+        for (int key = 2; key < 1000; key++) {
+            if (key % 2 == 0) {
+                assertEquals(key, registers.getPayload(key).getInt(0));
+            } else {
+                assertNull(registers.getPayload(key));
+            }
+        }
+        // a newer value without a payload drops the old one
+        registers.putIfNewer(2, 5, 2);
+        assertNull(registers.getPayload(2));
+    }
+
+    @Test
+    public void presizedTableDoesNotGrow() {
+        RegisterMap registers = new RegisterMap(10_000);
+        int capacity = registers.capacity();
+        for (int key = 1; key <= 10_000; key++) {
+            registers.putIfNewer(key, key, 1);
+        }
+        assertEquals(capacity, registers.capacity());
+        assertEquals(10_000, registers.size());
+    }
+
+    @Test
+    public void keyZeroIsStoredOutsideTheTable() {
+        RegisterMap registers = new RegisterMap();
+        assertEquals(0, registers.getValue(0));
+        assertEquals(0, registers.getTimestamp(0));
+        assertNull(registers.getPayload(0));
+        // the initial state is (0, 0): a version 0 write changes nothing
+        assertFalse(registers.putIfNewer(0, 9, 0));
+        assertEquals(0, registers.size());
+
+        ByteBuffer payload = payload(0);
+        assertTrue(registers.putIfNewer(0, 5, 3, payload));
+        assertEquals(1, registers.size());
+        assertEquals(5, registers.getValue(0));
+        assertEquals(3, registers.getTimestamp(0));
+        assertSame(payload, registers.getPayload(0));
+        assertFalse(registers.putIfNewer(0, 6, 3));
+        assertFalse(registers.putIfNewer(0, 6, 2));
+        assertEquals(5, registers.getValue(0));
+
+        // the rest of the table neither sees nor displaces it
+        for (int key = 1; key < 100; key++) {
+            registers.putIfNewer(key, key, 1);
+        }
+        assertEquals(100, registers.size());
+        assertEquals(5, registers.getValue(0));
+        assertSame(payload, registers.getPayload(0));
+        int[] zeroVisits = {0};
+        registers.forEach((key, value, timestamp) -> {
+            if (key == 0) {
+                zeroVisits[0]++;
+                assertEquals(5, value);
+                assertEquals(3, timestamp);
+            }
+        });
+        assertEquals(1, zeroVisits[0]);
+        assertTrue(registers.putIfNewer(0, 7, 4));
+        assertEquals(7, registers.getValue(0));
+        assertNull(registers.getPayload(0));
+    }
+
+    @Test
+    public void putIfNewerKeepsTheLargestVersionInAnyOrder() {
+        long[] versions = new long[20];
+        for (int i = 0; i < versions.length; i++) {
+            // counters 1..10, each by two writers
+            versions[i] = Versions.of(1 + i / 2, i % 2);
+        }
+        Random random = new Random(3);
+        for (int round = 0; round < 100; round++) {
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < versions.length; i++) {
+                order.add(i);
+            }
+            Collections.shuffle(order, random);
+            RegisterMap registers = new RegisterMap();
+            long newest = 0;
+            for (int i : order) {
+                boolean newer = versions[i] > newest;
+                assertEquals(newer, registers.putIfNewer(42, i, versions[i]));
+                newest = Math.max(newest, versions[i]);
+                assertEquals(newest, registers.getTimestamp(42));
+            }
+            assertEquals(versions.length - 1, registers.getValue(42));
+            assertEquals(1, registers.size());
+        }
+    }
+
+    @Test
+    public void equalVersionIsTheSameWrite() {
+        RegisterMap registers = new RegisterMap();
+        assertTrue(registers.putIfNewer(1, 10, 5));
+        // no tie-break on the value: a second delivery with any value is ignored
+        assertFalse(registers.putIfNewer(1, 11, 5));
+        assertFalse(registers.putIfNewer(1, 9, 5));
+        assertEquals(10, registers.getValue(1));
+        // an absent key only takes a version above the initial one
+        assertFalse(registers.putIfNewer(2, 1, 0));
+        assertFalse(registers.putIfNewer(2, 1, -1));
+        assertEquals(1, registers.size());
+    }
+
+    @Test
+    public void copyIsIndependent() {
+        RegisterMap original = new RegisterMap();
+        for (int key = 0; key < 10; key++) {
+            original.putIfNewer(key, key, 1, key % 2 == 0 ? payload(key) : null);
+        }
+        RegisterMap copy = original.copy();
+        assertEquals(original.size(), copy.size());
+
+        // writes to either side, including key 0 and enough keys to rehash the copy
+        original.putIfNewer(0, 100, 2);
+        original.putIfNewer(3, 103, 2, payload(103));
+        original.putIfNewer(1000, 1, 1);
+        int capacity = copy.capacity();
+        for (int key = 10; key < 200; key++) {
+            copy.putIfNewer(key, key, 1);
+        }
+        copy.putIfNewer(4, 104, 2);
+        assertTrue(copy.capacity() > capacity);
+
+        assertEquals(11, original.size());
+        assertEquals(100, original.getValue(0));
+        assertEquals(103, original.getPayload(3).getInt(0));
+        assertEquals(4, original.getValue(4));
+        assertEquals(4, original.getPayload(4).getInt(0));
+        assertEquals(0, original.getValue(10));
+
+        assertEquals(200, copy.size());
+        assertEquals(0, copy.getValue(0));
+        assertEquals(0, copy.getPayload(0).getInt(0));
+        assertEquals(3, copy.getValue(3));
+        assertNull(copy.getPayload(3));
+        assertEquals(104, copy.getValue(4));
+        assertEquals(0, copy.getTimestamp(1000));
+        assertEquals(199, copy.getValue(199));
+    }
+}
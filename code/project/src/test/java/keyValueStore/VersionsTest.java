@@ -0,0 +1,103 @@
+package keyValueStore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class VersionsTest {
+    @Test
+    public void packsCounterAndWriter() {
+        long v = Versions.of(123456789L, 17);
+        assertEquals(123456789L, Versions.counter(v));
+        assertEquals(17, Versions.writer(v));
+        long max = Versions.of((1L << (63 - Versions.WRITER_BITS)) - 1, Versions.MAX_PROCESSES - 1);
+        assertEquals(Versions.MAX_PROCESSES - 1, Versions.writer(max));
+        assertTrue(max > 0);
+        assertEquals("5.3", Versions.toString(Versions.of(5, 3)));
+    }
+
+    @Test
+    public void counterDecidesWriterBreaksTies() {
+        assertTrue(Versions.of(2, 0) > Versions.of(1, Versions.MAX_PROCESSES - 1));
+        assertTrue(Versions.of(1, 2) > Versions.of(1, 1));
+        // the initial timestamp of a register is below every version issued
+        assertTrue(Versions.of(1, 0) > 0);
+        // ordered like the counters until the 52 bits run out
+        long now = Versions.nowMicros();
+        assertTrue(Versions.of(now + 1, 0) > Versions.of(now, Versions.MAX_PROCESSES - 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWritersBeyondTheBits() {
+        new Versions.Clock(Versions.MAX_PROCESSES);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeWriters() {
+        new Versions.Clock(-1);
+    }
+
+    @Test
+    public void clockStartsAtTheWallClock() {
+        long before = Versions.nowMicros();
+        Versions.Clock clock = new Versions.Clock(3);
+        long v = clock.next();
+        assertEquals(3, Versions.writer(v));
+        assertTrue(Versions.counter(v) >= before);
+        assertTrue(Math.abs(Versions.counter(v) - System.currentTimeMillis() * 1000) < 60_000_000L);
+    }
+
+    @Test
+    public void nextIsStrictlyIncreasingWithinAMicrosecond() {
+        Versions.Clock clock = new Versions.Clock(1);
+        long last = clock.next();
+        for (int i = 0; i < 100_000; i++) {
+            long v = clock.next();
+            assertTrue(v > last);
+            last = v;
+        }
+    }
+
+    @Test
+    public void afterIsAboveTheQuorumMaximumAndTheClock() {
+        Versions.Clock clock = new Versions.Clock(2);
+        long own = clock.after(0);
+        // a maximum far ahead of the clock: the next counter follows it
+        long ahead = Versions.of(Versions.counter(own) + 1_000_000, 7);
+        long v = clock.after(ahead);
+        assertEquals(Versions.counter(ahead) + 1, Versions.counter(v));
+        assertEquals(2, Versions.writer(v));
+        // a maximum behind: still above everything issued
+        long w = clock.after(Versions.of(1, 9));
+        assertTrue(w > v);
+        assertTrue(w > ahead);
+    }
+
+    @Test
+    public void observeOnlyMovesForward() {
+        Versions.Clock clock = new Versions.Clock(4);
+        long v = clock.next();
+        long ahead = Versions.of(Versions.counter(v) + 5_000_000, 1);
+        clock.observe(ahead);
+        long w = clock.next();
+        assertTrue(w > ahead);
+        clock.observe(Versions.of(1, 1));
+        assertTrue(clock.next() > w);
+    }
+
+    @Test
+    public void restartNeverReissues() {
+        Versions.Clock clock = new Versions.Clock(5);
+        long v = clock.after(Versions.of(Versions.nowMicros() + 10_000_000, 0));
+        clock.restart();
+        long w = clock.next();
+        assertTrue(w > v);
+        assertTrue(clock.after(0) > w);
+        // restart catches a clock that fell behind up with the wall clock
+        Versions.Clock behind = new Versions.Clock(6);
+        long before = Versions.nowMicros();
+        behind.restart();
+        assertTrue(Versions.counter(behind.after(0)) > before);
+    }
+}
@@ -0,0 +1,176 @@
+package keyValueStore.check;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/* Known-good and known-bad register histories, written in the text history format (KVLogger)
+and checked through History.load like make check does. */
+public class RegisterCheckTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> lines = new ArrayList<>();
+    private int seq = 0;
+
+    // a completed put of value on key by process p, from start to end
+    private void put(int p, int key, int value, long start, long end) {
+        invoke(p, key, true, value, start);
+        lines.add("p" + p + ": Put value: " + value + " operation duration: " + (end - start) + "ns end_ts=" + end
+                + " seq=" + seq + " key=" + key);
+    }
+
+    // a completed get of key by process p that returned value
+    private void get(int p, int key, int value, long start, long end) {
+        invoke(p, key, false, 0, start);
+        lines.add("p" + p + ": Get return value: " + value + " operation duration: " + (end - start) + "ns end_ts="
+                + end + " seq=" + seq + " key=" + key);
+    }
+
+    // a put whose process crashed before it completed
+    private void pendingPut(int p, int key, int value, long start) {
+        invoke(p, key, true, value, start);
+        lines.add("p" + p + ": process crashed");
+    }
+
+    private void invoke(int p, int key, boolean write, int value, long start) {
+        seq++;
+        lines.add("p" + p + ": Invoke " + (write ? "write" : "read") + " start_ts=" + start + " seq=" + seq + " key="
+                + key + (write ? " value=" + value : ""));
+    }
+
+    private History load() throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+        History history = History.load(file.getPath());
+        history.groupByKey();
+        return history;
+    }
+
+    private Violation check() throws IOException {
+        History history = load();
+        Violation found = null;
+        for (Violation v : LinearizabilityChecker.check(history)) {
+            if (v != null) {
+                assertNull("one violating key expected", found);
+                found = v;
+            }
+        }
+        return found;
+    }
+
+    @Test
+    public void sequentialHistoryIsLinearizable() throws IOException {
+        get(0, 1, 0, 0, 10);
+        put(0, 1, 5, 20, 30);
+        get(1, 1, 5, 40, 50);
+        put(1, 1, 7, 60, 70);
+        get(2, 1, 7, 80, 90);
+        assertNull(check());
+    }
+
+    @Test
+    public void concurrentReadsMayReturnEitherValue() throws IOException {
+        put(0, 1, 5, 0, 10);
+        put(1, 1, 7, 20, 100);
+        // both overlap the write of 7: the first may see it, the second the old value, as long
+        // as they overlap each other
+        get(2, 1, 7, 30, 60);
+        get(3, 1, 5, 40, 70);
+        assertNull(check());
+    }
+
+    @Test
+    public void readOfPendingWriteIsLinearizable() throws IOException {
+        put(0, 1, 5, 0, 10);
+        pendingPut(1, 1, 7, 20);
+        get(2, 1, 7, 30, 40);
+        get(2, 1, 7, 50, 60);
+        History history = load();
+        assertEquals(1, history.crashes);
+        assertNull(check());
+    }
+
+    @Test
+    public void keysAreCheckedIndependently() throws IOException {
+        put(0, 1, 5, 0, 10);
+        put(0, 2, 8, 0, 10);
+        get(1, 2, 0, 20, 30);
+        get(1, 1, 5, 20, 30);
+        Violation v = check();
+        assertNotNull(v);
+        assertEquals(2, v.key);
+    }
+
+    @Test
+    public void staleReadIsReported() throws IOException {
+        put(0, 1, 5, 0, 10);
+        put(1, 1, 7, 20, 30);
+        get(2, 1, 5, 40, 50);
+        Violation v = check();
+        assertNotNull(v);
+        assertEquals(1, v.key);
+    }
+
+    @Test
+    public void newOldInversionIsReported() throws IOException {
+        put(0, 1, 5, 0, 10);
+        put(1, 1, 7, 20, 200);
+        // both reads overlap the write, but the second starts after the first saw the new value
+        get(2, 1, 7, 30, 40);
+        get(3, 1, 5, 50, 60);
+        Violation v = check();
+        assertNotNull(v);
+        // the write of 5 is not needed to show it: 4 operations at most remain
+        History history = load();
+        Violation minimal = RegisterCheck.minimize(history, LinearizabilityChecker.check(history)[0],
+                LinearizabilityChecker.INITIAL_VALUE);
+        assertTrue(minimal.operations.length <= 4);
+        assertNotNull(RegisterCheck.check(history, minimal.operations, 0, minimal.operations.length,
+                LinearizabilityChecker.INITIAL_VALUE));
+    }
+
+    @Test
+    public void initialValueAfterNewerValueIsReported() throws IOException {
+        put(0, 1, 5, 0, 10);
+        get(1, 1, 0, 20, 30);
+        Violation v = check();
+        assertNotNull(v);
+        assertTrue(v.reason, v.reason.contains("initial value"));
+    }
+
+    @Test
+    public void readOfUnwrittenValueIsReported() throws IOException {
+        put(0, 1, 5, 0, 10);
+        get(1, 1, 9, 20, 30);
+        Violation v = check();
+        assertNotNull(v);
+        assertTrue(v.reason, v.reason.contains("no operation writes"));
+    }
+
+    @Test
+    public void readCompletingBeforeItsWriteIsReported() throws IOException {
+        get(1, 1, 5, 0, 10);
+        put(0, 1, 5, 20, 30);
+        assertNotNull(check());
+    }
+
+    @Test
+    public void pendingReadsAreDropped() throws IOException {
+        put(0, 1, 5, 0, 10);
+        invoke(1, 1, false, 0, 20);
+        History history = load();
+        assertEquals(1, history.size);
+    }
+}
@@ -0,0 +1,174 @@
+package keyValueStore.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
+import com.typesafe.config.ConfigFactory;
+import keyValueStore.msg.ClientRequest;
+import keyValueStore.msg.ClientResponse;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import scala.concurrent.duration.Duration;
+import scala.concurrent.duration.FiniteDuration;
+
+/* The client against coordinators that are test probes: permits per coordinator, rejections,
+and the sweep that fails unanswered requests. */
+public class KeyValueStoreTest {
+    // one request in flight plus one queued per coordinator
+    private static final int CAPACITY = 2;
+    private static final long TIMEOUT_MILLIS = 300;
+    private static final FiniteDuration QUIET = Duration.create(100, TimeUnit.MILLISECONDS);
+
+    private static ActorSystem system;
+
+    @BeforeClass
+    public static void setUp() {
+        system = ActorSystem.create("KeyValueStoreTest", ConfigFactory.parseString(
+                "akka.loglevel = WARNING\n"
+                + "kv.pipeline.window = 1\n"
+                + "kv.client.queue-size = 1\n"
+                + "kv.client.timeout = " + TIMEOUT_MILLIS + "ms\n")
+                .withFallback(ConfigFactory.load()));
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        TestKit.shutdownActorSystem(system);
+    }
+
+    private static void reply(TestKit coordinator, ClientRequest request, int value, boolean rejected) {
+        coordinator.getLastSender().tell(new ClientResponse(request.getRequestId(), value, rejected),
+                coordinator.getRef());
+    }
+
+    private static Throwable failure(CompletableFuture<?> future) throws Exception {
+        try {
+            future.get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        fail("the future succeeded");
+        return null;
+    }
+
+    @Test
+    public void permitsBoundEveryCoordinator() throws Exception {
+        TestKit a = new TestKit(system);
+        TestKit b = new TestKit(system);
+        KeyValueStore store = new KeyValueStore(system, Arrays.asList(a.getRef(), b.getRef()));
+        // gets of keys 1..4
+        CompletableFuture<?>[] gets = new CompletableFuture<?>[2 * CAPACITY];
+        for (int i = 0; i < gets.length; i++) {
+            gets[i] = store.get(i + 1);
+        }
+        // wherever the calls started, each coordinator holds its capacity and no more
+        ClientRequest first = a.expectMsgClass(ClientRequest.class);
+        a.expectMsgClass(ClientRequest.class);
+        b.expectMsgClass(ClientRequest.class);
+        b.expectMsgClass(ClientRequest.class);
+        assertEquals(2 * CAPACITY, store.outstanding());
+
+        // a full client fails at once instead of queueing
+        assertSame(RejectedExecutionException.class, failure(store.put(9, 9)).getClass());
+        a.expectNoMessage(QUIET);
+        b.expectNoMessage(QUIET);
+
+        // an answer returns its permit, and the next call can only go where it was returned
+        reply(a, first, 42, false);
+        assertEquals(42, gets[first.getKey() - 1].get(10, TimeUnit.SECONDS));
+        assertEquals(2 * CAPACITY - 1, store.outstanding());
+        store.put(10, 11);
+        ClientRequest next = a.expectMsgClass(ClientRequest.class);
+        assertTrue(next.isWrite());
+        assertEquals(10, next.getKey());
+        assertEquals(11, next.getValue());
+        b.expectNoMessage(QUIET);
+        store.close();
+    }
+
+    @Test
+    public void rejectionFailsTheCallAndReturnsThePermit() throws Exception {
+        TestKit a = new TestKit(system);
+        KeyValueStore store = new KeyValueStore(system, Collections.singletonList(a.getRef()));
+        CompletableFuture<Void> put = store.put(1, 1);
+        // the coordinator was full with requests of other clients
+        reply(a, a.expectMsgClass(ClientRequest.class), 0, true);
+        assertSame(RejectedExecutionException.class, failure(put).getClass());
+        assertEquals(0, store.outstanding());
+
+        // the whole capacity is available again
+        CompletableFuture<Void> second = store.put(2, 2);
+        CompletableFuture<Void> third = store.put(3, 3);
+        reply(a, a.expectMsgClass(ClientRequest.class), 0, false);
+        reply(a, a.expectMsgClass(ClientRequest.class), 0, false);
+        second.get(10, TimeUnit.SECONDS);
+        third.get(10, TimeUnit.SECONDS);
+        store.close();
+    }
+
+    @Test
+    public void silentCoordinatorTimesOutAndIsSkippedForAsLong() throws Exception {
+        TestKit a = new TestKit(system);
+        TestKit b = new TestKit(system);
+        KeyValueStore store = new KeyValueStore(system, Arrays.asList(a.getRef(), b.getRef()));
+        long start = System.nanoTime();
+        CompletableFuture<?>[] gets = new CompletableFuture<?>[2 * CAPACITY];
+        for (int i = 0; i < gets.length; i++) {
+            gets[i] = store.get(i + 1);
+        }
+        // a stays silent (crashed), b answers
+        ClientRequest[] atA = {a.expectMsgClass(ClientRequest.class), a.expectMsgClass(ClientRequest.class)};
+        for (int i = 0; i < CAPACITY; i++) {
+            reply(b, b.expectMsgClass(ClientRequest.class), 7, false);
+        }
+
+        for (ClientRequest request : atA) {
+            assertSame(TimeoutException.class, failure(gets[request.getKey() - 1]).getClass());
+        }
+        // swept between the timeout and 1.25 x the timeout after the send, give or take scheduling
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS));
+        assertEquals(0, store.outstanding());
+
+        // while a is suspected every call goes to b, up to b's capacity
+        CompletableFuture<Integer> get = store.get(5);
+        CompletableFuture<Void> put = store.put(6, 6);
+        assertSame(RejectedExecutionException.class, failure(store.get(7)).getClass());
+        ClientRequest toB = b.expectMsgClass(ClientRequest.class);
+        b.expectMsgClass(ClientRequest.class);
+        a.expectNoMessage(QUIET);
+
+        // a late answer of a timed-out request is dropped and returns no second permit
+        reply(a, atA[0], 1, false);
+        reply(b, toB, 8, false);
+        assertEquals(Integer.valueOf(8), get.get(10, TimeUnit.SECONDS));
+        assertEquals(1, store.outstanding());
+        assertFalse(put.isDone());
+        store.close();
+    }
+
+    @Test
+    public void closeFailsWhatIsOutstanding() throws Exception {
+        TestKit a = new TestKit(system);
+        KeyValueStore store = new KeyValueStore(system, Collections.singletonList(a.getRef()));
+        CompletableFuture<Integer> get = store.get(1);
+        a.expectMsgClass(ClientRequest.class);
+        store.close();
+        assertSame(IllegalStateException.class, failure(get).getClass());
+        assertSame(IllegalStateException.class, failure(store.put(2, 2)).getClass());
+        assertEquals(0, store.outstanding());
+        a.expectNoMessage(QUIET);
+    }
+}
@@ -0,0 +1,108 @@
+package keyValueStore.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+
+public class EventRingTest {
+    private static final int R = EventRing.RECORD_LONGS;
+
+    private static boolean offer(EventRing ring, long producer, long i) {
+        // every word is derived from (producer, i), so a torn record shows up as a mismatch
+        return ring.offer(producer, i, producer * 1_000_003 + i, ~i, producer ^ (i << 8));
+    }
+
+    private static void assertRecord(long[] out, int n, long producer, long i) {
+        assertEquals(producer, out[n * R]);
+        assertEquals(i, out[n * R + 1]);
+        assertEquals(producer * 1_000_003 + i, out[n * R + 2]);
+        assertEquals(~i, out[n * R + 3]);
+        assertEquals(producer ^ (i << 8), out[n * R + 4]);
+    }
+
+    @Test
+    public void fullRingDropsAndCounts() {
+        // capacity is rounded up to a power of two
+        EventRing ring = new EventRing(3);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(offer(ring, 0, i));
+        }
+        assertFalse(offer(ring, 0, 4));
+        assertFalse(offer(ring, 0, 5));
+        assertEquals(2, ring.dropped());
+
+        long[] out = new long[8 * R];
+        assertEquals(3, ring.drainTo(out, 3));
+        for (int i = 0; i < 3; i++) {
+            assertRecord(out, i, 0, i);
+        }
+        // drained slots are free again, and the ring wraps around
+        for (int i = 6; i < 9; i++) {
+            assertTrue(offer(ring, 0, i));
+        }
+        assertFalse(offer(ring, 0, 9));
+        assertEquals(4, ring.drainTo(out, 8));
+        assertRecord(out, 0, 0, 3);
+        for (int i = 6; i < 9; i++) {
+            assertRecord(out, i - 5, 0, i);
+        }
+        assertEquals(0, ring.drainTo(out, 8));
+        assertEquals(3, ring.dropped());
+    }
+
+    @Test
+    public void concurrentProducersLoseNothingAndKeepTheirOrder() throws InterruptedException {
+        final int producers = 4;
+        final int perProducer = 200_000;
+        EventRing ring = new EventRing(256);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final long producer = p;
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (long i = 0; i < perProducer; i++) {
+                    // a full ring drops; the test producer offers again until it fits
+                    while (!offer(ring, producer, i)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        start.countDown();
+
+        long[] next = new long[producers];
+        long[] out = new long[64 * R];
+        long received = 0;
+        while (received < (long) producers * perProducer) {
+            int n = ring.drainTo(out, 64);
+            if (n == 0) {
+                Thread.yield();
+            }
+            for (int k = 0; k < n; k++) {
+                int producer = (int) out[k * R];
+                assertRecord(out, k, producer, next[producer]);
+                next[producer]++;
+            }
+            received += n;
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        for (int p = 0; p < producers; p++) {
+            assertEquals(perProducer, next[p]);
+        }
+        assertEquals(0, ring.drainTo(out, 64));
+    }
+}
@@ -0,0 +1,82 @@
+package keyValueStore.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.SplittableRandom;
+import com.typesafe.config.ConfigFactory;
+import keyValueStore.net.LinkProfile.Distribution;
+import org.junit.Test;
+
+public class LinkProfileTest {
+    private static final int DRAWS = 100_000;
+    private static final long MS = 1_000_000;
+
+    /* Mean of DRAWS delays, checking every one lies in [min, max]. */
+    private static double mean(LinkProfile link, long min, long max) {
+        SplittableRandom random = new SplittableRandom(3);
+        double sum = 0;
+        for (int i = 0; i < DRAWS; i++) {
+            long d = link.delay(random);
+            assertTrue(link + " drew " + d, d >= min && d <= max);
+            sum += d;
+        }
+        return sum / DRAWS;
+    }
+
+    @Test
+    public void delaysFollowTheirDistribution() {
+        assertEquals(10 * MS, mean(new LinkProfile(10 * MS, 0, Distribution.UNIFORM, 0, 0), 10 * MS, 10 * MS), 0);
+        assertEquals(10 * MS, mean(new LinkProfile(10 * MS, 4 * MS, Distribution.FIXED, 0, 0), 10 * MS, 10 * MS), 0);
+        assertEquals(10 * MS, mean(new LinkProfile(10 * MS, 4 * MS, Distribution.UNIFORM, 0, 0), 6 * MS, 14 * MS),
+                0.02 * MS);
+        assertEquals(10 * MS, mean(new LinkProfile(10 * MS, 1 * MS, Distribution.NORMAL, 0, 0), 0, 20 * MS),
+                0.02 * MS);
+        // latency plus a tail of mean jitter, never below the latency
+        assertEquals(14 * MS, mean(new LinkProfile(10 * MS, 4 * MS, Distribution.EXPONENTIAL, 0, 0), 10 * MS,
+                Long.MAX_VALUE), 0.1 * MS);
+        // cut at 0: half of the normal draws around a zero latency
+        assertEquals(0.4 * MS, mean(new LinkProfile(0, 1 * MS, Distribution.NORMAL, 0, 0), 0, 10 * MS), 0.02 * MS);
+    }
+
+    @Test
+    public void configFallsBackToTheDefaults() {
+        LinkProfile defaults = LinkProfile.fromConfig(ConfigFactory.parseString(
+                "latency = 1ms, jitter = 200us, distribution = normal, loss = 0.01, bandwidth = 100MiB"), null);
+        assertEquals(1 * MS, defaults.latencyNanos);
+        assertEquals(200_000, defaults.jitterNanos);
+        assertEquals(Distribution.NORMAL, defaults.distribution);
+        assertEquals(0.01, defaults.loss, 0);
+        assertEquals(100L << 20, defaults.bandwidth);
+        assertEquals("1ms~200us loss 1.0% 100MiB/s", defaults.toString());
+
+        LinkProfile slow = LinkProfile.fromConfig(ConfigFactory.parseString("latency = 20ms, distribution = Exponential"),
+                defaults);
+        assertEquals(20 * MS, slow.latencyNanos);
+        assertEquals(200_000, slow.jitterNanos);
+        assertEquals(Distribution.EXPONENTIAL, slow.distribution);
+        assertEquals(100L << 20, slow.bandwidth);
+        assertEquals("20ms+exp200us loss 1.0% 100MiB/s", slow.toString());
+    }
+
+    @Test
+    public void idealOnlyWithoutAnySetting() {
+        assertTrue(new LinkProfile(0, 0, Distribution.UNIFORM, 0, 0).isIdeal());
+        // negative durations count as none
+        assertTrue(new LinkProfile(-5, -1, Distribution.UNIFORM, 0, -1).isIdeal());
+        assertFalse(new LinkProfile(0, 0, Distribution.UNIFORM, 0.001, 0).isIdeal());
+        assertFalse(new LinkProfile(0, 0, Distribution.UNIFORM, 0, 1).isIdeal());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void lossOfEveryMessageIsRejected() {
+        new LinkProfile(0, 0, Distribution.UNIFORM, 1, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownDistributionIsRejected() {
+        LinkProfile.fromConfig(ConfigFactory.parseString("distribution = pareto"),
+                new LinkProfile(0, 0, Distribution.UNIFORM, 0, 0));
+    }
+}
@@ -0,0 +1,173 @@
+package keyValueStore.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
+import com.typesafe.config.ConfigFactory;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import scala.concurrent.duration.Duration;
+
+/* The emulated links of kv.network, sending to test probes. Every test opens the shared network
+with a model of its own. */
+public class SimulatedNetworkTest {
+    private static final long MS = 1_000_000;
+
+    private static ActorSystem system;
+
+    @BeforeClass
+    public static void setUp() {
+        system = ActorSystem.create("SimulatedNetworkTest");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        TestKit.shutdownActorSystem(system);
+    }
+
+    @After
+    public void closeNetwork() {
+        SimulatedNetwork.closeShared();
+    }
+
+    /* kv.network on with the given settings over the defaults of application.conf. */
+    private static NetworkModel model(String settings) {
+        return NetworkModel.fromConfig(ConfigFactory.parseString("network { enabled = on\n" + settings + "\n}")
+                .withFallback(ConfigFactory.load().getConfig("kv")));
+    }
+
+    /* Sends 0..count-1 from process 0 to process 1 (the probe) and returns them as received. */
+    private static List<Integer> sendAndReceive(SimulatedNetwork.Endpoint link, TestKit to, int count, int bytes) {
+        for (int i = 0; i < count; i++) {
+            link.send(1, to.getRef(), i, ActorRef.noSender(), bytes);
+        }
+        List<Integer> received = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            received.add(to.expectMsgClass(Duration.create(10, TimeUnit.SECONDS), Integer.class));
+        }
+        return received;
+    }
+
+    private static List<Integer> upTo(int count) {
+        List<Integer> all = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            all.add(i);
+        }
+        return all;
+    }
+
+    @Test
+    public void firstMatchingLinkWinsInTheDirectionsItCovers() {
+        NetworkModel model = model("latency = 1ms\n"
+                + "links = [ { from = [0], to = [2], latency = 20ms, both-ways = off },"
+                + " { from = [0], latency = 5ms }, { to = [3], loss = 0.5 } ]");
+        assertEquals(20 * MS, model.profile(0, 2).latencyNanos);
+        // both-ways off: 2 -> 0 is left to the next entries (0 <-> anyone)
+        assertEquals(5 * MS, model.profile(2, 0).latencyNanos);
+        assertEquals(5 * MS, model.profile(0, 1).latencyNanos);
+        // a setting the entry leaves out is the default one
+        assertEquals(0.5, model.profile(1, 3).loss, 0);
+        assertEquals(1 * MS, model.profile(1, 3).latencyNanos);
+        assertEquals(1 * MS, model.profile(1, 2).latencyNanos);
+        assertEquals("1ms, [0]->[2] 20ms, [0]<->* 5ms, *<->[3] 1ms loss 50.0%", model.toString());
+    }
+
+    @Test
+    public void partitionsHoldMessagesUntilTheyHeal() {
+        NetworkModel model = model("partitions = [ { at = 100ms, duration = 50ms, side = [0, 1] },"
+                + " { at = 140ms, duration = 100ms, side = [0] } ]");
+        // same side, or outside the partition
+        assertEquals(120 * MS, model.crossingTime(0, 1, 120 * MS));
+        assertEquals(90 * MS, model.crossingTime(0, 2, 90 * MS));
+        // 0 -> 2 is held by the first partition and then by the second one
+        assertEquals(240 * MS, model.crossingTime(0, 2, 100 * MS));
+        // 1 -> 2 only by the first one, 1 -> 0 only by the second one
+        assertEquals(150 * MS, model.crossingTime(1, 2, 100 * MS));
+        assertEquals(240 * MS, model.crossingTime(1, 0, 145 * MS));
+        assertEquals(240 * MS, model.crossingTime(2, 0, 240 * MS));
+    }
+
+    @Test
+    public void idealNetworkAndSelfSendsAreDirect() {
+        TestKit probe = new TestKit(system);
+        SimulatedNetwork network = SimulatedNetwork.open(model("latency = 0ms"));
+        assertEquals(upTo(100), sendAndReceive(network.endpoint(0, 2), probe, 100, 0));
+        // a second open in the same run gets the network already there
+        assertSame(network, SimulatedNetwork.open(model("latency = 1s")));
+        SimulatedNetwork.closeShared();
+
+        SimulatedNetwork slow = SimulatedNetwork.open(model("latency = 1h"));
+        slow.endpoint(1, 2).send(1, probe.getRef(), "self", ActorRef.noSender(), 0);
+        probe.expectMsgEquals("self");
+        assertFalse(slow.endpoint(1, 2).needsSize());
+    }
+
+    @Test
+    public void fifoLinkKeepsTheOrderUnderJitter() {
+        TestKit probe = new TestKit(system);
+        SimulatedNetwork network = SimulatedNetwork.open(model("latency = 2ms, jitter = 2ms, distribution = uniform"));
+        long start = System.nanoTime();
+        assertEquals(upTo(200), sendAndReceive(network.endpoint(0, 2), probe, 200, 0));
+        assertTrue(System.nanoTime() - start >= 1 * MS);
+    }
+
+    @Test
+    public void withoutFifoJitterReordersButLosesNothing() {
+        TestKit probe = new TestKit(system);
+        SimulatedNetwork network = SimulatedNetwork.open(model("latency = 2ms, jitter = 2ms, fifo = off"));
+        List<Integer> received = sendAndReceive(network.endpoint(0, 2), probe, 200, 0);
+        assertEquals(new HashSet<>(upTo(200)), new HashSet<>(received));
+        assertFalse(upTo(200).equals(received));
+    }
+
+    @Test
+    public void lossShowsAsResendDelay() {
+        TestKit probe = new TestKit(system);
+        SimulatedNetwork network = SimulatedNetwork.open(model("loss = 0.2, retransmit-timeout = 20ms"));
+        long start = System.nanoTime();
+        // every message arrives, in order, and the ones behind a lost message wait for its resend
+        // (this seed loses messages 1, 16 and 18 once each)
+        assertEquals(upTo(20), sendAndReceive(network.endpoint(0, 2), probe, 20, 0));
+        assertTrue(System.nanoTime() - start >= 20 * MS);
+    }
+
+    @Test
+    public void bandwidthCapQueuesMessagesBehindEachOther() {
+        TestKit probe = new TestKit(system);
+        SimulatedNetwork network = SimulatedNetwork.open(model("bandwidth = 1MiB"));
+        SimulatedNetwork.Endpoint link = network.endpoint(0, 2);
+        assertTrue(link.needsSize());
+        long start = System.nanoTime();
+        // 10 x 10 KiB at 1 MiB/s: the last one leaves after about 98 ms
+        assertEquals(upTo(10), sendAndReceive(link, probe, 10, 10 << 10));
+        assertTrue(System.nanoTime() - start >= 95 * MS);
+    }
+
+    @Test
+    public void partitionedPeerGetsItsMessagesAfterTheHeal() {
+        TestKit inside = new TestKit(system);
+        TestKit outside = new TestKit(system);
+        // partitions count from the opening of the network
+        long start = System.nanoTime();
+        SimulatedNetwork network = SimulatedNetwork.open(model(
+                "partitions = [ { at = 0ms, duration = 500ms, side = [0, 1] } ]"));
+        SimulatedNetwork.Endpoint link = network.endpoint(0, 3);
+        link.send(2, outside.getRef(), "held", ActorRef.noSender(), 0);
+        link.send(1, inside.getRef(), "direct", ActorRef.noSender(), 0);
+        inside.expectMsgEquals("direct");
+        outside.expectNoMessage(Duration.create(300, TimeUnit.MILLISECONDS));
+        outside.expectMsgEquals(Duration.create(10, TimeUnit.SECONDS), "held");
+        assertTrue(System.nanoTime() - start >= 500 * MS);
+    }
+}
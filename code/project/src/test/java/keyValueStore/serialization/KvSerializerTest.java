@@ -0,0 +1,380 @@
+package keyValueStore.serialization;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.NotSerializableException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.serialization.SerializationExtension;
+import akka.serialization.Serializer;
+import akka.serialization.SerializerWithStringManifest;
+import akka.testkit.javadsl.TestKit;
+import com.typesafe.config.ConfigFactory;
+import keyValueStore.Ack;
+import keyValueStore.OperationLatencies;
+import keyValueStore.msg.ArrivalTick;
+import keyValueStore.msg.BatchMessage;
+import keyValueStore.msg.CatchUpChunk;
+import keyValueStore.msg.CatchUpRequest;
+import keyValueStore.msg.ClientRequest;
+import keyValueStore.msg.ClientResponse;
+import keyValueStore.msg.CrashMessage;
+import keyValueStore.msg.DoneMessage;
+import keyValueStore.msg.FetchRequest;
+import keyValueStore.msg.FetchResponse;
+import keyValueStore.msg.FlushMessage;
+import keyValueStore.msg.LaunchMessage;
+import keyValueStore.msg.LeaseGrant;
+import keyValueStore.msg.LeaseRequest;
+import keyValueStore.msg.LeaseRevoke;
+import keyValueStore.msg.LeaseRevoked;
+import keyValueStore.msg.OperationsMessage;
+import keyValueStore.msg.ProcessMessage;
+import keyValueStore.msg.ReadRequest;
+import keyValueStore.msg.RecoverMessage;
+import keyValueStore.msg.RecoveredMessage;
+import keyValueStore.msg.ReferencesMessage;
+import keyValueStore.msg.WorkloadMessage;
+import keyValueStore.msg.WriteRequest;
+import keyValueStore.shard.ShardMap;
+import keyValueStore.workload.KeyDistribution;
+import keyValueStore.workload.WorkloadSpec;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/* Every message bound to KvSerializer in application.conf, through toBinary and fromBinary with
+the manifest it names, as the remote transport does. */
+public class KvSerializerTest {
+    private static ActorSystem system;
+    // manifests the tests have round-tripped, checked against all of them at the end
+    private static final Set<String> seen = new HashSet<>();
+
+    @BeforeClass
+    public static void start() {
+        system = ActorSystem.create("KvSerializerTest",
+                ConfigFactory.parseString("akka.loglevel = WARNING").withFallback(ConfigFactory.load()));
+    }
+
+    @AfterClass
+    public static void stop() {
+        TestKit.shutdownActorSystem(system);
+        List<String> all = Arrays.asList(KvSerializer.READ_REQUEST, KvSerializer.PROCESS_MESSAGE,
+                KvSerializer.WRITE_REQUEST, KvSerializer.ACK, KvSerializer.PROCESS_MESSAGE_PAYLOAD,
+                KvSerializer.WRITE_REQUEST_PAYLOAD, KvSerializer.FETCH_REQUEST, KvSerializer.FETCH_RESPONSE,
+                KvSerializer.BATCH, KvSerializer.OPERATIONS, KvSerializer.WORKLOAD, KvSerializer.REFERENCES,
+                KvSerializer.DONE, KvSerializer.LAUNCH, KvSerializer.CRASH, KvSerializer.FLUSH,
+                KvSerializer.ARRIVAL_TICK, KvSerializer.RECOVER, KvSerializer.CATCH_UP_REQUEST,
+                KvSerializer.CATCH_UP_CHUNK, KvSerializer.RECOVERED, KvSerializer.CLIENT_REQUEST,
+                KvSerializer.CLIENT_RESPONSE, KvSerializer.LEASE_REQUEST, KvSerializer.LEASE_GRANT,
+                KvSerializer.LEASE_REVOKE, KvSerializer.LEASE_REVOKED);
+        assertEquals(new HashSet<>(all), seen);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(T message) throws NotSerializableException {
+        Serializer bound = SerializationExtension.get(system).findSerializerFor(message);
+        assertTrue(message.getClass().getName() + " is not bound", bound instanceof KvSerializer);
+        SerializerWithStringManifest serializer = (SerializerWithStringManifest) bound;
+        String manifest = serializer.manifest(message);
+        seen.add(manifest);
+        Object copy = serializer.fromBinary(serializer.toBinary(message), manifest);
+        assertSame(message.getClass(), copy.getClass());
+        return (T) copy;
+    }
+
+    private static ByteBuffer payload(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertPayload(String text, ByteBuffer payload) {
+        assertTrue(payload.isReadOnly());
+        byte[] bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        assertEquals(text, new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    private static void assertSameProcessMessage(ProcessMessage expected, ProcessMessage actual) {
+        assertEquals(expected.getKey(), actual.getKey());
+        assertEquals(expected.getValue(), actual.getValue());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getSequenceNumber(), actual.getSequenceNumber());
+        assertEquals(expected.getProcessNumber(), actual.getProcessNumber());
+    }
+
+    private static void assertSameWriteRequest(WriteRequest expected, WriteRequest actual) {
+        assertEquals(expected.getKey(), actual.getKey());
+        assertEquals(expected.getValue(), actual.getValue());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getSequenceNumber(), actual.getSequenceNumber());
+    }
+
+    @Test
+    public void protocolMessages() throws Exception {
+        ReadRequest read = roundTrip(new ReadRequest(-7, 42));
+        assertEquals(-7, read.getKey());
+        assertEquals(42, read.getSequenceNumber());
+
+        ProcessMessage response = new ProcessMessage(3, 99, Long.MAX_VALUE - 1, 8, 4);
+        ProcessMessage responseCopy = roundTrip(response);
+        assertSameProcessMessage(response, responseCopy);
+        assertNull(responseCopy.getPayload());
+
+        WriteRequest write = new WriteRequest(0, Integer.MIN_VALUE, 1L << 40, 9);
+        WriteRequest writeCopy = roundTrip(write);
+        assertSameWriteRequest(write, writeCopy);
+        assertNull(writeCopy.getPayload());
+
+        Ack ack = roundTrip(new Ack(5, 6, 7, 8, 9));
+        assertEquals(5, ack.getKey());
+        assertEquals(6, ack.getValue());
+        assertEquals(7, ack.getTimestamp());
+        assertEquals(8, ack.getSequenceNumber());
+        assertEquals(9, ack.getProcessNumber());
+
+        FetchRequest fetch = roundTrip(new FetchRequest(1, 2, 3, 4));
+        assertEquals(1, fetch.getKey());
+        assertEquals(2, fetch.getValue());
+        assertEquals(3, fetch.getTimestamp());
+        assertEquals(4, fetch.getSequenceNumber());
+    }
+
+    @Test
+    public void protocolMessagesWithPayloads() throws Exception {
+        // the payload is what remains of the buffer, not its whole backing array
+        ByteBuffer offset = payload("..value of p4");
+        offset.position(2);
+        ProcessMessage response = new ProcessMessage(3, 99, 12345, 8, 4, offset);
+        ProcessMessage responseCopy = roundTrip(response);
+        assertSameProcessMessage(response, responseCopy);
+        assertPayload("value of p4", responseCopy.getPayload());
+        assertEquals(2, offset.position());
+
+        WriteRequest write = new WriteRequest(11, 12, 13, 14, payload("written"));
+        WriteRequest writeCopy = roundTrip(write);
+        assertSameWriteRequest(write, writeCopy);
+        assertPayload("written", writeCopy.getPayload());
+
+        WriteRequest empty = roundTrip(new WriteRequest(1, 2, 3, 4, ByteBuffer.allocate(0)));
+        assertEquals(0, empty.getPayload().remaining());
+
+        FetchResponse fetched = roundTrip(new FetchResponse(1, 2, 3, 4, 5, payload("fetched")));
+        assertEquals(1, fetched.getKey());
+        assertEquals(2, fetched.getValue());
+        assertEquals(3, fetched.getTimestamp());
+        assertEquals(4, fetched.getSequenceNumber());
+        assertEquals(5, fetched.getProcessNumber());
+        assertPayload("fetched", fetched.getPayload());
+        assertNull(roundTrip(new FetchResponse(1, 2, 3, 4, 5, null)).getPayload());
+    }
+
+    @Test
+    public void leaseMessages() throws Exception {
+        LeaseRequest request = roundTrip(new LeaseRequest(1, 2, 3, 4, 5));
+        assertEquals(1, request.getKey());
+        assertEquals(2, request.getValue());
+        assertEquals(3, request.getTimestamp());
+        assertEquals(4, request.getLeaseId());
+        assertEquals(5, request.getProcessNumber());
+
+        LeaseGrant granted = roundTrip(new LeaseGrant(6, 7, 8, true));
+        assertEquals(6, granted.getKey());
+        assertEquals(7, granted.getLeaseId());
+        assertEquals(8, granted.getProcessNumber());
+        assertTrue(granted.isGranted());
+        assertFalse(roundTrip(new LeaseGrant(6, 7, 8, false)).isGranted());
+
+        assertEquals(9, roundTrip(new LeaseRevoke(9)).getKey());
+        LeaseRevoked revoked = roundTrip(new LeaseRevoked(10, 11));
+        assertEquals(10, revoked.getKey());
+        assertEquals(11, revoked.getProcessNumber());
+    }
+
+    @Test
+    public void batchOfMixedMessages() throws Exception {
+        Object[] messages = {
+                new ReadRequest(1, 2),
+                new ProcessMessage(3, 4, 5, 6, 7),
+                new ProcessMessage(3, 4, 5, 6, 7, payload("pm")),
+                new WriteRequest(8, 9, 10, 11),
+                new WriteRequest(8, 9, 10, 11, payload("wr")),
+                new Ack(12, 13, 14, 15, 16),
+                new FetchRequest(17, 18, 19, 20),
+                new FetchResponse(21, 22, 23, 24, 25, payload("fs")),
+                new FetchResponse(21, 22, 23, 24, 25, null),
+                new LeaseRequest(26, 27, 28, 29, 30),
+                new LeaseGrant(31, 32, 33, true),
+                new LeaseRevoke(34),
+                new LeaseRevoked(35, 36),
+        };
+        Object[] copies = roundTrip(new BatchMessage(messages)).getMessages();
+        assertEquals(messages.length, copies.length);
+        for (int i = 0; i < messages.length; i++) {
+            assertSame(messages[i].getClass(), copies[i].getClass());
+        }
+        assertEquals(2, ((ReadRequest) copies[0]).getSequenceNumber());
+        assertSameProcessMessage((ProcessMessage) messages[1], (ProcessMessage) copies[1]);
+        assertNull(((ProcessMessage) copies[1]).getPayload());
+        assertSameProcessMessage((ProcessMessage) messages[2], (ProcessMessage) copies[2]);
+        assertPayload("pm", ((ProcessMessage) copies[2]).getPayload());
+        assertSameWriteRequest((WriteRequest) messages[3], (WriteRequest) copies[3]);
+        assertNull(((WriteRequest) copies[3]).getPayload());
+        assertSameWriteRequest((WriteRequest) messages[4], (WriteRequest) copies[4]);
+        assertPayload("wr", ((WriteRequest) copies[4]).getPayload());
+        assertEquals(16, ((Ack) copies[5]).getProcessNumber());
+        assertEquals(19, ((FetchRequest) copies[6]).getTimestamp());
+        assertPayload("fs", ((FetchResponse) copies[7]).getPayload());
+        assertNull(((FetchResponse) copies[8]).getPayload());
+        assertEquals(29, ((LeaseRequest) copies[9]).getLeaseId());
+        assertTrue(((LeaseGrant) copies[10]).isGranted());
+        assertEquals(34, ((LeaseRevoke) copies[11]).getKey());
+        assertEquals(36, ((LeaseRevoked) copies[12]).getProcessNumber());
+    }
+
+    @Test
+    public void clientMessages() throws Exception {
+        ClientRequest request = roundTrip(new ClientRequest(1L << 33, 7, true, -3));
+        assertEquals(1L << 33, request.getRequestId());
+        assertEquals(7, request.getKey());
+        assertTrue(request.isWrite());
+        assertEquals(-3, request.getValue());
+        assertFalse(roundTrip(new ClientRequest(1, 7, false, 0)).isWrite());
+
+        ClientResponse response = roundTrip(new ClientResponse(5L, 6, true));
+        assertEquals(5L, response.getRequestId());
+        assertEquals(6, response.getValue());
+        assertTrue(response.isRejected());
+    }
+
+    @Test
+    public void setupMessages() throws Exception {
+        OperationsMessage operations = roundTrip(new OperationsMessage(100, 10, 90));
+        assertEquals(100, operations.getNumOperations());
+        assertEquals(10, operations.getNumKeys());
+        assertEquals(90, operations.getReadPercent());
+
+        assertTrue(roundTrip(new LaunchMessage()) instanceof LaunchMessage);
+        assertTrue(roundTrip(new CrashMessage()) instanceof CrashMessage);
+        assertTrue(roundTrip(new RecoverMessage()) instanceof RecoverMessage);
+        assertSame(FlushMessage.INSTANCE, roundTrip(FlushMessage.INSTANCE));
+        assertSame(ArrivalTick.INSTANCE, roundTrip(ArrivalTick.INSTANCE));
+
+        RecoveredMessage recovered = roundTrip(new RecoveredMessage(3, 4L, 5L, 6L, 7));
+        assertEquals(3, recovered.getProcessNumber());
+        assertEquals(4L, recovered.getRecoveryNanos());
+        assertEquals(5L, recovered.getReplayNanos());
+        assertEquals(6L, recovered.getKeysReceived());
+        assertEquals(7, recovered.getChunks());
+    }
+
+    @Test
+    public void workloadOfEveryKeyDistribution() throws Exception {
+        KeyDistribution[] distributions = {new KeyDistribution.Uniform(10), new KeyDistribution.Zipfian(100, 0.99),
+                new KeyDistribution.Hotspot(1000, 0.1, 0.9)};
+        for (KeyDistribution keys : distributions) {
+            WorkloadSpec spec = new WorkloadSpec(0.9, keys, 50, 1000L, 2000L, 300.0, 42L);
+            WorkloadSpec copy = roundTrip(new WorkloadMessage(spec)).getSpec();
+            assertEquals(0.9, copy.getReadRatio(), 0);
+            assertEquals(50, copy.getOperations());
+            assertEquals(1000L, copy.getWarmupNanos());
+            assertEquals(2000L, copy.getDurationNanos());
+            assertEquals(300.0, copy.getRatePerProcess(), 0);
+            assertEquals(42L, copy.getSeed());
+            assertSame(keys.getClass(), copy.getKeys().getClass());
+            assertEquals(keys.getNumKeys(), copy.getKeys().getNumKeys());
+            assertEquals(keys.toString(), copy.getKeys().toString());
+        }
+    }
+
+    public static class Idle extends AbstractActor {
+        @Override
+        public Receive createReceive() {
+            return receiveBuilder().build();
+        }
+    }
+
+    @Test
+    public void references() throws Exception {
+        List<ActorRef> processes = Arrays.asList(system.actorOf(Props.create(Idle.class), "p0"),
+                system.actorOf(Props.create(Idle.class), "p1"), system.actorOf(Props.create(Idle.class), "p2"));
+        ActorRef monitor = system.actorOf(Props.create(Idle.class), "monitor");
+
+        ReferencesMessage plain = roundTrip(new ReferencesMessage(processes, monitor));
+        assertEquals(processes, plain.getReferences());
+        assertEquals(monitor, plain.getMonitor());
+        assertNull(plain.getShards());
+        assertNull(roundTrip(new ReferencesMessage(processes, null)).getMonitor());
+
+        ShardMap shards = ShardMap.consistentHash(3, 2, 8);
+        ShardMap shardsCopy = roundTrip(new ReferencesMessage(processes, monitor, shards)).getShards();
+        assertEquals(3, shardsCopy.getNumProcesses());
+        assertEquals(2, shardsCopy.getReplicas());
+        assertArrayEquals(shards.getTokens(), shardsCopy.getTokens());
+        assertArrayEquals(shards.getOwners(), shardsCopy.getOwners());
+        assertArrayEquals(shards.group(42), shardsCopy.group(42));
+    }
+
+    @Test
+    public void doneWithLatencies() throws Exception {
+        OperationLatencies latencies = OperationLatencies.forProcess();
+        latencies.recordPut(5_000_000);
+        latencies.recordGet(1_000);
+        latencies.recordGet(2_000_000);
+        latencies.recordReadPhase(3_000);
+        latencies.recordWritePhase(4_000);
+        DoneMessage done = roundTrip(new DoneMessage(latencies, 100L, 20, 30, 40L, 50L, 60L, 70));
+        assertEquals(100L, done.getMessagesSent());
+        assertEquals(20, done.getFastReads());
+        assertEquals(30, done.getSlowReads());
+        assertEquals(40L, done.getWalRecords());
+        assertEquals(50L, done.getWalGroups());
+        assertEquals(60L, done.getPayloadBytesSent());
+        assertEquals(70, done.getLeaseReads());
+        assertEquals(latencies.getPut(), done.getLatencies().getPut());
+        assertEquals(latencies.getGet(), done.getLatencies().getGet());
+        assertEquals(latencies.getReadPhase(), done.getLatencies().getReadPhase());
+        assertEquals(latencies.getWritePhase(), done.getLatencies().getWritePhase());
+    }
+
+    @Test
+    public void catchUpMessages() throws Exception {
+        CatchUpRequest request = roundTrip(new CatchUpRequest(0, 4, new long[] {1, 0, Long.MAX_VALUE, 7}));
+        assertEquals(0, request.getFromKey());
+        assertEquals(4, request.getToKey());
+        assertArrayEquals(new long[] {1, 0, Long.MAX_VALUE, 7}, request.getTimestamps());
+
+        int[] keys = {0, 2};
+        int[] values = {10, 12};
+        long[] timestamps = {100, 1L << 40};
+        CatchUpChunk plain = roundTrip(new CatchUpChunk(0, 4, 3, keys, values, timestamps));
+        assertEquals(0, plain.getFromKey());
+        assertEquals(4, plain.getToKey());
+        assertEquals(3, plain.getProcessNumber());
+        assertArrayEquals(keys, plain.getKeys());
+        assertArrayEquals(values, plain.getValues());
+        assertArrayEquals(timestamps, plain.getTimestamps());
+        assertNull(plain.getPayloads());
+
+        CatchUpChunk withPayloads = roundTrip(new CatchUpChunk(0, 4, 3, keys, values, timestamps,
+                new ByteBuffer[] {payload("k0"), null}));
+        assertArrayEquals(keys, withPayloads.getKeys());
+        assertPayload("k0", withPayloads.getPayloads()[0]);
+        assertNull(withPayloads.getPayloads()[1]);
+
+        CatchUpChunk empty = roundTrip(new CatchUpChunk(4, 8, 1, new int[0], new int[0], new long[0]));
+        assertEquals(0, empty.getKeys().length);
+    }
+}
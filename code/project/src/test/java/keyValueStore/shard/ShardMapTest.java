@@ -0,0 +1,110 @@
+package keyValueStore.shard;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ShardMapTest {
+    private static final int N = 5;
+
+    @Test
+    public void ringHasSortedTokensAndEveryProcessTheSameCount() {
+        ShardMap map = ShardMap.consistentHash(N, 3, 16);
+        int[] tokens = map.getTokens();
+        int[] owners = map.getOwners();
+        assertEquals(N * 16, tokens.length);
+        assertEquals(tokens.length, owners.length);
+        int[] perProcess = new int[N];
+        for (int i = 0; i < tokens.length; i++) {
+            if (i > 0) assertTrue(tokens[i - 1] <= tokens[i]);
+            perProcess[owners[i]]++;
+        }
+        assertArrayEquals(new int[] {16, 16, 16, 16, 16}, perProcess);
+        assertEquals("r=3 of 5, 16 tokens each", map.toString());
+    }
+
+    @Test
+    public void groupIsTheDistinctOwnersFromTheKeysToken() {
+        ShardMap map = ShardMap.consistentHash(N, 3, 16);
+        int[] tokens = map.getTokens();
+        int[] owners = map.getOwners();
+        for (int key = 0; key < 1000; key++) {
+            int shard = map.shardOf(key);
+            int[] group = map.group(key);
+            assertEquals(3, group.length);
+            // the owner of the segment first, then the next distinct processes clockwise
+            assertEquals(owners[shard], group[0]);
+            boolean[] seen = new boolean[N];
+            int size = 0;
+            for (int j = shard; size < 3; j = (j + 1) % tokens.length) {
+                if (!seen[owners[j]]) {
+                    seen[owners[j]] = true;
+                    assertEquals(owners[j], group[size++]);
+                }
+            }
+            for (int p = 0; p < N; p++) {
+                assertEquals(seen[p], map.replicates(p, key));
+            }
+        }
+    }
+
+    @Test
+    public void segmentsOfAGivenRingHaveTheirGroups() {
+        // tokens -10, 0, 10 of processes 2, 0, 1: hashes past the last token wrap to the first
+        ShardMap map = new ShardMap(3, 2, new int[] {-10, 0, 10}, new int[] {2, 0, 1});
+        int[][] groups = {{2, 0}, {0, 1}, {1, 2}};
+        for (int key = 0; key < 1000; key++) {
+            int[] group = map.group(key);
+            assertArrayEquals(groups[map.shardOf(key)], group);
+            // precomputed: the lookup allocates nothing
+            assertSame(group, map.group(key));
+        }
+        boolean[] peers = map.peersOf(0);
+        assertFalse(peers[0]);
+        assertTrue(peers[1]);
+        assertTrue(peers[2]);
+    }
+
+    @Test
+    public void replicasAreCappedByTheProcessCount() {
+        ShardMap map = ShardMap.consistentHash(2, 3, 4);
+        assertEquals(2, map.getReplicas());
+        assertEquals(1.0, map.share(0), 1e-9);
+        assertEquals(1.0, map.share(1), 1e-9);
+    }
+
+    @Test
+    public void sharesAddUpToTheReplicationFactor() {
+        ShardMap map = ShardMap.consistentHash(N, 3, 64);
+        double total = 0;
+        for (int p = 0; p < N; p++) {
+            double share = map.share(p);
+            // 64 tokens each keep every process near 3/5 of the keys
+            assertEquals(0.6, share, 0.15);
+            total += share;
+        }
+        assertEquals(3.0, total, 1e-9);
+    }
+
+    @Test
+    public void placementIsDeterministic() {
+        ShardMap a = ShardMap.consistentHash(N, 3, 8);
+        ShardMap b = ShardMap.consistentHash(N, 3, 8);
+        assertArrayEquals(a.getTokens(), b.getTokens());
+        assertArrayEquals(a.getOwners(), b.getOwners());
+        // the ring carried in the ReferencesMessage places keys as the one it was built from
+        ShardMap copy = new ShardMap(N, 3, a.getTokens().clone(), a.getOwners().clone());
+        for (int key = 0; key < 1000; key++) {
+            assertArrayEquals(a.group(key), copy.group(key));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tokensWithoutOwnersAreRejected() {
+        new ShardMap(3, 2, new int[] {1, 2}, new int[] {0});
+    }
+}
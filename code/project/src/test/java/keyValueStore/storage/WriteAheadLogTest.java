@@ -0,0 +1,362 @@
+package keyValueStore.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import keyValueStore.RegisterMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/* Recovery of a replica's registers from its log directory: after a clean close, and after a
+crash that left a torn or corrupt record at the end, replay must rebuild exactly the records
+before it, alone and on top of a snapshot. A simulated crash (abort) keeps every update reported
+durable and may lose the others. */
+public class WriteAheadLogTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /* One logged update; the payload is null or its bytes. */
+    private static final class Update {
+        final int key;
+        final int value;
+        final long timestamp;
+        final byte[] payload;
+
+        Update(int key, int value, long timestamp, byte[] payload) {
+            this.key = key;
+            this.value = value;
+            this.timestamp = timestamp;
+            this.payload = payload;
+        }
+
+        int bytes() {
+            return WriteAheadLog.RECORD_BYTES + (payload == null ? 0 : payload.length);
+        }
+
+        ByteBuffer payloadBuffer() {
+            return payload == null ? null : ByteBuffer.wrap(payload);
+        }
+    }
+
+    // distinct keys, every third one with a payload of its own length
+    private static List<Update> updates(int from, int to) {
+        List<Update> updates = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            byte[] payload = i % 3 == 0 ? ("value " + i).getBytes(StandardCharsets.UTF_8) : null;
+            // versions past 32 bits, as the clocks issue them
+            updates.add(new Update(i, 100 + i, (1L << 40) + i, payload));
+        }
+        return updates;
+    }
+
+    private static void append(WriteAheadLog log, RegisterMap live, List<Update> updates) {
+        for (Update u : updates) {
+            log.append(u.key, u.value, u.timestamp, u.payloadBuffer());
+            live.putIfNewer(u.key, u.value, u.timestamp, u.payloadBuffer());
+        }
+    }
+
+    private static RegisterMap apply(List<Update> updates) {
+        RegisterMap registers = new RegisterMap();
+        for (Update u : updates) {
+            registers.putIfNewer(u.key, u.value, u.timestamp, u.payloadBuffer());
+        }
+        return registers;
+    }
+
+    private static RegisterMap recover(Path dir) throws IOException {
+        RegisterMap registers = new RegisterMap();
+        WriteAheadLog.open(dir, Durability.BUFFERED, true, registers, lsn -> {}).close();
+        return registers;
+    }
+
+    private static void assertRegisters(RegisterMap expected, RegisterMap actual) {
+        assertEquals(expected.size(), actual.size());
+        expected.forEach((key, value, timestamp) -> {
+            assertEquals("value of " + key, value, actual.getValue(key));
+            assertEquals("timestamp of " + key, timestamp, actual.getTimestamp(key));
+            assertEquals("payload of " + key, expected.getPayload(key), actual.getPayload(key));
+        });
+    }
+
+    private static List<Path> segments(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith("wal-"))
+                    .sorted((a, b) -> Integer.compare(number(a), number(b)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static int number(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring(4, name.length() - 4));
+    }
+
+    private static Path lastSegment(Path dir) throws IOException {
+        List<Path> segments = segments(dir);
+        return segments.get(segments.size() - 1);
+    }
+
+    /* Waits until the writer has written the given number of snapshots: each starts a segment. */
+    private static void awaitSnapshot(Path dir, int snapshots) throws IOException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (number(lastSegment(dir)) < snapshots) {
+            assertTrue("snapshot " + snapshots + " not written", System.nanoTime() < deadline);
+            Thread.yield();
+        }
+    }
+
+    /* A copy of dir whose last segment holds only its first length bytes, as a crash mid-write
+    leaves it. */
+    private Path crashedCopy(Path dir, long length) throws IOException {
+        Path copy = folder.newFolder().toPath();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.copy(file, copy.resolve(file.getFileName()));
+            }
+        }
+        byte[] bytes = Files.readAllBytes(lastSegment(copy));
+        byte[] kept = new byte[(int) length];
+        System.arraycopy(bytes, 0, kept, 0, kept.length);
+        Files.write(lastSegment(copy), kept);
+        return copy;
+    }
+
+    @Test
+    public void groupCommitReplaysEveryDurableUpdate() throws IOException {
+        Path dir = folder.newFolder().toPath();
+        ConcurrentLinkedQueue<Long> reported = new ConcurrentLinkedQueue<>();
+        RegisterMap live = new RegisterMap();
+        List<Update> updates = updates(0, 2000);
+        // larger than the replay buffer
+        byte[] large = new byte[200_000];
+        large[large.length - 1] = 42;
+        updates.add(new Update(5000, 1, 1, large));
+        // older than what key 7 holds, and a newer version of key 8: replay keeps the newest
+        updates.add(new Update(7, -1, 1, null));
+        updates.add(new Update(8, -2, (1L << 40) + 5000, "newer".getBytes(StandardCharsets.UTF_8)));
+        WriteAheadLog log = WriteAheadLog.open(dir, Durability.FSYNC, false, new RegisterMap(), reported::add);
+        append(log, live, updates);
+        log.close();
+
+        assertEquals(updates.size(), log.durable());
+        assertEquals(updates.size(), log.lastAppended());
+        assertTrue(log.groups() >= 1 && log.groups() <= updates.size());
+        long previous = 0;
+        for (long lsn : reported) {
+            assertTrue(lsn > previous);
+            previous = lsn;
+        }
+        assertEquals(updates.size(), previous);
+
+        RegisterMap recovered = new RegisterMap();
+        WriteAheadLog reopened = WriteAheadLog.open(dir, Durability.FSYNC, true, recovered, lsn -> {});
+        reopened.close();
+        assertFalse(reopened.isRecoveredFromSnapshot());
+        assertEquals(updates.size(), reopened.getReplayedRecords());
+        assertRegisters(live, recovered);
+        assertEquals(-2, recovered.getValue(8));
+        assertEquals(107, recovered.getValue(7));
+    }
+
+    @Test
+    public void truncatedTailRecoversTheCompletePrefix() throws IOException {
+        Path dir = folder.newFolder().toPath();
+        List<Update> updates = updates(0, 12);
+        WriteAheadLog log = WriteAheadLog.open(dir, Durability.BUFFERED, false, new RegisterMap(), lsn -> {});
+        append(log, new RegisterMap(), updates);
+        log.close();
+        long size = Files.size(lastSegment(dir));
+
+        // every cut, inside the header, the payload or the check of a record, or between two
+        int complete = 0;
+        long end = 0;
+        for (long cut = 0; cut <= size; cut++) {
+            if (complete < updates.size() && end + updates.get(complete).bytes() <= cut) {
+                end += updates.get(complete).bytes();
+                complete++;
+            }
+            RegisterMap recovered = recover(crashedCopy(dir, cut));
+            assertRegisters(apply(updates.subList(0, complete)), recovered);
+        }
+        assertEquals(updates.size(), complete);
+    }
+
+    @Test
+    public void corruptRecordEndsTheReplay() throws IOException {
+        Path dir = folder.newFolder().toPath();
+        List<Update> updates = updates(0, 9);
+        WriteAheadLog log = WriteAheadLog.open(dir, Durability.BUFFERED, false, new RegisterMap(), lsn -> {});
+        append(log, new RegisterMap(), updates);
+        log.close();
+        byte[] intact = Files.readAllBytes(lastSegment(dir));
+
+        long offset = 0;
+        for (int k = 0; k < updates.size(); k++) {
+            // the value, the payload and the check of record k
+            int[] fields = {4, WriteAheadLog.RECORD_BYTES - 4, updates.get(k).bytes() - 1};
+            for (int field : fields) {
+                Path copy = crashedCopy(dir, intact.length);
+                byte[] bytes = intact.clone();
+                bytes[(int) offset + field] ^= 0x10;
+                Files.write(lastSegment(copy), bytes);
+                assertRegisters(apply(updates.subList(0, k)), recover(copy));
+            }
+            offset += updates.get(k).bytes();
+        }
+        // a length no record can have
+        Path copy = crashedCopy(dir, intact.length);
+        byte[] bytes = intact.clone();
+        ByteBuffer.wrap(bytes).putInt((int) offset - updates.get(8).bytes() + 16, -5);
+        Files.write(lastSegment(copy), bytes);
+        assertRegisters(apply(updates.subList(0, 8)), recover(copy));
+    }
+
+    @Test
+    public void snapshotThenLogRecoversBoth() throws IOException {
+        Path dir = folder.newFolder().toPath();
+        RegisterMap live = new RegisterMap();
+        List<Update> before = updates(0, 50);
+        List<Update> after = new ArrayList<>(updates(50, 60));
+        // newer versions of keys the snapshot holds, one of them dropping its payload
+        after.add(new Update(3, 7, (1L << 40) + 9000, null));
+        after.add(new Update(4, 8, (1L << 40) + 9000, "four".getBytes(StandardCharsets.UTF_8)));
+        WriteAheadLog log = WriteAheadLog.open(dir, Durability.FSYNC, false, new RegisterMap(), lsn -> {});
+        append(log, live, before);
+        log.snapshot(live);
+        // the updates after it go to the next segment
+        awaitSnapshot(dir, 1);
+        append(log, live, after);
+        log.close();
+        assertTrue(Files.exists(dir.resolve("snapshot.bin")));
+
+        // a crash while the last update after the snapshot was written loses that one only
+        List<Update> all = new ArrayList<>(before);
+        all.addAll(after);
+        long size = Files.size(lastSegment(dir));
+        Path torn = crashedCopy(dir, size - 3);
+        assertRegisters(apply(all.subList(0, all.size() - 1)), recover(torn));
+        // and a crash right after the snapshot keeps exactly the updates before it
+        assertRegisters(apply(before), recover(crashedCopy(dir, 0)));
+        // which the snapshot holds by itself
+        Path snapshotOnly = crashedCopy(dir, size);
+        Files.delete(segments(snapshotOnly).get(0));
+        assertRegisters(apply(before), recover(crashedCopy(snapshotOnly, 0)));
+
+        RegisterMap recovered = new RegisterMap();
+        WriteAheadLog reopened = WriteAheadLog.open(dir, Durability.FSYNC, true, recovered, lsn -> {});
+        reopened.close();
+        assertTrue(reopened.isRecoveredFromSnapshot());
+        assertRegisters(live, recovered);
+    }
+
+    @Test
+    public void snapshotsDropSegmentsTheyCover() throws IOException {
+        Path dir = folder.newFolder().toPath();
+        RegisterMap live = new RegisterMap();
+        WriteAheadLog log = WriteAheadLog.open(dir, Durability.BUFFERED, false, new RegisterMap(), lsn -> {});
+        for (int round = 0; round < 4; round++) {
+            append(log, live, updates(round * 10, round * 10 + 10));
+            log.snapshot(live);
+            // one at a time: a second snapshot handed over before the first is written replaces it
+            awaitSnapshot(dir, round + 1);
+        }
+        append(log, live, updates(40, 45));
+        log.close();
+        // the segment before the last snapshot and the one after it
+        assertEquals(2, segments(dir).size());
+        assertRegisters(live, recover(dir));
+    }
+
+    @Test
+    public void openingWithoutRecoveryStartsEmpty() throws IOException {
+        Path dir = folder.newFolder().toPath();
+        RegisterMap live = new RegisterMap();
+        WriteAheadLog log = WriteAheadLog.open(dir, Durability.BUFFERED, false, new RegisterMap(), lsn -> {});
+        append(log, live, updates(0, 5));
+        log.snapshot(live);
+        log.close();
+
+        RegisterMap registers = new RegisterMap();
+        WriteAheadLog.open(dir, Durability.BUFFERED, false, registers, lsn -> {}).close();
+        assertEquals(0, registers.size());
+        assertFalse(Files.exists(dir.resolve("snapshot.bin")));
+        assertEquals(0, recover(dir).size());
+    }
+
+    @Test
+    public void crashDropsWhatWasNotWrittenYet() throws Exception {
+        Path dir = folder.newFolder().toPath();
+        CountDownLatch firstGroup = new CountDownLatch(1);
+        CountDownLatch crashed = new CountDownLatch(1);
+        AtomicLong reported = new AtomicLong();
+        WriteAheadLog log = WriteAheadLog.open(dir, Durability.FSYNC, false, new RegisterMap(), lsn -> {
+            reported.set(lsn);
+            firstGroup.countDown();
+            // keeps the writer busy with this group until the replica has crashed
+            try {
+                crashed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        List<Update> updates = updates(0, 20);
+        append(log, new RegisterMap(), updates.subList(0, 10));
+        assertTrue(firstGroup.await(10, TimeUnit.SECONDS));
+        int acked = (int) reported.get();
+        // staged while the writer is busy: their Acks never left
+        append(log, new RegisterMap(), updates.subList(10, 20));
+        log.abort();
+        crashed.countDown();
+        log.close();
+
+        assertEquals(acked, log.durable());
+        assertEquals(acked, reported.get());
+        assertRegisters(apply(updates.subList(0, acked)), recover(dir));
+    }
+
+    @Test
+    public void crashAtAnyPointKeepsTheDurablePrefix() throws IOException {
+        Random random = new Random(11);
+        for (int round = 0; round < 20; round++) {
+            Path dir = folder.newFolder().toPath();
+            AtomicLong reported = new AtomicLong();
+            WriteAheadLog log = WriteAheadLog.open(dir, Durability.BUFFERED, false, new RegisterMap(),
+                    reported::set);
+            List<Update> updates = updates(0, 1 + random.nextInt(3000));
+            RegisterMap live = new RegisterMap();
+            for (Update u : updates) {
+                log.append(u.key, u.value, u.timestamp, u.payloadBuffer());
+                live.putIfNewer(u.key, u.value, u.timestamp, u.payloadBuffer());
+                if (random.nextInt(500) == 0) {
+                    log.snapshot(live);
+                }
+            }
+            log.abort();
+            log.close();
+            long durable = reported.get();
+
+            // a prefix of the updates that holds at least every one reported durable
+            RegisterMap recovered = recover(dir);
+            assertTrue(recovered.size() >= durable);
+            assertTrue(recovered.size() <= updates.size());
+            assertRegisters(apply(updates.subList(0, recovered.size())), recovered);
+        }
+    }
+}
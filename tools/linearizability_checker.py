@@ -11,6 +11,7 @@ class Operation:
     def __init__(self, pid, seq):
         self.pid = pid
         self.seq = seq
+        self.key = 1  # register key; histories without key= are single-key (k = 1)
         self.type = None  # 'put' or 'get'
         self.value = None  # for put: written value; for get: returned value
         self.start_ts = None
@@ -25,6 +26,8 @@ class Operation:
 PATTERN_INVOKE = re.compile(r".*p(\d+):\s+Invoke\s+(write|get|read)\s+start_ts=(\d+)\s+seq=(\d+)")
 PATTERN_PUT_DONE = re.compile(r".*p(\d+):\s+Put\s+value:\s+(\d+)\s+operation\s+duration:\s+\d+ns\s+end_ts=(\d+)\s+seq=(\d+)")
 PATTERN_GET_DONE = re.compile(r".*p(\d+):\s+Get\s+return\s+value:\s+(\d+)\s+operation\s+duration:\s+\d+ns\s+end_ts=(\d+)\s+seq=(\d+)")
+# Multi-key runs append ' key=K' to every invoke/completion line
+PATTERN_KEY = re.compile(r"\skey=(\d+)")
 
 # Fallback patterns without timestamps/seq (best-effort)
 PATTERN_INVOKE_FB = re.compile(r".*p(\d+):\s+Invoke\s+(write|get|read)")
@@ -51,6 +54,9 @@ def parse_log(path):
                 key = (pid, seq)
                 op = ops_by_pid[pid].get(seq) or Operation(pid, seq)
                 op.type = 'put' if typ == 'write' else 'get'
+                km = PATTERN_KEY.search(line)
+                if km:
+                    op.key = int(km.group(1))
                 op.start_ts = start_ts
                 op.start_idx = line_idx
                 ops_by_pid[pid][seq] = op
@@ -165,7 +171,9 @@ def run_java_and_capture(n, faults, m, project_dir, capture_path, kvlog_path=Non
     exec_cmd = [
         'mvn', '-q', 'exec:java',
         f'-Dexec.mainClass=keyValueStore.Main',
-        f'-Dexec.args={n} {faults} {m}'
+        f'-Dexec.args={n} {faults} {m}',
+        # text history through KVLogger instead of the binary event log
+        '-Dkv.event-log.enabled=off'
     ]
     # Prefer environment variable to avoid quoting issues with spaces
     # Ensure parent directory exists for capture
@@ -410,6 +418,19 @@ def fast_linearizable(ops, default_value=0):
     return True, order
 
 
+def check_register(ops, default_value):
+    mode = 'exact'
+    # Auto-switch to fast for large histories
+    if len(ops) > 300:
+        mode = 'fast'
+    try:
+        ok, seq = (linearizable if mode == 'exact' else fast_linearizable)(ops, default_value=default_value)
+    except RecursionError:
+        ok, seq = fast_linearizable(ops, default_value=default_value)
+        mode = 'fast'
+    return ok, seq, mode
+
+
 def main():
     parser = argparse.ArgumentParser(description="Linearizability checker for single-key MWMR register histories (N=3,M=3). Parses AKKA logs and validates linearizability.")
     parser.add_argument('--log', required=False, help='Path to log file produced by running the Java actors. If missing, a sample log is generated unless --run-java is used.')
@@ -471,17 +492,22 @@ def main():
         for op in ops[:10]:
             print(f"p{op.pid}#{op.seq} {op.type} val={op.value} [{s(op)}..{e(op)}]")
 
-    mode = 'exact'
-    if args.debug:
-        mode = 'exact'
-    # Auto-switch to fast for large histories
-    if len(ops) > 300:
-        mode = 'fast'
-    try:
-        ok, seq = (linearizable if mode == 'exact' else fast_linearizable)(ops, default_value=args.default)
-    except RecursionError:
-        ok, seq = fast_linearizable(ops, default_value=args.default)
-        mode = 'fast'
+    # Registers of different keys are independent: check each key's sub-history on its own
+    by_key = defaultdict(list)
+    for op in ops:
+        by_key[op.key].append(op)
+
+    ok, seq, mode = True, [], 'exact'
+    for key in sorted(by_key):
+        key_ok, key_seq, key_mode = check_register(by_key[key], args.default)
+        if key_mode == 'fast':
+            mode = 'fast'
+        if not key_ok:
+            ok, seq = False, None
+            if len(by_key) > 1:
+                print(f"Violation on key {key}")
+            break
+        seq.extend(key_seq)
 
     lines = []
     if ok: